@@ -0,0 +1,28 @@
+package com.rickandmorty.client;
+
+/**
+ * A response other than {@code 200}, with the {@code error} message of the API's error body.
+ */
+public class ApiException extends RuntimeException {
+
+    private final int status;
+    private final String url;
+
+    public ApiException(int status, String url, String message) {
+        super("GET " + url + " answered " + status + (message == null ? "" : ": " + message));
+        this.status = status;
+        this.url = url;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public boolean isNotFound() {
+        return status == 404;
+    }
+}
@@ -0,0 +1,66 @@
+package com.rickandmorty.client;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.rickandmorty.models.ApiResponse;
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * One collection of the API with the model its records are read into.
+ *
+ * @param <T> {@link Character}, {@link Location} or {@link Episode}
+ */
+public final class Endpoint<T> {
+
+    public static final Endpoint<Character> CHARACTER = new Endpoint<>("character", Character.class, Character::getId);
+    public static final Endpoint<Location> LOCATION = new Endpoint<>("location", Location.class, Location::getId);
+    public static final Endpoint<Episode> EPISODE = new Endpoint<>("episode", Episode.class, Episode::getId);
+
+    private final String path;
+    private final ToIntFunction<T> idOf;
+    private final JavaType type;
+    private final JavaType listType;
+    private final JavaType pageType;
+
+    private Endpoint(String path, Class<T> model, ToIntFunction<T> idOf) {
+        TypeFactory types = TypeFactory.defaultInstance();
+        this.path = path;
+        this.idOf = idOf;
+        this.type = types.constructType(model);
+        this.listType = types.constructCollectionType(List.class, model);
+        this.pageType = types.constructParametricType(ApiResponse.class, model);
+    }
+
+    /**
+     * @return the path below the API root, e.g. {@code character}
+     */
+    public String getPath() {
+        return path;
+    }
+
+    int idOf(T entity) {
+        return idOf.applyAsInt(entity);
+    }
+
+    JavaType type() {
+        return type;
+    }
+
+    JavaType listType() {
+        return listType;
+    }
+
+    JavaType pageType() {
+        return pageType;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -0,0 +1,491 @@
+package com.rickandmorty.client;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.rickandmorty.models.ApiResponse;
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Non-blocking client for the Rick and Morty API. Every call returns at once with a
+ * {@link CompletableFuture} of the {@code com.rickandmorty.models} types; requests go out through
+ * one {@code java.net.http} client, and responses are read and parsed on a small pool of platform
+ * threads. At most {@code maxInFlight} requests are on the wire at a time, the rest wait in a queue
+ * without holding a thread, so thousands of lookups can be pending at once.
+ *
+ * <pre>{@code
+ * try (RickAndMortyClient client = RickAndMortyClient.builder().build()) {
+ *     Character rick = client.getCharacter(1).join();
+ *     List<Character> smiths = client.getCharacters(2, 3, 4, 5).join();
+ *     ApiResponse<Character> alive = client.filterCharacters(Map.of("name", "rick", "status", "alive")).join();
+ * }
+ * }</pre>
+ *
+ * A response other than {@code 200} completes the future with an {@link ApiException}.
+ * {@link #close()} cancels every future still pending, queued or on the wire.
+ */
+public class RickAndMortyClient implements AutoCloseable {
+
+    public static final String DEFAULT_BASE_URL = "https://rickandmortyapi.com/api";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String baseUrl;
+    private final ExecutorService executor;
+    private final HttpClient http;
+    private final Duration requestTimeout;
+    private final int maxInFlight;
+    private final int maxIdsPerRequest;
+    private final Map<JavaType, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final Queue<Call<?>> waiting = new ConcurrentLinkedQueue<>();
+    private final Set<Call<?>> outstanding = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private volatile boolean closed;
+
+    private RickAndMortyClient(Builder builder) {
+        this.baseUrl = builder.baseUrl.endsWith("/") ? builder.baseUrl.substring(0, builder.baseUrl.length() - 1)
+                : builder.baseUrl;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(builder.threads, runnable -> {
+            Thread thread = new Thread(runnable, "rickandmorty-client-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            this.http = HttpClient.newBuilder()
+                    .executor(executor)
+                    .version(builder.http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(builder.connectTimeout)
+                    .sslContext(builder.sslContext != null ? builder.sslContext : SSLContext.getDefault())
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .build();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No default TLS context", e);
+        }
+        this.requestTimeout = builder.requestTimeout;
+        this.maxInFlight = builder.maxInFlight;
+        this.maxIdsPerRequest = builder.maxIdsPerRequest;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public CompletableFuture<Character> getCharacter(int id) {
+        return get(Endpoint.CHARACTER, id);
+    }
+
+    public CompletableFuture<List<Character>> getCharacters(int... ids) {
+        return getAll(Endpoint.CHARACTER, ids);
+    }
+
+    /**
+     * @param filter query parameters such as {@code name}, {@code status}, {@code species}, {@code type}, {@code gender}
+     */
+    public CompletableFuture<ApiResponse<Character>> filterCharacters(Map<String, String> filter) {
+        return page(Endpoint.CHARACTER, filter, 1);
+    }
+
+    public CompletableFuture<Location> getLocation(int id) {
+        return get(Endpoint.LOCATION, id);
+    }
+
+    public CompletableFuture<List<Location>> getLocations(int... ids) {
+        return getAll(Endpoint.LOCATION, ids);
+    }
+
+    /**
+     * @param filter query parameters such as {@code name}, {@code type}, {@code dimension}
+     */
+    public CompletableFuture<ApiResponse<Location>> filterLocations(Map<String, String> filter) {
+        return page(Endpoint.LOCATION, filter, 1);
+    }
+
+    public CompletableFuture<Episode> getEpisode(int id) {
+        return get(Endpoint.EPISODE, id);
+    }
+
+    public CompletableFuture<List<Episode>> getEpisodes(int... ids) {
+        return getAll(Endpoint.EPISODE, ids);
+    }
+
+    /**
+     * @param filter query parameters such as {@code name}, {@code episode}
+     */
+    public CompletableFuture<ApiResponse<Episode>> filterEpisodes(Map<String, String> filter) {
+        return page(Endpoint.EPISODE, filter, 1);
+    }
+
+    public <T> CompletableFuture<T> get(Endpoint<T> endpoint, int id) {
+        return fetch(baseUrl + "/" + endpoint.getPath() + "/" + id, endpoint.type());
+    }
+
+    /**
+     * Looks the ids up with multi-id requests of at most {@code maxIdsPerRequest} ids each.
+     *
+     * @return the records found, in the order their ids were given; unknown ids are left out
+     */
+    public <T> CompletableFuture<List<T>> getAll(Endpoint<T> endpoint, int... ids) {
+        Set<Integer> distinct = new LinkedHashSet<>();
+        for (int id : ids) {
+            distinct.add(id);
+        }
+        List<Integer> order = new ArrayList<>(distinct);
+        List<CompletableFuture<List<T>>> batches = new ArrayList<>();
+        for (int from = 0; from < order.size(); from += maxIdsPerRequest) {
+            List<Integer> batch = order.subList(from, Math.min(order.size(), from + maxIdsPerRequest));
+            StringBuilder url = new StringBuilder(baseUrl).append('/').append(endpoint.getPath()).append('/');
+            for (Integer id : batch) {
+                url.append(id).append(',');
+            }
+            url.setLength(url.length() - 1);
+            if (batch.size() == 1) {
+                // a lone id answers the bare object, or 404 when it does not exist
+                batches.add(this.<T>fetch(url.toString(), endpoint.type())
+                        .handle((entity, error) -> {
+                            if (error == null) {
+                                return Collections.singletonList(entity);
+                            }
+                            if (unwrap(error) instanceof ApiException && ((ApiException) unwrap(error)).isNotFound()) {
+                                return Collections.<T>emptyList();
+                            }
+                            throw new CompletionException(unwrap(error));
+                        }));
+            } else {
+                batches.add(fetch(url.toString(), endpoint.listType()));
+            }
+        }
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            Map<Integer, T> byId = new HashMap<>(order.size() * 2);
+            for (CompletableFuture<List<T>> batch : batches) {
+                for (T entity : batch.join()) {
+                    byId.put(endpoint.idOf(entity), entity);
+                }
+            }
+            List<T> found = new ArrayList<>(byId.size());
+            for (Integer id : order) {
+                T entity = byId.get(id);
+                if (entity != null) {
+                    found.add(entity);
+                }
+            }
+            return found;
+        });
+    }
+
+    /**
+     * @param filter query parameters of the collection; empty for the whole collection
+     * @param page   1-based page of 20 records
+     */
+    public <T> CompletableFuture<ApiResponse<T>> page(Endpoint<T> endpoint, Map<String, String> filter, int page) {
+        StringBuilder url = new StringBuilder(baseUrl).append('/').append(endpoint.getPath()).append("?page=").append(page);
+        for (Map.Entry<String, String> parameter : filter.entrySet()) {
+            url.append('&').append(URLEncoder.encode(parameter.getKey(), StandardCharsets.UTF_8))
+                    .append('=').append(URLEncoder.encode(parameter.getValue(), StandardCharsets.UTF_8));
+        }
+        return fetch(url.toString(), endpoint.pageType());
+    }
+
+    /**
+     * Fetches page 1, then every other page at once.
+     *
+     * @return all pages of the collection or filter result in order; empty when nothing matches
+     */
+    public <T> CompletableFuture<List<ApiResponse<T>>> pages(Endpoint<T> endpoint, Map<String, String> filter) {
+        return page(endpoint, filter, 1).handle((first, error) -> {
+            if (error == null) {
+                return first;
+            }
+            if (unwrap(error) instanceof ApiException && ((ApiException) unwrap(error)).isNotFound()) {
+                return null;
+            }
+            throw new CompletionException(unwrap(error));
+        }).thenCompose(first -> {
+            if (first == null) {
+                return CompletableFuture.completedFuture(Collections.<ApiResponse<T>>emptyList());
+            }
+            List<CompletableFuture<ApiResponse<T>>> rest = new ArrayList<>();
+            for (int page = 2; page <= first.getInfo().getPages(); page++) {
+                rest.add(page(endpoint, filter, page));
+            }
+            return CompletableFuture.allOf(rest.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+                List<ApiResponse<T>> pages = new ArrayList<>(rest.size() + 1);
+                pages.add(first);
+                rest.forEach(page -> pages.add(page.join()));
+                return pages;
+            });
+        });
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return requests waiting for one of the {@code maxInFlight} slots
+     */
+    public int getQueued() {
+        return waiting.size();
+    }
+
+    /**
+     * Cancels every pending future, queued or on the wire, and stops the response threads. Calls
+     * made afterwards fail with an {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        waiting.clear();
+        for (Call<?> call : outstanding) {
+            call.releaseSlot();
+            call.result.completeExceptionally(new CancellationException("Client closed before " + call.url + " completed"));
+        }
+        executor.shutdownNow();
+    }
+
+    private <R> CompletableFuture<R> fetch(String url, JavaType type) {
+        Call<R> call = new Call<>(url, type);
+        if (closed) {
+            call.result.completeExceptionally(new IllegalStateException("Client is closed"));
+            return call.result;
+        }
+        outstanding.add(call);
+        call.result.whenComplete((value, error) -> outstanding.remove(call));
+        waiting.add(call);
+        if (closed && waiting.remove(call)) {
+            call.result.completeExceptionally(new IllegalStateException("Client is closed"));
+        }
+        dispatch();
+        return call.result;
+    }
+
+    private <R> R read(String url, HttpResponse<byte[]> response, JavaType type) {
+        try {
+            if (response.statusCode() != 200) {
+                String message = null;
+                try {
+                    JsonNode error = MAPPER.readTree(response.body());
+                    message = error == null ? null : error.path("error").asText(null);
+                } catch (IOException notJson) {
+                    // keep the status alone
+                }
+                throw new ApiException(response.statusCode(), url, message);
+            }
+            return readers.computeIfAbsent(type, MAPPER::readerFor).readValue(response.body());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the response of " + url, e);
+        }
+    }
+
+    /**
+     * Starts queued requests while fewer than {@code maxInFlight} are on the wire.
+     */
+    private void dispatch() {
+        while (!waiting.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            Call<?> next = waiting.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+            } else {
+                next.send();
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * One request and its future. It holds one of the {@code maxInFlight} slots from {@link #send()}
+     * until it gives it back, once, whichever of the response, a failure to send or {@link #close()}
+     * comes first.
+     */
+    private final class Call<R> {
+
+        final String url;
+        final JavaType type;
+        final CompletableFuture<R> result = new CompletableFuture<>();
+        private final AtomicBoolean holdsSlot = new AtomicBoolean();
+
+        Call(String url, JavaType type) {
+            this.url = url;
+            this.type = type;
+        }
+
+        /**
+         * Sends the request in the slot {@link #dispatch()} took for it. Failures give the slot back
+         * without dispatching: the loop that called this carries on with the queue.
+         */
+        void send() {
+            holdsSlot.set(true);
+            if (result.isDone()) {
+                // cancelled by the caller or by close() while it was queued
+                releaseSlot();
+                return;
+            }
+            requests.increment();
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(requestTimeout)
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+            try {
+                http.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, error) -> {
+                    try {
+                        // completed on the pool, never inline, so a burst of failures cannot recurse through dispatch()
+                        executor.execute(() -> complete(response, error));
+                    } catch (RejectedExecutionException stopped) {
+                        releaseSlot();
+                        result.completeExceptionally(new CancellationException("Client closed before " + url + " completed"));
+                    }
+                });
+            } catch (RuntimeException e) {
+                releaseSlot();
+                result.completeExceptionally(e);
+            }
+        }
+
+        private void complete(HttpResponse<byte[]> response, Throwable error) {
+            if (releaseSlot()) {
+                dispatch();
+            }
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+                return;
+            }
+            try {
+                result.complete(read(url, response, type));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * @return whether the slot was still held, and is now free
+         */
+        boolean releaseSlot() {
+            if (holdsSlot.compareAndSet(true, false)) {
+                inFlight.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public static class Builder {
+
+        private String baseUrl = DEFAULT_BASE_URL;
+        private int threads = 2;
+        private int maxInFlight = 64;
+        private int maxIdsPerRequest = 200;
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration requestTimeout = Duration.ofSeconds(10);
+        private boolean http2;
+        private SSLContext sslContext;
+
+        private Builder() {
+        }
+
+        public Builder baseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        /**
+         * Platform threads that read and parse responses.
+         */
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Requests on the wire at once; further calls are queued.
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("At least one request must be allowed in flight");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public Builder maxIdsPerRequest(int maxIdsPerRequest) {
+            this.maxIdsPerRequest = maxIdsPerRequest;
+            return this;
+        }
+
+        public Builder timeouts(Duration connectTimeout, Duration requestTimeout) {
+            this.connectTimeout = connectTimeout;
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        public Builder http2(boolean http2) {
+            this.http2 = http2;
+            return this;
+        }
+
+        /**
+         * @param sslContext context for https, e.g. one trusting a self-signed certificate
+         */
+        public Builder sslContext(SSLContext sslContext) {
+            this.sslContext = sslContext;
+            return this;
+        }
+
+        public RickAndMortyClient build() {
+            return new RickAndMortyClient(this);
+        }
+    }
+}
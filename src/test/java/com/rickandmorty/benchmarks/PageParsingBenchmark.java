@@ -0,0 +1,185 @@
+package com.rickandmorty.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.rickandmorty.data.Dataset;
+import com.rickandmorty.data.DatasetGenerator;
+import com.rickandmorty.models.ApiResponse;
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+import com.rickandmorty.utils.ApiUtils;
+import com.rickandmorty.utils.ModelMapper;
+import io.restassured.builder.ResponseBuilder;
+import io.restassured.path.json.JsonPath;
+import io.restassured.response.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+
+/**
+ * Client-side cost of reading {@code ApiResponse<T>} pages the four ways the suite can: Jackson
+ * databind ({@link ModelMapper#pageReader}), Jackson streaming with one bound element at a time
+ * (as {@link com.rickandmorty.client.PageIterator} does), RestAssured {@code JsonPath.getMap} and
+ * Hamcrest {@code .body()} paths. One operation reads every page of a fixture of {@code records}
+ * generated records split into pages of 20, like the API serves them.
+ * Run with {@code mvn verify -Pbenchmarks}, which adds the gc profiler for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class PageParsingBenchmark {
+
+    private static final String API_URL = "https://rickandmortyapi.com/api";
+    private static final int PAGE_SIZE = 20;
+    private static final ObjectReader INFO_READER = ModelMapper.reader(ApiResponse.Info.class);
+
+    @Param({"character", "location", "episode"})
+    public String resource;
+
+    @Param({"20", "1000", "100000"})
+    public int records;
+
+    private final JsonFactory factory = ModelMapper.MAPPER.getFactory();
+    private ObjectReader pageReader;
+    private ObjectReader elementReader;
+    private List<byte[]> pages;
+
+    @Setup
+    public void generateFixture() throws IOException {
+        Class<?> type = modelType(resource);
+        pageReader = ModelMapper.pageReader(type);
+        elementReader = ModelMapper.reader(type);
+
+        Dataset dataset = (records <= Dataset.REAL_CHARACTERS ? DatasetGenerator.real()
+                : DatasetGenerator.scaled(records)).generate();
+        int available = "character".equals(resource) ? dataset.getCharacterCount()
+                : "location".equals(resource) ? dataset.getLocationCount() : dataset.getEpisodeCount();
+        int pageCount = (records + PAGE_SIZE - 1) / PAGE_SIZE;
+
+        pages = new ArrayList<>(pageCount);
+        for (int page = 1; page <= pageCount; page++) {
+            ApiResponse<Object> body = new ApiResponse<>();
+            ApiResponse.Info info = new ApiResponse.Info();
+            info.setCount(records);
+            info.setPages(pageCount);
+            info.setNext(page < pageCount ? API_URL + "/" + resource + "?page=" + (page + 1) : null);
+            info.setPrev(page > 1 ? API_URL + "/" + resource + "?page=" + (page - 1) : null);
+            body.setInfo(info);
+
+            List<Object> results = new ArrayList<>(PAGE_SIZE);
+            for (int i = (page - 1) * PAGE_SIZE; i < Math.min(records, page * PAGE_SIZE); i++) {
+                // resources smaller than the fixture repeat from the start
+                results.add(model(dataset, 1 + i % available));
+            }
+            body.setResults(results);
+            pages.add(ModelMapper.MAPPER.writeValueAsBytes(body));
+        }
+    }
+
+    @Benchmark
+    public void databind(Blackhole blackhole) throws IOException {
+        for (byte[] page : pages) {
+            ApiResponse<?> parsed = pageReader.readValue(page);
+            blackhole.consume(parsed);
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) throws IOException {
+        for (byte[] page : pages) {
+            try (JsonParser parser = factory.createParser(page)) {
+                parser.nextToken();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if ("info".equals(field) && value == JsonToken.START_OBJECT) {
+                        blackhole.consume(INFO_READER.readValue(parser));
+                    } else if ("results".equals(field) && value == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            blackhole.consume(elementReader.readValue(parser));
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void jsonPathGetMap(Blackhole blackhole) {
+        for (byte[] page : pages) {
+            Map<String, Object> body = JsonPath.from(new ByteArrayInputStream(page)).getMap("$");
+            ApiUtils.verifyPaginationInfo(body);
+            blackhole.consume(body);
+        }
+    }
+
+    @Benchmark
+    public void hamcrestBody(Blackhole blackhole) {
+        for (byte[] page : pages) {
+            Response response = new ResponseBuilder()
+                    .setStatusCode(200)
+                    .setContentType(ApiUtils.EXPECTED_CONTENT_TYPE)
+                    .setBody(page)
+                    .build();
+            blackhole.consume(response.then()
+                    .body("info.count", equalTo(records))
+                    .body("results", hasSize(greaterThan(0)))
+                    .body("results.id", everyItem(greaterThan(0)))
+                    .body("results.name", everyItem(notNullValue())));
+        }
+    }
+
+    private static Class<?> modelType(String resource) {
+        switch (resource) {
+            case "character":
+                return Character.class;
+            case "location":
+                return Location.class;
+            case "episode":
+                return Episode.class;
+            default:
+                throw new IllegalArgumentException("Unknown resource " + resource);
+        }
+    }
+
+    private Object model(Dataset dataset, int id) {
+        switch (resource) {
+            case "character":
+                return dataset.character(id, API_URL);
+            case "location":
+                return dataset.location(id, API_URL);
+            default:
+                return dataset.episode(id, API_URL);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.rickandmorty.client;
+
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Batching entry point for entity lookups by id. Calls such as {@link #getCharacter(int)} made
+ * within a short window are merged into multi-id requests per resource by a {@link BatchLoader};
+ * each caller still gets its own future.
+ *
+ * <pre>{@code
+ * try (ApiBatchLoader loader = ApiBatchLoader.builder(baseUrl).build()) {
+ *     List<CompletableFuture<Character>> cast = episode.getCharacters().stream()
+ *             .map(url -> loader.getCharacter(ApiBatchLoader.idOf(url)))
+ *             .collect(Collectors.toList());
+ * }
+ * }</pre>
+ */
+public class ApiBatchLoader implements Closeable {
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService executor;
+    private final BatchLoader<Character> characters;
+    private final BatchLoader<Location> locations;
+    private final BatchLoader<Episode> episodes;
+
+    private ApiBatchLoader(Builder builder) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("batch-window"));
+        this.executor = Executors.newFixedThreadPool(builder.concurrency, daemonThreads("batch-fetch"));
+        long windowNanos = TimeUnit.MICROSECONDS.toNanos(builder.windowMicros);
+        this.characters = new BatchLoader<>(builder.baseUrl + "/character", Character.class, Character::getId,
+                builder.maxBatchSize, builder.maxUrlLength, windowNanos, scheduler, executor);
+        this.locations = new BatchLoader<>(builder.baseUrl + "/location", Location.class, Location::getId,
+                builder.maxBatchSize, builder.maxUrlLength, windowNanos, scheduler, executor);
+        this.episodes = new BatchLoader<>(builder.baseUrl + "/episode", Episode.class, Episode::getId,
+                builder.maxBatchSize, builder.maxUrlLength, windowNanos, scheduler, executor);
+    }
+
+    public static Builder builder(String baseUrl) {
+        return new Builder(baseUrl);
+    }
+
+    public CompletableFuture<Character> getCharacter(int id) {
+        return characters.load(id);
+    }
+
+    public CompletableFuture<Location> getLocation(int id) {
+        return locations.load(id);
+    }
+
+    public CompletableFuture<Episode> getEpisode(int id) {
+        return episodes.load(id);
+    }
+
+    public BatchLoader<Character> characters() {
+        return characters;
+    }
+
+    public BatchLoader<Location> locations() {
+        return locations;
+    }
+
+    public BatchLoader<Episode> episodes() {
+        return episodes;
+    }
+
+    /**
+     * Sends every pending batch without waiting for the window.
+     */
+    public void flush() {
+        characters.flush();
+        locations.flush();
+        episodes.flush();
+    }
+
+    public long getLoads() {
+        return characters.getLoads() + locations.getLoads() + episodes.getLoads();
+    }
+
+    public long getRequests() {
+        return characters.getRequests() + locations.getRequests() + episodes.getRequests();
+    }
+
+    /**
+     * @return total request reduction followed by the figures of each resource that was used
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder()
+                .append(getLoads()).append(" loads in ").append(getRequests()).append(" requests");
+        appendSummary(summary, "characters", characters);
+        appendSummary(summary, "locations", locations);
+        appendSummary(summary, "episodes", episodes);
+        return summary.toString();
+    }
+
+    /**
+     * @return the trailing id of an entity URL such as {@code https://rickandmortyapi.com/api/character/2}
+     */
+    public static int idOf(String url) {
+        return Integer.parseInt(url.substring(url.lastIndexOf('/') + 1));
+    }
+
+    /**
+     * Sends pending batches and lets in-flight requests finish. Later lookups fail with
+     * {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        characters.close();
+        locations.close();
+        episodes.close();
+        scheduler.shutdownNow();
+        executor.shutdown();
+    }
+
+    private static void appendSummary(StringBuilder summary, String label, BatchLoader<?> loader) {
+        if (loader.getLoads() > 0) {
+            summary.append("; ").append(label).append(": ").append(loader.summary());
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public static class Builder {
+
+        private final String baseUrl;
+        private long windowMicros = 2_000;
+        private int maxBatchSize = 200;
+        private int maxUrlLength = 2_048;
+        private int concurrency = 4;
+
+        private Builder(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        /**
+         * How long a batch waits for more ids after its first one.
+         */
+        public Builder window(long amount, TimeUnit unit) {
+            this.windowMicros = unit.toMicros(amount);
+            return this;
+        }
+
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Upper bound on the request URL; many servers and proxies reject lines past 2-8 KB.
+         */
+        public Builder maxUrlLength(int maxUrlLength) {
+            this.maxUrlLength = maxUrlLength;
+            return this;
+        }
+
+        /**
+         * Batches sent concurrently.
+         */
+        public Builder concurrency(int concurrency) {
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        public ApiBatchLoader build() {
+            return new ApiBatchLoader(this);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.rickandmorty.client;
+
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Whole-collection crawls over the paginated endpoints. Streams are lazy and bounded in memory;
+ * close them (try-with-resources) to release the underlying connection when stopping early.
+ */
+public final class ApiCrawler {
+
+    private ApiCrawler() {
+    }
+
+    public static Stream<Character> characters(String baseUrl) {
+        return stream(baseUrl + "/character", Character.class);
+    }
+
+    public static Stream<Location> locations(String baseUrl) {
+        return stream(baseUrl + "/location", Location.class);
+    }
+
+    public static Stream<Episode> episodes(String baseUrl) {
+        return stream(baseUrl + "/episode", Episode.class);
+    }
+
+    /**
+     * @param firstPageUrl collection URL, optionally with filter query parameters
+     */
+    public static <T> Stream<T> stream(String firstPageUrl, Class<T> type) {
+        PageIterator<T> iterator = new PageIterator<>(firstPageUrl, type);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    /**
+     * Same elements and order as {@link #stream(String, Class)}, but pages 2..N are fetched
+     * concurrently with up to {@code window} requests in flight.
+     */
+    public static <T> Stream<T> prefetch(String firstPageUrl, Class<T> type, int window) {
+        PagePrefetcher<T> iterator = new PagePrefetcher<>(firstPageUrl, type, window);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+}
@@ -0,0 +1,257 @@
+package com.rickandmorty.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.rickandmorty.http.ApiConnections;
+import com.rickandmorty.utils.ModelMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * Collects single-id lookups for one resource and sends them as multi-id requests
+ * ({@code /character/1,2,3}). A batch is sent when the window elapses after its first id, when it
+ * reaches the maximum size, or when one more id would push the URL over the maximum length.
+ * Repeated ids, within a batch or already in flight, share one future.
+ *
+ * <p>Futures complete with null for ids the API does not return. Once closed, a loader answers
+ * new lookups with a future failed with {@link IllegalStateException}.
+ */
+public class BatchLoader<T> {
+
+    private final String resourceUrl;
+    private final ObjectReader entityReader;
+    private final ObjectReader listReader;
+    private final ToIntFunction<T> idOf;
+    private final int maxBatchSize;
+    private final int maxUrlLength;
+    private final long windowNanos;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+
+    private final Map<Integer, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+    private Map<Integer, CompletableFuture<T>> pending = new LinkedHashMap<>();
+    private int pendingUrlLength;
+    private ScheduledFuture<?> flushTask;
+    private volatile boolean closed;
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder idsRequested = new LongAdder();
+    private final AtomicInteger longestUrl = new AtomicInteger();
+
+    BatchLoader(String resourceUrl, Class<T> type, ToIntFunction<T> idOf, int maxBatchSize, int maxUrlLength,
+                long windowNanos, ScheduledExecutorService scheduler, Executor executor) {
+        if (maxUrlLength <= resourceUrl.length() + 11) {
+            throw new IllegalArgumentException("maxUrlLength " + maxUrlLength + " cannot fit a single id after "
+                    + resourceUrl);
+        }
+        this.resourceUrl = resourceUrl;
+        this.entityReader = ModelMapper.reader(type);
+        this.listReader = ModelMapper.listReader(type);
+        this.idOf = idOf;
+        this.maxBatchSize = maxBatchSize;
+        this.maxUrlLength = maxUrlLength;
+        this.windowNanos = windowNanos;
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<T> load(int id) {
+        loads.increment();
+        if (closed) {
+            return closedFuture(id);
+        }
+        CompletableFuture<T> running = inFlight.get(id);
+        if (running != null) {
+            return running;
+        }
+        List<Map<Integer, CompletableFuture<T>>> ready = new ArrayList<>(2);
+        CompletableFuture<T> future;
+        synchronized (this) {
+            if (closed) {
+                // close() may have flushed between the check above and this lock
+                return closedFuture(id);
+            }
+            // a batch may have been taken since the check above; takePending moves it in under this lock
+            future = inFlight.get(id);
+            if (future == null) {
+                future = pending.get(id);
+            }
+            if (future != null) {
+                return future;
+            }
+            int idLength = Integer.toString(id).length();
+            if (!pending.isEmpty() && pendingUrlLength + 1 + idLength > maxUrlLength) {
+                ready.add(takePending());
+            }
+            if (pending.isEmpty()) {
+                pendingUrlLength = resourceUrl.length() + 1 + idLength;
+                flushTask = scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+            } else {
+                pendingUrlLength += 1 + idLength;
+            }
+            future = new CompletableFuture<>();
+            pending.put(id, future);
+            if (pending.size() >= maxBatchSize) {
+                ready.add(takePending());
+            }
+        }
+        ready.forEach(this::dispatch);
+        return future;
+    }
+
+    /**
+     * Sends the current batch without waiting for the window to elapse.
+     */
+    public void flush() {
+        Map<Integer, CompletableFuture<T>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    /**
+     * Sends the current batch and refuses further lookups; batches already sent still complete.
+     */
+    void close() {
+        Map<Integer, CompletableFuture<T>> batch;
+        synchronized (this) {
+            closed = true;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getIdsRequested() {
+        return idsRequested.sum();
+    }
+
+    public int getLongestUrl() {
+        return longestUrl.get();
+    }
+
+    public String summary() {
+        long requestCount = requests.sum();
+        return String.format("%d loads, %d distinct ids in %d requests (%.1f loads per request), longest URL %d chars",
+                loads.sum(), idsRequested.sum(), requestCount,
+                requestCount == 0 ? 0.0 : loads.sum() / (double) requestCount, longestUrl.get());
+    }
+
+    private CompletableFuture<T> closedFuture(int id) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalStateException("Loader for " + resourceUrl + " is closed; id " + id));
+        return future;
+    }
+
+    /**
+     * Hands the current batch over from pending to in flight in one step, so a concurrent
+     * {@link #load(int)} sees each id in one map or the other. Called holding the lock.
+     */
+    private Map<Integer, CompletableFuture<T>> takePending() {
+        Map<Integer, CompletableFuture<T>> batch = pending;
+        pending = new LinkedHashMap<>();
+        inFlight.putAll(batch);
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(Map<Integer, CompletableFuture<T>> batch) {
+        StringBuilder url = new StringBuilder(resourceUrl).append('/');
+        for (Integer id : batch.keySet()) {
+            url.append(id).append(',');
+        }
+        url.setLength(url.length() - 1);
+        longestUrl.accumulateAndGet(url.length(), Math::max);
+        requests.increment();
+        idsRequested.add(batch.size());
+
+        String requestUrl = url.toString();
+        executor.execute(() -> {
+            try {
+                Map<Integer, T> byId = new HashMap<>();
+                for (T entity : fetch(requestUrl)) {
+                    byId.put(idOf.applyAsInt(entity), entity);
+                }
+                batch.forEach((id, future) -> future.complete(byId.get(id)));
+            } catch (RuntimeException e) {
+                batch.values().forEach(future -> future.completeExceptionally(e));
+            } finally {
+                // leaves alone any entry that no longer maps to this batch's future
+                batch.forEach((id, future) -> inFlight.remove(id, future));
+            }
+        });
+    }
+
+    /**
+     * Reads either an array or, for a single id, the bare object the API returns instead.
+     */
+    private List<T> fetch(String url) {
+        try {
+            HttpURLConnection connection = ApiConnections.open(url);
+            connection.setRequestProperty("Accept", "application/json");
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                // a lone unknown id answers 404 instead of an empty array
+                InputStream error = connection.getErrorStream();
+                if (error != null) {
+                    error.close();
+                }
+                return Collections.emptyList();
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                connection.disconnect();
+                throw new IllegalStateException("Unexpected status " + status + " for " + url);
+            }
+            try (InputStream body = connection.getInputStream();
+                 JsonParser parser = ModelMapper.MAPPER.getFactory().createParser(body)) {
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_ARRAY) {
+                    return listReader.readValue(parser);
+                }
+                if (token == JsonToken.START_OBJECT) {
+                    return Collections.singletonList(entityReader.readValue(parser));
+                }
+                throw new IllegalStateException("Expected an object or array at " + url + " but got " + token);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to fetch " + url, e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.rickandmorty.client;
+
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Entities reached by a {@link RelationshipResolver} expansion, keyed by id, plus the references
+ * that pointed at ids the API did not return.
+ */
+public class EntityGraph {
+
+    final Map<Integer, Character> characters = new TreeMap<>();
+    final Map<Integer, Location> locations = new TreeMap<>();
+    final Map<Integer, Episode> episodes = new TreeMap<>();
+    final Set<String> missing = new TreeSet<>();
+    final List<Integer> layerSizes = new ArrayList<>();
+    long requests;
+    long elapsedNanos;
+
+    public Map<Integer, Character> getCharacters() {
+        return Collections.unmodifiableMap(characters);
+    }
+
+    public Map<Integer, Location> getLocations() {
+        return Collections.unmodifiableMap(locations);
+    }
+
+    public Map<Integer, Episode> getEpisodes() {
+        return Collections.unmodifiableMap(episodes);
+    }
+
+    /**
+     * @return referenced URLs that resolved to nothing
+     */
+    public Set<String> getMissing() {
+        return Collections.unmodifiableSet(missing);
+    }
+
+    /**
+     * @return number of newly visited entities per layer, the roots being layer 0
+     */
+    public List<Integer> getLayerSizes() {
+        return Collections.unmodifiableList(layerSizes);
+    }
+
+    public int size() {
+        return characters.size() + locations.size() + episodes.size();
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Checks every reference whose two ends are both in the graph in both directions:
+     * a character lists an episode exactly when that episode lists the character, and a
+     * character's {@code location} is a location exactly when that location lists it as a resident.
+     * Origins have no reverse side and dangling references are reported as well.
+     *
+     * @return one message per violation, empty when the graph is consistent
+     */
+    public List<String> checkConsistency() {
+        List<String> violations = new ArrayList<>();
+        Map<Integer, Set<String>> episodeCast = new HashMap<>();
+        Map<Integer, Set<String>> locationResidents = new HashMap<>();
+        for (String url : missing) {
+            violations.add("Dangling reference to " + url);
+        }
+
+        for (Character character : characters.values()) {
+            for (String episodeUrl : character.getEpisode()) {
+                Episode episode = episodes.get(ApiBatchLoader.idOf(episodeUrl));
+                if (episode != null && !episodeCast.computeIfAbsent(episode.getId(),
+                        id -> new HashSet<>(episode.getCharacters())).contains(character.getUrl())) {
+                    violations.add("Character " + character.getId() + " lists episode " + episode.getId()
+                            + ", which does not list it back");
+                }
+            }
+            Location location = referencedLocation(character.getLocation());
+            if (location != null && !locationResidents.computeIfAbsent(location.getId(),
+                    id -> new HashSet<>(location.getResidents())).contains(character.getUrl())) {
+                violations.add("Character " + character.getId() + " is at location " + location.getId()
+                        + ", which does not list it as a resident");
+            }
+        }
+
+        Map<Integer, Set<String>> characterEpisodes = new HashMap<>();
+        for (Episode episode : episodes.values()) {
+            for (String characterUrl : episode.getCharacters()) {
+                Character character = characters.get(ApiBatchLoader.idOf(characterUrl));
+                if (character != null && !characterEpisodes.computeIfAbsent(character.getId(),
+                        id -> new HashSet<>(character.getEpisode())).contains(episode.getUrl())) {
+                    violations.add("Episode " + episode.getId() + " lists character " + character.getId()
+                            + ", which does not list it back");
+                }
+            }
+        }
+
+        for (Location location : locations.values()) {
+            for (String residentUrl : location.getResidents()) {
+                Character resident = characters.get(ApiBatchLoader.idOf(residentUrl));
+                if (resident != null && (resident.getLocation() == null
+                        || !location.getUrl().equals(resident.getLocation().getUrl()))) {
+                    violations.add("Location " + location.getId() + " lists resident " + resident.getId()
+                            + ", whose location is elsewhere");
+                }
+            }
+        }
+        return violations;
+    }
+
+    public String summary() {
+        return String.format("%d characters, %d locations, %d episodes over layers %s in %d requests, %dms",
+                characters.size(), locations.size(), episodes.size(), layerSizes, requests, elapsedNanos / 1_000_000);
+    }
+
+    private Location referencedLocation(Character.Location reference) {
+        if (reference == null || reference.getUrl() == null || reference.getUrl().isEmpty()) {
+            return null;
+        }
+        return locations.get(ApiBatchLoader.idOf(reference.getUrl()));
+    }
+}
@@ -0,0 +1,210 @@
+package com.rickandmorty.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.rickandmorty.http.ApiConnections;
+import com.rickandmorty.http.DecodingInputStream;
+import com.rickandmorty.models.ApiResponse;
+import com.rickandmorty.utils.ModelMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily walks a paginated collection by following {@code info.next}, parsing each page with
+ * Jackson's streaming parser and binding one element of {@code results} at a time.
+ * Only the current page's connection and the current element are held, so memory stays
+ * constant regardless of the number of pages. Pages are requested {@code gzip} or {@code deflate}
+ * encoded and parsed straight from the decoding stream, without buffering the body.
+ */
+public class PageIterator<T> implements Iterator<T>, Closeable {
+
+    private static final ObjectReader INFO_READER = ModelMapper.reader(ApiResponse.Info.class);
+
+    private final JsonFactory factory = ModelMapper.MAPPER.getFactory();
+    private final ObjectReader elementReader;
+
+    private String nextUrl;
+    private String pageUrl;
+    private HttpURLConnection connection;
+    private JsonParser parser;
+    private boolean inResults;
+    private T pending;
+    private boolean closed;
+
+    private ApiResponse.Info firstInfo;
+    private int pagesFetched;
+    private long recordsRead;
+    private long wireBytes;
+    private long decodedBytes;
+
+    public PageIterator(String firstPageUrl, Class<T> type) {
+        this.nextUrl = firstPageUrl;
+        this.elementReader = ModelMapper.reader(type);
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (pending == null) {
+                if (!advance()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Failed while crawling " + pageUrl, e);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T element = pending;
+        pending = null;
+        return element;
+    }
+
+    /**
+     * @return the {@code info} block of the first page, available once {@link #hasNext()} has been called
+     */
+    public ApiResponse.Info getInfo() {
+        return firstInfo;
+    }
+
+    public int getPagesFetched() {
+        return pagesFetched;
+    }
+
+    public long getRecordsRead() {
+        return recordsRead;
+    }
+
+    /**
+     * @return body bytes of the pages read so far as they came over the wire
+     */
+    public long getWireBytes() {
+        return wireBytes;
+    }
+
+    /**
+     * @return body bytes of the pages read so far after decoding
+     */
+    public long getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (connection != null && parser != null && (inResults || pending != null)) {
+            // abandoning a page mid-body: the remaining bytes would have to be drained to reuse the socket
+            connection.disconnect();
+        }
+        closePage();
+    }
+
+    /**
+     * Closes the current page's body without disconnecting, so the keep-alive connection can be reused.
+     */
+    private void closePage() {
+        inResults = false;
+        try {
+            if (parser != null) {
+                parser.close();
+            } else if (connection != null) {
+                connection.disconnect();
+            }
+        } catch (IOException ignored) {
+            connection.disconnect();
+        } finally {
+            parser = null;
+            connection = null;
+        }
+    }
+
+    /**
+     * Reads tokens until an element is bound into {@link #pending} or the current page ends.
+     *
+     * @return false once the last page has been consumed
+     */
+    private boolean advance() throws IOException {
+        if (parser == null) {
+            if (closed || nextUrl == null) {
+                return false;
+            }
+            // the page's info block overwrites nextUrl, so errors while reading it report pageUrl
+            pageUrl = nextUrl;
+            nextUrl = null;
+            if (!open(pageUrl)) {
+                return false;
+            }
+        }
+        if (inResults) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                pending = elementReader.readValue(parser);
+                recordsRead++;
+                return true;
+            }
+            inResults = false;
+            return true;
+        }
+
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("info".equals(field) && value == JsonToken.START_OBJECT) {
+                ApiResponse.Info info = INFO_READER.readValue(parser);
+                if (firstInfo == null) {
+                    firstInfo = info;
+                }
+                nextUrl = info.getNext();
+            } else if ("results".equals(field) && value == JsonToken.START_ARRAY) {
+                inResults = true;
+            } else {
+                parser.skipChildren();
+            }
+        } else if (token == null || token == JsonToken.END_OBJECT) {
+            pagesFetched++;
+            closePage();
+        }
+        return true;
+    }
+
+    private boolean open(String url) throws IOException {
+        connection = ApiConnections.open(url);
+        connection.setRequestProperty("Accept", "application/json");
+        connection.setRequestProperty("Accept-Encoding", DecodingInputStream.ACCEPT_ENCODING);
+        int status = connection.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_FOUND && pagesFetched == 0) {
+            // the API answers an empty filtered collection with 404 "There is nothing here"
+            closePage();
+            return false;
+        }
+        if (status != HttpURLConnection.HTTP_OK) {
+            closePage();
+            throw new IllegalStateException("Unexpected status " + status + " for " + url);
+        }
+        DecodingInputStream body = DecodingInputStream.open(connection.getInputStream(), connection.getContentEncoding())
+                .onComplete(read -> {
+                    wireBytes += read.getWireBytes();
+                    decodedBytes += read.getDecodedBytes();
+                });
+        parser = factory.createParser(body);
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            closePage();
+            throw new IllegalStateException("Expected a paginated object at " + url);
+        }
+        return true;
+    }
+}
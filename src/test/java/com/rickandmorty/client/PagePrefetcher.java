@@ -0,0 +1,235 @@
+package com.rickandmorty.client;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.rickandmorty.http.ApiConnections;
+import com.rickandmorty.http.DecodingInputStream;
+import com.rickandmorty.models.ApiResponse;
+import com.rickandmorty.utils.ModelMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Full-collection fetch that reads page 1 for {@code info.pages} and then requests pages 2..N
+ * concurrently, keeping at most {@code window} pages in flight. Elements are still handed out
+ * in page order, and the total number of results is checked against {@code info.count}.
+ * A {@code page} parameter already in the URL is dropped, since the whole collection is read.
+ * Pages are requested {@code gzip} or {@code deflate} encoded and bound straight from the
+ * decoding stream.
+ */
+public class PagePrefetcher<T> implements Iterator<T>, Closeable {
+
+    private final String collectionUrl;
+    private final ObjectReader pageReader;
+    private final int window;
+    private final ExecutorService executor;
+    private final Deque<Future<ApiResponse<T>>> inFlight = new ArrayDeque<>();
+
+    private ApiResponse.Info info;
+    private Iterator<T> current = Collections.emptyIterator();
+    private int nextPageToSchedule = 2;
+    private int pagesFetched;
+    private long recordsRead;
+    private final LongAdder wireBytes = new LongAdder();
+    private final LongAdder decodedBytes = new LongAdder();
+    private long startNanos;
+    private long endNanos;
+
+    public PagePrefetcher(String firstPageUrl, Class<T> type, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Prefetch window must be at least 1");
+        }
+        this.collectionUrl = withoutPage(firstPageUrl);
+        this.window = window;
+        this.pageReader = ModelMapper.pageReader(type);
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(window, runnable -> {
+            Thread thread = new Thread(runnable, "page-prefetch-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (!nextPage()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        recordsRead++;
+        return current.next();
+    }
+
+    /**
+     * @return the {@code info} block of page 1, available once {@link #hasNext()} has been called
+     */
+    public ApiResponse.Info getInfo() {
+        return info;
+    }
+
+    public int getPagesFetched() {
+        return pagesFetched;
+    }
+
+    public long getRecordsRead() {
+        return recordsRead;
+    }
+
+    /**
+     * @return body bytes of the pages fetched so far as they came over the wire
+     */
+    public long getWireBytes() {
+        return wireBytes.sum();
+    }
+
+    /**
+     * @return body bytes of the pages fetched so far after decoding
+     */
+    public long getDecodedBytes() {
+        return decodedBytes.sum();
+    }
+
+    public double getPagesPerSecond() {
+        long elapsed = (endNanos == 0 ? System.nanoTime() : endNanos) - startNanos;
+        return elapsed <= 0 ? 0 : pagesFetched * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    public String summary() {
+        return String.format("%d pages, %d records, window %d, %.1f pages/s, %.1f KiB on the wire for %.1f KiB",
+                pagesFetched, recordsRead, window, getPagesPerSecond(), getWireBytes() / 1024.0, getDecodedBytes() / 1024.0);
+    }
+
+    @Override
+    public void close() {
+        inFlight.forEach(future -> future.cancel(true));
+        inFlight.clear();
+        executor.shutdownNow();
+    }
+
+    private boolean nextPage() {
+        ApiResponse<T> page;
+        if (info == null) {
+            startNanos = System.nanoTime();
+            page = fetch(pageUrl(1));
+            if (page == null) {
+                endNanos = System.nanoTime();
+                return false;
+            }
+            info = page.getInfo();
+            fillWindow();
+        } else if (inFlight.isEmpty()) {
+            finish();
+            return false;
+        } else {
+            page = await(inFlight.removeFirst());
+            fillWindow();
+        }
+        pagesFetched++;
+        List<T> results = page.getResults();
+        current = results == null ? Collections.<T>emptyIterator() : results.iterator();
+        return true;
+    }
+
+    private void fillWindow() {
+        while (inFlight.size() < window && nextPageToSchedule <= info.getPages()) {
+            String url = pageUrl(nextPageToSchedule++);
+            inFlight.addLast(executor.submit(() -> fetch(url)));
+        }
+    }
+
+    private void finish() {
+        endNanos = System.nanoTime();
+        close();
+        if (recordsRead != info.getCount()) {
+            throw new IllegalStateException("Fetched " + recordsRead + " records across " + pagesFetched
+                    + " pages but info.count is " + info.getCount());
+        }
+    }
+
+    private ApiResponse<T> await(Future<ApiResponse<T>> future) {
+        try {
+            ApiResponse<T> page = future.get();
+            if (page == null) {
+                throw new IllegalStateException("A page inside info.pages answered 404");
+            }
+            return page;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("Interrupted while waiting for a prefetched page", e);
+        } catch (ExecutionException e) {
+            close();
+            throw new IllegalStateException("Prefetching a page failed", e.getCause());
+        }
+    }
+
+    private String pageUrl(int page) {
+        return collectionUrl + (collectionUrl.indexOf('?') >= 0 ? "&" : "?") + "page=" + page;
+    }
+
+    private static String withoutPage(String url) {
+        int query = url.indexOf('?');
+        if (query < 0) {
+            return url;
+        }
+        String parameters = Arrays.stream(url.substring(query + 1).split("&"))
+                .filter(parameter -> !parameter.isEmpty() && !parameter.equals("page") && !parameter.startsWith("page="))
+                .collect(Collectors.joining("&"));
+        return url.substring(0, query) + (parameters.isEmpty() ? "" : "?" + parameters);
+    }
+
+    /**
+     * @return the parsed page, or null when the collection is empty (404 "There is nothing here")
+     */
+    private ApiResponse<T> fetch(String url) {
+        try {
+            HttpURLConnection connection = ApiConnections.open(url);
+            connection.setRequestProperty("Accept", "application/json");
+            connection.setRequestProperty("Accept-Encoding", DecodingInputStream.ACCEPT_ENCODING);
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                connection.disconnect();
+                return null;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                connection.disconnect();
+                throw new IllegalStateException("Unexpected status " + status + " for " + url);
+            }
+            try (DecodingInputStream body = DecodingInputStream.open(connection.getInputStream(), connection.getContentEncoding())) {
+                body.onComplete(read -> {
+                    wireBytes.add(read.getWireBytes());
+                    decodedBytes.add(read.getDecodedBytes());
+                });
+                return pageReader.readValue(body);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to fetch " + url, e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.rickandmorty.client;
+
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Breadth-first expansion over the URL references between entities: {@code Character.episode},
+ * {@code Character.origin/location}, {@code Location.residents} and {@code Episode.characters}.
+ * Each layer's unvisited URLs are requested together through an {@link ApiBatchLoader}, so a layer
+ * costs a handful of concurrent multi-id requests instead of one GET per reference.
+ */
+public class RelationshipResolver {
+
+    private final ApiBatchLoader loader;
+
+    public RelationshipResolver(ApiBatchLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * @param rootUrls entity URLs to start from, e.g. {@code .../episode/1}
+     * @param depth    reference hops to follow; 0 loads the roots only
+     */
+    public EntityGraph expand(Collection<String> rootUrls, int depth) {
+        long started = System.nanoTime();
+        long requestsBefore = loader.getRequests();
+        EntityGraph graph = new EntityGraph();
+        Set<String> visited = new HashSet<>();
+        Set<String> frontier = new LinkedHashSet<>(rootUrls);
+
+        for (int layer = 0; layer <= depth && !frontier.isEmpty(); layer++) {
+            Map<String, CompletableFuture<?>> pending = new LinkedHashMap<>();
+            for (String url : frontier) {
+                if (visited.add(url)) {
+                    pending.put(url, load(url));
+                }
+            }
+            loader.flush();
+
+            List<Object> loaded = new ArrayList<>(pending.size());
+            for (Map.Entry<String, CompletableFuture<?>> entry : pending.entrySet()) {
+                Object entity = entry.getValue().join();
+                if (entity == null) {
+                    graph.missing.add(entry.getKey());
+                } else {
+                    loaded.add(entity);
+                    add(graph, entity);
+                }
+            }
+            graph.layerSizes.add(loaded.size());
+
+            frontier = new LinkedHashSet<>();
+            if (layer < depth) {
+                for (Object entity : loaded) {
+                    references(entity, frontier);
+                }
+                frontier.removeAll(visited);
+            }
+        }
+
+        graph.requests = loader.getRequests() - requestsBefore;
+        graph.elapsedNanos = System.nanoTime() - started;
+        return graph;
+    }
+
+    private CompletableFuture<?> load(String url) {
+        int id = ApiBatchLoader.idOf(url);
+        if (url.contains("/character/")) {
+            return loader.getCharacter(id);
+        }
+        if (url.contains("/location/")) {
+            return loader.getLocation(id);
+        }
+        if (url.contains("/episode/")) {
+            return loader.getEpisode(id);
+        }
+        throw new IllegalArgumentException("Not an entity URL: " + url);
+    }
+
+    private static void add(EntityGraph graph, Object entity) {
+        if (entity instanceof Character) {
+            graph.characters.put(((Character) entity).getId(), (Character) entity);
+        } else if (entity instanceof Location) {
+            graph.locations.put(((Location) entity).getId(), (Location) entity);
+        } else {
+            graph.episodes.put(((Episode) entity).getId(), (Episode) entity);
+        }
+    }
+
+    private static void references(Object entity, Set<String> into) {
+        if (entity instanceof Character) {
+            Character character = (Character) entity;
+            into.addAll(character.getEpisode());
+            addLocation(character.getOrigin(), into);
+            addLocation(character.getLocation(), into);
+        } else if (entity instanceof Location) {
+            into.addAll(((Location) entity).getResidents());
+        } else {
+            into.addAll(((Episode) entity).getCharacters());
+        }
+    }
+
+    private static void addLocation(Character.Location reference, Set<String> into) {
+        // unknown origins and locations come as {"name": "unknown", "url": ""}
+        if (reference != null && reference.getUrl() != null && !reference.getUrl().isEmpty()) {
+            into.add(reference.getUrl());
+        }
+    }
+}
@@ -0,0 +1,561 @@
+package com.rickandmorty.data;
+
+import com.rickandmorty.models.Episode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Weighted character co-appearance graph: two characters are linked when they appear in the same
+ * episode, and the weight of the link is the number of episodes they share. Adjacency is kept in
+ * CSR form like {@link Dataset}: the partners of character {@code id} are
+ * {@code neighbors[offsets[id - 1] .. offsets[id])}, sorted by id, with their shared episode
+ * counts at the same positions in {@code weights}.
+ *
+ * <p>The graph is built with fork/join in two passes over the characters: the first counts each
+ * character's partners, the second fills its row in place. A character's row is accumulated from
+ * the casts of its episodes in a dense per-worker counter, so the work is proportional to the
+ * number of co-appearances and no worker writes outside its own rows.
+ */
+public final class CoAppearanceGraph {
+
+    /** Characters per fork/join leaf. */
+    private static final int LEAF_CHARACTERS = 512;
+
+    private final int characterCount;
+    private final int[] offsets;
+    private final int[] neighbors;
+    private final int[] weights;
+
+    private CoAppearanceGraph(int characterCount, int[] offsets, int[] neighbors, int[] weights) {
+        this.characterCount = characterCount;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.weights = weights;
+    }
+
+    /**
+     * Builds the graph of a generated corpus straight from its episode and character columns.
+     */
+    public static CoAppearanceGraph of(Dataset dataset) {
+        return build(dataset.characterCount, dataset.episodeCharacterOffsets, dataset.episodeCharacters,
+                dataset.characterEpisodeOffsets, dataset.characterEpisodes);
+    }
+
+    /**
+     * Builds the graph from API episodes, reading character ids from the {@code characters} URLs;
+     * ids run up to the highest one seen.
+     */
+    public static CoAppearanceGraph fromEpisodes(List<Episode> episodes) {
+        int[] castOffsets = new int[episodes.size() + 1];
+        for (int e = 0; e < episodes.size(); e++) {
+            List<String> characters = episodes.get(e).getCharacters();
+            castOffsets[e + 1] = castOffsets[e] + (characters == null ? 0 : characters.size());
+        }
+        int[] casts = new int[castOffsets[episodes.size()]];
+        int characterCount = 0;
+        for (int e = 0; e < episodes.size(); e++) {
+            List<String> characters = episodes.get(e).getCharacters();
+            for (int k = 0; characters != null && k < characters.size(); k++) {
+                String url = characters.get(k);
+                int id = Integer.parseInt(url.substring(url.lastIndexOf('/') + 1));
+                casts[castOffsets[e] + k] = id;
+                characterCount = Math.max(characterCount, id);
+            }
+        }
+        return build(characterCount, castOffsets, casts);
+    }
+
+    /**
+     * @param characterCount characters, with ids from 1 to {@code characterCount}
+     * @param castOffsets    CSR offsets of the episode casts, one more than there are episodes
+     * @param casts          character ids of every episode; duplicates within a cast are ignored
+     */
+    public static CoAppearanceGraph build(int characterCount, int[] castOffsets, int[] casts) {
+        int episodes = castOffsets.length - 1;
+        int[] sizes = new int[episodes + 1];
+        int[] normalized = new int[casts.length];
+        ForkJoinPool.commonPool().invoke(new NormalizeCasts(characterCount, castOffsets, casts, sizes,
+                normalized, 0, episodes));
+        // squeeze out the room left by duplicates, then link every character back to its episodes
+        int[] compactOffsets = new int[episodes + 1];
+        for (int e = 0; e < episodes; e++) {
+            compactOffsets[e + 1] = compactOffsets[e] + sizes[e + 1];
+        }
+        int[] compact = new int[compactOffsets[episodes]];
+        int[] appearanceOffsets = new int[characterCount + 1];
+        for (int e = 0; e < episodes; e++) {
+            System.arraycopy(normalized, castOffsets[e], compact, compactOffsets[e], sizes[e + 1]);
+            for (int k = compactOffsets[e]; k < compactOffsets[e + 1]; k++) {
+                appearanceOffsets[compact[k]]++;
+            }
+        }
+        for (int id = 1; id <= characterCount; id++) {
+            appearanceOffsets[id] += appearanceOffsets[id - 1];
+        }
+        int[] appearances = new int[compact.length];
+        int[] cursor = Arrays.copyOf(appearanceOffsets, characterCount);
+        for (int e = 0; e < episodes; e++) {
+            for (int k = compactOffsets[e]; k < compactOffsets[e + 1]; k++) {
+                appearances[cursor[compact[k] - 1]++] = e + 1;
+            }
+        }
+        return build(characterCount, compactOffsets, compact, appearanceOffsets, appearances);
+    }
+
+    /**
+     * Both directions of the episode relation, with sorted, duplicate-free casts.
+     */
+    private static CoAppearanceGraph build(int characterCount, int[] castOffsets, int[] casts,
+                                           int[] appearanceOffsets, int[] appearances) {
+        Rows rows = new Rows(characterCount, castOffsets, casts, appearanceOffsets, appearances);
+        int[] degrees = new int[characterCount + 1];
+        ForkJoinPool.commonPool().invoke(new RowTask(rows, degrees, null, null, 1, characterCount + 1));
+
+        int[] offsets = new int[characterCount + 1];
+        long total = 0;
+        for (int id = 1; id <= characterCount; id++) {
+            total += degrees[id];
+            if (total > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("More than " + Integer.MAX_VALUE + " co-appearances do not fit in a CSR");
+            }
+            offsets[id] = (int) total;
+        }
+        int[] neighbors = new int[(int) total];
+        int[] weights = new int[(int) total];
+        ForkJoinPool.commonPool().invoke(new RowTask(rows, offsets, neighbors, weights, 1, characterCount + 1));
+        return new CoAppearanceGraph(characterCount, offsets, neighbors, weights);
+    }
+
+    public int getCharacterCount() {
+        return characterCount;
+    }
+
+    /**
+     * @return pairs of characters that share at least one episode
+     */
+    public long getEdgeCount() {
+        return neighbors.length / 2;
+    }
+
+    public int degree(int id) {
+        return offsets[id] - offsets[id - 1];
+    }
+
+    /**
+     * @return the ids of every character {@code id} shares an episode with, in ascending order
+     */
+    public int[] partners(int id) {
+        return Arrays.copyOfRange(neighbors, offsets[id - 1], offsets[id]);
+    }
+
+    /**
+     * @return the number of episodes both characters appear in, 0 if none
+     */
+    public int sharedEpisodes(int id, int other) {
+        int found = Arrays.binarySearch(neighbors, offsets[id - 1], offsets[id], other);
+        return found < 0 ? 0 : weights[found];
+    }
+
+    /**
+     * @return up to {@code k} partners of {@code id}, most shared episodes first and by id on ties
+     */
+    public List<Partner> topPartners(int id, int k) {
+        int from = offsets[id - 1];
+        int to = offsets[id];
+        int size = Math.min(k, to - from);
+        if (size <= 0) {
+            return List.of();
+        }
+        // bounded min-heap of (weight, -id) packed in a long, so the weakest kept partner is on top
+        long[] heap = new long[size];
+        int heapSize = 0;
+        for (int i = from; i < to; i++) {
+            long candidate = ((long) weights[i] << 32) | (Integer.MAX_VALUE - neighbors[i]);
+            if (heapSize < size) {
+                heap[heapSize] = candidate;
+                siftUp(heap, heapSize++);
+            } else if (candidate > heap[0]) {
+                heap[0] = candidate;
+                siftDown(heap, size);
+            }
+        }
+        Arrays.sort(heap);
+        List<Partner> top = new ArrayList<>(size);
+        for (int i = size - 1; i >= 0; i--) {
+            top.add(new Partner(Integer.MAX_VALUE - (int) heap[i], (int) (heap[i] >>> 32)));
+        }
+        return top;
+    }
+
+    /**
+     * @return at index {@code d}, the number of characters with exactly {@code d} partners
+     */
+    public int[] degreeDistribution() {
+        int maxDegree = 0;
+        for (int id = 1; id <= characterCount; id++) {
+            maxDegree = Math.max(maxDegree, degree(id));
+        }
+        int[] distribution = new int[maxDegree + 1];
+        for (int id = 1; id <= characterCount; id++) {
+            distribution[degree(id)]++;
+        }
+        return distribution;
+    }
+
+    /**
+     * Groups the characters into connected components with a union-find over the edges; a character
+     * without partners is a component of its own.
+     */
+    public Components components() {
+        int[] parent = new int[characterCount + 1];
+        for (int id = 1; id <= characterCount; id++) {
+            parent[id] = id;
+        }
+        for (int id = 1; id <= characterCount; id++) {
+            for (int i = offsets[id - 1]; i < offsets[id]; i++) {
+                int other = neighbors[i];
+                if (other > id) {
+                    union(parent, id, other);
+                }
+            }
+        }
+        return new Components(parent);
+    }
+
+    public String summary() {
+        int[] distribution = degreeDistribution();
+        Components components = components();
+        return characterCount + " characters, " + getEdgeCount() + " co-appearance pairs, max degree "
+                + (distribution.length - 1) + ", " + components.getCount() + " components (largest "
+                + components.getLargestSize() + ", " + components.getIsolatedCount() + " isolated)";
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        // the smaller id becomes the root, so every root is the smallest id of its component
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            parent[rootA] = rootB;
+        }
+    }
+
+    private static int find(int[] parent, int id) {
+        while (parent[id] != id) {
+            parent[id] = parent[parent[id]];
+            id = parent[id];
+        }
+        return id;
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        while (index > 0) {
+            int up = (index - 1) / 2;
+            if (heap[up] <= heap[index]) {
+                return;
+            }
+            long swap = heap[up];
+            heap[up] = heap[index];
+            heap[index] = swap;
+            index = up;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int smallest = index;
+            for (int child = 2 * index + 1; child <= 2 * index + 2 && child < size; child++) {
+                if (heap[child] < heap[smallest]) {
+                    smallest = child;
+                }
+            }
+            if (smallest == index) {
+                return;
+            }
+            long swap = heap[smallest];
+            heap[smallest] = heap[index];
+            heap[index] = swap;
+            index = smallest;
+        }
+    }
+
+    /**
+     * A character and how many episodes it shares with the one asked about.
+     */
+    public static final class Partner {
+
+        private final int id;
+        private final int sharedEpisodes;
+
+        public Partner(int id, int sharedEpisodes) {
+            this.id = id;
+            this.sharedEpisodes = sharedEpisodes;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public int getSharedEpisodes() {
+            return sharedEpisodes;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Partner && ((Partner) other).id == id
+                    && ((Partner) other).sharedEpisodes == sharedEpisodes;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * id + sharedEpisodes;
+        }
+
+        @Override
+        public String toString() {
+            return id + "x" + sharedEpisodes;
+        }
+    }
+
+    /**
+     * Connected components, numbered from 0 in the order of their smallest character id.
+     */
+    public static final class Components {
+
+        private final int[] labels;
+        private final int[] sizes;
+
+        private Components(int[] parent) {
+            labels = new int[parent.length];
+            int[] labelOfRoot = new int[parent.length];
+            int count = 0;
+            for (int id = 1; id < parent.length; id++) {
+                int root = find(parent, id);
+                // roots are the smallest id of their component, so they are met before their members
+                labels[id] = root == id ? (labelOfRoot[id] = count++) : labelOfRoot[root];
+            }
+            sizes = new int[count];
+            for (int id = 1; id < parent.length; id++) {
+                sizes[labels[id]]++;
+            }
+        }
+
+        public int getCount() {
+            return sizes.length;
+        }
+
+        public int componentOf(int id) {
+            return labels[id];
+        }
+
+        public int size(int component) {
+            return sizes[component];
+        }
+
+        public int getLargestSize() {
+            int largest = 0;
+            for (int size : sizes) {
+                largest = Math.max(largest, size);
+            }
+            return largest;
+        }
+
+        /**
+         * @return characters that share no episode with anyone
+         */
+        public int getIsolatedCount() {
+            int isolated = 0;
+            for (int size : sizes) {
+                if (size == 1) {
+                    isolated++;
+                }
+            }
+            return isolated;
+        }
+    }
+
+    /**
+     * Sorts each episode's cast and drops duplicates, writing at the cast's original position and its
+     * new size to {@code sizes[e + 1]}.
+     */
+    private static final class NormalizeCasts extends RecursiveAction {
+
+        private static final int LEAF_EPISODES = 64;
+
+        private final int characterCount;
+        private final int[] castOffsets;
+        private final int[] casts;
+        private final int[] sizes;
+        private final int[] normalized;
+        private final int from;
+        private final int to;
+
+        NormalizeCasts(int characterCount, int[] castOffsets, int[] casts, int[] sizes, int[] normalized,
+                       int from, int to) {
+            this.characterCount = characterCount;
+            this.castOffsets = castOffsets;
+            this.casts = casts;
+            this.sizes = sizes;
+            this.normalized = normalized;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_EPISODES) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new NormalizeCasts(characterCount, castOffsets, casts, sizes, normalized, from, middle),
+                        new NormalizeCasts(characterCount, castOffsets, casts, sizes, normalized, middle, to));
+                return;
+            }
+            for (int e = from; e < to; e++) {
+                int start = castOffsets[e];
+                int end = castOffsets[e + 1];
+                System.arraycopy(casts, start, normalized, start, end - start);
+                Arrays.sort(normalized, start, end);
+                int size = 0;
+                for (int k = start; k < end; k++) {
+                    int id = normalized[k];
+                    if (id < 1 || id > characterCount) {
+                        throw new IllegalArgumentException("Episode " + (e + 1) + " lists unknown character " + id);
+                    }
+                    if (size == 0 || normalized[start + size - 1] != id) {
+                        normalized[start + size++] = id;
+                    }
+                }
+                sizes[e + 1] = size;
+            }
+        }
+    }
+
+    /**
+     * Input of the row passes, plus the dense counters; a leaf borrows one for its range, so
+     * there are never more than there are workers.
+     */
+    private static final class Rows {
+
+        final int[] castOffsets;
+        final int[] casts;
+        final int[] appearanceOffsets;
+        final int[] appearances;
+        final int characterCount;
+        final Queue<Accumulator> accumulators = new ConcurrentLinkedQueue<>();
+
+        Rows(int characterCount, int[] castOffsets, int[] casts, int[] appearanceOffsets, int[] appearances) {
+            this.castOffsets = castOffsets;
+            this.casts = casts;
+            this.appearanceOffsets = appearanceOffsets;
+            this.appearances = appearances;
+            this.characterCount = characterCount;
+        }
+
+        Accumulator borrow() {
+            Accumulator accumulator = accumulators.poll();
+            return accumulator == null ? new Accumulator(characterCount) : accumulator;
+        }
+
+        /**
+         * Counts the partners of {@code id} into {@code accumulator}.
+         */
+        void accumulate(int id, Accumulator accumulator) {
+            for (int a = appearanceOffsets[id - 1]; a < appearanceOffsets[id]; a++) {
+                int episode = appearances[a];
+                for (int k = castOffsets[episode - 1]; k < castOffsets[episode]; k++) {
+                    if (casts[k] != id) {
+                        accumulator.add(casts[k]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sparse accumulator: shared-episode counts by partner id, plus the list of ids touched so far,
+     * so clearing costs as much as the row and not as much as the whole id range.
+     */
+    private static final class Accumulator {
+
+        final int[] counts;
+        int[] touched = new int[64];
+        int size;
+
+        Accumulator(int characterCount) {
+            counts = new int[characterCount + 1];
+        }
+
+        void add(int id) {
+            if (counts[id]++ == 0) {
+                if (size == touched.length) {
+                    touched = Arrays.copyOf(touched, size * 2);
+                }
+                touched[size++] = id;
+            }
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                counts[touched[i]] = 0;
+            }
+            size = 0;
+        }
+    }
+
+    /**
+     * One pass over a range of characters. Without {@code neighbors} it stores each degree at
+     * {@code target[id]}; with them, {@code target} holds the CSR offsets and each row is written.
+     */
+    private static final class RowTask extends RecursiveAction {
+
+        private final Rows rows;
+        private final int[] target;
+        private final int[] neighbors;
+        private final int[] weights;
+        private final int from;
+        private final int to;
+
+        RowTask(Rows rows, int[] target, int[] neighbors, int[] weights, int from, int to) {
+            this.rows = rows;
+            this.target = target;
+            this.neighbors = neighbors;
+            this.weights = weights;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_CHARACTERS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowTask(rows, target, neighbors, weights, from, middle),
+                        new RowTask(rows, target, neighbors, weights, middle, to));
+                return;
+            }
+            Accumulator accumulator = rows.borrow();
+            for (int id = from; id < to; id++) {
+                rows.accumulate(id, accumulator);
+                if (neighbors == null) {
+                    target[id] = accumulator.size;
+                } else {
+                    Arrays.sort(accumulator.touched, 0, accumulator.size);
+                    int row = target[id - 1];
+                    for (int i = 0; i < accumulator.size; i++) {
+                        int partner = accumulator.touched[i];
+                        neighbors[row + i] = partner;
+                        weights[row + i] = accumulator.counts[partner];
+                    }
+                }
+                accumulator.clear();
+            }
+            rows.accumulators.add(accumulator);
+        }
+    }
+}
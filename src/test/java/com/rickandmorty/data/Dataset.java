@@ -0,0 +1,322 @@
+package com.rickandmorty.data;
+
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Columnar, linked Rick and Morty corpus produced by {@link DatasetGenerator}.
+ * Categorical fields are stored as dictionary indexes and relationships as CSR
+ * (offset + id) arrays, so millions of characters fit in a few tens of megabytes.
+ * Model objects are only materialized on demand for a given API base URL.
+ */
+public final class Dataset {
+
+    public static final int REAL_CHARACTERS = 826;
+    public static final int REAL_LOCATIONS = 126;
+    public static final int REAL_EPISODES = 51;
+    public static final int MAX_EPISODES = 99 * 99;
+
+    public static final List<String> STATUSES = dictionary("Alive", "Dead", "unknown");
+    public static final List<String> SPECIES = dictionary("Human", "Alien", "Humanoid", "Robot", "Animal",
+            "Cronenberg", "Mythological Creature", "Poopybutthole", "Disease", "unknown");
+    public static final List<String> GENDERS = dictionary("Male", "Female", "Genderless", "unknown");
+    public static final List<String> CHARACTER_TYPES = dictionary("", "Parasite", "Clone", "Superhuman",
+            "Cyborg", "Fish-Person", "Robot-Humanoid", "Genetic experiment");
+    public static final List<String> LOCATION_TYPES = dictionary("Planet", "Space station", "Microverse",
+            "Cluster", "Dimension", "Resort", "Fantasy town", "Dream", "TV", "Menagerie", "unknown");
+    public static final List<String> DIMENSIONS = dictionary("Dimension C-137", "Replacement Dimension",
+            "Cronenberg Dimension", "Fantasy Dimension", "Post-Apocalyptic Dimension", "Dimension 5-126",
+            "Chair Dimension", "unknown");
+
+    static final String[] FIRST_NAMES = {"Rick", "Morty", "Summer", "Beth", "Jerry", "Abradolf", "Squanchy",
+            "Birdperson", "Krombopulos", "Unity", "Evil", "Cop", "Doofus", "Tammy", "Gearhead", "Scary",
+            "Pencilvester", "Noob-Noob", "Baby", "Slippery", "Mr.", "Glootie", "Revolio", "Zeep", "Ants"};
+    static final String[] LAST_NAMES = {"Sanchez", "Smith", "Lincler", "Goldenfold", "Michael", "Poopybutthole",
+            "Meeseeks", "Gwendolyn", "Stair", "Terry", "Rick", "Morty", "Jones", "Planetina", "Clockberg",
+            "Xanflorp", "Gazorpazorp", "Nimbus", "Beauregard", "Frundles"};
+    static final String[] CANONICAL_CHARACTERS = {"Rick Sanchez", "Morty Smith", "Summer Smith",
+            "Beth Smith", "Jerry Smith"};
+    static final String[] LOCATION_NAMES = {"Earth (C-137)", "Abadango", "Citadel of Ricks",
+            "Worldender's lair", "Anatomy Park", "Interdimensional Cable", "Immortality Field Resort",
+            "Post-Apocalyptic Earth", "Purge Planet", "Venzenulon 7", "Bepis 9", "Cronenberg Earth",
+            "Nuptia 4", "Giant's Town", "Bird World", "St. Gloopy Noops Hospital", "Earth (5-126)",
+            "Mr. Goldenfold's dream", "Gromflom Prime", "Earth (Replacement Dimension)"};
+    static final String[] EPISODE_WORDS = {"Lawnmower", "Dog", "Anatomy", "Park", "Meeseeks", "Destroy",
+            "Rixty", "Minutes", "Something", "Ricked", "Close", "Encounters", "Rick", "Auto", "Erotic",
+            "Assimilation", "Total", "Rickall", "Pickle", "Vindicators", "Whirly", "Dirly", "Rest", "Ricklaxation"};
+
+    private static final LocalDate FIRST_AIR_DATE = LocalDate.of(2013, 12, 2);
+    private static final DateTimeFormatter AIR_DATE_FORMAT = DateTimeFormatter.ofPattern("MMMM d, yyyy", Locale.US);
+    private static final DateTimeFormatter CREATED_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+    private static final long CHARACTER_EPOCH = Instant.parse("2017-11-04T18:48:46.250Z").toEpochMilli();
+    private static final long LOCATION_EPOCH = Instant.parse("2017-11-10T12:42:04.162Z").toEpochMilli();
+    private static final long EPISODE_EPOCH = Instant.parse("2017-11-10T12:56:33.798Z").toEpochMilli();
+
+    final long seed;
+    final int characterCount;
+    final int locationCount;
+    final int episodeCount;
+
+    final byte[] characterStatus;
+    final byte[] characterSpecies;
+    final byte[] characterGender;
+    final byte[] characterType;
+    final int[] characterOrigin;
+    final int[] characterLocation;
+    final int[] characterEpisodeOffsets;
+    final int[] characterEpisodes;
+
+    final byte[] locationType;
+    final byte[] locationDimension;
+    final int[] locationResidentOffsets;
+    final int[] locationResidents;
+
+    final int[] episodeCharacterOffsets;
+    final int[] episodeCharacters;
+
+    Dataset(long seed, int characterCount, int locationCount, int episodeCount,
+            byte[] characterStatus, byte[] characterSpecies, byte[] characterGender, byte[] characterType,
+            int[] characterOrigin, int[] characterLocation, int[] characterEpisodeOffsets, int[] characterEpisodes,
+            byte[] locationType, byte[] locationDimension, int[] locationResidentOffsets, int[] locationResidents,
+            int[] episodeCharacterOffsets, int[] episodeCharacters) {
+        this.seed = seed;
+        this.characterCount = characterCount;
+        this.locationCount = locationCount;
+        this.episodeCount = episodeCount;
+        this.characterStatus = characterStatus;
+        this.characterSpecies = characterSpecies;
+        this.characterGender = characterGender;
+        this.characterType = characterType;
+        this.characterOrigin = characterOrigin;
+        this.characterLocation = characterLocation;
+        this.characterEpisodeOffsets = characterEpisodeOffsets;
+        this.characterEpisodes = characterEpisodes;
+        this.locationType = locationType;
+        this.locationDimension = locationDimension;
+        this.locationResidentOffsets = locationResidentOffsets;
+        this.locationResidents = locationResidents;
+        this.episodeCharacterOffsets = episodeCharacterOffsets;
+        this.episodeCharacters = episodeCharacters;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getCharacterCount() {
+        return characterCount;
+    }
+
+    public int getLocationCount() {
+        return locationCount;
+    }
+
+    public int getEpisodeCount() {
+        return episodeCount;
+    }
+
+    public boolean hasCharacter(int id) {
+        return id >= 1 && id <= characterCount;
+    }
+
+    public boolean hasLocation(int id) {
+        return id >= 1 && id <= locationCount;
+    }
+
+    public boolean hasEpisode(int id) {
+        return id >= 1 && id <= episodeCount;
+    }
+
+    // ---- character columns ----
+
+    public String characterName(int id) {
+        if (id <= CANONICAL_CHARACTERS.length) {
+            return CANONICAL_CHARACTERS[id - 1];
+        }
+        long h = mix(seed ^ 0x6e616d65L, id);
+        return FIRST_NAMES[(int) ((h >>> 1) % FIRST_NAMES.length)] + " "
+                + LAST_NAMES[(int) ((h >>> 33) % LAST_NAMES.length)];
+    }
+
+    public String characterStatus(int id) {
+        return STATUSES.get(characterStatus[id - 1]);
+    }
+
+    public String characterSpecies(int id) {
+        return SPECIES.get(characterSpecies[id - 1]);
+    }
+
+    public String characterGender(int id) {
+        return GENDERS.get(characterGender[id - 1]);
+    }
+
+    public String characterType(int id) {
+        return CHARACTER_TYPES.get(characterType[id - 1]);
+    }
+
+    /** @return origin location id, or 0 when the origin is unknown */
+    public int characterOrigin(int id) {
+        return characterOrigin[id - 1];
+    }
+
+    /** @return last known location id, or 0 when unknown */
+    public int characterLocation(int id) {
+        return characterLocation[id - 1];
+    }
+
+    public int[] characterEpisodes(int id) {
+        return Arrays.copyOfRange(characterEpisodes, characterEpisodeOffsets[id - 1], characterEpisodeOffsets[id]);
+    }
+
+    public long characterCreated(int id) {
+        return CHARACTER_EPOCH + id * 1000L;
+    }
+
+    // ---- location columns ----
+
+    public String locationName(int id) {
+        int base = (id - 1) % LOCATION_NAMES.length;
+        int cycle = (id - 1) / LOCATION_NAMES.length;
+        return cycle == 0 ? LOCATION_NAMES[base] : LOCATION_NAMES[base] + " " + (cycle + 1);
+    }
+
+    public String locationType(int id) {
+        return LOCATION_TYPES.get(locationType[id - 1]);
+    }
+
+    public String locationDimension(int id) {
+        return DIMENSIONS.get(locationDimension[id - 1]);
+    }
+
+    public int[] locationResidents(int id) {
+        return Arrays.copyOfRange(locationResidents, locationResidentOffsets[id - 1], locationResidentOffsets[id]);
+    }
+
+    public long locationCreated(int id) {
+        return LOCATION_EPOCH + id * 1000L;
+    }
+
+    // ---- episode columns ----
+
+    public String episodeName(int id) {
+        if (id == 1) {
+            return "Pilot";
+        }
+        long h = mix(seed ^ 0x65706973L, id);
+        return EPISODE_WORDS[(int) ((h >>> 1) % EPISODE_WORDS.length)] + " "
+                + EPISODE_WORDS[(int) ((h >>> 33) % EPISODE_WORDS.length)];
+    }
+
+    public String episodeCode(int id) {
+        int seasonLength = Math.max(10, (episodeCount + 98) / 99);
+        int season = (id - 1) / seasonLength + 1;
+        int number = (id - 1) % seasonLength + 1;
+        return String.format("S%02dE%02d", season, number);
+    }
+
+    public String episodeAirDate(int id) {
+        return AIR_DATE_FORMAT.format(FIRST_AIR_DATE.plusWeeks(id - 1));
+    }
+
+    public int[] episodeCharacters(int id) {
+        return Arrays.copyOfRange(episodeCharacters, episodeCharacterOffsets[id - 1], episodeCharacterOffsets[id]);
+    }
+
+    public long episodeCreated(int id) {
+        return EPISODE_EPOCH + id * 1000L;
+    }
+
+    // ---- model materialization ----
+
+    public Character character(int id, String apiUrl) {
+        Character character = new Character();
+        character.setId(id);
+        character.setName(characterName(id));
+        character.setStatus(characterStatus(id));
+        character.setSpecies(characterSpecies(id));
+        character.setType(characterType(id));
+        character.setGender(characterGender(id));
+        character.setOrigin(locationRef(characterOrigin(id), apiUrl));
+        character.setLocation(locationRef(characterLocation(id), apiUrl));
+        character.setImage(apiUrl + "/character/avatar/" + id + ".jpeg");
+        character.setEpisode(urls(apiUrl + "/episode/", characterEpisodes,
+                characterEpisodeOffsets[id - 1], characterEpisodeOffsets[id]));
+        character.setUrl(apiUrl + "/character/" + id);
+        character.setCreated(formatInstant(characterCreated(id)));
+        return character;
+    }
+
+    public Location location(int id, String apiUrl) {
+        Location location = new Location();
+        location.setId(id);
+        location.setName(locationName(id));
+        location.setType(locationType(id));
+        location.setDimension(locationDimension(id));
+        location.setResidents(urls(apiUrl + "/character/", locationResidents,
+                locationResidentOffsets[id - 1], locationResidentOffsets[id]));
+        location.setUrl(apiUrl + "/location/" + id);
+        location.setCreated(formatInstant(locationCreated(id)));
+        return location;
+    }
+
+    public Episode episode(int id, String apiUrl) {
+        Episode episode = new Episode();
+        episode.setId(id);
+        episode.setName(episodeName(id));
+        episode.setAir_date(episodeAirDate(id));
+        episode.setEpisode(episodeCode(id));
+        episode.setCharacters(urls(apiUrl + "/character/", episodeCharacters,
+                episodeCharacterOffsets[id - 1], episodeCharacterOffsets[id]));
+        episode.setUrl(apiUrl + "/episode/" + id);
+        episode.setCreated(formatInstant(episodeCreated(id)));
+        return episode;
+    }
+
+    public static String formatInstant(long epochMillis) {
+        return CREATED_FORMAT.format(Instant.ofEpochMilli(epochMillis));
+    }
+
+    private Character.Location locationRef(int locationId, String apiUrl) {
+        Character.Location ref = new Character.Location();
+        if (locationId == 0) {
+            ref.setName("unknown");
+            ref.setUrl("");
+        } else {
+            ref.setName(locationName(locationId));
+            ref.setUrl(apiUrl + "/location/" + locationId);
+        }
+        return ref;
+    }
+
+    private static List<String> urls(String prefix, int[] ids, int from, int to) {
+        List<String> urls = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            urls.add(prefix + ids[i]);
+        }
+        return urls;
+    }
+
+    private static List<String> dictionary(String... values) {
+        return Collections.unmodifiableList(Arrays.asList(values));
+    }
+
+    /** SplitMix64 finalizer, used so every row is derived from (seed, id) independently of generation order. */
+    static long mix(long seed, long id) {
+        long z = seed + id * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31)) & Long.MAX_VALUE;
+    }
+}
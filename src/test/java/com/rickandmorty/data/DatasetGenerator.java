@@ -0,0 +1,199 @@
+package com.rickandmorty.data;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Seeded generator for linked {@link Dataset} corpora, from the real API size
+ * (826 characters, 126 locations, 51 episodes) up to millions of characters.
+ * Every row is derived from {@code (seed, id)} so the same seed always produces
+ * the same corpus, and rows are generated in parallel.
+ */
+public class DatasetGenerator {
+
+    public static final long DEFAULT_SEED = 42L;
+
+    private static final int CANONICAL_CAST = 2;
+    private static final int MAX_APPEARANCES = 12;
+
+    private long seed = DEFAULT_SEED;
+    private int characters = Dataset.REAL_CHARACTERS;
+    private int locations = Dataset.REAL_LOCATIONS;
+    private int episodes = Dataset.REAL_EPISODES;
+
+    public static DatasetGenerator real() {
+        return new DatasetGenerator();
+    }
+
+    /**
+     * Sizes locations and episodes in the same proportion as the real API,
+     * capping episodes at {@link Dataset#MAX_EPISODES} so codes keep the SxxExx format.
+     */
+    public static DatasetGenerator scaled(int characters) {
+        DatasetGenerator generator = new DatasetGenerator().characters(characters);
+        generator.locations = Math.max(1, (int) ((long) characters * Dataset.REAL_LOCATIONS / Dataset.REAL_CHARACTERS));
+        generator.episodes = Math.max(1, Math.min(Dataset.MAX_EPISODES,
+                (int) ((long) characters * Dataset.REAL_EPISODES / Dataset.REAL_CHARACTERS)));
+        return generator;
+    }
+
+    public DatasetGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public DatasetGenerator characters(int characters) {
+        this.characters = characters;
+        return this;
+    }
+
+    public DatasetGenerator locations(int locations) {
+        this.locations = locations;
+        return this;
+    }
+
+    public DatasetGenerator episodes(int episodes) {
+        this.episodes = episodes;
+        return this;
+    }
+
+    public Dataset generate() {
+        if (characters < CANONICAL_CAST || locations < 1 || episodes < 1) {
+            throw new IllegalArgumentException("Dataset needs at least " + CANONICAL_CAST
+                    + " characters, 1 location and 1 episode");
+        }
+        if (episodes > Dataset.MAX_EPISODES) {
+            throw new IllegalArgumentException("At most " + Dataset.MAX_EPISODES + " episodes are supported");
+        }
+
+        byte[] status = new byte[characters];
+        byte[] species = new byte[characters];
+        byte[] gender = new byte[characters];
+        byte[] type = new byte[characters];
+        int[] origin = new int[characters];
+        int[] location = new int[characters];
+        int[] appearances = new int[characters + 1];
+
+        IntStream.rangeClosed(1, characters).parallel().forEach(id -> {
+            int i = id - 1;
+            if (id <= Dataset.CANONICAL_CHARACTERS.length) {
+                status[i] = 0;
+                species[i] = 0;
+                gender[i] = (byte) (id == 3 || id == 4 ? 1 : 0);
+                origin[i] = id <= 2 ? 1 : 0;
+                location[i] = 1;
+            } else {
+                SplittableRandom random = new SplittableRandom(Dataset.mix(seed, id));
+                status[i] = (byte) weighted(random, 50, 35, 15);
+                species[i] = (byte) weighted(random, 45, 25, 8, 4, 5, 3, 2, 2, 2, 4);
+                gender[i] = (byte) weighted(random, 60, 25, 5, 10);
+                type[i] = (byte) (random.nextInt(10) < 8 ? 0 : 1 + random.nextInt(Dataset.CHARACTER_TYPES.size() - 1));
+                origin[i] = random.nextInt(10) < 3 ? 0 : 1 + random.nextInt(locations);
+                location[i] = 1 + random.nextInt(locations);
+            }
+            appearances[id] = appearanceCount(id);
+        });
+
+        int[] characterEpisodeOffsets = prefixSum(appearances);
+        int[] characterEpisodes = new int[characterEpisodeOffsets[characters]];
+        IntStream.rangeClosed(1, characters).parallel().forEach(id -> {
+            int from = characterEpisodeOffsets[id - 1];
+            int count = characterEpisodeOffsets[id] - from;
+            int first = firstAppearance(id, count);
+            for (int k = 0; k < count; k++) {
+                characterEpisodes[from + k] = first + k;
+            }
+        });
+
+        int[] episodeCharacterOffsets = new int[episodes + 1];
+        for (int episode : characterEpisodes) {
+            episodeCharacterOffsets[episode]++;
+        }
+        episodeCharacterOffsets = prefixSum(episodeCharacterOffsets);
+        int[] episodeCharacters = invert(characterEpisodeOffsets, characterEpisodes, episodeCharacterOffsets);
+
+        int[] locationResidentOffsets = new int[locations + 1];
+        int[] residentOfOffsets = new int[characters + 1];
+        for (int i = 0; i < characters; i++) {
+            locationResidentOffsets[location[i]]++;
+            residentOfOffsets[i + 1] = i + 1;
+        }
+        locationResidentOffsets = prefixSum(locationResidentOffsets);
+        int[] locationResidents = invert(residentOfOffsets, location, locationResidentOffsets);
+
+        byte[] locationType = new byte[locations];
+        byte[] locationDimension = new byte[locations];
+        IntStream.rangeClosed(1, locations).parallel().forEach(id -> {
+            if (id == 1) {
+                return;
+            }
+            SplittableRandom random = new SplittableRandom(Dataset.mix(~seed, id));
+            locationType[id - 1] = (byte) weighted(random, 40, 8, 5, 6, 5, 4, 4, 4, 4, 3, 17);
+            locationDimension[id - 1] = (byte) random.nextInt(Dataset.DIMENSIONS.size());
+        });
+
+        return new Dataset(seed, characters, locations, episodes,
+                status, species, gender, type, origin, location, characterEpisodeOffsets, characterEpisodes,
+                locationType, locationDimension, locationResidentOffsets, locationResidents,
+                episodeCharacterOffsets, episodeCharacters);
+    }
+
+    private int appearanceCount(int id) {
+        if (id <= CANONICAL_CAST) {
+            return episodes;
+        }
+        SplittableRandom random = new SplittableRandom(Dataset.mix(seed ^ 0x61707065L, id));
+        int count = 1;
+        while (count < MAX_APPEARANCES && random.nextBoolean()) {
+            count++;
+        }
+        return Math.min(count, episodes);
+    }
+
+    private int firstAppearance(int id, int count) {
+        if (id <= CANONICAL_CAST) {
+            return 1;
+        }
+        SplittableRandom random = new SplittableRandom(Dataset.mix(seed ^ 0x66697273L, id));
+        return 1 + random.nextInt(episodes - count + 1);
+    }
+
+    /** Turns per-row counts (stored at index id) into CSR offsets in place. */
+    private static int[] prefixSum(int[] counts) {
+        for (int i = 1; i < counts.length; i++) {
+            counts[i] += counts[i - 1];
+        }
+        return counts;
+    }
+
+    /**
+     * Builds the reverse adjacency of a CSR relation. Sources are visited in id order,
+     * so every target list comes out sorted.
+     */
+    private static int[] invert(int[] sourceOffsets, int[] targets, int[] targetOffsets) {
+        int[] inverted = new int[targets.length];
+        int[] cursor = new int[targetOffsets.length - 1];
+        for (int source = 1; source < sourceOffsets.length; source++) {
+            for (int k = sourceOffsets[source - 1]; k < sourceOffsets[source]; k++) {
+                int target = targets[k];
+                inverted[targetOffsets[target - 1] + cursor[target - 1]++] = source;
+            }
+        }
+        return inverted;
+    }
+
+    private static int weighted(SplittableRandom random, int... weights) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int roll = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+}
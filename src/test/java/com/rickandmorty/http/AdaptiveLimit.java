@@ -0,0 +1,158 @@
+package com.rickandmorty.http;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit for one host, adjusted by additive increase / multiplicative decrease. A fast
+ * success (latency within {@code tolerance} times the fastest seen for the same endpoint template,
+ * so a large page is not taken for a queued small one) adds {@code 1 / limit}, so the
+ * limit grows by about one per round of requests. A slower success while at least half the limit is
+ * in use means requests are queueing at the host, and takes a tenth off; with fewer in flight the
+ * latency is not ours to fix and the limit is left alone. An overload response halves it. Decreases
+ * are only taken for requests sent after the last one, so one burst of rejections or slow responses
+ * lowers the limit once.
+ */
+final class AdaptiveLimit {
+
+    private static final double LATENCY_BACKOFF = 0.9;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private final Map<String, Long> minLatencyNanos = new HashMap<>();
+    private long decreasedAt;
+    private long decreases;
+
+    AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.decreasedAt = System.nanoTime();
+    }
+
+    /**
+     * Waits for a slot under the limit.
+     *
+     * @return when the slot was taken, or -1 if none freed up in time
+     */
+    long acquire(long timeoutNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = timeoutNanos;
+            queued++;
+            try {
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+            } finally {
+                queued--;
+            }
+            inFlight++;
+            return System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param sentAt     when the request went out, once it had its slot (and its token, if paced)
+     * @param template   endpoint template of the request, whose fastest latency this one is compared to
+     * @param overloaded whether the host answered that it is overloaded, or did not answer at all
+     */
+    void release(long sentAt, String template, boolean overloaded) {
+        long now = System.nanoTime();
+        long latency = now - sentAt;
+        lock.lock();
+        try {
+            int concurrent = inFlight--;
+            if (overloaded) {
+                decrease(sentAt, now, 0.5);
+            } else {
+                long fastest = minLatencyNanos.merge(template, latency, Math::min);
+                if (latency <= fastest * tolerance) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                } else if (concurrent * 2 >= limit) {
+                    decrease(sentAt, now, LATENCY_BACKOFF);
+                }
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives the slot back without a verdict, for an attempt that was aborted because another one
+     * answered first: its failure says nothing about the host.
+     */
+    void abandon() {
+        lock.lock();
+        try {
+            inFlight--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease(long sentAt, long now, double factor) {
+        if (sentAt - decreasedAt >= 0) {
+            limit = Math.max(minLimit, limit * factor);
+            decreasedAt = now;
+            decreases++;
+        }
+    }
+
+    double getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            long fastest = minLatencyNanos.values().stream().mapToLong(Long::longValue).min().orElse(0);
+            return String.format("limit %.1f, %d in flight, %d queued, %d decreases, fastest %.2f ms over %d endpoints",
+                    limit, inFlight, queued, decreases, fastest / (double) TimeUnit.MILLISECONDS.toNanos(1),
+                    minLatencyNanos.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
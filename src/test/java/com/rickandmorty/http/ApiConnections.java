@@ -0,0 +1,51 @@
+package com.rickandmorty.http;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opens the {@link HttpURLConnection}s of the suite's own clients: the crawlers and loaders, the
+ * corpus validator and the dataset sync. An https connection to a host registered with
+ * {@link #trust} gets that host's socket factory, so a local server's self-signed certificate is
+ * trusted by these connections only; the JVM's default socket factory is left alone.
+ */
+public final class ApiConnections {
+
+    private static final Map<String, SSLSocketFactory> TRUSTED = new ConcurrentHashMap<>();
+
+    private ApiConnections() {
+    }
+
+    /**
+     * Uses {@code sslContext} for https connections to {@code host:port} until {@link #forget}.
+     */
+    public static void trust(String host, int port, SSLContext sslContext) {
+        TRUSTED.put(authority(host, port), sslContext.getSocketFactory());
+    }
+
+    public static void forget(String host, int port) {
+        TRUSTED.remove(authority(host, port));
+    }
+
+    public static HttpURLConnection open(String url) throws IOException {
+        URL target = new URL(url);
+        HttpURLConnection connection = (HttpURLConnection) target.openConnection();
+        if (connection instanceof HttpsURLConnection) {
+            SSLSocketFactory factory = TRUSTED.get(authority(target.getHost(), target.getPort()));
+            if (factory != null) {
+                ((HttpsURLConnection) connection).setSSLSocketFactory(factory);
+            }
+        }
+        return connection;
+    }
+
+    private static String authority(String host, int port) {
+        return host.toLowerCase() + ":" + port;
+    }
+}
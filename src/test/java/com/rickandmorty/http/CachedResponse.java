@@ -0,0 +1,255 @@
+package com.rickandmorty.http;
+
+import io.restassured.builder.ResponseBuilder;
+import io.restassured.http.Header;
+import io.restassured.http.Headers;
+import io.restassured.response.Response;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable stored response plus the freshness data taken from its {@code Cache-Control},
+ * {@code Age}, {@code ETag} and {@code Last-Modified} headers. A response with {@code Vary} also
+ * keeps the request headers it names, and only answers requests that send the same values.
+ */
+final class CachedResponse {
+
+    private static final int FORMAT_VERSION = 2;
+    /** Stands in for a request header that was not sent. */
+    private static final String ABSENT = "";
+
+    private final int statusCode;
+    private final String statusLine;
+    private final String contentType;
+    private final List<Header> headers;
+    private final List<Header> variant;
+    private final byte[] body;
+    private final long storedAtMillis;
+    private final long maxAgeMillis;
+    private final boolean noCache;
+
+    private CachedResponse(int statusCode, String statusLine, String contentType, List<Header> headers,
+                           List<Header> variant, byte[] body, long storedAtMillis, long maxAgeMillis, boolean noCache) {
+        this.statusCode = statusCode;
+        this.statusLine = statusLine;
+        this.contentType = contentType;
+        this.headers = headers;
+        this.variant = variant;
+        this.body = body;
+        this.storedAtMillis = storedAtMillis;
+        this.maxAgeMillis = maxAgeMillis;
+        this.noCache = noCache;
+    }
+
+    /**
+     * @param requestHeaders headers of the request that got the response, for its {@code Vary}
+     * @return the entry to store, or null when the response may not be cached (anything but 200,
+     * {@code no-store}, {@code Vary: *}, or neither a lifetime nor a validator to revalidate with)
+     */
+    static CachedResponse of(Response response, Headers requestHeaders, long nowMillis) {
+        if (response.statusCode() != 200) {
+            return null;
+        }
+        Headers responseHeaders = response.getHeaders();
+        CacheControl cacheControl = CacheControl.parse(responseHeaders.getValue("Cache-Control"));
+        if (cacheControl.noStore) {
+            return null;
+        }
+        List<Header> variant = new ArrayList<>();
+        for (Header vary : responseHeaders.getList("Vary")) {
+            for (String name : vary.getValue().split(",")) {
+                String trimmed = name.trim();
+                if (trimmed.equals("*")) {
+                    // varies on something outside the request, so no stored copy can be reused
+                    return null;
+                }
+                if (!trimmed.isEmpty()) {
+                    variant.add(new Header(trimmed, valueOf(requestHeaders, trimmed)));
+                }
+            }
+        }
+        List<Header> headers = new ArrayList<>(responseHeaders.asList());
+        CachedResponse entry = new CachedResponse(response.statusCode(), response.statusLine(),
+                response.contentType(), headers, variant, response.asByteArray(), nowMillis,
+                freshnessMillis(cacheControl, responseHeaders), cacheControl.noCache);
+        return entry.maxAgeMillis > 0 || entry.hasValidator() ? entry : null;
+    }
+
+    /**
+     * @return whether the request sends the same values as the stored one for every header named in {@code Vary}
+     */
+    boolean matches(Headers requestHeaders) {
+        for (Header header : variant) {
+            if (!header.getValue().equals(valueOf(requestHeaders, header.getName()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String valueOf(Headers requestHeaders, String name) {
+        List<String> values = requestHeaders.getValues(name);
+        return values.isEmpty() ? ABSENT : String.join(", ", values);
+    }
+
+    /**
+     * Applies a {@code 304 Not Modified}: the stored body is kept and its freshness restarts
+     * from the headers the server sent with the 304.
+     */
+    CachedResponse revalidated(Response notModified, long nowMillis) {
+        Headers update = notModified.getHeaders();
+        List<Header> merged = new ArrayList<>();
+        for (Header header : headers) {
+            if (!update.hasHeaderWithName(header.getName())) {
+                merged.add(header);
+            }
+        }
+        merged.addAll(update.asList());
+        CacheControl cacheControl = CacheControl.parse(update.hasHeaderWithName("Cache-Control")
+                ? update.getValue("Cache-Control") : header("Cache-Control"));
+        return new CachedResponse(statusCode, statusLine, contentType, merged, variant, body, nowMillis,
+                freshnessMillis(cacheControl, update), cacheControl.noCache);
+    }
+
+    boolean isFresh(long nowMillis) {
+        return !noCache && nowMillis - storedAtMillis < maxAgeMillis;
+    }
+
+    boolean hasValidator() {
+        return header("ETag") != null || header("Last-Modified") != null;
+    }
+
+    String header(String name) {
+        for (Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    Response toResponse() {
+        return new ResponseBuilder()
+                .setStatusCode(statusCode)
+                .setStatusLine(statusLine)
+                .setHeaders(new Headers(headers))
+                .setContentType(contentType)
+                .setBody(body)
+                .build();
+    }
+
+    /**
+     * Approximate heap footprint: the body plus header text, which is what the LRU bound is about.
+     */
+    long weight() {
+        long weight = body.length + statusLine.length() + 64;
+        for (Header header : headers) {
+            weight += header.getName().length() + header.getValue().length() + 32;
+        }
+        for (Header header : variant) {
+            weight += header.getName().length() + header.getValue().length() + 32;
+        }
+        return weight;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(statusCode);
+        out.writeUTF(statusLine);
+        out.writeUTF(contentType == null ? "" : contentType);
+        out.writeInt(headers.size());
+        for (Header header : headers) {
+            out.writeUTF(header.getName());
+            out.writeUTF(header.getValue());
+        }
+        out.writeInt(variant.size());
+        for (Header header : variant) {
+            out.writeUTF(header.getName());
+            out.writeUTF(header.getValue());
+        }
+        out.writeLong(storedAtMillis);
+        out.writeLong(maxAgeMillis);
+        out.writeBoolean(noCache);
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    static CachedResponse readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unsupported cache entry format");
+        }
+        int statusCode = in.readInt();
+        String statusLine = in.readUTF();
+        String contentType = in.readUTF();
+        int headerCount = in.readInt();
+        List<Header> headers = new ArrayList<>(headerCount);
+        for (int i = 0; i < headerCount; i++) {
+            headers.add(new Header(in.readUTF(), in.readUTF()));
+        }
+        int variantCount = in.readInt();
+        List<Header> variant = new ArrayList<>(variantCount);
+        for (int i = 0; i < variantCount; i++) {
+            variant.add(new Header(in.readUTF(), in.readUTF()));
+        }
+        long storedAtMillis = in.readLong();
+        long maxAgeMillis = in.readLong();
+        boolean noCache = in.readBoolean();
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return new CachedResponse(statusCode, statusLine, contentType, headers, variant, body,
+                storedAtMillis, maxAgeMillis, noCache);
+    }
+
+    private static long freshnessMillis(CacheControl cacheControl, Headers headers) {
+        if (cacheControl.maxAgeSeconds < 0) {
+            return 0;
+        }
+        long ageSeconds = 0;
+        if (headers.hasHeaderWithName("Age")) {
+            try {
+                ageSeconds = Long.parseLong(headers.getValue("Age").trim());
+            } catch (NumberFormatException e) {
+                ageSeconds = 0;
+            }
+        }
+        return Math.max(0, cacheControl.maxAgeSeconds - ageSeconds) * 1000;
+    }
+
+    /**
+     * The {@code Cache-Control} directives a private client cache acts on.
+     */
+    private static final class CacheControl {
+
+        private long maxAgeSeconds = -1;
+        private boolean noStore;
+        private boolean noCache;
+
+        static CacheControl parse(String value) {
+            CacheControl cacheControl = new CacheControl();
+            if (value == null) {
+                return cacheControl;
+            }
+            for (String directive : value.split(",")) {
+                String normalized = directive.trim().toLowerCase(Locale.ROOT);
+                if (normalized.equals("no-store")) {
+                    cacheControl.noStore = true;
+                } else if (normalized.equals("no-cache")) {
+                    cacheControl.noCache = true;
+                } else if (normalized.startsWith("max-age=")) {
+                    try {
+                        cacheControl.maxAgeSeconds = Long.parseLong(normalized.substring(8).replace("\"", ""));
+                    } catch (NumberFormatException e) {
+                        // an unparseable lifetime means stale, which is the safe reading
+                        cacheControl.maxAgeSeconds = 0;
+                    }
+                }
+            }
+            return cacheControl;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.rickandmorty.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A time budget for everything a test sends from its own thread. {@code BaseTest} starts one per
+ * test method; {@link TailLatencyFilter} stops retrying when the budget would run out and refuses
+ * new requests once it has. Requests sent from other threads only get the per-call deadline, unless
+ * the filter sends them on the test thread's behalf.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final String name;
+    private final long budgetMillis;
+    private final long expiresAt;
+
+    private Deadline(String name, long budgetMillis) {
+        this.name = name;
+        this.budgetMillis = budgetMillis;
+        this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    /**
+     * Starts a budget for the current thread, replacing any it had.
+     */
+    public static Deadline start(String name, long budgetMillis) {
+        Deadline deadline = new Deadline(name, budgetMillis);
+        CURRENT.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * Hands {@code deadline} to the current thread, one working on behalf of the thread that owns it.
+     */
+    static void resume(Deadline deadline) {
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return the current thread's budget, or null if it has none
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return expiresAt - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} at which the budget runs out
+     */
+    long expiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + budgetMillis + " ms budget)";
+    }
+}
@@ -0,0 +1,237 @@
+package com.rickandmorty.http;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decodes a response body as it is read, according to its {@code Content-Encoding}
+ * ({@code gzip}, {@code deflate} or none), and counts the bytes on each side: what came over the
+ * wire and what the reader got. Nothing is buffered beyond the inflater's window, so a parser can
+ * read straight from it.
+ *
+ * <p>{@code deflate} is meant to be zlib-wrapped, but some servers send a raw deflate stream;
+ * both are accepted; an empty body is accepted for either coding. The completion listener runs
+ * once, when the body is read to the end or the stream is closed, whichever comes first.
+ *
+ * <p>A decoder stops at its trailer, which may leave bytes (or just the end of a chunked body)
+ * unread on the connection. Once the decoded body ends, the wire stream is therefore read to its
+ * end too, so a pooled connection that is released on end of stream is released.
+ */
+public final class DecodingInputStream extends FilterInputStream {
+
+    /** What the suite's clients advertise in {@code Accept-Encoding}. */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final CountingInputStream wire;
+    private final String encoding;
+    private final Inflater inflater;
+    private long decodedBytes;
+    private Consumer<DecodingInputStream> listener;
+    private boolean completed;
+
+    private DecodingInputStream(InputStream decoded, CountingInputStream wire, String encoding, Inflater inflater) {
+        super(decoded);
+        this.wire = wire;
+        this.encoding = encoding;
+        this.inflater = inflater;
+    }
+
+    /**
+     * @param contentEncoding the response's {@code Content-Encoding}, null or empty for none
+     * @throws IOException if the coding is not supported or the gzip header is broken
+     */
+    public static DecodingInputStream open(InputStream body, String contentEncoding) throws IOException {
+        String encoding = contentEncoding == null ? "identity" : contentEncoding.trim().toLowerCase(Locale.ROOT);
+        CountingInputStream wire = new CountingInputStream(body);
+        switch (encoding) {
+            case "":
+            case "identity":
+                return new DecodingInputStream(wire, wire, "identity", null);
+            case "gzip":
+            case "x-gzip":
+                try {
+                    return new DecodingInputStream(new GZIPInputStream(wire, BUFFER_SIZE), wire, "gzip", null);
+                } catch (EOFException e) {
+                    // an empty body, as sent with some error statuses
+                    return new DecodingInputStream(InputStream.nullInputStream(), wire, "gzip", null);
+                }
+            case "deflate":
+                PushbackInputStream peek = new PushbackInputStream(wire, 2);
+                int first = peek.read();
+                if (first < 0) {
+                    return new DecodingInputStream(InputStream.nullInputStream(), wire, "deflate", null);
+                }
+                peek.unread(first);
+                Inflater inflater = new Inflater(!zlibHeader(peek));
+                return new DecodingInputStream(new InflaterInputStream(peek, inflater, BUFFER_SIZE), wire, "deflate", inflater);
+            default:
+                throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+        }
+    }
+
+    /**
+     * Peeks at the first two bytes of a non-empty body: a zlib header names deflate with a window
+     * of at most 32 KiB and makes the pair a multiple of 31.
+     */
+    private static boolean zlibHeader(PushbackInputStream in) throws IOException {
+        int first = in.read();
+        int second = in.read();
+        if (second >= 0) {
+            in.unread(second);
+        }
+        in.unread(first);
+        return second >= 0 && (first & 0x0F) == 8 && (first >> 4) <= 7 && ((first << 8) | second) % 31 == 0;
+    }
+
+    /**
+     * @param listener called once with this stream when the body has been read or the stream closed
+     */
+    public DecodingInputStream onComplete(Consumer<DecodingInputStream> listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            drainWire();
+            complete();
+        } else {
+            decodedBytes++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = in.read(buffer, offset, length);
+        if (read < 0) {
+            drainWire();
+            complete();
+        } else {
+            decodedBytes += read;
+        }
+        return read;
+    }
+
+    /**
+     * Reads what the decoder left after its trailer; for an identity body the wire is already at its end.
+     */
+    private void drainWire() throws IOException {
+        if (completed || !isCompressed()) {
+            return;
+        }
+        byte[] rest = new byte[512];
+        while (wire.read(rest, 0, rest.length) >= 0) {
+            // counted as wire bytes, discarded
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        decodedBytes += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+            complete();
+        }
+    }
+
+    private void complete() {
+        if (!completed) {
+            completed = true;
+            if (listener != null) {
+                listener.accept(this);
+            }
+        }
+    }
+
+    /**
+     * @return {@code gzip}, {@code deflate} or {@code identity}
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public boolean isCompressed() {
+        return !"identity".equals(encoding);
+    }
+
+    /**
+     * @return bytes read from the connection so far, including what the decoder buffered ahead
+     */
+    public long getWireBytes() {
+        return wire.count;
+    }
+
+    /**
+     * @return decoded bytes handed to the reader so far
+     */
+    public long getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = in.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
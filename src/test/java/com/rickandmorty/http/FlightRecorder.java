@@ -0,0 +1,335 @@
+package com.rickandmorty.http;
+
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.http.Header;
+import io.restassured.http.Headers;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Failure-only request logging. Every exchange is kept, unformatted, in a ring buffer bounded both
+ * by count and by bytes. Nothing is written on the happy path. When a test fails, {@link #dump}
+ * takes that test's buffer and hands it to a background writer, which formats and prints it. The
+ * caller does not wait for the write.
+ *
+ * <p>{@link #begin} gives the test thread a fresh buffer, which threads it starts afterwards (the
+ * pool of an executor the test creates, say) share, so their exchanges are dumped or cleared with
+ * the test's. A thread started before that, outside any test, keeps a buffer of its own.
+ *
+ * <p>It runs first among the filters, so it sees exactly what the test saw, cache hits included.
+ */
+public class FlightRecorder implements OrderedFilter, AutoCloseable {
+
+    public static final int ORDER = 100;
+    public static final int DEFAULT_EXCHANGES = 20;
+    public static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    private final int maxExchanges;
+    private final long maxBytes;
+    private final PrintStream out;
+    private final InheritableThreadLocal<Ring> rings;
+    private final ExecutorService writer;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+    private final LongAdder dumps = new LongAdder();
+
+    /**
+     * @param maxExchanges exchanges kept per thread
+     * @param maxBytes     bodies, URI and headers kept per thread; older exchanges are dropped
+     *                     first, and a single exchange larger than this keeps only the head of its body
+     * @param out          where dumps are written
+     */
+    public FlightRecorder(int maxExchanges, long maxBytes, PrintStream out) {
+        this.maxExchanges = maxExchanges;
+        this.maxBytes = maxBytes;
+        this.out = out;
+        this.rings = new InheritableThreadLocal<>() {
+            @Override
+            protected Ring initialValue() {
+                return new Ring();
+            }
+        };
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "flight-recorder-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads {@code log.flight.exchanges} and {@code log.flight.maxBytes}; dumps go to stdout.
+     */
+    public static FlightRecorder fromSystemProperties() {
+        return new FlightRecorder(Integer.getInteger("log.flight.exchanges", DEFAULT_EXCHANGES),
+                Long.getLong("log.flight.maxBytes", DEFAULT_MAX_BYTES), System.out);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        long started = System.nanoTime();
+        Response response = null;
+        RuntimeException failure = null;
+        try {
+            response = ctx.next(requestSpec, responseSpec);
+            return response;
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            record(new Exchange(System.currentTimeMillis(), System.nanoTime() - started, requestSpec, response, failure));
+        }
+    }
+
+    /**
+     * Gives the calling thread, typically a test's, a new empty buffer that the threads it starts
+     * from now on record into as well.
+     */
+    public void begin() {
+        rings.set(new Ring());
+    }
+
+    /**
+     * @return exchanges currently buffered for the calling thread
+     */
+    public int size() {
+        Ring ring = rings.get();
+        synchronized (ring) {
+            return ring.exchanges.size();
+        }
+    }
+
+    /**
+     * @return bytes currently buffered for the calling thread
+     */
+    public long bufferedBytes() {
+        Ring ring = rings.get();
+        synchronized (ring) {
+            return ring.bytes;
+        }
+    }
+
+    /**
+     * Forgets the calling thread's exchanges, e.g. after a test passed.
+     */
+    public void clear() {
+        Ring ring = rings.get();
+        synchronized (ring) {
+            ring.clear();
+        }
+    }
+
+    /**
+     * Hands the calling thread's exchanges to the writer and empties its buffer.
+     *
+     * @param title heading of the dump, typically the failed test
+     * @param cause the failure, printed under the heading; may be null
+     * @return completes once the dump is written
+     */
+    public Future<?> dump(String title, Throwable cause) {
+        Ring ring = rings.get();
+        List<Exchange> exchanges;
+        synchronized (ring) {
+            exchanges = new ArrayList<>(ring.exchanges);
+            ring.clear();
+        }
+        dumps.increment();
+        return writer.submit(() -> out.print(format(title, cause, exchanges)));
+    }
+
+    /**
+     * Waits for pending dumps to be written.
+     */
+    public void flush() throws InterruptedException {
+        try {
+            writer.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Flight recorder writer failed", e.getCause());
+        }
+    }
+
+    public long getRecorded() {
+        return recorded.sum();
+    }
+
+    public long getDumps() {
+        return dumps.sum();
+    }
+
+    public String summary() {
+        return String.format("%d exchanges recorded, %d dropped from full buffers, %d bodies truncated, %d dumps "
+                        + "(last %d exchanges / %d KiB per thread)", recorded.sum(), evicted.sum(), truncated.sum(),
+                dumps.sum(), maxExchanges, maxBytes / 1024);
+    }
+
+    /**
+     * Writes pending dumps, then stops the writer.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private void record(Exchange exchange) {
+        recorded.increment();
+        if (exchange.weight > maxBytes) {
+            exchange.truncateTo(maxBytes);
+            truncated.increment();
+        }
+        Ring ring = rings.get();
+        synchronized (ring) {
+            ring.exchanges.addLast(exchange);
+            ring.bytes += exchange.weight;
+            while (ring.exchanges.size() > maxExchanges || ring.bytes > maxBytes) {
+                ring.bytes -= ring.exchanges.removeFirst().weight;
+                evicted.increment();
+            }
+        }
+    }
+
+    private static String format(String title, Throwable cause, List<Exchange> exchanges) {
+        StringWriter text = new StringWriter();
+        PrintWriter printer = new PrintWriter(text);
+        printer.println("==== Flight recorder: " + title + " (last " + exchanges.size() + " exchanges) ====");
+        if (cause != null) {
+            printer.println(cause);
+        }
+        for (int i = 0; i < exchanges.size(); i++) {
+            printer.println("---- #" + (i + 1) + " ----");
+            exchanges.get(i).format(printer);
+        }
+        printer.println("==== end of flight recorder: " + title + " ====");
+        printer.flush();
+        return text.toString();
+    }
+
+    /**
+     * Guarded by its own monitor: the threads a test starts share its ring.
+     */
+    private static final class Ring {
+
+        final ArrayDeque<Exchange> exchanges = new ArrayDeque<>();
+        long bytes;
+
+        void clear() {
+            exchanges.clear();
+            bytes = 0;
+        }
+    }
+
+    /**
+     * References to what was sent and received; nothing is copied or formatted until a dump.
+     */
+    private static final class Exchange {
+
+        final long timestamp;
+        final long elapsedNanos;
+        final String method;
+        final String uri;
+        final Headers requestHeaders;
+        final Object requestBody;
+        final String statusLine;
+        final Headers responseHeaders;
+        final RuntimeException failure;
+        byte[] responseBody;
+        int omittedBytes;
+        long weight;
+
+        Exchange(long timestamp, long elapsedNanos, FilterableRequestSpecification request, Response response,
+                 RuntimeException failure) {
+            this.timestamp = timestamp;
+            this.elapsedNanos = elapsedNanos;
+            this.method = request.getMethod();
+            this.uri = request.getURI();
+            this.requestHeaders = request.getHeaders();
+            this.requestBody = request.getBody();
+            this.statusLine = response == null ? null : response.getStatusLine();
+            this.responseHeaders = response == null ? null : response.getHeaders();
+            this.responseBody = response == null ? null : response.asByteArray();
+            this.failure = failure;
+            this.weight = uri.length() + headerBytes(requestHeaders) + headerBytes(responseHeaders)
+                    + (responseBody == null ? 0 : responseBody.length)
+                    + (requestBody instanceof byte[] ? ((byte[]) requestBody).length
+                    : requestBody instanceof String ? ((String) requestBody).length() : 0);
+        }
+
+        void truncateTo(long maxBytes) {
+            if (responseBody == null) {
+                return;
+            }
+            long keep = Math.max(0, maxBytes - (weight - responseBody.length));
+            omittedBytes = responseBody.length - (int) keep;
+            responseBody = Arrays.copyOf(responseBody, (int) keep);
+            weight -= omittedBytes;
+        }
+
+        void format(PrintWriter printer) {
+            printer.println(Instant.ofEpochMilli(timestamp) + " " + method + " " + uri
+                    + String.format(" (%.1f ms)", elapsedNanos / 1e6));
+            printHeaders(printer, requestHeaders);
+            if (requestBody != null) {
+                printer.println();
+                printer.println(requestBody instanceof byte[]
+                        ? new String((byte[]) requestBody, StandardCharsets.UTF_8) : requestBody);
+            }
+            printer.println();
+            if (failure != null) {
+                printer.println("<no response> " + failure);
+                return;
+            }
+            printer.println(statusLine);
+            printHeaders(printer, responseHeaders);
+            if (responseBody != null && responseBody.length > 0) {
+                printer.println();
+                printer.println(new String(responseBody, StandardCharsets.UTF_8));
+            }
+            if (omittedBytes > 0) {
+                printer.println("... " + omittedBytes + " more bytes not kept");
+            }
+        }
+
+        private static void printHeaders(PrintWriter printer, Headers headers) {
+            if (headers != null) {
+                for (Header header : headers) {
+                    printer.println(header.getName() + ": " + header.getValue());
+                }
+            }
+        }
+
+        private static long headerBytes(Headers headers) {
+            long bytes = 0;
+            if (headers != null) {
+                for (Header header : headers) {
+                    bytes += header.getName().length() + header.getValue().length() + 4;
+                }
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.rickandmorty.http;
+
+import io.restassured.builder.ResponseBuilder;
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.http.Header;
+import io.restassured.http.Headers;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Terminal filter that sends the request with a shared {@code java.net.http} client instead of
+ * RestAssured's own transport, and hands the result back as a regular RestAssured {@link Response}.
+ * It runs last so every other filter still sees the exchange. {@code java.net.http} never decodes
+ * bodies itself, so compressed ones go through a {@link DecodingInputStream} as they arrive. The
+ * request's deadline, if any, caps the timeout, and aborting the attempt cancels the exchange.
+ *
+ * <p>{@code java.net.http} has no bound on its pool, so the pool's bounds are kept here instead: a
+ * request waits, within its timeout, until fewer than {@code maxPerRoute} exchanges with its host
+ * and {@code maxTotal} in all are open, and the slot is freed once the body has been read. Over
+ * HTTP/1.1 that caps the connections opened; over HTTP/2 it caps the streams on the shared one.
+ */
+class JdkHttpTransportFilter implements OrderedFilter {
+
+    /** Headers {@code java.net.http} manages itself and refuses to accept from callers. */
+    private static final Set<String> RESTRICTED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        RESTRICTED_HEADERS.addAll(Arrays.asList("connection", "content-length", "expect", "host", "upgrade"));
+    }
+
+    private final HttpClient client;
+    private final int readTimeoutMillis;
+    private final TransportStats stats;
+    private final boolean compression;
+    private final int maxPerRoute;
+    private final int maxTotal;
+    private final Semaphore total;
+    private final Map<String, Semaphore> routes = new ConcurrentHashMap<>();
+
+    JdkHttpTransportFilter(TransportConfig config, TransportStats stats) {
+        this.stats = stats;
+        this.compression = config.isCompression();
+        this.readTimeoutMillis = config.getReadTimeoutMillis();
+        this.maxPerRoute = config.getMaxPerRoute();
+        this.maxTotal = config.getMaxTotal();
+        this.total = new Semaphore(maxTotal, true);
+        this.client = HttpClient.newBuilder()
+                .version(config.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(config.getConnectTimeoutMillis()))
+                .sslContext(PooledTransport.sslContext(config))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    @Override
+    public int getOrder() {
+        return LOWEST_PRECEDENCE;
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        Object body = requestSpec.getBody();
+        HttpRequest.BodyPublisher publisher = body == null ? HttpRequest.BodyPublishers.noBody()
+                : body instanceof byte[] ? HttpRequest.BodyPublishers.ofByteArray((byte[]) body)
+                : HttpRequest.BodyPublishers.ofString(body.toString());
+        RequestTimings timings = RequestTimings.current();
+        URI uri = URI.create(requestSpec.getURI());
+        int timeoutMillis = timings.timeoutMillis(readTimeoutMillis);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .method(requestSpec.getMethod(), publisher);
+        for (Header header : requestSpec.getHeaders()) {
+            if (!RESTRICTED_HEADERS.contains(header.getName())) {
+                request.header(header.getName(), header.getValue());
+            }
+        }
+        if (compression && !requestSpec.getHeaders().hasHeaderWithName("Accept-Encoding")) {
+            request.header("Accept-Encoding", DecodingInputStream.ACCEPT_ENCODING);
+        }
+
+        HttpResponse<InputStream> response;
+        byte[] decoded;
+        boolean compressed;
+        try {
+            Runnable release = connection(uri, timeoutMillis);
+            try {
+                // the handler is picked once the headers are in, on one of the client's threads
+                long[] headersAt = new long[1];
+                CompletableFuture<HttpResponse<InputStream>> sent = client.sendAsync(request.build(), info -> {
+                    headersAt[0] = System.nanoTime();
+                    return HttpResponse.BodySubscribers.ofInputStream();
+                });
+                timings.onAbort(() -> sent.cancel(true));
+                try {
+                    response = sent.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                            : new IOException("Request to " + requestSpec.getURI() + " failed", e.getCause());
+                } catch (InterruptedException e) {
+                    sent.cancel(true);
+                    throw e;
+                }
+                InputStream stream = response.body();
+                timings.onAbort(() -> {
+                    try {
+                        stream.close();
+                    } catch (IOException ignored) {
+                        // the reader fails on its own
+                    }
+                });
+                timings.firstByteAt = headersAt[0];
+                try (DecodingInputStream in = DecodingInputStream.open(stream,
+                        response.headers().firstValue("Content-Encoding").orElse(null))) {
+                    in.onComplete(read -> {
+                        stats.record(read);
+                        if (timings.bodyListener != null) {
+                            timings.bodyListener.accept(read);
+                        }
+                    });
+                    decoded = in.readAllBytes();
+                    compressed = in.isCompressed();
+                }
+            } finally {
+                release.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Request to " + requestSpec.getURI() + " failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + requestSpec.getURI(), e);
+        }
+        stats.requests.increment();
+        if (response.version() == HttpClient.Version.HTTP_2) {
+            stats.http2Responses.increment();
+        }
+        return toRestAssured(response, decoded, compressed);
+    }
+
+    /**
+     * Waits, within {@code timeoutMillis}, for a free slot under both pool bounds.
+     *
+     * @return what frees the slot
+     */
+    private Runnable connection(URI uri, int timeoutMillis) throws IOException, InterruptedException {
+        Semaphore route = routes.computeIfAbsent(uri.getScheme() + "://" + uri.getAuthority(),
+                key -> new Semaphore(maxPerRoute, true));
+        long giveUpAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        if (!route.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new IOException("No connection to " + uri.getAuthority() + " free within " + timeoutMillis
+                    + " ms, all " + maxPerRoute + " for the host are busy");
+        }
+        if (!total.tryAcquire(Math.max(0, giveUpAt - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+            route.release();
+            throw new IOException("No connection free within " + timeoutMillis + " ms, all " + maxTotal + " are busy");
+        }
+        return () -> {
+            total.release();
+            route.release();
+        };
+    }
+
+    private static Response toRestAssured(HttpResponse<?> response, byte[] body, boolean compressed) {
+        List<Header> headers = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : response.headers().map().entrySet()) {
+            if (compressed && (entry.getKey().equalsIgnoreCase("Content-Encoding")
+                    || entry.getKey().equalsIgnoreCase("Content-Length"))) {
+                continue;
+            }
+            for (String value : entry.getValue()) {
+                headers.add(new Header(entry.getKey(), value));
+            }
+        }
+        String protocol = response.version() == HttpClient.Version.HTTP_2 ? "HTTP/2" : "HTTP/1.1";
+        return new ResponseBuilder()
+                .setStatusCode(response.statusCode())
+                .setStatusLine(protocol + " " + response.statusCode())
+                .setHeaders(new Headers(headers))
+                .setContentType(response.headers().firstValue("Content-Type").orElse(""))
+                .setBody(body)
+                .build();
+    }
+}
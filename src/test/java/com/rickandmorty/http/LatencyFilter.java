@@ -0,0 +1,460 @@
+package com.rickandmorty.http;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency of every request that reaches the network, grouped by endpoint template
+ * ({@code /character/{id}}, {@code /character/{ids}}, {@code /character?filter}, {@code /character?page}).
+ * Next to the total it keeps DNS lookup, connect (TCP and TLS) and time to the response headers,
+ * as filled in by {@link PooledTransport}; the {@code java.net.http} backend only reports the latter.
+ * It also adds up the response body bytes on the wire and after decoding, to show what compression saves.
+ *
+ * <p>Each template has wait-free HDR {@link Recorder}s, so recording is safe from any number of
+ * threads and costs one small key string per request. Latency objectives ({@link LatencySlo}) are
+ * checked against the whole run.
+ */
+public class LatencyFilter implements OrderedFilter {
+
+    /** Inside {@link ResponseCache}, so responses served from the cache are not counted. */
+    public static final int ORDER = ResponseCache.ORDER + 100;
+
+    private static final double[] REPORTED_PERCENTILES = {50, 90, 95, 99, 99.9};
+
+    private final ConcurrentMap<String, EndpointLatency> endpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        String template = template(requestSpec.getURI(), requestSpec.getBaseUri(), requestSpec.getBasePath());
+        EndpointLatency endpoint = endpoints.computeIfAbsent(template, key -> new EndpointLatency());
+        RequestTimings timings = RequestTimings.begin();
+        timings.bodyListener = endpoint::recordBody;
+        long started = System.nanoTime();
+        Response response = null;
+        try {
+            response = ctx.next(requestSpec, responseSpec);
+            return response;
+        } finally {
+            endpoint.record(System.nanoTime() - started, timings, started, response == null || response.getStatusCode() >= 500);
+        }
+    }
+
+    /**
+     * @return latencies so far per template, sorted by template
+     */
+    public Map<String, Snapshot> snapshot() {
+        Map<String, Snapshot> snapshot = new TreeMap<>();
+        endpoints.forEach((template, endpoint) -> snapshot.put(template, endpoint.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * @return one message per objective missed; an objective naming a template that saw no
+     * requests counts as missed, since it most likely has a typo
+     */
+    public List<String> violations(List<LatencySlo> slos) {
+        List<String> violations = new ArrayList<>();
+        for (Evaluation evaluation : evaluate(slos, snapshot())) {
+            if (!evaluation.passed()) {
+                violations.add(evaluation.toString());
+            }
+        }
+        return violations;
+    }
+
+    public String summary() {
+        StringBuilder summary = new StringBuilder(String.format("%-22s %7s %6s %8s %8s %8s %8s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "p50 ms", "p95 ms", "p99 ms", "max ms", "ttfb p50", "connects",
+                "wire KiB", "body KiB"));
+        snapshot().forEach((template, latency) -> summary.append(String.format(
+                "%-22s %7d %6d %8.2f %8.2f %8.2f %8.2f %9.2f %9d %9.1f %9.1f%n", template, latency.getCount(),
+                latency.getErrors(), latency.millis(latency.total, 50), latency.millis(latency.total, 95),
+                latency.millis(latency.total, 99), latency.total.getMaxValue() / 1000.0, latency.millis(latency.ttfb, 50),
+                latency.connect.getTotalCount(), latency.getWireBytes() / 1024.0, latency.getDecodedBytes() / 1024.0)));
+        return summary.toString();
+    }
+
+    /**
+     * Writes every template's percentiles (milliseconds) and the objectives' outcome as JSON.
+     */
+    public void writeReport(Path file, List<LatencySlo> slos) throws IOException {
+        Map<String, Snapshot> snapshot = snapshot();
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             JsonGenerator json = new JsonFactory().createGenerator(writer).useDefaultPrettyPrinter()) {
+            json.writeStartObject();
+            json.writeNumberField("requests", snapshot.values().stream().mapToLong(Snapshot::getCount).sum());
+            json.writeArrayFieldStart("slos");
+            for (Evaluation evaluation : evaluate(slos, snapshot)) {
+                json.writeStartObject();
+                json.writeStringField("objective", evaluation.slo.toString());
+                json.writeStringField("template", evaluation.template);
+                json.writeNumberField("percentile", evaluation.slo.getPercentile());
+                json.writeNumberField("thresholdMs", evaluation.slo.getThresholdMillis());
+                if (evaluation.actualMillis >= 0) {
+                    json.writeNumberField("actualMs", evaluation.actualMillis);
+                } else {
+                    json.writeNullField("actualMs");
+                }
+                json.writeBooleanField("passed", evaluation.passed());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeObjectFieldStart("endpoints");
+            for (Map.Entry<String, Snapshot> entry : snapshot.entrySet()) {
+                Snapshot latency = entry.getValue();
+                json.writeObjectFieldStart(entry.getKey());
+                json.writeNumberField("count", latency.getCount());
+                json.writeNumberField("errors", latency.getErrors());
+                json.writeNumberField("wireBytes", latency.getWireBytes());
+                json.writeNumberField("decodedBytes", latency.getDecodedBytes());
+                writeHistogram(json, "total", latency.total);
+                writeHistogram(json, "dns", latency.dns);
+                writeHistogram(json, "connect", latency.connect);
+                writeHistogram(json, "ttfb", latency.ttfb);
+                json.writeEndObject();
+            }
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+    }
+
+    private static void writeHistogram(JsonGenerator json, String name, Histogram histogram) throws IOException {
+        json.writeObjectFieldStart(name);
+        json.writeNumberField("count", histogram.getTotalCount());
+        if (histogram.getTotalCount() > 0) {
+            json.writeNumberField("meanMs", round(histogram.getMean() / 1000.0));
+            for (double percentile : REPORTED_PERCENTILES) {
+                json.writeNumberField("p" + percentileLabel(percentile) + "Ms",
+                        round(histogram.getValueAtPercentile(percentile) / 1000.0));
+            }
+            json.writeNumberField("maxMs", round(histogram.getMaxValue() / 1000.0));
+        }
+        json.writeEndObject();
+    }
+
+    private static List<Evaluation> evaluate(List<LatencySlo> slos, Map<String, Snapshot> snapshot) {
+        List<Evaluation> evaluations = new ArrayList<>();
+        for (LatencySlo slo : slos) {
+            if (!LatencySlo.WILDCARD.equals(slo.getTemplate()) && !snapshot.containsKey(slo.getTemplate())) {
+                evaluations.add(new Evaluation(slo, slo.getTemplate(), -1));
+                continue;
+            }
+            snapshot.forEach((template, latency) -> {
+                if (slo.appliesTo(template)) {
+                    evaluations.add(new Evaluation(slo, template, latency.millis(latency.total, slo.getPercentile())));
+                }
+            });
+        }
+        return evaluations;
+    }
+
+    /**
+     * Reduces a request URI to its endpoint template: the path below the base URI with numeric
+     * segments replaced by {@code {id}} or {@code {ids}}, and the query reduced to {@code ?page}
+     * when it only pages or {@code ?filter} otherwise. Works on indexes into {@code uri}.
+     */
+    static String template(String uri, String baseUri, String basePath) {
+        int authority = uri.indexOf("://");
+        int pathStart = uri.indexOf('/', authority < 0 ? 0 : authority + 3);
+        int queryStart = uri.indexOf('?');
+        int pathEnd = queryStart < 0 ? uri.length() : queryStart;
+        if (pathStart < 0 || pathStart > pathEnd) {
+            pathStart = pathEnd;
+        }
+        pathStart = skipPrefix(uri, pathStart, pathEnd, baseUri, basePathStart(baseUri));
+        pathStart = skipPrefix(uri, pathStart, pathEnd, basePath, 0);
+
+        StringBuilder template = new StringBuilder(32);
+        boolean resource = true;
+        for (int segment = pathStart; segment < pathEnd; ) {
+            int end = uri.indexOf('/', segment);
+            if (end < 0 || end > pathEnd) {
+                end = pathEnd;
+            }
+            if (end > segment) {
+                template.append('/');
+                if (resource) {
+                    template.append(uri, segment, end);
+                    resource = false;
+                } else {
+                    appendSegment(template, uri, segment, end);
+                }
+            }
+            segment = end + 1;
+        }
+        if (template.length() == 0) {
+            template.append('/');
+        }
+
+        if (queryStart >= 0) {
+            boolean paging = false;
+            boolean filtering = false;
+            for (int param = queryStart + 1; param < uri.length(); ) {
+                int end = uri.indexOf('&', param);
+                if (end < 0) {
+                    end = uri.length();
+                }
+                int nameEnd = uri.indexOf('=', param);
+                if (nameEnd < 0 || nameEnd > end) {
+                    nameEnd = end;
+                }
+                if (nameEnd > param) {
+                    if (nameEnd - param == 4 && uri.startsWith("page", param)) {
+                        paging = true;
+                    } else {
+                        filtering = true;
+                    }
+                }
+                param = end + 1;
+            }
+            template.append(filtering ? "?filter" : paging ? "?page" : "");
+        }
+        return template.toString();
+    }
+
+    private static int basePathStart(String baseUri) {
+        if (baseUri == null) {
+            return -1;
+        }
+        int authority = baseUri.indexOf("://");
+        return baseUri.indexOf('/', authority < 0 ? 0 : authority + 3);
+    }
+
+    /**
+     * @return the index after {@code prefix[from..]} if the path starts with it, else {@code pathStart}
+     */
+    private static int skipPrefix(String uri, int pathStart, int pathEnd, String prefix, int from) {
+        if (prefix == null || from < 0) {
+            return pathStart;
+        }
+        int length = prefix.length() - from;
+        while (length > 0 && prefix.charAt(from + length - 1) == '/') {
+            length--;
+        }
+        if (length > 0 && pathStart + length <= pathEnd && uri.regionMatches(pathStart, prefix, from, length)
+                && (pathStart + length == pathEnd || uri.charAt(pathStart + length) == '/')) {
+            return pathStart + length;
+        }
+        return pathStart;
+    }
+
+    private static void appendSegment(StringBuilder template, String uri, int start, int end) {
+        boolean digits = false;
+        boolean list = false;
+        for (int i = start; i < end; i++) {
+            char c = uri.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+            } else if (c == ',' || c == '[' || c == ']') {
+                list = true;
+            } else if (c == '%' && i + 2 < end && isEncodedListCharacter(uri.charAt(i + 1), uri.charAt(i + 2))) {
+                // RestAssured sends /character/1,2,3 as /character/1%2C2%2C3
+                list = true;
+                i += 2;
+            } else {
+                template.append(uri, start, end);
+                return;
+            }
+        }
+        template.append(list ? "{ids}" : digits ? "{id}" : "");
+    }
+
+    /**
+     * @return whether {@code %hi lo} encodes {@code ,}, {@code [} or {@code ]}
+     */
+    private static boolean isEncodedListCharacter(char hi, char lo) {
+        char upper = Character.toUpperCase(lo);
+        return hi == '2' && upper == 'C' || hi == '5' && (upper == 'B' || upper == 'D');
+    }
+
+    static String percentileLabel(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    static String millis(double millis) {
+        return millis == Math.rint(millis) ? String.valueOf((long) millis) : String.valueOf(millis);
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 1000) / 1000.0;
+    }
+
+    private static final class EndpointLatency {
+
+        private final Recorder total = new Recorder(3);
+        private final Recorder dns = new Recorder(3);
+        private final Recorder connect = new Recorder(3);
+        private final Recorder ttfb = new Recorder(3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder wireBytes = new LongAdder();
+        private final LongAdder decodedBytes = new LongAdder();
+
+        private Histogram totalSoFar;
+        private Histogram dnsSoFar;
+        private Histogram connectSoFar;
+        private Histogram ttfbSoFar;
+
+        void record(long elapsedNanos, RequestTimings timings, long started, boolean error) {
+            total.recordValue(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+            if (timings.connectionsOpened > 0) {
+                dns.recordValue(TimeUnit.NANOSECONDS.toMicros(timings.dnsNanos));
+                connect.recordValue(TimeUnit.NANOSECONDS.toMicros(timings.connectNanos));
+            }
+            if (timings.firstByteAt > started) {
+                ttfb.recordValue(TimeUnit.NANOSECONDS.toMicros(timings.firstByteAt - started));
+            }
+            if (error) {
+                errors.increment();
+            }
+        }
+
+        void recordBody(DecodingInputStream body) {
+            wireBytes.add(body.getWireBytes());
+            decodedBytes.add(body.getDecodedBytes());
+        }
+
+        synchronized Snapshot snapshot() {
+            totalSoFar = accumulate(total, totalSoFar);
+            dnsSoFar = accumulate(dns, dnsSoFar);
+            connectSoFar = accumulate(connect, connectSoFar);
+            ttfbSoFar = accumulate(ttfb, ttfbSoFar);
+            return new Snapshot(totalSoFar.copy(), dnsSoFar.copy(), connectSoFar.copy(), ttfbSoFar.copy(), errors.sum(),
+                    wireBytes.sum(), decodedBytes.sum());
+        }
+
+        private static Histogram accumulate(Recorder recorder, Histogram soFar) {
+            Histogram interval = recorder.getIntervalHistogram();
+            if (soFar == null) {
+                return interval;
+            }
+            soFar.add(interval);
+            return soFar;
+        }
+    }
+
+    /**
+     * Latencies of one template in microseconds; {@code dns} and {@code connect} only hold
+     * requests that opened a connection.
+     */
+    public static final class Snapshot {
+
+        private final Histogram total;
+        private final Histogram dns;
+        private final Histogram connect;
+        private final Histogram ttfb;
+        private final long errors;
+        private final long wireBytes;
+        private final long decodedBytes;
+
+        Snapshot(Histogram total, Histogram dns, Histogram connect, Histogram ttfb, long errors, long wireBytes,
+                 long decodedBytes) {
+            this.total = total;
+            this.dns = dns;
+            this.connect = connect;
+            this.ttfb = ttfb;
+            this.errors = errors;
+            this.wireBytes = wireBytes;
+            this.decodedBytes = decodedBytes;
+        }
+
+        public long getCount() {
+            return total.getTotalCount();
+        }
+
+        /**
+         * @return requests that failed or answered with a 5xx status
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return response body bytes read from the connections, before decoding
+         */
+        public long getWireBytes() {
+            return wireBytes;
+        }
+
+        /**
+         * @return response body bytes after decoding
+         */
+        public long getDecodedBytes() {
+            return decodedBytes;
+        }
+
+        public Histogram getTotal() {
+            return total;
+        }
+
+        public Histogram getDns() {
+            return dns;
+        }
+
+        public Histogram getConnect() {
+            return connect;
+        }
+
+        public Histogram getTtfb() {
+            return ttfb;
+        }
+
+        public double millis(Histogram histogram, double percentile) {
+            return histogram.getTotalCount() == 0 ? 0 : histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+
+    private static final class Evaluation {
+
+        final LatencySlo slo;
+        final String template;
+        final double actualMillis;
+
+        Evaluation(LatencySlo slo, String template, double actualMillis) {
+            this.slo = slo;
+            this.template = template;
+            this.actualMillis = actualMillis;
+        }
+
+        boolean passed() {
+            return actualMillis >= 0 && actualMillis < slo.getThresholdMillis();
+        }
+
+        @Override
+        public String toString() {
+            String objective = "p" + percentileLabel(slo.getPercentile()) + " of " + template + " < "
+                    + millis(slo.getThresholdMillis()) + " ms";
+            return actualMillis < 0 ? objective + ": no requests recorded"
+                    : String.format("%s: was %.2f ms", objective, actualMillis);
+        }
+    }
+}
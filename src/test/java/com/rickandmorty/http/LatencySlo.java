@@ -0,0 +1,81 @@
+package com.rickandmorty.http;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A latency objective for one endpoint template, written {@code /character/{id}:p95<300}: the
+ * 95th percentile of {@code /character/{id}} stays under 300 ms. The template {@code *} applies
+ * the objective to every template on its own.
+ */
+public final class LatencySlo {
+
+    public static final String WILDCARD = "*";
+
+    private final String template;
+    private final double percentile;
+    private final double thresholdMillis;
+
+    public LatencySlo(String template, double percentile, double thresholdMillis) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be in (0, 100]: " + percentile);
+        }
+        this.template = template;
+        this.percentile = percentile;
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    /**
+     * @param spec comma-separated objectives, e.g. {@code *:p99<2000,/character/{id}:p95<300}
+     */
+    public static List<LatencySlo> parseAll(String spec) {
+        List<LatencySlo> slos = new ArrayList<>();
+        if (spec == null || spec.trim().isEmpty()) {
+            return slos;
+        }
+        for (String entry : spec.split(",")) {
+            slos.add(parse(entry.trim()));
+        }
+        return slos;
+    }
+
+    public static LatencySlo parse(String objective) {
+        int colon = objective.lastIndexOf(":p");
+        int less = objective.indexOf('<', colon);
+        if (colon <= 0 || less < 0) {
+            throw new IllegalArgumentException("Latency objective '" + objective
+                    + "' should look like /character/{id}:p95<300");
+        }
+        String threshold = objective.substring(less + 1).trim();
+        if (threshold.endsWith("ms")) {
+            threshold = threshold.substring(0, threshold.length() - 2);
+        }
+        try {
+            return new LatencySlo(objective.substring(0, colon).trim(),
+                    Double.parseDouble(objective.substring(colon + 2, less).trim()), Double.parseDouble(threshold));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Latency objective '" + objective + "' has a malformed number", e);
+        }
+    }
+
+    public boolean appliesTo(String endpointTemplate) {
+        return WILDCARD.equals(template) || template.equals(endpointTemplate);
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public double getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    @Override
+    public String toString() {
+        return template + ":p" + LatencyFilter.percentileLabel(percentile) + "<" + LatencyFilter.millis(thresholdMillis);
+    }
+}
@@ -0,0 +1,381 @@
+package com.rickandmorty.http;
+
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.config.DecoderConfig;
+import io.restassured.config.HttpClientConfig;
+import io.restassured.config.RestAssuredConfig;
+import org.apache.http.Header;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.NoConnectionReuseStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.DefaultedHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import javax.net.ssl.SSLContext;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * One warm connection pool shared by every request built from the suite's {@code requestSpec}.
+ *
+ * <p>The {@code apache} backend hands RestAssured a single pooled client (RestAssured otherwise
+ * builds a new client, and therefore a new connection, per request). The {@code jdk} backend
+ * replaces RestAssured's transport with a {@code java.net.http} client through
+ * {@link JdkHttpTransportFilter}, which can multiplex requests over HTTP/2.
+ *
+ * <p>With {@link TransportConfig#isCompression()} both ask for {@code gzip} or {@code deflate} and
+ * decode the body while it is read through a {@link DecodingInputStream}, in place of
+ * RestAssured's own decoders, so the bytes on the wire and after decoding are counted in
+ * {@link TransportStats} and, per endpoint, by {@link LatencyFilter}.
+ *
+ * <p>Both cap their connect and read timeouts by the request's deadline, when
+ * {@link TailLatencyFilter} set one, and let a hedged attempt that lost be stopped by closing its
+ * connection.
+ */
+@SuppressWarnings("deprecation")
+public class PooledTransport implements Closeable {
+
+    /** How often idle and expired pooled connections are closed. */
+    private static final long EVICTION_INTERVAL_MILLIS = 1_000;
+    /** Context attribute: whether the connection can be reused, judged before a decoded body loses its length. */
+    private static final String WIRE_REUSABLE = "rickandmorty.wireReusable";
+
+    private final TransportConfig config;
+    private final TransportStats stats;
+    private final DefaultHttpClient apacheClient;
+    private final JdkHttpTransportFilter jdkFilter;
+    private final ScheduledExecutorService evictor;
+
+    private PooledTransport(TransportConfig config) {
+        this.config = config;
+        if (config.getBackend() == TransportConfig.Backend.JDK) {
+            this.stats = new TransportStats(false);
+            this.apacheClient = null;
+            this.jdkFilter = new JdkHttpTransportFilter(config, stats);
+            this.evictor = null;
+        } else {
+            this.stats = new TransportStats(true);
+            this.apacheClient = apacheClient(config, stats);
+            this.jdkFilter = null;
+            this.evictor = config.isKeepAlive() ? evictor(apacheClient.getConnectionManager(), config) : null;
+        }
+    }
+
+    public static PooledTransport create(TransportConfig config) {
+        return new PooledTransport(config);
+    }
+
+    /**
+     * Installs the transport on a request spec: the pooled client through {@code config},
+     * or the {@code java.net.http} filter.
+     */
+    public RequestSpecBuilder install(RequestSpecBuilder builder, RestAssuredConfig config) {
+        if (jdkFilter != null) {
+            return builder.setConfig(config).addFilter(jdkFilter);
+        }
+        return builder.setConfig(config
+                .decoderConfig(DecoderConfig.decoderConfig().noContentDecoders())
+                .httpClient(HttpClientConfig.httpClientConfig()
+                        .reuseHttpClientInstance()
+                        .httpClientFactory(() -> apacheClient)));
+    }
+
+    public TransportConfig getConfig() {
+        return config;
+    }
+
+    public TransportStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return open connections waiting in the pool, or -1 for the {@code jdk} backend
+     */
+    public int getIdleConnections() {
+        if (apacheClient == null) {
+            return -1;
+        }
+        return ((PoolingClientConnectionManager) apacheClient.getConnectionManager()).getTotalStats().getAvailable();
+    }
+
+    @Override
+    public void close() {
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        if (apacheClient != null) {
+            apacheClient.getConnectionManager().shutdown();
+        }
+    }
+
+    private static DefaultHttpClient apacheClient(TransportConfig config, TransportStats stats) {
+        SchemeRegistry registry = new SchemeRegistry();
+        registry.register(new Scheme("http", 80, PlainSocketFactory.getSocketFactory()));
+        registry.register(new Scheme("https", 443, new CountingSslSocketFactory(sslContext(config), stats)));
+
+        PoolingClientConnectionManager manager = new PoolingClientConnectionManager(
+                registry, config.getKeepAliveMillis(), TimeUnit.MILLISECONDS) {
+            @Override
+            protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schemes) {
+                return new DefaultClientConnectionOperator(schemes) {
+                    @Override
+                    public void openConnection(OperatedClientConnection connection, HttpHost target,
+                                               InetAddress local, HttpContext context, HttpParams params)
+                            throws IOException {
+                        stats.connectionsOpened.increment();
+                        RequestTimings timings = RequestTimings.current();
+                        long started = System.nanoTime();
+                        long dnsBefore = timings.dnsNanos;
+                        HttpParams bounded = params;
+                        if (timings.deadlineAt != 0) {
+                            HttpParams timeout = new BasicHttpParams();
+                            HttpConnectionParams.setConnectionTimeout(timeout,
+                                    timings.timeoutMillis(config.getConnectTimeoutMillis()));
+                            bounded = new DefaultedHttpParams(timeout, params);
+                        }
+                        try {
+                            super.openConnection(connection, target, local, context, bounded);
+                        } finally {
+                            // TCP connect plus TLS handshake, without the name lookup done inside
+                            timings.connectNanos += System.nanoTime() - started - (timings.dnsNanos - dnsBefore);
+                            timings.connectionsOpened++;
+                        }
+                    }
+
+                    @Override
+                    protected InetAddress[] resolveHostname(String host) throws UnknownHostException {
+                        long started = System.nanoTime();
+                        try {
+                            return super.resolveHostname(host);
+                        } finally {
+                            RequestTimings.current().dnsNanos += System.nanoTime() - started;
+                        }
+                    }
+                };
+            }
+        };
+        manager.setDefaultMaxPerRoute(config.getMaxPerRoute());
+        manager.setMaxTotal(config.getMaxTotal());
+
+        DefaultHttpClient client = new DefaultHttpClient(manager) {
+            @Override
+            protected HttpRequestExecutor createRequestExecutor() {
+                return new HttpRequestExecutor() {
+                    @Override
+                    public HttpResponse execute(HttpRequest request, HttpClientConnection connection,
+                                                HttpContext context) throws IOException, HttpException {
+                        RequestTimings timings = RequestTimings.current();
+                        // set on every request: a pooled connection keeps the last one's timeout
+                        connection.setSocketTimeout(timings.timeoutMillis(config.getReadTimeoutMillis()));
+                        timings.onAbort(() -> {
+                            try {
+                                connection.shutdown();
+                            } catch (IOException ignored) {
+                                // the attempt fails on its own socket either way
+                            }
+                        });
+                        return super.execute(request, connection, context);
+                    }
+
+                    @Override
+                    protected HttpResponse doReceiveResponse(HttpRequest request, HttpClientConnection connection,
+                                                             HttpContext context) throws HttpException, IOException {
+                        HttpResponse response = super.doReceiveResponse(request, connection, context);
+                        RequestTimings.current().firstByte();
+                        return response;
+                    }
+                };
+            }
+        };
+        // an aborted or failed attempt is not sent again behind the filters' back; retries are TailLatencyFilter's
+        client.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+        HttpParams params = client.getParams();
+        HttpConnectionParams.setConnectionTimeout(params, config.getConnectTimeoutMillis());
+        HttpConnectionParams.setSoTimeout(params, config.getReadTimeoutMillis());
+        HttpConnectionParams.setTcpNoDelay(params, true);
+        if (config.isKeepAlive()) {
+            client.setReuseStrategy((response, context) -> {
+                Object wire = context.removeAttribute(WIRE_REUSABLE);
+                return wire != null ? (Boolean) wire : DefaultConnectionReuseStrategy.INSTANCE.keepAlive(response, context);
+            });
+            client.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+                @Override
+                public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                    // the server's Keep-Alive: timeout=, never longer than configured
+                    long advertised = super.getKeepAliveDuration(response, context);
+                    return advertised < 0 ? config.getKeepAliveMillis() : Math.min(advertised, config.getKeepAliveMillis());
+                }
+            });
+        } else {
+            client.setReuseStrategy(new NoConnectionReuseStrategy());
+        }
+        client.addRequestInterceptor((request, context) -> {
+            stats.requests.increment();
+            if (config.isCompression() && !request.containsHeader("Accept-Encoding")) {
+                request.addHeader("Accept-Encoding", DecodingInputStream.ACCEPT_ENCODING);
+            }
+        });
+        client.addResponseInterceptor((response, context) -> {
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return;
+            }
+            response.setEntity(new DecodingEntity(entity, stats, RequestTimings.current().bodyListener));
+            if (entity.getContentEncoding() != null) {
+                // reuse depends on how the body is framed on the wire, so decide it before its length goes
+                context.setAttribute(WIRE_REUSABLE, DefaultConnectionReuseStrategy.INSTANCE.keepAlive(response, context));
+                // the lengths describe the encoded body, which nobody downstream sees
+                response.removeHeaders("Content-Encoding");
+                response.removeHeaders("Content-Length");
+                response.removeHeaders("Content-MD5");
+            }
+        });
+        return client;
+    }
+
+    /**
+     * Closes pooled connections past their keep-alive, and any idle for longer than the
+     * configured keep-alive, so the pool does not hand out sockets the server already dropped.
+     */
+    private static ScheduledExecutorService evictor(ClientConnectionManager manager, TransportConfig config) {
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.min(EVICTION_INTERVAL_MILLIS, Math.max(1, config.getKeepAliveMillis() / 2));
+        evictor.scheduleWithFixedDelay(() -> {
+            manager.closeExpiredConnections();
+            manager.closeIdleConnections(config.getKeepAliveMillis(), TimeUnit.MILLISECONDS);
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        return evictor;
+    }
+
+    static SSLContext sslContext(TransportConfig config) {
+        try {
+            return config.getSslContext() != null ? config.getSslContext() : SSLContext.getDefault();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No default SSLContext available", e);
+        }
+    }
+
+    /**
+     * Hands out the body decoded as it is read, and records its size on both sides once it has
+     * been read or closed. RestAssured reads it lazily, so that can be after the request returned
+     * and on another thread; the listener is captured up front for that reason.
+     */
+    private static final class DecodingEntity extends HttpEntityWrapper {
+
+        private final TransportStats stats;
+        private final Consumer<DecodingInputStream> listener;
+        private DecodingInputStream content;
+
+        DecodingEntity(HttpEntity wrapped, TransportStats stats, Consumer<DecodingInputStream> listener) {
+            super(wrapped);
+            this.stats = stats;
+            this.listener = listener;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            if (content == null) {
+                Header encoding = wrappedEntity.getContentEncoding();
+                content = DecodingInputStream.open(wrappedEntity.getContent(), encoding == null ? null : encoding.getValue())
+                        .onComplete(body -> {
+                            stats.record(body);
+                            if (listener != null) {
+                                listener.accept(body);
+                            }
+                        });
+            }
+            return content;
+        }
+
+        @Override
+        public Header getContentEncoding() {
+            return null;
+        }
+
+        @Override
+        public long getContentLength() {
+            return wrappedEntity.getContentEncoding() == null ? wrappedEntity.getContentLength() : -1;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try (InputStream in = getContent()) {
+                in.transferTo(out);
+            }
+        }
+    }
+
+    /**
+     * Counts completed TLS handshakes; a pooled connection only handshakes once. Both methods
+     * return once the handshake is done and the host name verified, so the count is up to date
+     * when the request is sent (a {@code HandshakeCompletedListener} may be called later, on
+     * another thread).
+     */
+    private static class CountingSslSocketFactory extends SSLSocketFactory {
+
+        private final TransportStats stats;
+
+        CountingSslSocketFactory(SSLContext sslContext, TransportStats stats) {
+            super(sslContext, SSLSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER);
+            this.stats = stats;
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remote,
+                                    InetSocketAddress local, HttpContext context) throws IOException {
+            Socket connected = super.connectSocket(connectTimeout, socket, host, remote, local, context);
+            stats.tlsHandshakes.increment();
+            return connected;
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String host, int port, HttpParams params) throws IOException {
+            // through a proxy tunnel, which connectSocket does not see
+            Socket layered = super.createLayeredSocket(socket, host, port, params);
+            stats.tlsHandshakes.increment();
+            return layered;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.rickandmorty.http;
+
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records exchanges into a {@link ReplayArchive}, or answers from one without touching the network.
+ * Requests are keyed by method, path below the base URI and query string, so an archive recorded
+ * against one server replays under any base URI.
+ *
+ * <p>In replay mode a request missing from the archive fails with an {@link AssertionError}; every
+ * miss is also kept for the end-of-run report. {@link #fromSystemProperties} reads {@code replay.mode}
+ * ({@code off}, {@code record} or {@code replay}) and {@code replay.archive}.
+ */
+public class RecordReplayFilter implements OrderedFilter {
+
+    /** Closest to the transport, so recording sees exactly what the network answered. */
+    public static final int ORDER = LatencyFilter.ORDER + 100;
+    public static final String DEFAULT_ARCHIVE = "target/replay/api.replay";
+
+    public enum Mode {
+        OFF, RECORD, REPLAY
+    }
+
+    private final Mode mode;
+    private final Path file;
+    private final ReplayArchive.Writer writer;
+    private final ReplayArchive archive;
+    private final Set<String> misses = new ConcurrentSkipListSet<>();
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+
+    private RecordReplayFilter(Mode mode, Path file, ReplayArchive.Writer writer, ReplayArchive archive) {
+        this.mode = mode;
+        this.file = file;
+        this.writer = writer;
+        this.archive = archive;
+    }
+
+    /**
+     * @param baseUrl written to the archive; replayed bodies link to it
+     * @param file    written by {@link #save()}
+     */
+    public static RecordReplayFilter recording(String baseUrl, Path file) {
+        return new RecordReplayFilter(Mode.RECORD, file, new ReplayArchive.Writer(baseUrl), null);
+    }
+
+    public static RecordReplayFilter replaying(ReplayArchive archive) {
+        return new RecordReplayFilter(Mode.REPLAY, archive.getFile(), null, archive);
+    }
+
+    public static Mode modeFromSystemProperties() {
+        String mode = System.getProperty("replay.mode", "off");
+        try {
+            return Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("replay.mode must be off, record or replay, not '" + mode + "'", e);
+        }
+    }
+
+    public static Path archiveFromSystemProperties() {
+        return Paths.get(System.getProperty("replay.archive", DEFAULT_ARCHIVE));
+    }
+
+    /**
+     * @param baseUrl target of the run when recording; ignored when replaying
+     * @return the filter selected by {@code replay.mode}, or null when it is {@code off}
+     */
+    public static RecordReplayFilter fromSystemProperties(String baseUrl) {
+        switch (modeFromSystemProperties()) {
+            case RECORD:
+                return recording(baseUrl, archiveFromSystemProperties());
+            case REPLAY:
+                return replaying(ReplayArchive.open(archiveFromSystemProperties()));
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        String key = key(requestSpec.getMethod(), requestSpec.getURI(), requestSpec.getBaseUri(),
+                requestSpec.getBasePath());
+        if (mode == Mode.REPLAY) {
+            Response response = archive.lookup(key);
+            if (response == null) {
+                misses.add(key);
+                throw new AssertionError("Not in replay archive " + file + ": " + key);
+            }
+            replayed.increment();
+            return response;
+        }
+        Response response = ctx.next(requestSpec, responseSpec);
+        writer.add(key, response);
+        recorded.increment();
+        return response;
+    }
+
+    /**
+     * Writes the recorded exchanges to the archive file; does nothing when replaying.
+     *
+     * @return the archive size in bytes, or 0 when replaying
+     */
+    public long save() {
+        return writer == null ? 0 : writer.writeTo(file);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return the archive being replayed, or null when recording
+     */
+    public ReplayArchive getArchive() {
+        return archive;
+    }
+
+    /**
+     * @return requests that were not in the archive, sorted
+     */
+    public List<String> getMisses() {
+        return new ArrayList<>(misses);
+    }
+
+    public String summary() {
+        if (mode == Mode.RECORD) {
+            return recorded.sum() + " exchanges recorded, " + writer.size() + " distinct, into " + file;
+        }
+        return replayed.sum() + " responses replayed from " + archive.size() + " archived in " + file
+                + ", " + misses.size() + " missed" + (misses.isEmpty() ? "" : ": " + new TreeSet<>(misses));
+    }
+
+    /**
+     * @return e.g. {@code GET /character?page=2}: the method, then the URI without scheme, authority,
+     * the base URI's path and the base path
+     */
+    static String key(String method, String uri, String baseUri, String basePath) {
+        int authority = uri.indexOf("://");
+        int pathStart = authority < 0 ? 0 : uri.indexOf('/', authority + 3);
+        String path = pathStart < 0 ? "/" : uri.substring(pathStart);
+        path = stripPrefix(path, pathOf(baseUri));
+        path = stripPrefix(path, basePath);
+        return method.toUpperCase(Locale.ROOT) + " " + (path.isEmpty() ? "/" : path);
+    }
+
+    private static String pathOf(String baseUri) {
+        if (baseUri == null) {
+            return null;
+        }
+        int authority = baseUri.indexOf("://");
+        int pathStart = authority < 0 ? 0 : baseUri.indexOf('/', authority + 3);
+        return pathStart < 0 ? null : baseUri.substring(pathStart);
+    }
+
+    private static String stripPrefix(String path, String prefix) {
+        if (prefix == null) {
+            return path;
+        }
+        String trimmed = prefix.endsWith("/") ? prefix.substring(0, prefix.length() - 1) : prefix;
+        if (!trimmed.isEmpty() && path.startsWith(trimmed)
+                && (path.length() == trimmed.length() || path.charAt(trimmed.length()) == '/'
+                || path.charAt(trimmed.length()) == '?')) {
+            return path.substring(trimmed.length());
+        }
+        return path;
+    }
+}
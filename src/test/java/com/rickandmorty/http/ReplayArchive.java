@@ -0,0 +1,271 @@
+package com.rickandmorty.http;
+
+import io.restassured.builder.ResponseBuilder;
+import io.restassured.http.Header;
+import io.restassured.http.Headers;
+import io.restassured.response.Response;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Recorded responses in one file: a header with the recorded base URL, an index of request keys
+ * ({@code GET /character?page=2}) to offsets, then one record per response with its status,
+ * headers and deflated body.
+ *
+ * <p>{@link #open(Path)} maps the file once and reads only the index; a lookup inflates the body
+ * straight from the mapped pages, so replaying opens no file and no socket. An open archive is
+ * read-only and safe to share between threads.
+ */
+public final class ReplayArchive {
+
+    private static final int MAGIC = 0x524d5241; // "RMRA"
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path file;
+    private final String baseUrl;
+    private final MappedByteBuffer data;
+    private final Map<String, Integer> index;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    private ReplayArchive(Path file, String baseUrl, MappedByteBuffer data, Map<String, Integer> index) {
+        this.file = file;
+        this.baseUrl = baseUrl;
+        this.data = data;
+        this.index = index;
+    }
+
+    public static ReplayArchive open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Replay archive " + file + " is larger than 2 GiB");
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.getInt() != MAGIC || data.getInt() != FORMAT_VERSION) {
+                throw new IllegalArgumentException(file + " is not a replay archive of this version");
+            }
+            String baseUrl = readString(data);
+            int entries = data.getInt();
+            Map<String, Integer> index = new HashMap<>(entries * 2);
+            for (int i = 0; i < entries; i++) {
+                String key = readString(data);
+                index.put(key, data.getInt());
+            }
+            return new ReplayArchive(file, baseUrl, data, index);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open replay archive " + file, e);
+        }
+    }
+
+    /**
+     * @return the base URL the responses were recorded against; their bodies link to it
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public boolean contains(String key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * @return the recorded response, or null when the archive has none for {@code key}
+     */
+    public Response lookup(String key) {
+        Integer offset = index.get(key);
+        if (offset == null) {
+            return null;
+        }
+        ByteBuffer record = data.duplicate();
+        record.position(offset);
+        int statusCode = record.getInt();
+        String statusLine = readString(record);
+        String contentType = readString(record);
+        int headerCount = record.getInt();
+        List<Header> headers = new ArrayList<>(headerCount);
+        for (int i = 0; i < headerCount; i++) {
+            Header header = new Header(readString(record), readString(record));
+            // set below through the builder, which adds the header itself
+            if (contentType.isEmpty() || !header.getName().equalsIgnoreCase("Content-Type")) {
+                headers.add(header);
+            }
+        }
+        byte[] body = new byte[record.getInt()];
+        int compressedLength = record.getInt();
+        record.limit(record.position() + compressedLength);
+
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(record);
+        try {
+            int read = 0;
+            while (read < body.length) {
+                int n = inflater.inflate(body, read, body.length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalStateException("Replay archive " + file + " has a truncated body for " + key);
+                }
+                read += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Replay archive " + file + " has a corrupt body for " + key, e);
+        }
+
+        ResponseBuilder builder = new ResponseBuilder()
+                .setStatusCode(statusCode)
+                .setStatusLine(statusLine)
+                .setHeaders(new Headers(headers))
+                .setBody(body);
+        if (!contentType.isEmpty()) {
+            builder.setContentType(contentType);
+        }
+        return builder.build();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Collects responses while recording; safe to feed from several threads. The last response
+     * recorded for a key is kept, unless it is a {@code 5xx} and an earlier one was not: the
+     * recorder sits inside the tail-latency filter, so it sees the attempts that failed before a
+     * retry or a hedge succeeded.
+     */
+    public static final class Writer {
+
+        private final String baseUrl;
+        private final ConcurrentSkipListMap<String, byte[]> records = new ConcurrentSkipListMap<>();
+
+        public Writer(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        public void add(String key, Response response) {
+            records.merge(key, encode(response),
+                    (kept, latest) -> isServerError(latest) && !isServerError(kept) ? kept : latest);
+        }
+
+        private static boolean isServerError(byte[] record) {
+            // an encoded record starts with its status
+            return ByteBuffer.wrap(record).getInt() >= 500;
+        }
+
+        public int size() {
+            return records.size();
+        }
+
+        /**
+         * Writes the archive in key order, so the same exchanges always give the same file.
+         * The file is replaced atomically.
+         *
+         * @return the archive size in bytes
+         */
+        public long writeTo(Path target) {
+            try {
+                Path parent = target.toAbsolutePath().getParent();
+                Files.createDirectories(parent);
+                Map<String, byte[]> snapshot = new TreeMap<>(records);
+                ByteArrayOutputStream header = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(header);
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeString(out, baseUrl);
+                out.writeInt(snapshot.size());
+                int indexSize = 0;
+                for (String key : snapshot.keySet()) {
+                    indexSize += 2 + key.getBytes(StandardCharsets.UTF_8).length + 4;
+                }
+                int offset = header.size() + indexSize;
+                for (Map.Entry<String, byte[]> record : snapshot.entrySet()) {
+                    writeString(out, record.getKey());
+                    out.writeInt(offset);
+                    offset += record.getValue().length;
+                }
+
+                Path temp = Files.createTempFile(parent, "replay-", ".tmp");
+                try (DataOutputStream file = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    header.writeTo(file);
+                    for (byte[] record : snapshot.values()) {
+                        file.write(record);
+                    }
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return Files.size(target);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write replay archive " + target, e);
+            }
+        }
+
+        private static byte[] encode(Response response) {
+            byte[] body = response.asByteArray();
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try {
+                ByteArrayOutputStream record = new ByteArrayOutputStream(64 + body.length / 4);
+                DataOutputStream out = new DataOutputStream(record);
+                out.writeInt(response.statusCode());
+                writeString(out, response.statusLine());
+                writeString(out, response.contentType() == null ? "" : response.contentType());
+                List<Header> headers = response.getHeaders().asList();
+                out.writeInt(headers.size());
+                for (Header header : headers) {
+                    writeString(out, header.getName());
+                    writeString(out, header.getValue());
+                }
+                deflater.setInput(body);
+                deflater.finish();
+                byte[] buffer = new byte[8192];
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 16);
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+                out.writeInt(body.length);
+                out.writeInt(compressed.size());
+                compressed.writeTo(out);
+                return record.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                deflater.end();
+            }
+        }
+
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF) {
+                throw new IllegalArgumentException("String too long for a replay archive: " + value.length() + " chars");
+            }
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+    }
+}
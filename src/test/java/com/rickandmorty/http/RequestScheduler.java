@@ -0,0 +1,355 @@
+package com.rickandmorty.http;
+
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Schedules requests per host so a throttling server is slowed down for rather than failed against.
+ * Each host gets an {@link AdaptiveLimit} on requests in flight, learnt from latency and overload
+ * responses, and optionally a {@link TokenBucket} on the request rate. A {@code 429}, {@code 502},
+ * {@code 503} or {@code 504} halves the limit, blocks the host for its {@code Retry-After} (or a short
+ * jittered backoff) and sends the request again, up to {@code maxRetries} times. {@code Retry-After} is
+ * capped at {@code maxRetryAfter}, so a server asking for an hour does not stall the suite for one.
+ * The token is taken only once a slot is granted, so a rejected request does not use up the rate.
+ * A request that cannot be sent within the queue timeout, whether it waits on a blocked host, a slot
+ * or a token, is rejected at once with an {@link IllegalStateException} rather than after the wait.
+ *
+ * <p>On a thread with a {@link Deadline}, no wait may outlast the budget either: a retry that would
+ * is not made (the overload response is returned), and the timeout above is cut to what is left of
+ * the budget.
+ *
+ * <p>{@link #fromSystemProperties()} reads {@code scheduler.limit}, {@code scheduler.maxLimit},
+ * {@code scheduler.rate}, {@code scheduler.burst}, {@code scheduler.retries},
+ * {@code scheduler.queueTimeoutMs} and {@code scheduler.maxRetryAfterMs}.
+ */
+public class RequestScheduler implements OrderedFilter {
+
+    /** Inside the cache, so hits never wait; outside the latency filter, so each attempt is timed. */
+    public static final int ORDER = LatencyFilter.ORDER - 50;
+
+    private static final long BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double ratePerSecond;
+    private final int burst;
+    private final int maxRetries;
+    private final long queueTimeoutNanos;
+    private final long maxRetryAfterNanos;
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private RequestScheduler(Builder builder) {
+        this.initialLimit = builder.initialLimit;
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.ratePerSecond = builder.ratePerSecond;
+        this.burst = builder.burst > 0 ? builder.burst : Math.max(1, (int) Math.ceil(builder.ratePerSecond));
+        this.maxRetries = builder.maxRetries;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(builder.queueTimeoutMillis);
+        this.maxRetryAfterNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxRetryAfterMillis);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static RequestScheduler fromSystemProperties() {
+        Builder defaults = new Builder();
+        return builder()
+                .limits(Integer.getInteger("scheduler.limit", defaults.initialLimit), defaults.minLimit,
+                        Integer.getInteger("scheduler.maxLimit", defaults.maxLimit))
+                .rate(Double.parseDouble(System.getProperty("scheduler.rate", "0")), Integer.getInteger("scheduler.burst", 0))
+                .maxRetries(Integer.getInteger("scheduler.retries", defaults.maxRetries))
+                .queueTimeout(Long.getLong("scheduler.queueTimeoutMs", defaults.queueTimeoutMillis))
+                .maxRetryAfter(Long.getLong("scheduler.maxRetryAfterMs", defaults.maxRetryAfterMillis))
+                .build();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        requests.increment();
+        Host host = hosts.computeIfAbsent(hostOf(requestSpec.getURI()), this::newHost);
+        String template = LatencyFilter.template(requestSpec.getURI(), requestSpec.getBaseUri(), requestSpec.getBasePath());
+        RewindableChain chain = RewindableChain.take(ctx);
+        Deadline deadline = Deadline.current();
+        for (int attempt = 0; ; attempt++) {
+            long started = System.nanoTime();
+            long giveUpAt = deadline == null || started + queueTimeoutNanos - deadline.expiresAt() < 0
+                    ? started + queueTimeoutNanos : deadline.expiresAt();
+            String limitName = giveUpAt == started + queueTimeoutNanos ? "the queue timeout of "
+                    + TimeUnit.NANOSECONDS.toMillis(queueTimeoutNanos) + " ms" : "the budget of " + deadline;
+            long sentAt;
+            try {
+                if (!host.awaitRetryAfter(giveUpAt)) {
+                    rejected.increment();
+                    throw new IllegalStateException(host.name + " is blocked for another "
+                            + TimeUnit.NANOSECONDS.toMillis(host.blockedUntil.get() - started) + " ms, past " + limitName);
+                }
+                if (host.limit.acquire(giveUpAt - System.nanoTime()) < 0) {
+                    rejected.increment();
+                    throw new IllegalStateException("No request slot for " + host.name + " within "
+                            + limitName + " (" + host.limit + ")");
+                }
+                if (host.bucket != null && !host.bucket.acquire(giveUpAt - System.nanoTime())) {
+                    host.limit.abandon();
+                    rejected.increment();
+                    throw new IllegalStateException("No token for " + host.name + " due within " + limitName);
+                }
+                sentAt = System.nanoTime();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting to send to " + host.name, e);
+            }
+
+            Response response;
+            try {
+                response = chain.next(requestSpec, responseSpec);
+            } catch (RuntimeException | Error e) {
+                RequestTimings.Abort abort = RequestTimings.current().abort;
+                if (abort != null && abort.isAborted()) {
+                    host.limit.abandon();
+                } else {
+                    host.limit.release(sentAt, template, true);
+                }
+                throw e;
+            }
+            boolean overloaded = isOverloaded(response.statusCode());
+            host.limit.release(sentAt, template, overloaded);
+            if (!overloaded) {
+                return response;
+            }
+
+            throttled.increment();
+            long retryAfterNanos = Math.min(maxRetryAfterNanos, retryAfterNanos(response.getHeader("Retry-After")));
+            if (retryAfterNanos > 0) {
+                host.blockFor(retryAfterNanos);
+            }
+            if (attempt >= maxRetries || !chain.isRewindable()) {
+                return response;
+            }
+            if (retryAfterNanos <= 0) {
+                host.blockFor(backoffNanos(attempt));
+            }
+            if (deadline != null && host.blockedUntil.get() - deadline.expiresAt() > 0) {
+                // the wait alone would use up the budget: better the overload response than none
+                return response;
+            }
+            retries.increment();
+        }
+    }
+
+    /**
+     * @return the current concurrency limit for {@code host} ({@code localhost:8080}), or 0 if it was never called
+     */
+    public double getLimit(String host) {
+        Host state = hosts.get(host);
+        return state == null ? 0 : state.limit.getLimit();
+    }
+
+    /**
+     * @return requests waiting for a slot, over all hosts
+     */
+    public int getQueueDepth() {
+        return hosts.values().stream().mapToInt(host -> host.limit.getQueued()).sum();
+    }
+
+    public int getInFlight() {
+        return hosts.values().stream().mapToInt(host -> host.limit.getInFlight()).sum();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return responses that said the host was overloaded, retried or not
+     */
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * @return requests that gave up waiting for a slot, or for a host blocked past their budget
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public String summary() {
+        StringBuilder summary = new StringBuilder()
+                .append(requests.sum()).append(" requests, ")
+                .append(throttled.sum()).append(" throttled, ")
+                .append(retries.sum()).append(" retried, ")
+                .append(rejected.sum()).append(" rejected");
+        for (Map.Entry<String, Host> host : new TreeMap<>(hosts).entrySet()) {
+            summary.append("; ").append(host.getKey()).append(": ").append(host.getValue().limit);
+        }
+        return summary.toString();
+    }
+
+    private Host newHost(String name) {
+        return new Host(name, new AdaptiveLimit(initialLimit, minLimit, maxLimit, 2.0),
+                ratePerSecond > 0 ? new TokenBucket(ratePerSecond, burst) : null);
+    }
+
+    static boolean isOverloaded(int status) {
+        return status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * @return the wait asked for by a {@code Retry-After} header in seconds or as an HTTP date, 0 if none
+     */
+    static long retryAfterNanos(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return 0;
+        }
+        String value = retryAfter.trim();
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toNanos());
+            } catch (DateTimeParseException notADate) {
+                return 0;
+            }
+        }
+    }
+
+    private static long backoffNanos(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_NANOS, BACKOFF_NANOS << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private static String hostOf(String uri) {
+        URI parsed = URI.create(uri);
+        return parsed.getPort() < 0 ? parsed.getHost() : parsed.getHost() + ":" + parsed.getPort();
+    }
+
+    private static final class Host {
+
+        final String name;
+        final AdaptiveLimit limit;
+        final TokenBucket bucket;
+        final AtomicLong blockedUntil = new AtomicLong(System.nanoTime());
+
+        Host(String name, AdaptiveLimit limit, TokenBucket bucket) {
+            this.name = name;
+            this.limit = limit;
+            this.bucket = bucket;
+        }
+
+        void blockFor(long nanos) {
+            long until = System.nanoTime() + nanos;
+            blockedUntil.accumulateAndGet(until, (current, next) -> next - current > 0 ? next : current);
+        }
+
+        /**
+         * @return false, without waiting, if the host is blocked past {@code giveUpAt}, also when
+         * another response extends the block while waiting
+         */
+        boolean awaitRetryAfter(long giveUpAt) throws InterruptedException {
+            long until;
+            while ((until = blockedUntil.get()) - System.nanoTime() > 0) {
+                if (until - giveUpAt > 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.sleep(until - System.nanoTime());
+            }
+            return true;
+        }
+    }
+
+    public static class Builder {
+
+        private int initialLimit = 64;
+        private int minLimit = 1;
+        private int maxLimit = 256;
+        private double ratePerSecond;
+        private int burst;
+        private int maxRetries = 5;
+        private long queueTimeoutMillis = 30_000;
+        private long maxRetryAfterMillis = 30_000;
+
+        private Builder() {
+        }
+
+        /**
+         * Requests in flight per host: where the limit starts and the bounds it moves between.
+         */
+        public Builder limits(int initialLimit, int minLimit, int maxLimit) {
+            if (minLimit < 1 || maxLimit < minLimit) {
+                throw new IllegalArgumentException("Limits need 1 <= min <= max, got " + minLimit + ".." + maxLimit);
+            }
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * @param ratePerSecond requests per second per host, 0 for no pacing
+         * @param burst         requests sent back to back after an idle period; 0 for one second's worth
+         */
+        public Builder rate(double ratePerSecond, int burst) {
+            this.ratePerSecond = ratePerSecond;
+            this.burst = burst;
+            return this;
+        }
+
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public Builder queueTimeout(long millis) {
+            this.queueTimeoutMillis = millis;
+            return this;
+        }
+
+        /**
+         * @param millis the longest {@code Retry-After} honoured; longer ones are cut down to it
+         */
+        public Builder maxRetryAfter(long millis) {
+            this.maxRetryAfterMillis = millis;
+            return this;
+        }
+
+        public RequestScheduler build() {
+            return new RequestScheduler(this);
+        }
+    }
+}
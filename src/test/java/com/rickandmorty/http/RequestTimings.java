@@ -0,0 +1,131 @@
+package com.rickandmorty.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Phase timings of the request in flight on the current thread, filled in by the transports'
+ * hooks and read back by {@link LatencyFilter}. One instance per thread is reused for every
+ * request, so recording a request allocates nothing here.
+ */
+final class RequestTimings {
+
+    private static final ThreadLocal<RequestTimings> CURRENT = ThreadLocal.withInitial(RequestTimings::new);
+
+    long dnsNanos;
+    long connectNanos;
+    int connectionsOpened;
+    /** {@link System#nanoTime()} when the response headers arrived, 0 until then. */
+    long firstByteAt;
+    /**
+     * Told the body's size on the wire and decoded once it has been read, which may be long after the
+     * request returned; transports capture it on the request's thread.
+     */
+    Consumer<DecodingInputStream> bodyListener;
+    /** {@link System#nanoTime()} by which the request must be answered, 0 for none; transports cap their timeouts by it. */
+    long deadlineAt;
+    /** Set while the request is a hedged attempt, so the one that loses can be stopped. */
+    Abort abort;
+
+    private RequestTimings() {
+    }
+
+    static RequestTimings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return the current thread's timings, cleared for a new request
+     */
+    static RequestTimings begin() {
+        RequestTimings timings = CURRENT.get();
+        timings.dnsNanos = 0;
+        timings.connectNanos = 0;
+        timings.connectionsOpened = 0;
+        timings.firstByteAt = 0;
+        timings.bodyListener = null;
+        timings.deadlineAt = 0;
+        timings.abort = null;
+        return timings;
+    }
+
+    /**
+     * @return a detached copy, to carry timings recorded on another thread back to the caller's
+     */
+    RequestTimings copy() {
+        RequestTimings copy = new RequestTimings();
+        copyTo(copy);
+        return copy;
+    }
+
+    void copyTo(RequestTimings target) {
+        target.dnsNanos = dnsNanos;
+        target.connectNanos = connectNanos;
+        target.connectionsOpened = connectionsOpened;
+        target.firstByteAt = firstByteAt;
+    }
+
+    /**
+     * @param configuredMillis the transport's own timeout, 0 for none
+     * @return the timeout to use for this request: the configured one, or less if the deadline is sooner
+     */
+    int timeoutMillis(int configuredMillis) {
+        if (deadlineAt == 0) {
+            return configuredMillis;
+        }
+        // rounded up, and never 0, which sockets take to mean no timeout at all
+        long remaining = Math.max(1, (deadlineAt - System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1) - 1)
+                / TimeUnit.MILLISECONDS.toNanos(1));
+        return (int) (configuredMillis <= 0 ? remaining : Math.min(configuredMillis, remaining));
+    }
+
+    /**
+     * Registers how to stop the request on the wire, if it is an attempt that may be abandoned.
+     */
+    void onAbort(Runnable action) {
+        if (abort != null) {
+            abort.onAbort(action);
+        }
+    }
+
+    void firstByte() {
+        if (firstByteAt == 0) {
+            firstByteAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Stops an attempt that lost or ran out of time by closing its connection, so it does not stay on
+     * the wire after its caller gave up the slot it was sent in. Once the attempt is over, the
+     * transport's action is forgotten and aborting does nothing.
+     */
+    static final class Abort {
+
+        private Runnable action;
+        private boolean aborted;
+
+        synchronized void onAbort(Runnable action) {
+            if (aborted) {
+                action.run();
+            } else {
+                this.action = action;
+            }
+        }
+
+        synchronized void clear() {
+            action = null;
+        }
+
+        synchronized void abort() {
+            aborted = true;
+            if (action != null) {
+                action.run();
+                action = null;
+            }
+        }
+
+        synchronized boolean isAborted() {
+            return aborted;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.rickandmorty.http;
+
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side HTTP cache installed as a RestAssured filter. GET responses are stored by URL and
+ * served according to their headers: fresh entries ({@code Cache-Control: max-age}) are answered
+ * locally, stale ones are revalidated with {@code If-None-Match} / {@code If-Modified-Since} and a
+ * {@code 304} refreshes them without a body. {@code no-store} and non-200 responses are never kept.
+ * A response with {@code Vary} only answers requests sending the same values for the headers it
+ * names; one that differs is fetched as a miss and replaces the stored variant. {@code Vary: *}
+ * is never kept.
+ *
+ * <p>The memory tier is an LRU bounded by bytes. With a directory configured, every stored entry
+ * is also written there, so evicted entries and later runs are served from disk.
+ * {@link #fromSystemProperties()} reads {@code cache.maxBytes} (default 32 MiB) and {@code cache.dir}.
+ */
+public class ResponseCache implements OrderedFilter {
+
+    /** Runs ahead of the default filter order, so a hit skips everything closer to the network. */
+    public static final int ORDER = 400;
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private final long maxBytes;
+    private final Path directory;
+    private final LinkedHashMap<String, CachedResponse> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder replaced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes  bound on the memory tier
+     * @param directory disk tier, or null to keep entries in memory only
+     */
+    public ResponseCache(long maxBytes, Path directory) {
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not create cache directory " + directory, e);
+            }
+        }
+    }
+
+    public static ResponseCache fromSystemProperties() {
+        String directory = System.getProperty("cache.dir");
+        return new ResponseCache(Long.getLong("cache.maxBytes", DEFAULT_MAX_BYTES),
+                directory == null || directory.isEmpty() ? null : Paths.get(directory));
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        if (!"GET".equalsIgnoreCase(requestSpec.getMethod())) {
+            return ctx.next(requestSpec, responseSpec);
+        }
+        String key = requestSpec.getURI();
+        CachedResponse cached = get(key);
+        if (cached != null && !cached.matches(requestSpec.getHeaders())) {
+            cached = null;
+        }
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            hits.increment();
+            return cached.toResponse();
+        }
+        if (cached != null && cached.hasValidator()) {
+            String etag = cached.header("ETag");
+            if (etag != null) {
+                requestSpec.header("If-None-Match", etag);
+            } else {
+                requestSpec.header("If-Modified-Since", cached.header("Last-Modified"));
+            }
+        }
+
+        Response response = ctx.next(requestSpec, responseSpec);
+        long now = System.currentTimeMillis();
+        if (cached != null && response.statusCode() == 304) {
+            revalidations.increment();
+            CachedResponse refreshed = cached.revalidated(response, now);
+            put(key, refreshed);
+            return refreshed.toResponse();
+        }
+        if (cached != null) {
+            replaced.increment();
+        } else {
+            misses.increment();
+        }
+        CachedResponse entry = CachedResponse.of(response, requestSpec.getHeaders(), now);
+        if (entry != null) {
+            put(key, entry);
+        }
+        return response;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return hits served from the disk tier; these are also counted in {@link #getHits()} or,
+     * when the entry had gone stale, in {@link #getRevalidations()}
+     */
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return stale entries confirmed by a {@code 304 Not Modified}
+     */
+    public long getRevalidations() {
+        return revalidations.sum();
+    }
+
+    /**
+     * @return stale entries the server answered with a full {@code 200} while revalidating, because
+     * the resource had changed; these are not counted as misses
+     */
+    public long getReplaced() {
+        return replaced.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized int size() {
+        return memory.size();
+    }
+
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * Drops the memory tier; the disk tier, if any, is kept.
+     */
+    public synchronized void clear() {
+        memory.clear();
+        memoryBytes = 0;
+    }
+
+    public String summary() {
+        long lookups = hits.sum() + revalidations.sum() + replaced.sum() + misses.sum();
+        return hits.sum() + " hits, " + revalidations.sum() + " revalidated, " + replaced.sum() + " replaced, "
+                + misses.sum() + " misses"
+                + (lookups == 0 ? "" : String.format(" (%.1f%% served without a body)",
+                        100.0 * (hits.sum() + revalidations.sum()) / lookups))
+                + ", " + size() + " entries / " + getMemoryBytes() / 1024 + " KiB in memory"
+                + (evictions.sum() == 0 ? "" : ", " + evictions.sum() + " evicted")
+                + (directory == null ? "" : ", " + diskHits.sum() + " disk hits");
+    }
+
+    private CachedResponse get(String key) {
+        synchronized (this) {
+            CachedResponse entry = memory.get(key);
+            if (entry != null || directory == null) {
+                return entry;
+            }
+        }
+        CachedResponse entry = readDisk(key);
+        if (entry != null) {
+            diskHits.increment();
+            synchronized (this) {
+                putMemory(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    private void put(String key, CachedResponse entry) {
+        synchronized (this) {
+            putMemory(key, entry);
+        }
+        if (directory != null) {
+            writeDisk(key, entry);
+        }
+    }
+
+    private void putMemory(String key, CachedResponse entry) {
+        CachedResponse previous = memory.remove(key);
+        if (previous != null) {
+            memoryBytes -= previous.weight();
+        }
+        if (entry.weight() > maxBytes) {
+            return;
+        }
+        memory.put(key, entry);
+        memoryBytes += entry.weight();
+        Iterator<Map.Entry<String, CachedResponse>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > maxBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().getValue().weight();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private CachedResponse readDisk(String key) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file(key))))) {
+            return CachedResponse.readFrom(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // a torn or outdated entry is just a miss
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, CachedResponse entry) {
+        Path target = file(key);
+        try {
+            Path temp = Files.createTempFile(directory, "entry-", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                entry.writeTo(out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write cache entry " + target, e);
+        }
+    }
+
+    private Path file(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(64);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return directory.resolve(name.append(".entry").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.rickandmorty.http;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The part of a RestAssured filter chain after the calling filter. RestAssured's filter context
+ * walks the chain with a one-shot iterator; taking the filters that are left lets each attempt run
+ * them again from a fresh iterator. When the context is not RestAssured's own, the chain cannot be
+ * rewound and {@link #next} simply continues it once.
+ */
+final class RewindableChain {
+
+    private static final Field REMAINING_FILTERS = remainingFiltersField();
+
+    private final FilterContext ctx;
+    private final List<Filter> filters;
+
+    private RewindableChain(FilterContext ctx, List<Filter> filters) {
+        this.ctx = ctx;
+        this.filters = filters;
+    }
+
+    /**
+     * Takes the filters left in {@code ctx}; call it before the first {@link #next}.
+     */
+    @SuppressWarnings("unchecked")
+    static RewindableChain take(FilterContext ctx) {
+        if (REMAINING_FILTERS == null || !REMAINING_FILTERS.getDeclaringClass().isInstance(ctx)) {
+            return new RewindableChain(ctx, null);
+        }
+        try {
+            List<Filter> remaining = new ArrayList<>();
+            ((Iterator<Filter>) REMAINING_FILTERS.get(ctx)).forEachRemaining(remaining::add);
+            return new RewindableChain(ctx, remaining);
+        } catch (IllegalAccessException e) {
+            return new RewindableChain(ctx, null);
+        }
+    }
+
+    boolean isRewindable() {
+        return filters != null;
+    }
+
+    /**
+     * @return the filters after the calling one, empty when the chain cannot be rewound
+     */
+    List<Filter> filters() {
+        return filters == null ? Collections.emptyList() : Collections.unmodifiableList(filters);
+    }
+
+    /**
+     * Runs the rest of the chain from its start. Not thread-safe: one attempt at a time.
+     */
+    Response next(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec) {
+        if (filters != null) {
+            try {
+                REMAINING_FILTERS.set(ctx, filters.iterator());
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Could not rewind the filter chain", e);
+            }
+        }
+        return ctx.next(requestSpec, responseSpec);
+    }
+
+    private static Field remainingFiltersField() {
+        try {
+            Field field = Class.forName("io.restassured.internal.filter.FilterContextImpl").getDeclaredField("filters");
+            field.setAccessible(true);
+            return field;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.rickandmorty.http;
+
+import io.restassured.builder.ResponseBuilder;
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.http.Cookies;
+import io.restassured.http.Header;
+import io.restassured.http.Headers;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces identical GET requests that are in flight at the same time: the first caller (the
+ * leader) sends the request and every caller that asks for the same method, URL, query, headers
+ * and cookies before the answer arrives waits for it instead of sending its own. Each caller gets
+ * its own {@link Response} over a copy of the shared body (the leader keeps the one it received),
+ * so reading or extracting from one never affects another. A request that arrives after the
+ * answer starts a new exchange; nothing is cached.
+ *
+ * <p>If the leader fails (a timeout, a refused budget, a broken connection), the waiting callers
+ * do not inherit a failure that may be specific to the leader: they try again to join, so one of
+ * them leads a new exchange and the rest wait for that one. A waiting caller with a
+ * {@link Deadline} stops waiting when the budget runs out.
+ */
+public class SingleFlightFilter implements OrderedFilter {
+
+    /** Behind the cache, whose hits need no exchange, and ahead of the scheduler, so followers take no slot. */
+    public static final int ORDER = ResponseCache.ORDER + 25;
+
+    private final Map<String, CompletableFuture<SharedResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder exchanges = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        if (!"GET".equalsIgnoreCase(requestSpec.getMethod())) {
+            return ctx.next(requestSpec, responseSpec);
+        }
+        requests.increment();
+        String key = key(requestSpec);
+        CompletableFuture<SharedResponse> flight = new CompletableFuture<>();
+        boolean leaderFailed = false;
+        for (CompletableFuture<SharedResponse> leader; (leader = inFlight.putIfAbsent(key, flight)) != null; ) {
+            SharedResponse shared = await(leader, requestSpec);
+            if (shared != null) {
+                coalesced.increment();
+                return shared.toResponse();
+            }
+            // the failed leader has left inFlight, so the first of its followers back in leads the next exchange
+            leaderFailed = true;
+        }
+
+        if (leaderFailed) {
+            fallbacks.increment();
+        }
+        exchanges.increment();
+        Response response;
+        SharedResponse shared;
+        try {
+            response = ctx.next(requestSpec, responseSpec);
+            shared = SharedResponse.of(response);
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        // removed before completing, so a caller arriving from now on starts a fresh exchange
+        inFlight.remove(key, flight);
+        flight.complete(shared);
+        return response;
+    }
+
+    /**
+     * @return the leader's answer, or null if the leader failed
+     */
+    private static SharedResponse await(CompletableFuture<SharedResponse> leader,
+                                        FilterableRequestSpecification requestSpec) {
+        Deadline budget = Deadline.current();
+        try {
+            return budget == null ? leader.get() : leader.get(budget.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            return null;
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Budget of " + budget + " used up waiting for the in-flight "
+                    + requestSpec.getMethod() + " " + requestSpec.getURI());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an in-flight response", e);
+        }
+    }
+
+    static String key(FilterableRequestSpecification requestSpec) {
+        StringBuilder key = new StringBuilder(requestSpec.getMethod().toUpperCase(Locale.ROOT)).append(' ').append(requestSpec.getURI());
+        List<String> headers = new ArrayList<>();
+        for (Header header : requestSpec.getHeaders()) {
+            headers.add(header.getName().toLowerCase(Locale.ROOT) + ": " + header.getValue());
+        }
+        requestSpec.getCookies().forEach(cookie -> headers.add("cookie: " + cookie.getName() + "=" + cookie.getValue()));
+        // the order headers were added in does not change the request
+        headers.sort(null);
+        headers.forEach(header -> key.append('\n').append(header));
+        return key.toString();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return requests that went on down the chain, one per leader
+     */
+    public long getExchanges() {
+        return exchanges.sum();
+    }
+
+    /**
+     * @return requests answered with another caller's in-flight response
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return waiting callers that led a new exchange because their leader failed
+     */
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * @return requests being sent right now with callers able to join them
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public String summary() {
+        long total = requests.sum();
+        return total + " GETs, " + exchanges.sum() + " exchanges, " + coalesced.sum() + " coalesced"
+                + (total == 0 ? "" : String.format(" (%.1f%%)", 100.0 * coalesced.sum() / total))
+                + (fallbacks.sum() == 0 ? "" : ", " + fallbacks.sum() + " led again after the leader failed");
+    }
+
+    /**
+     * The parts of a response every caller needs, with the body read once.
+     */
+    private static final class SharedResponse {
+
+        private final int statusCode;
+        private final String statusLine;
+        private final String contentType;
+        private final Headers headers;
+        private final Cookies cookies;
+        private final byte[] body;
+
+        private SharedResponse(int statusCode, String statusLine, String contentType, Headers headers, Cookies cookies,
+                               byte[] body) {
+            this.statusCode = statusCode;
+            this.statusLine = statusLine;
+            this.contentType = contentType;
+            this.headers = headers;
+            this.cookies = cookies;
+            this.body = body;
+        }
+
+        /**
+         * Reads the body, which also keeps it readable for the leader.
+         */
+        static SharedResponse of(Response response) {
+            return new SharedResponse(response.statusCode(), response.statusLine(), response.contentType(),
+                    new Headers(new ArrayList<>(response.getHeaders().asList())), response.getDetailedCookies(),
+                    response.asByteArray());
+        }
+
+        Response toResponse() {
+            return new ResponseBuilder()
+                    .setStatusCode(statusCode)
+                    .setStatusLine(statusLine)
+                    .setHeaders(headers)
+                    .setCookies(cookies)
+                    .setContentType(contentType)
+                    .setBody(body.clone())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package com.rickandmorty.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.restassured.RestAssured;
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import io.restassured.specification.RequestSpecification;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps single slow or failing responses from failing a test. Every request gets a deadline: the
+ * per-call deadline or what is left of the thread's {@link Deadline}, whichever comes first. The
+ * request runs on the caller's thread with the transport's connect and read timeouts cut to what is
+ * left of the deadline, so a server that never answers fails the request at its deadline rather than
+ * holding the test, and no abandoned request stays on the wire. Idempotent
+ * requests answered with a {@code 5xx} other than the overload statuses (those are the
+ * {@link RequestScheduler}'s) are sent again after a jittered exponential backoff, as long as the
+ * backoff and another attempt as long as the last one still fit before the deadline. A {@code 500}
+ * whose {@code error} explains what is wrong with the request, such as an invalid id, is the API's
+ * answer rather than a fault and is not retried.
+ *
+ * <p>With hedging on, an idempotent request still unanswered after the recent p95 (by default) of
+ * its endpoint template is sent a second time and the first usable response wins. Only then do attempts run on the filter's
+ * own threads; the one that lost, or both if neither answered in time, is aborted by closing its
+ * connection before the caller moves on. Hedges are capped
+ * at a fraction of all requests so a slow server is not sent twice the load. The second attempt goes
+ * out as a separate RestAssured request through the request's {@link RequestScheduler}, so it takes
+ * a slot and honours {@code Retry-After} like any other, and then the filters after this one. A wait
+ * past the deadline, or a request sent after the test's budget ran out, fails with an
+ * {@link IllegalStateException}.
+ *
+ * <p>{@link #fromSystemProperties()} reads {@code tail.hedge}, {@code tail.hedgePercentile},
+ * {@code tail.hedgeMinDelayMs}, {@code tail.hedgeMaxRatio}, {@code tail.retries},
+ * {@code tail.backoffMs} and {@code tail.callDeadlineMs}.
+ */
+public class TailLatencyFilter implements OrderedFilter {
+
+    /** Inside the latency filter, so it times what callers wait for, hedges and retries included. */
+    public static final int ORDER = LatencyFilter.ORDER + 50;
+
+    private static final Set<String> IDEMPOTENT_METHODS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    /** Latencies an endpoint needs before its percentile is trusted as a hedging delay. */
+    private static final int MIN_SAMPLES = 20;
+
+    static {
+        IDEMPOTENT_METHODS.addAll(Arrays.asList("GET", "HEAD", "OPTIONS"));
+    }
+
+    private final boolean hedging;
+    private final double hedgePercentile;
+    private final long hedgeMinDelayNanos;
+    private final double hedgeMaxRatio;
+    private final int maxRetries;
+    private final long backoffNanos;
+    private final long callDeadlineNanos;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder deadlinesExceeded = new LongAdder();
+
+    private TailLatencyFilter(Builder builder) {
+        this.hedging = builder.hedging;
+        this.hedgePercentile = builder.hedgePercentile;
+        this.hedgeMinDelayNanos = TimeUnit.MILLISECONDS.toNanos(builder.hedgeMinDelayMillis);
+        this.hedgeMaxRatio = builder.hedgeMaxRatio;
+        this.maxRetries = builder.maxRetries;
+        this.backoffNanos = TimeUnit.MILLISECONDS.toNanos(builder.backoffMillis);
+        this.callDeadlineNanos = TimeUnit.MILLISECONDS.toNanos(builder.callDeadlineMillis);
+        this.executor = hedging ? Executors.newCachedThreadPool(daemonThreads()) : null;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static TailLatencyFilter fromSystemProperties() {
+        Builder defaults = new Builder();
+        Builder builder = builder()
+                .retries(Integer.getInteger("tail.retries", defaults.maxRetries),
+                        Long.getLong("tail.backoffMs", defaults.backoffMillis))
+                .callDeadline(Long.getLong("tail.callDeadlineMs", defaults.callDeadlineMillis));
+        if (Boolean.getBoolean("tail.hedge")) {
+            builder.hedging(Double.parseDouble(System.getProperty("tail.hedgePercentile", String.valueOf(defaults.hedgePercentile))),
+                    Long.getLong("tail.hedgeMinDelayMs", defaults.hedgeMinDelayMillis),
+                    Double.parseDouble(System.getProperty("tail.hedgeMaxRatio", String.valueOf(defaults.hedgeMaxRatio))));
+        }
+        return builder.build();
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        requests.increment();
+        long started = System.nanoTime();
+        long deadlineAt = started + callDeadlineNanos;
+        Deadline budget = Deadline.current();
+        if (budget != null) {
+            if (budget.isExpired()) {
+                deadlinesExceeded.increment();
+                throw new IllegalStateException("Budget of " + budget + " used up before "
+                        + requestSpec.getMethod() + " " + requestSpec.getURI());
+            }
+            deadlineAt = budget.expiresAt() - deadlineAt < 0 ? budget.expiresAt() : deadlineAt;
+        }
+
+        boolean idempotent = IDEMPOTENT_METHODS.contains(requestSpec.getMethod());
+        RewindableChain chain = RewindableChain.take(ctx);
+        boolean hedged = hedging && idempotent && chain.isRewindable();
+        for (int attempt = 0; ; attempt++) {
+            long attemptStarted = System.nanoTime();
+            Response response = hedged ? hedged(chain, requestSpec, responseSpec, deadlineAt)
+                    : bounded(chain, requestSpec, responseSpec, deadlineAt);
+            if (!idempotent || !isRetryable(response) || attempt >= maxRetries || !chain.isRewindable()) {
+                return response;
+            }
+            long backoff = backoffNanos(attempt);
+            long now = System.nanoTime();
+            if (now + backoff + (now - attemptStarted) - deadlineAt >= 0) {
+                return response;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return response;
+            }
+            retries.increment();
+        }
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return second attempts sent because the first was slower than the hedging delay
+     */
+    public long getHedges() {
+        return hedges.sum();
+    }
+
+    /**
+     * @return hedges whose response was used
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * @return requests failed for running past their deadline or the test's budget
+     */
+    public long getDeadlinesExceeded() {
+        return deadlinesExceeded.sum();
+    }
+
+    public String summary() {
+        return requests.sum() + " requests, " + hedges.sum() + " hedged (" + hedgeWins.sum() + " won by the hedge), "
+                + retries.sum() + " retried, " + deadlinesExceeded.sum() + " past their deadline";
+    }
+
+    /**
+     * 5xx statuses worth another try; overload statuses are left to the {@link RequestScheduler}.
+     */
+    static boolean isRetryable(int status) {
+        return status >= 500 && !RequestScheduler.isOverloaded(status);
+    }
+
+    /**
+     * A retryable status, unless the body's {@code error} says more than that the server failed:
+     * the API answers an invalid id with a {@code 500} and a message, and would answer it again.
+     */
+    static boolean isRetryable(Response response) {
+        if (!isRetryable(response.statusCode())) {
+            return false;
+        }
+        try {
+            String error = MAPPER.readTree(response.asByteArray()).path("error").asText("");
+            return error.isEmpty() || error.equalsIgnoreCase("Internal server error");
+        } catch (IOException | RuntimeException notJson) {
+            // a proxy's error page, or no body at all
+            return true;
+        }
+    }
+
+    private Response bounded(RewindableChain chain, FilterableRequestSpecification requestSpec,
+                             FilterableResponseSpecification responseSpec, long deadlineAt) {
+        RequestTimings timings = RequestTimings.current();
+        long previous = timings.deadlineAt;
+        timings.deadlineAt = deadlineAt;
+        long started = System.nanoTime();
+        try {
+            return chain.next(requestSpec, responseSpec);
+        } catch (Exception e) {
+            // the transport timed out at the deadline, or the attempt failed for a reason of its own
+            if (System.nanoTime() - deadlineAt >= 0) {
+                throw unanswered(requestSpec, started, deadlineAt, e);
+            }
+            throw e;
+        } finally {
+            timings.deadlineAt = previous;
+        }
+    }
+
+    private Response hedged(RewindableChain chain, FilterableRequestSpecification requestSpec,
+                            FilterableResponseSpecification responseSpec, long deadlineAt) {
+        LatencyWindow window = windows.computeIfAbsent(
+                LatencyFilter.template(requestSpec.getURI(), requestSpec.getBaseUri(), requestSpec.getBasePath()),
+                template -> new LatencyWindow());
+        long started = System.nanoTime();
+        RequestTimings.Abort primaryAbort = new RequestTimings.Abort();
+        RequestTimings.Abort hedgeAbort = new RequestTimings.Abort();
+        Attempt winner = null;
+        try {
+            CompletableFuture<Attempt> primary = attempt(false, window, deadlineAt, primaryAbort,
+                    () -> chain.next(requestSpec, responseSpec));
+            long hedgeDelay = window.percentileNanos(hedgePercentile);
+            if (hedgeDelay >= 0) {
+                long hedgeAt = started + Math.max(hedgeMinDelayNanos, hedgeDelay);
+                winner = await(primary, hedgeAt - deadlineAt < 0 ? hedgeAt : deadlineAt);
+                if (winner == null && System.nanoTime() - deadlineAt < 0 && hedges.sum() < hedgeMaxRatio * requests.sum()) {
+                    hedges.increment();
+                    CompletableFuture<Attempt> hedge = attempt(true, null, deadlineAt, hedgeAbort,
+                            () -> sendAside(chain, requestSpec));
+                    winner = await(primary.applyToEither(hedge, first -> first), deadlineAt);
+                    if (winner != null && !winner.isUsable()) {
+                        // the other attempt may still do better
+                        Attempt other = await(winner.hedge ? primary : hedge, deadlineAt);
+                        if (other != null && other.isUsable()) {
+                            winner = other;
+                        }
+                    }
+                }
+            }
+            if (winner == null) {
+                winner = await(primary, deadlineAt);
+            }
+        } finally {
+            // a finished attempt has let go of its connection already; this only stops the others
+            primaryAbort.abort();
+            hedgeAbort.abort();
+        }
+        if (winner == null) {
+            throw unanswered(requestSpec, started, deadlineAt, null);
+        }
+        return use(winner);
+    }
+
+    private IllegalStateException unanswered(FilterableRequestSpecification requestSpec, long started, long deadlineAt,
+                                             Exception cause) {
+        deadlinesExceeded.increment();
+        return new IllegalStateException(requestSpec.getMethod() + " " + requestSpec.getURI() + " still unanswered after "
+                + TimeUnit.NANOSECONDS.toMillis(deadlineAt - started) + " ms", cause);
+    }
+
+    /**
+     * @param attempt the attempt whose outcome the caller gets
+     */
+    private Response use(Attempt attempt) {
+        if (attempt.hedge) {
+            hedgeWins.increment();
+        }
+        attempt.timings.copyTo(RequestTimings.current());
+        if (attempt.failure != null) {
+            throw attempt.failure;
+        }
+        return attempt.response;
+    }
+
+    private CompletableFuture<Attempt> attempt(boolean hedge, LatencyWindow window, long deadlineAt,
+                                               RequestTimings.Abort abort, Supplier<Response> send) {
+        Consumer<DecodingInputStream> bodyListener = RequestTimings.current().bodyListener;
+        Deadline budget = Deadline.current();
+        return CompletableFuture.supplyAsync(() -> {
+            RequestTimings timings = RequestTimings.begin();
+            timings.bodyListener = bodyListener;
+            timings.deadlineAt = deadlineAt;
+            timings.abort = abort;
+            // the scheduler a hedge goes through keeps to the caller's budget
+            Deadline.resume(budget);
+            long started = System.nanoTime();
+            try {
+                Response response = send.get();
+                // read the body here: a losing attempt is never read by the caller and would keep its connection
+                response.asByteArray();
+                if (window != null && response.statusCode() < 500) {
+                    window.record(System.nanoTime() - started);
+                }
+                return new Attempt(hedge, response, null, timings.copy());
+            } catch (RuntimeException e) {
+                return new Attempt(hedge, null, e, timings.copy());
+            } finally {
+                // done with the connection: aborting from here on must not touch it
+                abort.clear();
+                timings.abort = null;
+                Deadline.clear();
+            }
+        }, executor);
+    }
+
+    /**
+     * Sends the request again as a separate RestAssured request, through the request's scheduler and
+     * the same filters after this one; the filter context itself is busy with the first attempt.
+     */
+    private static Response sendAside(RewindableChain chain, FilterableRequestSpecification requestSpec) {
+        List<Filter> filters = new ArrayList<>();
+        for (Filter filter : requestSpec.getDefinedFilters()) {
+            if (filter instanceof RequestScheduler) {
+                filters.add(filter);
+            }
+        }
+        filters.addAll(chain.filters());
+        RequestSpecification aside = RestAssured.given()
+                .config(requestSpec.getConfig())
+                .urlEncodingEnabled(false)
+                .headers(requestSpec.getHeaders())
+                .filters(filters);
+        return aside.request(requestSpec.getMethod(), requestSpec.getURI());
+    }
+
+    /**
+     * @return the attempt, or null if it did not finish by {@code untilNanos}
+     */
+    private static Attempt await(CompletableFuture<Attempt> attempt, long untilNanos) {
+        try {
+            return attempt.get(Math.max(0, untilNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a response", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private long backoffNanos(int attempt) {
+        long ceiling = backoffNanos << Math.min(attempt, 20);
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "tail-latency-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Attempt {
+
+        final boolean hedge;
+        final Response response;
+        final RuntimeException failure;
+        final RequestTimings timings;
+
+        Attempt(boolean hedge, Response response, RuntimeException failure, RequestTimings timings) {
+            this.hedge = hedge;
+            this.response = response;
+            this.failure = failure;
+            this.timings = timings;
+        }
+
+        /**
+         * @return whether this attempt can be returned without waiting for the other one
+         */
+        boolean isUsable() {
+            return failure == null && response.statusCode() < 500 && response.statusCode() != 429;
+        }
+    }
+
+    /**
+     * The last {@link #SIZE} successful latencies of one endpoint template. The percentile is
+     * recomputed every {@link #REFRESH} samples rather than on every read.
+     */
+    private static final class LatencyWindow {
+
+        private static final int SIZE = 256;
+        private static final int REFRESH = 16;
+
+        private final long[] samples = new long[SIZE];
+        private long recorded;
+        private double cachedPercentile = Double.NaN;
+        private long cachedNanos = -1;
+        private long cachedAt;
+
+        synchronized void record(long nanos) {
+            samples[(int) (recorded++ % SIZE)] = nanos;
+        }
+
+        /**
+         * @return the latency at {@code percentile}, or -1 while there are too few samples
+         */
+        synchronized long percentileNanos(double percentile) {
+            if (recorded < MIN_SAMPLES) {
+                return -1;
+            }
+            if (percentile != cachedPercentile || recorded - cachedAt >= REFRESH) {
+                int count = (int) Math.min(recorded, SIZE);
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                cachedNanos = sorted[Math.min(count - 1, (int) Math.ceil(percentile / 100 * count) - 1)];
+                cachedPercentile = percentile;
+                cachedAt = recorded;
+            }
+            return cachedNanos;
+        }
+    }
+
+    public static class Builder {
+
+        private boolean hedging;
+        private double hedgePercentile = 95;
+        private long hedgeMinDelayMillis = 10;
+        private double hedgeMaxRatio = 0.1;
+        private int maxRetries = 2;
+        private long backoffMillis = 25;
+        private long callDeadlineMillis = 10_000;
+
+        private Builder() {
+        }
+
+        /**
+         * Sends a second attempt once a request is slower than {@code percentile} of its endpoint's
+         * recent latencies, but never sooner than {@code minDelayMillis}, while hedges stay under
+         * {@code maxRatio} of all requests.
+         */
+        public Builder hedging(double percentile, long minDelayMillis, double maxRatio) {
+            if (percentile <= 0 || percentile > 100) {
+                throw new IllegalArgumentException("Hedging percentile must be in (0, 100], got " + percentile);
+            }
+            this.hedging = true;
+            this.hedgePercentile = percentile;
+            this.hedgeMinDelayMillis = minDelayMillis;
+            this.hedgeMaxRatio = maxRatio;
+            return this;
+        }
+
+        /**
+         * @param maxRetries    further attempts after a retryable {@code 5xx}
+         * @param backoffMillis base of the exponential backoff between them
+         */
+        public Builder retries(int maxRetries, long backoffMillis) {
+            this.maxRetries = maxRetries;
+            this.backoffMillis = Math.max(1, backoffMillis);
+            return this;
+        }
+
+        public Builder callDeadline(long millis) {
+            this.callDeadlineMillis = millis;
+            return this;
+        }
+
+        public TailLatencyFilter build() {
+            return new TailLatencyFilter(this);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.rickandmorty.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces requests to one host. Each request reserves a token and sleeps until it is due, so callers
+ * are served in arrival order and no one polls. A token that would not be due within the caller's
+ * timeout is not reserved at all.
+ */
+final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double burst;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    /**
+     * @param ratePerSecond sustained rate
+     * @param burst         requests allowed back to back after an idle period
+     */
+    TokenBucket(double ratePerSecond, int burst) {
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+    }
+
+    /**
+     * @return whether a token was taken; false, without waiting, if it would not be due within {@code timeoutNanos}
+     */
+    boolean acquire(long timeoutNanos) throws InterruptedException {
+        long waitNanos = reserve(timeoutNanos);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return waitNanos >= 0;
+    }
+
+    /**
+     * @return how long the caller has to wait for its token, or -1 if that is longer than {@code timeoutNanos}
+     */
+    private synchronized long reserve(long timeoutNanos) {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+        long waitNanos = tokens >= 1 ? 0 : (long) ((1 - tokens) / tokensPerNano);
+        if (waitNanos > timeoutNanos) {
+            return -1;
+        }
+        tokens--;
+        return waitNanos;
+    }
+}
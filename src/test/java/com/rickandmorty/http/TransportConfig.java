@@ -0,0 +1,155 @@
+package com.rickandmorty.http;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * Immutable settings for the HTTP transport shared by the suite. Every {@code with*} method
+ * returns a copy. {@link #fromSystemProperties()} reads:
+ *
+ * <ul>
+ *     <li>{@code transport.backend}: {@code apache} (RestAssured's client, pooled) or {@code jdk} ({@code java.net.http})</li>
+ *     <li>{@code transport.pool.maxPerRoute} / {@code transport.pool.maxTotal}: connection pool bounds</li>
+ *     <li>{@code transport.keepAlive} / {@code transport.keepAliveMs}: connection reuse and idle lifetime</li>
+ *     <li>{@code transport.connectTimeoutMs} / {@code transport.readTimeoutMs}</li>
+ *     <li>{@code transport.http2}: negotiate HTTP/2 on the {@code jdk} backend</li>
+ *     <li>{@code transport.compression}: ask for gzip/deflate bodies and decode them while reading</li>
+ * </ul>
+ */
+public final class TransportConfig {
+
+    public enum Backend { APACHE, JDK }
+
+    private final Backend backend;
+    private final int maxPerRoute;
+    private final int maxTotal;
+    private final boolean keepAlive;
+    private final long keepAliveMillis;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final boolean http2;
+    private final boolean compression;
+    private final SSLContext sslContext;
+
+    private TransportConfig(Backend backend, int maxPerRoute, int maxTotal, boolean keepAlive, long keepAliveMillis,
+                            int connectTimeoutMillis, int readTimeoutMillis, boolean http2, boolean compression,
+                            SSLContext sslContext) {
+        this.backend = backend;
+        this.maxPerRoute = maxPerRoute;
+        this.maxTotal = maxTotal;
+        this.keepAlive = keepAlive;
+        this.keepAliveMillis = keepAliveMillis;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.http2 = http2;
+        this.compression = compression;
+        this.sslContext = sslContext;
+    }
+
+    public static TransportConfig defaults() {
+        return new TransportConfig(Backend.APACHE, 32, 128, true, 30_000, 5_000, 10_000, false, true, null);
+    }
+
+    public static TransportConfig fromSystemProperties() {
+        TransportConfig defaults = defaults();
+        return new TransportConfig(
+                Backend.valueOf(System.getProperty("transport.backend", defaults.backend.name()).toUpperCase()),
+                Integer.getInteger("transport.pool.maxPerRoute", defaults.maxPerRoute),
+                Integer.getInteger("transport.pool.maxTotal", defaults.maxTotal),
+                Boolean.parseBoolean(System.getProperty("transport.keepAlive", String.valueOf(defaults.keepAlive))),
+                Long.getLong("transport.keepAliveMs", defaults.keepAliveMillis),
+                Integer.getInteger("transport.connectTimeoutMs", defaults.connectTimeoutMillis),
+                Integer.getInteger("transport.readTimeoutMs", defaults.readTimeoutMillis),
+                Boolean.getBoolean("transport.http2"),
+                Boolean.parseBoolean(System.getProperty("transport.compression", String.valueOf(defaults.compression))),
+                null);
+    }
+
+    public TransportConfig withBackend(Backend backend) {
+        return new TransportConfig(backend, maxPerRoute, maxTotal, keepAlive, keepAliveMillis,
+                connectTimeoutMillis, readTimeoutMillis, http2, compression, sslContext);
+    }
+
+    public TransportConfig withPool(int maxPerRoute, int maxTotal) {
+        return new TransportConfig(backend, maxPerRoute, maxTotal, keepAlive, keepAliveMillis,
+                connectTimeoutMillis, readTimeoutMillis, http2, compression, sslContext);
+    }
+
+    public TransportConfig withKeepAlive(boolean keepAlive, long keepAliveMillis) {
+        return new TransportConfig(backend, maxPerRoute, maxTotal, keepAlive, keepAliveMillis,
+                connectTimeoutMillis, readTimeoutMillis, http2, compression, sslContext);
+    }
+
+    public TransportConfig withTimeouts(int connectTimeoutMillis, int readTimeoutMillis) {
+        return new TransportConfig(backend, maxPerRoute, maxTotal, keepAlive, keepAliveMillis,
+                connectTimeoutMillis, readTimeoutMillis, http2, compression, sslContext);
+    }
+
+    public TransportConfig withHttp2(boolean http2) {
+        return new TransportConfig(backend, maxPerRoute, maxTotal, keepAlive, keepAliveMillis,
+                connectTimeoutMillis, readTimeoutMillis, http2, compression, sslContext);
+    }
+
+    /**
+     * @param compression whether to send {@code Accept-Encoding: gzip, deflate} and decode compressed bodies
+     */
+    public TransportConfig withCompression(boolean compression) {
+        return new TransportConfig(backend, maxPerRoute, maxTotal, keepAlive, keepAliveMillis,
+                connectTimeoutMillis, readTimeoutMillis, http2, compression, sslContext);
+    }
+
+    /**
+     * @param sslContext context used for https connections, e.g. one trusting a local self-signed certificate
+     */
+    public TransportConfig withSslContext(SSLContext sslContext) {
+        return new TransportConfig(backend, maxPerRoute, maxTotal, keepAlive, keepAliveMillis,
+                connectTimeoutMillis, readTimeoutMillis, http2, compression, sslContext);
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public SSLContext getSslContext() {
+        return sslContext;
+    }
+
+    @Override
+    public String toString() {
+        return backend.name().toLowerCase() + (http2 ? "/h2" : "") + " pool=" + maxPerRoute + "/" + maxTotal
+                + " keepAlive=" + (keepAlive ? keepAliveMillis + "ms" : "off")
+                + " timeouts=" + connectTimeoutMillis + "/" + readTimeoutMillis + "ms"
+                + (compression ? " gzip" : "");
+    }
+}
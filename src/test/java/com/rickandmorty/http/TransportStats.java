@@ -0,0 +1,92 @@
+package com.rickandmorty.http;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side connection accounting for a {@link PooledTransport}. Requests that did not open a
+ * connection were served from the pool. The {@code java.net.http} backend does not expose its
+ * connections, so only requests and protocol versions are tracked for it. Both count the body
+ * bytes that came over the wire next to what they decoded to.
+ */
+public class TransportStats {
+
+    final LongAdder requests = new LongAdder();
+    final LongAdder connectionsOpened = new LongAdder();
+    final LongAdder tlsHandshakes = new LongAdder();
+    final LongAdder http2Responses = new LongAdder();
+    final LongAdder compressedResponses = new LongAdder();
+    final LongAdder wireBytes = new LongAdder();
+    final LongAdder decodedBytes = new LongAdder();
+
+    private final boolean connectionsTracked;
+
+    TransportStats(boolean connectionsTracked) {
+        this.connectionsTracked = connectionsTracked;
+    }
+
+    public boolean isConnectionsTracked() {
+        return connectionsTracked;
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    public long getReusedConnections() {
+        return Math.max(0, getRequests() - getConnectionsOpened());
+    }
+
+    public long getTlsHandshakes() {
+        return tlsHandshakes.sum();
+    }
+
+    public long getHttp2Responses() {
+        return http2Responses.sum();
+    }
+
+    /**
+     * @return responses that arrived gzip or deflate encoded
+     */
+    public long getCompressedResponses() {
+        return compressedResponses.sum();
+    }
+
+    /**
+     * @return response body bytes read from the connections, before decoding
+     */
+    public long getWireBytes() {
+        return wireBytes.sum();
+    }
+
+    /**
+     * @return response body bytes after decoding
+     */
+    public long getDecodedBytes() {
+        return decodedBytes.sum();
+    }
+
+    /**
+     * Adds a body read to the end (or abandoned) to the byte counts.
+     */
+    void record(DecodingInputStream body) {
+        if (body.isCompressed()) {
+            compressedResponses.increment();
+        }
+        wireBytes.add(body.getWireBytes());
+        decodedBytes.add(body.getDecodedBytes());
+    }
+
+    public String summary() {
+        String bytes = String.format(", %.1f KiB on the wire for %.1f KiB of bodies (%d compressed)",
+                getWireBytes() / 1024.0, getDecodedBytes() / 1024.0, getCompressedResponses());
+        if (!connectionsTracked) {
+            return getRequests() + " requests, " + getHttp2Responses() + " HTTP/2 responses" + bytes;
+        }
+        return getRequests() + " requests, " + getConnectionsOpened() + " connections opened, "
+                + getReusedConnections() + " reused, " + getTlsHandshakes() + " TLS handshakes" + bytes;
+    }
+}
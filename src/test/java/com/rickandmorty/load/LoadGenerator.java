@@ -0,0 +1,351 @@
+package com.rickandmorty.load;
+
+import org.HdrHistogram.Recorder;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a {@link LoadMix} against a base URL and records latencies per endpoint template.
+ * <ul>
+ *   <li><b>Closed loop</b>: {@code users} threads each send a request, wait for the answer and send
+ *   the next one, so the offered load drops as the server slows down.</li>
+ *   <li><b>Open loop</b>: requests are due at a fixed rate regardless of how earlier ones are doing.
+ *   Response time is measured from the due time rather than the send time, so a request stuck
+ *   behind a slow one is charged for the wait (coordinated-omission correction). Requests still
+ *   waiting when the run gives up count as errors, recorded at the time they had waited.</li>
+ * </ul>
+ * Users and workers run on virtual threads when the JVM has them (Java 21+) and on platform
+ * threads otherwise. Meant for the in-process {@code LocalApiServer}, not the public API.
+ */
+public class LoadGenerator {
+
+    public enum Mode { CLOSED, OPEN }
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final Method OF_VIRTUAL = virtualThreadBuilder();
+
+    private final String baseUrl;
+    private final List<LoadMix.Endpoint> endpoints;
+    private final LoadMix mix;
+    private final Mode mode;
+    private final int users;
+    private final double requestsPerSecond;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final int maxInFlight;
+    private final long seed;
+    private final HttpClient client;
+
+    private final Recorder[] responseTimes;
+    private final Recorder[] serviceTimes;
+    private final LongAdder[] errors;
+    private final LongAdder[] bytes;
+    private volatile long measureFrom;
+
+    private LoadGenerator(Builder builder) {
+        this.baseUrl = builder.baseUrl;
+        this.mix = builder.mix;
+        this.endpoints = mix.getEndpoints();
+        this.mode = builder.mode;
+        this.users = builder.users;
+        this.requestsPerSecond = builder.requestsPerSecond;
+        this.durationNanos = builder.duration.toNanos();
+        this.warmupNanos = builder.warmup.toNanos();
+        this.maxInFlight = builder.maxInFlight;
+        this.seed = builder.seed;
+        HttpClient.Builder client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT);
+        if (builder.sslContext != null) {
+            client.sslContext(builder.sslContext);
+        }
+        this.client = client.build();
+
+        int size = endpoints.size();
+        this.responseTimes = new Recorder[size];
+        this.serviceTimes = new Recorder[size];
+        this.errors = new LongAdder[size];
+        this.bytes = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            responseTimes[i] = new Recorder(3);
+            serviceTimes[i] = new Recorder(3);
+            errors[i] = new LongAdder();
+            bytes[i] = new LongAdder();
+        }
+    }
+
+    public static Builder builder(String baseUrl, LoadMix mix) {
+        return new Builder(baseUrl, mix);
+    }
+
+    /**
+     * @return whether users and workers run on virtual threads on this JVM
+     */
+    public static boolean usesVirtualThreads() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Runs the warm-up and the measured interval. Requests due during the warm-up are sent but not
+     * recorded. Each generator runs once.
+     */
+    public synchronized LoadReport run() throws InterruptedException {
+        long start = System.nanoTime();
+        measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        if (mode == Mode.CLOSED) {
+            runClosed(end);
+        } else {
+            runOpen(start, end);
+        }
+
+        Map<String, LoadReport.EndpointResult> results = new LinkedHashMap<>();
+        for (int i = 0; i < endpoints.size(); i++) {
+            String template = endpoints.get(i).getTemplate();
+            results.put(template, new LoadReport.EndpointResult(template, responseTimes[i].getIntervalHistogram(),
+                    serviceTimes[i].getIntervalHistogram(), errors[i].sum(), bytes[i].sum()));
+        }
+        return new LoadReport(mode, durationNanos, results);
+    }
+
+    private void runClosed(long end) throws InterruptedException {
+        ThreadFactory threads = threads("load-user");
+        SplittableRandom root = new SplittableRandom(seed);
+        List<Thread> running = new ArrayList<>(users);
+        for (int user = 0; user < users; user++) {
+            SplittableRandom random = root.split();
+            Thread thread = threads.newThread(() -> {
+                while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                    int endpoint = mix.pick(random);
+                    String path = endpoints.get(endpoint).path(random);
+                    long sent = System.nanoTime();
+                    call(endpoint, path, sent, sent);
+                }
+            });
+            thread.start();
+            running.add(thread);
+        }
+        for (Thread thread : running) {
+            thread.join();
+        }
+    }
+
+    private void runOpen(long start, long end) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(maxInFlight, threads("load-worker"));
+        SplittableRandom random = new SplittableRandom(seed);
+        double intervalNanos = 1e9 / requestsPerSecond;
+        try {
+            for (long sequence = 0; ; sequence++) {
+                long due = start + (long) (sequence * intervalNanos);
+                if (due >= end) {
+                    break;
+                }
+                for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+                int endpoint = mix.pick(random);
+                workers.execute(new Call(endpoint, endpoints.get(endpoint).path(random), due));
+            }
+        } finally {
+            workers.shutdown();
+            if (!workers.awaitTermination(durationNanos + REQUEST_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)) {
+                // still queued after the run plus a full timeout: the server never caught up
+                for (Runnable queued : workers.shutdownNow()) {
+                    Call abandoned = (Call) queued;
+                    abandon(abandoned.endpoint, abandoned.due);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends one request and records it if it was due after the warm-up.
+     *
+     * @param due  when the request should have started; equals {@code sent} in closed loop
+     * @param sent when it was actually handed to the client
+     */
+    private void call(int endpoint, String path, long due, long sent) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        int status;
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            status = response.statusCode();
+            if (due >= measureFrom) {
+                bytes[endpoint].add(response.body().length);
+            }
+        } catch (IOException e) {
+            status = -1;
+        } catch (InterruptedException e) {
+            // cut off by the end of an open-loop run that fell too far behind
+            Thread.currentThread().interrupt();
+            abandon(endpoint, due);
+            return;
+        }
+        long done = System.nanoTime();
+        if (due < measureFrom) {
+            return;
+        }
+        responseTimes[endpoint].recordValue(TimeUnit.NANOSECONDS.toMicros(done - due));
+        serviceTimes[endpoint].recordValue(TimeUnit.NANOSECONDS.toMicros(done - sent));
+        // filters that match nothing answer 404, which is a valid outcome for the mix
+        if (status != 200 && status != 404) {
+            errors[endpoint].increment();
+        }
+    }
+
+    /**
+     * Records a request that never got its answer as an error that took until now, so a run the
+     * server could not keep up with shows in the percentiles and not only in the error count.
+     */
+    private void abandon(int endpoint, long due) {
+        if (due < measureFrom) {
+            return;
+        }
+        responseTimes[endpoint].recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due));
+        errors[endpoint].increment();
+    }
+
+    private final class Call implements Runnable {
+
+        private final int endpoint;
+        private final String path;
+        private final long due;
+
+        Call(int endpoint, String path, long due) {
+            this.endpoint = endpoint;
+            this.path = path;
+            this.due = due;
+        }
+
+        @Override
+        public void run() {
+            call(endpoint, path, due, System.nanoTime());
+        }
+    }
+
+    private static ThreadFactory threads(String name) {
+        if (OF_VIRTUAL != null) {
+            try {
+                // through the public Thread.Builder interface, the builder class itself is not exported
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                Object builder = builderType.getMethod("name", String.class, long.class)
+                        .invoke(OF_VIRTUAL.invoke(null), name + "-", 1L);
+                return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create virtual threads", e);
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @return {@code Thread.ofVirtual} when available and usable, compiled against Java 17
+     */
+    private static Method virtualThreadBuilder() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            ofVirtual.invoke(null);
+            return ofVirtual;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public static class Builder {
+
+        private final String baseUrl;
+        private final LoadMix mix;
+        private Mode mode = Mode.CLOSED;
+        private int users = 8;
+        private double requestsPerSecond = 100;
+        private Duration duration = Duration.ofSeconds(10);
+        private Duration warmup = Duration.ofSeconds(2);
+        private int maxInFlight = 256;
+        private long seed = 42L;
+        private SSLContext sslContext;
+
+        private Builder(String baseUrl, LoadMix mix) {
+            this.baseUrl = baseUrl;
+            this.mix = mix;
+        }
+
+        /**
+         * {@code users} concurrent users, each sending its next request as soon as the last one answers.
+         */
+        public Builder closedLoop(int users) {
+            this.mode = Mode.CLOSED;
+            this.users = users;
+            return this;
+        }
+
+        /**
+         * A request due every {@code 1 / requestsPerSecond} seconds, whatever the server's pace.
+         */
+        public Builder openLoop(double requestsPerSecond) {
+            this.mode = Mode.OPEN;
+            this.requestsPerSecond = requestsPerSecond;
+            return this;
+        }
+
+        public Builder duration(Duration duration) {
+            this.duration = duration;
+            return this;
+        }
+
+        public Builder warmup(Duration warmup) {
+            this.warmup = warmup;
+            return this;
+        }
+
+        /**
+         * Open loop only: requests sent concurrently; later ones queue and the queueing shows up
+         * in their response time.
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder sslContext(SSLContext sslContext) {
+            this.sslContext = sslContext;
+            return this;
+        }
+
+        public LoadGenerator build() {
+            return new LoadGenerator(this);
+        }
+    }
+}
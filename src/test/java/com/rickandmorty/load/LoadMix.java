@@ -0,0 +1,188 @@
+package com.rickandmorty.load;
+
+import com.rickandmorty.data.Dataset;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+/**
+ * Weighted set of endpoints a {@link LoadGenerator} draws from. Each endpoint is named by its
+ * template ({@code /character/{id}}, {@code /character?filter}) and turns a random source into a
+ * concrete path, so results can be grouped per template while the requests themselves vary.
+ */
+public final class LoadMix {
+
+    private final List<Endpoint> endpoints;
+    private final int[] cumulativeWeights;
+
+    private LoadMix(List<Endpoint> endpoints) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("A load mix needs at least one endpoint");
+        }
+        this.endpoints = Collections.unmodifiableList(new ArrayList<>(endpoints));
+        this.cumulativeWeights = new int[endpoints.size()];
+        int total = 0;
+        for (int i = 0; i < endpoints.size(); i++) {
+            total += endpoints.get(i).weight;
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Pages, single and multi-id lookups and filters over the three resources, with ids and filter
+     * values drawn from {@code dataset} so every request hits existing data.
+     */
+    public static LoadMix standard(Dataset dataset) {
+        int characterPages = (dataset.getCharacterCount() + 19) / 20;
+        return builder()
+                .add("/character?page", 10, random -> "/character?page=" + (1 + random.nextInt(characterPages)))
+                .add("/character/{id}", 25, random -> "/character/" + randomId(random, dataset.getCharacterCount()))
+                .add("/character/{ids}", 10, random -> "/character/" + randomIds(random, dataset.getCharacterCount()))
+                .add("/character?filter", 15, random -> "/character?" + characterFilter(random, dataset))
+                .add("/location/{id}", 10, random -> "/location/" + randomId(random, dataset.getLocationCount()))
+                .add("/location?filter", 5, random -> "/location?" + locationFilter(random))
+                .add("/episode/{id}", 10, random -> "/episode/" + randomId(random, dataset.getEpisodeCount()))
+                .add("/episode/{ids}", 5, random -> "/episode/" + randomIds(random, dataset.getEpisodeCount()))
+                .add("/episode?filter", 5, random -> "/episode?episode="
+                        + dataset.episodeCode(randomId(random, dataset.getEpisodeCount())).substring(0, 3))
+                .build();
+    }
+
+    /**
+     * Keeps only the endpoints named in {@code spec} with the weights given there, e.g.
+     * {@code /character/{id}=70,/episode?filter=30}.
+     */
+    public LoadMix withWeights(String spec) {
+        Map<String, Endpoint> byTemplate = new LinkedHashMap<>();
+        for (Endpoint endpoint : endpoints) {
+            byTemplate.put(endpoint.template, endpoint);
+        }
+        Builder builder = builder();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split("=");
+            Endpoint endpoint = byTemplate.get(parts[0].trim());
+            if (parts.length != 2 || endpoint == null) {
+                throw new IllegalArgumentException("Unknown load mix entry '" + entry + "', expected one of "
+                        + byTemplate.keySet() + " as template=weight");
+            }
+            builder.add(endpoint.template, Integer.parseInt(parts[1].trim()), endpoint.path);
+        }
+        return builder.build();
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @return the index in {@link #getEndpoints()} of an endpoint drawn by weight
+     */
+    int pick(SplittableRandom random) {
+        int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (ticket < cumulativeWeights[i]) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Weights changed while picking");
+    }
+
+    private static int randomId(SplittableRandom random, int count) {
+        return 1 + random.nextInt(count);
+    }
+
+    private static String randomIds(SplittableRandom random, int count) {
+        StringBuilder ids = new StringBuilder();
+        for (int i = 2 + random.nextInt(19); i > 0; i--) {
+            ids.append(randomId(random, count)).append(i > 1 ? "," : "");
+        }
+        return ids.toString();
+    }
+
+    private static String characterFilter(SplittableRandom random, Dataset dataset) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return "status=" + pick(random, Dataset.STATUSES);
+            case 1:
+                return "status=" + pick(random, Dataset.STATUSES) + "&gender=" + pick(random, Dataset.GENDERS);
+            case 2:
+                return "species=" + encode(pick(random, Dataset.SPECIES));
+            default:
+                String name = dataset.characterName(randomId(random, dataset.getCharacterCount()));
+                return "name=" + encode(name.substring(0, Math.min(4, name.length())));
+        }
+    }
+
+    private static String locationFilter(SplittableRandom random) {
+        return random.nextBoolean() ? "type=" + encode(pick(random, Dataset.LOCATION_TYPES))
+                : "dimension=" + encode(pick(random, Dataset.DIMENSIONS));
+    }
+
+    private static String pick(SplittableRandom random, List<String> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    public static final class Endpoint {
+
+        private final String template;
+        private final int weight;
+        private final Function<SplittableRandom, String> path;
+
+        private Endpoint(String template, int weight, Function<SplittableRandom, String> path) {
+            this.template = template;
+            this.weight = weight;
+            this.path = path;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        String path(SplittableRandom random) {
+            return path.apply(random);
+        }
+    }
+
+    public static class Builder {
+
+        private final List<Endpoint> endpoints = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param template name the results are grouped under
+         * @param weight   relative share of requests
+         * @param path     builds a concrete path below the base URL, e.g. {@code /character/17}
+         */
+        public Builder add(String template, int weight, Function<SplittableRandom, String> path) {
+            if (weight > 0) {
+                endpoints.add(new Endpoint(template, weight, path));
+            }
+            return this;
+        }
+
+        public LoadMix build() {
+            return new LoadMix(endpoints);
+        }
+    }
+}
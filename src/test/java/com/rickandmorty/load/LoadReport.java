@@ -0,0 +1,139 @@
+package com.rickandmorty.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of one {@link LoadGenerator} run: per endpoint template, an HDR histogram of response
+ * time and one of service time, in microseconds. Response time is measured from when the request
+ * was due (open loop) or sent (closed loop); service time always from when it was sent, so in open
+ * loop the gap between the two is time spent waiting behind earlier requests.
+ */
+public final class LoadReport {
+
+    private final LoadGenerator.Mode mode;
+    private final long elapsedNanos;
+    private final Map<String, EndpointResult> endpoints;
+
+    LoadReport(LoadGenerator.Mode mode, long elapsedNanos, Map<String, EndpointResult> endpoints) {
+        this.mode = mode;
+        this.elapsedNanos = elapsedNanos;
+        this.endpoints = Collections.unmodifiableMap(new LinkedHashMap<>(endpoints));
+    }
+
+    public LoadGenerator.Mode getMode() {
+        return mode;
+    }
+
+    public Map<String, EndpointResult> getEndpoints() {
+        return endpoints;
+    }
+
+    public EndpointResult endpoint(String template) {
+        return endpoints.get(template);
+    }
+
+    public long getRequests() {
+        return endpoints.values().stream().mapToLong(EndpointResult::getCount).sum();
+    }
+
+    public long getErrors() {
+        return endpoints.values().stream().mapToLong(EndpointResult::getErrors).sum();
+    }
+
+    /**
+     * @return completed requests per second over the measured interval
+     */
+    public double getThroughput() {
+        return getRequests() / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * @return all endpoints' response times merged into one histogram
+     */
+    public Histogram totalResponseTime() {
+        Histogram total = new Histogram(3);
+        endpoints.values().forEach(endpoint -> total.add(endpoint.responseTime));
+        return total;
+    }
+
+    public Histogram totalServiceTime() {
+        Histogram total = new Histogram(3);
+        endpoints.values().forEach(endpoint -> total.add(endpoint.serviceTime));
+        return total;
+    }
+
+    public String summary() {
+        StringBuilder summary = new StringBuilder(String.format("%s loop: %d requests, %d errors, %.0f req/s%n",
+                mode.name().toLowerCase(), getRequests(), getErrors(), getThroughput()));
+        summary.append(String.format("%-20s %8s %7s %9s %9s %9s %9s %11s%n",
+                "endpoint", "count", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99 ms"));
+        endpoints.values().forEach(endpoint -> summary.append(endpoint.row()));
+        EndpointResult total = new EndpointResult("total", totalResponseTime(), totalServiceTime(), getErrors(), 0);
+        return summary.append(total.row()).toString();
+    }
+
+    public static final class EndpointResult {
+
+        private final String template;
+        private final Histogram responseTime;
+        private final Histogram serviceTime;
+        private final long errors;
+        private final long bytes;
+
+        EndpointResult(String template, Histogram responseTime, Histogram serviceTime, long errors, long bytes) {
+            this.template = template;
+            this.responseTime = responseTime;
+            this.serviceTime = serviceTime;
+            this.errors = errors;
+            this.bytes = bytes;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public long getCount() {
+            return responseTime.getTotalCount();
+        }
+
+        /**
+         * @return requests that failed to complete or answered with anything but 200 or 404
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public Histogram getResponseTime() {
+            return responseTime;
+        }
+
+        public Histogram getServiceTime() {
+            return serviceTime;
+        }
+
+        /**
+         * @param percentile e.g. {@code 99.9}
+         */
+        public double responseMillis(double percentile) {
+            return responseTime.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        public double serviceMillis(double percentile) {
+            return serviceTime.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        private String row() {
+            return String.format("%-20s %8d %7d %9.2f %9.2f %9.2f %9.2f %11.2f%n", template, getCount(), errors,
+                    responseMillis(50), responseMillis(99), responseMillis(99.9), responseTime.getMaxValue() / 1000.0,
+                    serviceMillis(99));
+        }
+    }
+}
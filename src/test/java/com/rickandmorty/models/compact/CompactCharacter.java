@@ -0,0 +1,194 @@
+package com.rickandmorty.models.compact;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Memory-lean counterpart of {@link com.rickandmorty.models.Character}. References are kept as
+ * ids ({@code episodeIds}, {@code originId}, {@code locationId}; 0 means unknown), status and
+ * gender are enums, species and type are interned, origin and location names are shared within a
+ * read, and {@code created} is epoch milliseconds. {@code image} and {@code url} are not stored since both follow from the id.
+ */
+@JsonDeserialize(using = CompactCharacter.Deserializer.class)
+public final class CompactCharacter {
+
+    private final int id;
+    private final String name;
+    private final Status status;
+    private final String species;
+    private final String type;
+    private final Gender gender;
+    private final int originId;
+    private final String originName;
+    private final int locationId;
+    private final String locationName;
+    private final int[] episodeIds;
+    private final long created;
+
+    CompactCharacter(int id, String name, Status status, String species, String type, Gender gender,
+                     int originId, String originName, int locationId, String locationName,
+                     int[] episodeIds, long created) {
+        this.id = id;
+        this.name = name;
+        this.status = status;
+        this.species = species;
+        this.type = type;
+        this.gender = gender;
+        this.originId = originId;
+        this.originName = originName;
+        this.locationId = locationId;
+        this.locationName = locationName;
+        this.episodeIds = episodeIds;
+        this.created = created;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getSpecies() {
+        return species;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Gender getGender() {
+        return gender;
+    }
+
+    public int getOriginId() {
+        return originId;
+    }
+
+    public String getOriginName() {
+        return originName;
+    }
+
+    public int getLocationId() {
+        return locationId;
+    }
+
+    public String getLocationName() {
+        return locationName;
+    }
+
+    /**
+     * @return the episode ids in API order; the array is shared, do not modify it
+     */
+    public int[] getEpisodeIds() {
+        return episodeIds;
+    }
+
+    /**
+     * @return epoch milliseconds, or {@code Long.MIN_VALUE} when the API sent none
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    static final class Deserializer extends StdDeserializer<CompactCharacter> {
+
+        Deserializer() {
+            super(CompactCharacter.class);
+        }
+
+        @Override
+        public CompactCharacter deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                return (CompactCharacter) context.handleUnexpectedToken(CompactCharacter.class, parser);
+            }
+            int id = 0;
+            String name = null;
+            Status status = null;
+            String species = null;
+            String type = null;
+            Gender gender = null;
+            int originId = 0;
+            String originName = null;
+            int locationId = 0;
+            String locationName = null;
+            int[] episodeIds = null;
+            long created = CompactJson.NO_TIMESTAMP;
+
+            for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+                parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getIntValue();
+                        break;
+                    case "name":
+                        name = CompactJson.text(parser);
+                        break;
+                    case "status":
+                        status = Status.of(parser.getText());
+                        if (status == null) {
+                            throw context.weirdStringException(parser.getText(), Status.class, "not a character status");
+                        }
+                        break;
+                    case "species":
+                        species = Interner.intern(CompactJson.text(parser));
+                        break;
+                    case "type":
+                        type = Interner.intern(CompactJson.text(parser));
+                        break;
+                    case "gender":
+                        gender = Gender.of(parser.getText());
+                        if (gender == null) {
+                            throw context.weirdStringException(parser.getText(), Gender.class, "not a character gender");
+                        }
+                        break;
+                    case "origin":
+                    case "location":
+                        int refId = 0;
+                        String refName = null;
+                        if (parser.currentToken() == JsonToken.START_OBJECT) {
+                            for (String refField = parser.nextFieldName(); refField != null;
+                                 refField = parser.nextFieldName()) {
+                                parser.nextToken();
+                                if ("url".equals(refField)) {
+                                    refId = CompactJson.trailingId(parser);
+                                } else if ("name".equals(refField)) {
+                                    refName = Interner.internPerRead(context, CompactJson.text(parser));
+                                } else {
+                                    parser.skipChildren();
+                                }
+                            }
+                        }
+                        if ("origin".equals(field)) {
+                            originId = refId;
+                            originName = refName;
+                        } else {
+                            locationId = refId;
+                            locationName = refName;
+                        }
+                        break;
+                    case "episode":
+                        episodeIds = CompactJson.ids(parser);
+                        break;
+                    case "created":
+                        created = CompactJson.epochMillis(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return new CompactCharacter(id, name, status, species, type, gender, originId, originName,
+                    locationId, locationName, episodeIds, created);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.rickandmorty.models.compact;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Memory-lean counterpart of {@link com.rickandmorty.models.Episode}: the cast as character ids
+ * and {@code created} as epoch milliseconds.
+ */
+@JsonDeserialize(using = CompactEpisode.Deserializer.class)
+public final class CompactEpisode {
+
+    private final int id;
+    private final String name;
+    private final String airDate;
+    private final String episode;
+    private final int[] characterIds;
+    private final long created;
+
+    CompactEpisode(int id, String name, String airDate, String episode, int[] characterIds, long created) {
+        this.id = id;
+        this.name = name;
+        this.airDate = airDate;
+        this.episode = episode;
+        this.characterIds = characterIds;
+        this.created = created;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getAirDate() {
+        return airDate;
+    }
+
+    /**
+     * @return the episode code, e.g. {@code S01E01}
+     */
+    public String getEpisode() {
+        return episode;
+    }
+
+    /**
+     * @return the cast's character ids in API order; the array is shared, do not modify it
+     */
+    public int[] getCharacterIds() {
+        return characterIds;
+    }
+
+    /**
+     * @return epoch milliseconds, or {@code Long.MIN_VALUE} when the API sent none
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    static final class Deserializer extends StdDeserializer<CompactEpisode> {
+
+        Deserializer() {
+            super(CompactEpisode.class);
+        }
+
+        @Override
+        public CompactEpisode deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                return (CompactEpisode) context.handleUnexpectedToken(CompactEpisode.class, parser);
+            }
+            int id = 0;
+            String name = null;
+            String airDate = null;
+            String episode = null;
+            int[] characterIds = null;
+            long created = CompactJson.NO_TIMESTAMP;
+
+            for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+                parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getIntValue();
+                        break;
+                    case "name":
+                        name = CompactJson.text(parser);
+                        break;
+                    case "air_date":
+                        airDate = CompactJson.text(parser);
+                        break;
+                    case "episode":
+                        episode = CompactJson.text(parser);
+                        break;
+                    case "characters":
+                        characterIds = CompactJson.ids(parser);
+                        break;
+                    case "created":
+                        created = CompactJson.epochMillis(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return new CompactEpisode(id, name, airDate, episode, characterIds, created);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.rickandmorty.models.compact;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+/**
+ * Token-level helpers shared by the compact deserializers. Reference URLs and timestamps are read
+ * straight from the parser's character buffer, so no {@code String} is built for them.
+ */
+final class CompactJson {
+
+    /** {@code created} of a model whose timestamp was null, empty or absent. */
+    static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final int[] NO_IDS = new int[0];
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private CompactJson() {
+    }
+
+    /**
+     * @return the current token as text, or null for JSON null
+     */
+    static String text(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getText();
+    }
+
+    /**
+     * @return the trailing id of the current URL string, e.g. 28 for {@code .../api/episode/28},
+     * or 0 for an empty URL (the API's "unknown" origin and location)
+     */
+    static int trailingId(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) {
+            return 0;
+        }
+        char[] chars = parser.getTextCharacters();
+        int start = parser.getTextOffset();
+        int end = start + parser.getTextLength();
+        int digits = end;
+        while (digits > start && chars[digits - 1] >= '0' && chars[digits - 1] <= '9') {
+            digits--;
+        }
+        int id = 0;
+        for (int i = digits; i < end; i++) {
+            id = id * 10 + (chars[i] - '0');
+        }
+        return id;
+    }
+
+    /**
+     * Reads an array of reference URLs, positioned on its {@code START_ARRAY}, into their ids.
+     */
+    static int[] ids(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return NO_IDS;
+        }
+        int[] ids = new int[16];
+        int count = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = trailingId(parser);
+        }
+        return count == 0 ? NO_IDS : Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Parses the API's {@code created} timestamp ({@code 2017-11-04T18:48:46.250Z}) into epoch
+     * milliseconds, falling back to a full ISO-8601 parse for any other layout.
+     *
+     * @return {@link #NO_TIMESTAMP} for JSON null or an empty string
+     */
+    static long epochMillis(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return NO_TIMESTAMP;
+        }
+        char[] c = parser.getTextCharacters();
+        int o = parser.getTextOffset();
+        int length = parser.getTextLength();
+        if (length == 0) {
+            return NO_TIMESTAMP;
+        }
+        boolean compact = (length == 24 || length == 20) && c[o + 4] == '-' && c[o + 7] == '-'
+                && c[o + 10] == 'T' && c[o + 13] == ':' && c[o + 16] == ':' && c[o + length - 1] == 'Z'
+                && (length == 20 || c[o + 19] == '.');
+        if (!compact) {
+            try {
+                return OffsetDateTime.parse(parser.getText()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                throw new IOException("Unparseable timestamp '" + parser.getText() + "'", e);
+            }
+        }
+        long day = LocalDate.of(digits(c, o, 4), digits(c, o + 5, 2), digits(c, o + 8, 2)).toEpochDay();
+        long millisOfDay = ((digits(c, o + 11, 2) * 60L + digits(c, o + 14, 2)) * 60L + digits(c, o + 17, 2)) * 1000L
+                + (length == 24 ? digits(c, o + 20, 3) : 0);
+        return day * MILLIS_PER_DAY + millisOfDay;
+    }
+
+    private static int digits(char[] chars, int from, int count) throws IOException {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                throw new IOException("Unexpected '" + c + "' in timestamp");
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
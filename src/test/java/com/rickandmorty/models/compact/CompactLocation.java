@@ -0,0 +1,110 @@
+package com.rickandmorty.models.compact;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Memory-lean counterpart of {@link com.rickandmorty.models.Location}: residents as ids,
+ * interned type and dimension, and {@code created} as epoch milliseconds.
+ */
+@JsonDeserialize(using = CompactLocation.Deserializer.class)
+public final class CompactLocation {
+
+    private final int id;
+    private final String name;
+    private final String type;
+    private final String dimension;
+    private final int[] residentIds;
+    private final long created;
+
+    CompactLocation(int id, String name, String type, String dimension, int[] residentIds, long created) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.dimension = dimension;
+        this.residentIds = residentIds;
+        this.created = created;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return the resident character ids in API order; the array is shared, do not modify it
+     */
+    public int[] getResidentIds() {
+        return residentIds;
+    }
+
+    /**
+     * @return epoch milliseconds, or {@code Long.MIN_VALUE} when the API sent none
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    static final class Deserializer extends StdDeserializer<CompactLocation> {
+
+        Deserializer() {
+            super(CompactLocation.class);
+        }
+
+        @Override
+        public CompactLocation deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                return (CompactLocation) context.handleUnexpectedToken(CompactLocation.class, parser);
+            }
+            int id = 0;
+            String name = null;
+            String type = null;
+            String dimension = null;
+            int[] residentIds = null;
+            long created = CompactJson.NO_TIMESTAMP;
+
+            for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+                parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getIntValue();
+                        break;
+                    case "name":
+                        name = CompactJson.text(parser);
+                        break;
+                    case "type":
+                        type = Interner.intern(CompactJson.text(parser));
+                        break;
+                    case "dimension":
+                        dimension = Interner.intern(CompactJson.text(parser));
+                        break;
+                    case "residents":
+                        residentIds = CompactJson.ids(parser);
+                        break;
+                    case "created":
+                        created = CompactJson.epochMillis(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return new CompactLocation(id, name, type, dimension, residentIds, created);
+        }
+    }
+}
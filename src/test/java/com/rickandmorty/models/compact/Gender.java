@@ -0,0 +1,34 @@
+package com.rickandmorty.models.compact;
+
+/**
+ * {@code Character.gender} values of the API.
+ */
+public enum Gender {
+
+    FEMALE("Female"), MALE("Male"), GENDERLESS("Genderless"), UNKNOWN("unknown");
+
+    private final String apiValue;
+
+    Gender(String apiValue) {
+        this.apiValue = apiValue;
+    }
+
+    /**
+     * @return the value as the API spells it
+     */
+    public String apiValue() {
+        return apiValue;
+    }
+
+    /**
+     * @return the matching gender ignoring case, or null when the API sent something else
+     */
+    public static Gender of(String apiValue) {
+        for (Gender gender : values()) {
+            if (gender.apiValue.equalsIgnoreCase(apiValue)) {
+                return gender;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,54 @@
+package com.rickandmorty.models.compact;
+
+import com.fasterxml.jackson.databind.DeserializationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * JVM-wide dictionary for categorical strings ({@code species}, {@code type}, {@code dimension}):
+ * every distinct value is kept once and shared by all compact models. Only meant for
+ * low-cardinality fields, since entries are never released. Open-ended values that still repeat
+ * within a response, such as the location names characters refer to, go through
+ * {@link #internPerRead} instead.
+ */
+public final class Interner {
+
+    private static final ConcurrentMap<String, String> VALUES = new ConcurrentHashMap<>();
+    private static final Object PER_READ = new Object();
+
+    private Interner() {
+    }
+
+    public static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = VALUES.putIfAbsent(value, value);
+        return existing == null ? value : existing;
+    }
+
+    /**
+     * Shares equal values within one {@code readValue} call, e.g. one page; the table goes away
+     * with the call's context.
+     */
+    public static String internPerRead(DeserializationContext context, String value) {
+        if (value == null) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> values = (Map<String, String>) context.getAttribute(PER_READ);
+        if (values == null) {
+            values = new HashMap<>();
+            context.setAttribute(PER_READ, values);
+        }
+        String existing = values.putIfAbsent(value, value);
+        return existing == null ? value : existing;
+    }
+
+    public static int size() {
+        return VALUES.size();
+    }
+}
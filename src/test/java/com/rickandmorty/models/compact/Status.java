@@ -0,0 +1,34 @@
+package com.rickandmorty.models.compact;
+
+/**
+ * {@code Character.status} values of the API.
+ */
+public enum Status {
+
+    ALIVE("Alive"), DEAD("Dead"), UNKNOWN("unknown");
+
+    private final String apiValue;
+
+    Status(String apiValue) {
+        this.apiValue = apiValue;
+    }
+
+    /**
+     * @return the value as the API spells it
+     */
+    public String apiValue() {
+        return apiValue;
+    }
+
+    /**
+     * @return the matching status ignoring case, or null when the API sent something else
+     */
+    public static Status of(String apiValue) {
+        for (Status status : values()) {
+            if (status.apiValue.equalsIgnoreCase(apiValue)) {
+                return status;
+            }
+        }
+        return null;
+    }
+}
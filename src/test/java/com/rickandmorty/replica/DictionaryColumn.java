@@ -0,0 +1,60 @@
+package com.rickandmorty.replica;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Dictionary-encoded column for a low-cardinality field: each distinct value is stored once and
+ * owns a bitmap of the ids that carry it. A filter tests the handful of dictionary entries and
+ * ORs their bitmaps, without touching the rows.
+ */
+final class DictionaryColumn {
+
+    private final List<String> values = new ArrayList<>();
+    private final List<BitSet> bitmaps = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    void set(int id, String value) {
+        String key = value == null ? "" : value;
+        Integer code = codes.get(key);
+        if (code == null) {
+            code = values.size();
+            codes.put(key, code);
+            values.add(key);
+            bitmaps.add(new BitSet());
+        }
+        bitmaps.get(code).set(id);
+    }
+
+    /**
+     * @param exact whole-value match, as the API does for {@code status} and {@code gender};
+     *              otherwise a substring match. Both ignore case.
+     */
+    BitSet matching(String expected, boolean exact) {
+        String needle = expected.toLowerCase(Locale.ROOT);
+        BitSet result = new BitSet();
+        for (int code = 0; code < values.size(); code++) {
+            String value = values.get(code).toLowerCase(Locale.ROOT);
+            if (exact ? value.equals(needle) : value.contains(needle)) {
+                result.or(bitmaps.get(code));
+            }
+        }
+        return result;
+    }
+
+    int cardinality() {
+        return values.size();
+    }
+
+    long memoryBytes() {
+        long total = 0;
+        for (int code = 0; code < values.size(); code++) {
+            total += bitmaps.get(code).size() / 8 + 32 + 40 + values.get(code).length();
+        }
+        return total;
+    }
+}
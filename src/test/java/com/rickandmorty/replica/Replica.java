@@ -0,0 +1,142 @@
+package com.rickandmorty.replica;
+
+import com.rickandmorty.client.ApiCrawler;
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Column-oriented, in-memory copy of the whole API used as ground truth for filter queries.
+ * Rows are keyed by their primitive {@code int} id. {@code name} and {@code episode} are text
+ * columns; {@code status}, {@code species}, {@code type}, {@code gender} and {@code dimension}
+ * are dictionary-encoded into one bitmap per distinct value. Matching follows the API:
+ * {@code status} and {@code gender} compare whole values, everything else is a case-insensitive
+ * substring.
+ */
+public final class Replica {
+
+    private static final Set<String> EXACT_FILTERS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("status", "gender")));
+    private static final int PREFETCH_WINDOW = 8;
+
+    private final ReplicaTable characters = new ReplicaTable("character",
+            Collections.singletonList("name"), Arrays.asList("status", "species", "type", "gender"), EXACT_FILTERS);
+    private final ReplicaTable locations = new ReplicaTable("location",
+            Collections.singletonList("name"), Arrays.asList("type", "dimension"), EXACT_FILTERS);
+    private final ReplicaTable episodes = new ReplicaTable("episode",
+            Arrays.asList("name", "episode"), Collections.emptyList(), EXACT_FILTERS);
+
+    private Replica() {
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Crawls every collection under {@code baseUrl} into a new replica.
+     */
+    public static Replica load(String baseUrl) {
+        Builder builder = builder();
+        try (Stream<Character> stream = ApiCrawler.prefetch(baseUrl + "/character", Character.class, PREFETCH_WINDOW)) {
+            stream.forEach(builder::add);
+        }
+        try (Stream<Location> stream = ApiCrawler.prefetch(baseUrl + "/location", Location.class, PREFETCH_WINDOW)) {
+            stream.forEach(builder::add);
+        }
+        try (Stream<Episode> stream = ApiCrawler.prefetch(baseUrl + "/episode", Episode.class, PREFETCH_WINDOW)) {
+            stream.forEach(builder::add);
+        }
+        return builder.build();
+    }
+
+    public ReplicaTable characters() {
+        return characters;
+    }
+
+    public ReplicaTable locations() {
+        return locations;
+    }
+
+    public ReplicaTable episodes() {
+        return episodes;
+    }
+
+    /**
+     * @param path collection path as used by the API: {@code character}, {@code location} or {@code episode}
+     */
+    public ReplicaTable table(String path) {
+        switch (path) {
+            case "character":
+                return characters;
+            case "location":
+                return locations;
+            case "episode":
+                return episodes;
+            default:
+                throw new IllegalArgumentException("Unknown collection " + path);
+        }
+    }
+
+    public long memoryBytes() {
+        return characters.memoryBytes() + locations.memoryBytes() + episodes.memoryBytes();
+    }
+
+    public String summary() {
+        return characters.summary() + "; " + locations.summary() + "; " + episodes.summary();
+    }
+
+    /**
+     * Accumulates rows one entity at a time, so the source POJOs can be dropped as they are read.
+     */
+    public static final class Builder {
+
+        private Replica replica = new Replica();
+
+        private Builder() {
+        }
+
+        public Builder add(Character character) {
+            int id = character.getId();
+            ReplicaTable table = replica.characters;
+            table.addText(id, "name", character.getName());
+            table.addCategory(id, "status", character.getStatus());
+            table.addCategory(id, "species", character.getSpecies());
+            table.addCategory(id, "type", character.getType());
+            table.addCategory(id, "gender", character.getGender());
+            return this;
+        }
+
+        public Builder add(Location location) {
+            int id = location.getId();
+            ReplicaTable table = replica.locations;
+            table.addText(id, "name", location.getName());
+            table.addCategory(id, "type", location.getType());
+            table.addCategory(id, "dimension", location.getDimension());
+            return this;
+        }
+
+        public Builder add(Episode episode) {
+            int id = episode.getId();
+            ReplicaTable table = replica.episodes;
+            table.addText(id, "name", episode.getName());
+            table.addText(id, "episode", episode.getEpisode());
+            return this;
+        }
+
+        public Replica build() {
+            Replica built = replica;
+            built.characters.trim();
+            built.locations.trim();
+            built.episodes.trim();
+            replica = null;
+            return built;
+        }
+    }
+}
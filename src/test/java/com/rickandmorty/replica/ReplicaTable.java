@@ -0,0 +1,119 @@
+package com.rickandmorty.replica;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One collection of the replica: the ids present, plus a column per filterable field.
+ * {@link #query(Map)} accepts the same filter parameters as the API's collection endpoint
+ * and ignores any other key, as the API does.
+ */
+public final class ReplicaTable {
+
+    private final String name;
+    private final Map<String, TextColumn> textColumns = new LinkedHashMap<>();
+    private final Map<String, DictionaryColumn> dictionaryColumns = new LinkedHashMap<>();
+    private final Set<String> exactFilters;
+    private final BitSet ids = new BitSet();
+
+    ReplicaTable(String name, List<String> textFields, List<String> dictionaryFields, Set<String> exactFilters) {
+        this.name = name;
+        this.exactFilters = exactFilters;
+        textFields.forEach(field -> textColumns.put(field, new TextColumn()));
+        dictionaryFields.forEach(field -> dictionaryColumns.put(field, new DictionaryColumn()));
+    }
+
+    void addText(int id, String field, String value) {
+        ids.set(id);
+        textColumns.get(field).set(id, value);
+    }
+
+    void addCategory(int id, String field, String value) {
+        ids.set(id);
+        dictionaryColumns.get(field).set(id, value);
+    }
+
+    void trim() {
+        int maxId = Math.max(0, ids.length() - 1);
+        textColumns.values().forEach(column -> column.trim(maxId));
+    }
+
+    /**
+     * Intersects the bitmaps of the categorical filters first and only then scans the text
+     * columns, restricted to the surviving ids.
+     *
+     * @return the matching ids; a copy the caller may modify
+     */
+    public BitSet query(Map<String, String> filters) {
+        BitSet result = (BitSet) ids.clone();
+        List<Map.Entry<String, String>> textFilters = new ArrayList<>();
+        for (Map.Entry<String, String> filter : filters.entrySet()) {
+            DictionaryColumn dictionary = dictionaryColumns.get(filter.getKey());
+            if (dictionary != null) {
+                result.and(dictionary.matching(filter.getValue(), exactFilters.contains(filter.getKey())));
+            } else if (textColumns.containsKey(filter.getKey())) {
+                textFilters.add(filter);
+            }
+        }
+        for (Map.Entry<String, String> filter : textFilters) {
+            if (result.isEmpty()) {
+                break;
+            }
+            textColumns.get(filter.getKey()).retainContaining(result, filter.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * @return matching ids in ascending order, the order the API pages through them
+     */
+    public int[] ids(Map<String, String> filters) {
+        return query(filters).stream().toArray();
+    }
+
+    public int size() {
+        return ids.cardinality();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Set<String> getFilters() {
+        Set<String> filters = new LinkedHashSet<>(textColumns.keySet());
+        filters.addAll(dictionaryColumns.keySet());
+        return Collections.unmodifiableSet(filters);
+    }
+
+    /**
+     * @return estimated heap held by the id bitmap and every column
+     */
+    public long memoryBytes() {
+        long total = ids.size() / 8;
+        for (TextColumn column : textColumns.values()) {
+            total += column.memoryBytes();
+        }
+        for (DictionaryColumn column : dictionaryColumns.values()) {
+            total += column.memoryBytes();
+        }
+        return total;
+    }
+
+    public String summary() {
+        StringBuilder cardinalities = new StringBuilder();
+        textColumns.forEach((field, column) ->
+                cardinalities.append(cardinalities.length() == 0 ? "" : ", ").append(field).append('=')
+                        .append(column.cardinality()));
+        dictionaryColumns.forEach((field, column) ->
+                cardinalities.append(cardinalities.length() == 0 ? "" : ", ").append(field).append('=')
+                        .append(column.cardinality()));
+        return String.format("%s: %d rows, %.1f KiB, distinct values {%s}",
+                name, size(), memoryBytes() / 1024.0, cardinalities);
+    }
+}
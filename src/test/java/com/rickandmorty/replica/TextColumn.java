@@ -0,0 +1,111 @@
+package com.rickandmorty.replica;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Free-text column for substring filters. Each distinct value is lower-cased and appended once
+ * to a UTF-8 byte blob and every id stores the code of its value, so a million names cost four
+ * bytes each plus their distinct bytes rather than a {@code String} object apiece. A filter
+ * matches the needle against the distinct values only, then keeps the candidates whose code
+ * matched. UTF-8 is self-synchronizing, so a byte-level match of the lower-cased needle is a
+ * character-level substring match.
+ */
+final class TextColumn {
+
+    private byte[] bytes = new byte[4096];
+    private int used;
+    private int[] valueStarts = new int[64];
+    private int values;
+    private int[] codes = new int[64];
+    private Map<String, Integer> codesByValue = new HashMap<>();
+
+    void set(int id, String value) {
+        String normalized = value == null ? "" : value.toLowerCase(Locale.ROOT);
+        Integer code = codesByValue.get(normalized);
+        if (code == null) {
+            code = append(normalized.getBytes(StandardCharsets.UTF_8));
+            codesByValue.put(normalized, code);
+        }
+        if (id >= codes.length) {
+            codes = Arrays.copyOf(codes, Math.max(id + 1, codes.length * 2));
+        }
+        codes[id] = code;
+    }
+
+    /**
+     * Clears every candidate whose value does not contain {@code needle}, ignoring case.
+     */
+    void retainContaining(BitSet candidates, String needle) {
+        byte[] pattern = needle.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+        boolean[] matchingCodes = new boolean[values];
+        for (int code = 0; code < values; code++) {
+            matchingCodes[code] = contains(valueStarts[code], valueStarts[code + 1], pattern);
+        }
+        long[] words = candidates.toLongArray();
+        for (int word = 0; word < words.length; word++) {
+            long remaining = words[word];
+            long kept = 0;
+            while (remaining != 0) {
+                int bit = Long.numberOfTrailingZeros(remaining);
+                int id = (word << 6) + bit;
+                if (id < codes.length && matchingCodes[codes[id]]) {
+                    kept |= 1L << bit;
+                }
+                remaining &= remaining - 1;
+            }
+            words[word] = kept;
+        }
+        candidates.and(BitSet.valueOf(words));
+    }
+
+    /**
+     * Releases build-time slack and the value lookup; the column is read-only afterwards.
+     */
+    void trim(int maxId) {
+        bytes = Arrays.copyOf(bytes, used);
+        valueStarts = Arrays.copyOf(valueStarts, values + 1);
+        codes = Arrays.copyOf(codes, maxId + 1);
+        codesByValue = null;
+    }
+
+    int cardinality() {
+        return values;
+    }
+
+    long memoryBytes() {
+        return bytes.length + 4L * valueStarts.length + 4L * codes.length + 3 * 16;
+    }
+
+    private int append(byte[] encoded) {
+        if (used + encoded.length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(used + encoded.length, bytes.length * 2));
+        }
+        if (values + 2 > valueStarts.length) {
+            valueStarts = Arrays.copyOf(valueStarts, valueStarts.length * 2);
+        }
+        System.arraycopy(encoded, 0, bytes, used, encoded.length);
+        valueStarts[values] = used;
+        used += encoded.length;
+        valueStarts[values + 1] = used;
+        return values++;
+    }
+
+    private boolean contains(int start, int end, byte[] pattern) {
+        int last = end - pattern.length;
+        outer:
+        for (int i = start; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
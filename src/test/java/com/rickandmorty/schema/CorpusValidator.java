@@ -0,0 +1,236 @@
+package com.rickandmorty.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.rickandmorty.http.ApiConnections;
+import com.rickandmorty.utils.ModelMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Validates every page of every collection against the {@link SchemaRegistry} schemas. Page 1 of
+ * each collection gives {@code info.pages}; all remaining pages are then fetched and validated
+ * concurrently. Every violation is collected, including pages that could not be fetched or parsed,
+ * so one run reports the whole corpus rather than its first problem.
+ */
+public class CorpusValidator {
+
+    public static final List<String> RESOURCES = Collections.unmodifiableList(
+            Arrays.asList("/character", "/location", "/episode"));
+
+    private final String baseUrl;
+    private final int threads;
+
+    /**
+     * @param baseUrl API root, e.g. {@code https://rickandmortyapi.com/api}
+     * @param threads pages fetched and validated at once
+     */
+    public CorpusValidator(String baseUrl, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed");
+        }
+        this.baseUrl = baseUrl;
+        this.threads = threads;
+    }
+
+    /**
+     * Reads {@code schema.threads} (default: twice the number of cores).
+     */
+    public static CorpusValidator fromSystemProperties(String baseUrl) {
+        return new CorpusValidator(baseUrl, Integer.getInteger("schema.threads",
+                Runtime.getRuntime().availableProcessors() * 2));
+    }
+
+    public Report validateAll() {
+        return validate(RESOURCES);
+    }
+
+    public Report validate(List<String> resources) {
+        // compile up front so the first pages do not race to load the schemas
+        SchemaRegistry.schema(SchemaRegistry.API_RESPONSE);
+        resources.forEach(resource -> SchemaRegistry.schema(SchemaRegistry.forResource(resource)));
+
+        Queue<Violation> violations = new ConcurrentLinkedQueue<>();
+        LongAdder records = new LongAdder();
+        LongAdder pages = new LongAdder();
+        LongAdder validationNanos = new LongAdder();
+        long expectedRecords = 0;
+        long started = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "schema-validator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<JsonNode>> firstPages = new ArrayList<>();
+            for (String resource : resources) {
+                firstPages.add(executor.submit(() -> check(resource, 1, violations, records, pages, validationNanos)));
+            }
+            List<Future<?>> remaining = new ArrayList<>();
+            for (int i = 0; i < resources.size(); i++) {
+                String resource = resources.get(i);
+                JsonNode firstPage = await(firstPages.get(i));
+                if (firstPage == null) {
+                    continue;
+                }
+                expectedRecords += firstPage.path("info").path("count").asLong();
+                int pageCount = firstPage.path("info").path("pages").asInt();
+                for (int page = 2; page <= pageCount; page++) {
+                    int number = page;
+                    remaining.add(executor.submit(() -> check(resource, number, violations, records, pages, validationNanos)));
+                }
+            }
+            for (Future<?> future : remaining) {
+                await(future);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        if (records.sum() != expectedRecords) {
+            violations.add(new Violation(String.join(",", resources), 0,
+                    "/info/count: validated " + records.sum() + " records but info.count adds up to " + expectedRecords));
+        }
+        return new Report(records.sum(), pages.sum(), new ArrayList<>(violations), System.nanoTime() - started,
+                validationNanos.sum());
+    }
+
+    /**
+     * @return the parsed page, or null when it could not be fetched or parsed (recorded as a violation)
+     */
+    private JsonNode check(String resource, int page, Queue<Violation> violations, LongAdder records, LongAdder pages,
+                           LongAdder validationNanos) {
+        String url = baseUrl + resource + "?page=" + page;
+        JsonNode body;
+        try {
+            HttpURLConnection connection = ApiConnections.open(url);
+            connection.setRequestProperty("Accept", "application/json");
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                connection.disconnect();
+                violations.add(new Violation(resource, page, "/: status " + status));
+                return null;
+            }
+            try (InputStream in = connection.getInputStream()) {
+                body = ModelMapper.MAPPER.readTree(in);
+            }
+        } catch (IOException e) {
+            violations.add(new Violation(resource, page, "/: could not be read: " + e));
+            return null;
+        }
+        long validating = System.nanoTime();
+        for (String violation : SchemaRegistry.validatePage(SchemaRegistry.forResource(resource), body)) {
+            violations.add(new Violation(resource, page, violation));
+        }
+        validationNanos.add(System.nanoTime() - validating);
+        pages.increment();
+        records.add(body.path("results").size());
+        return body;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while validating the corpus", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Validating a page failed", e.getCause());
+        }
+    }
+
+    /**
+     * One schema violation, located by collection, page and JSON pointer inside the page.
+     */
+    public static final class Violation {
+
+        private final String resource;
+        private final int page;
+        private final String detail;
+
+        Violation(String resource, int page, String detail) {
+            this.resource = resource;
+            this.page = page;
+            this.detail = detail;
+        }
+
+        public String getResource() {
+            return resource;
+        }
+
+        public int getPage() {
+            return page;
+        }
+
+        /**
+         * @return {@code <pointer inside the page>: <message>}
+         */
+        public String getDetail() {
+            return detail;
+        }
+
+        @Override
+        public String toString() {
+            return resource + "?page=" + page + " " + detail;
+        }
+    }
+
+    public static final class Report {
+
+        private final long records;
+        private final long pages;
+        private final List<Violation> violations;
+        private final long elapsedNanos;
+        private final long validationNanos;
+
+        Report(long records, long pages, List<Violation> violations, long elapsedNanos, long validationNanos) {
+            this.records = records;
+            this.pages = pages;
+            this.violations = Collections.unmodifiableList(violations);
+            this.elapsedNanos = elapsedNanos;
+            this.validationNanos = validationNanos;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        public long getPages() {
+            return pages;
+        }
+
+        public List<Violation> getViolations() {
+            return violations;
+        }
+
+        /**
+         * @return time spent applying the schemas, summed over the threads; the rest of the
+         * wall-clock went to fetching and parsing the pages
+         */
+        public long getValidationMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(validationNanos);
+        }
+
+        public double getRecordsPerSecond() {
+            return elapsedNanos <= 0 ? 0 : records * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        public String summary() {
+            return String.format("%d records in %d pages, %d violations, %d ms (%d ms applying the schemas), %.0f records/s",
+                    records, pages, violations.size(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getValidationMillis(),
+                    getRecordsPerSecond());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.rickandmorty.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.NodeType;
+import com.github.fge.jsonschema.cfg.ValidationConfiguration;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.ProcessingMessage;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.library.DraftV4Library;
+import com.github.fge.jsonschema.library.Keyword;
+import com.github.fge.jsonschema.library.Library;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+import com.rickandmorty.utils.ModelMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The JSON Schemas under {@code src/test/resources/schemas}, each loaded and compiled once per
+ * JVM. A compiled {@link JsonSchema} is immutable, so one instance validates from any thread.
+ * The schemas are draft 4 without a {@code $schema} declaration, so they are read with this
+ * registry's draft 4 library, whose {@code pattern} is evaluated by {@link JavaPatternValidator}.
+ */
+public final class SchemaRegistry {
+
+    public static final String CHARACTER = "character";
+    public static final String LOCATION = "location";
+    public static final String EPISODE = "episode";
+    public static final String API_RESPONSE = "api-response";
+
+    private static final String LIBRARY_URI = "urn:rickandmorty:draftv4-java-regex#";
+    private static final JsonSchemaFactory FACTORY = factory();
+    private static final ConcurrentMap<String, JsonSchema> SCHEMAS = new ConcurrentHashMap<>();
+
+    private SchemaRegistry() {
+    }
+
+    /**
+     * @param name file name under {@code schemas/}, without {@code .json}, e.g. {@link #CHARACTER}
+     */
+    public static JsonSchema schema(String name) {
+        return SCHEMAS.computeIfAbsent(name, SchemaRegistry::compile);
+    }
+
+    /**
+     * @param resource collection path such as {@code /character} or {@code character}
+     * @return the schema of one element of that collection
+     */
+    public static String forResource(String resource) {
+        String name = resource.startsWith("/") ? resource.substring(1) : resource;
+        if (!CHARACTER.equals(name) && !LOCATION.equals(name) && !EPISODE.equals(name)) {
+            throw new IllegalArgumentException("No schema for resource '" + resource + "'");
+        }
+        return name;
+    }
+
+    /**
+     * Checks the whole instance, not stopping at the first problem.
+     *
+     * @return one line per violation, {@code <pointer>: <message>}; empty when the instance is valid
+     */
+    public static List<String> validate(String name, JsonNode instance) {
+        return validate(name, instance, "");
+    }
+
+    /**
+     * @param pointerPrefix prepended to each instance pointer, for instances nested in a larger document
+     */
+    public static List<String> validate(String name, JsonNode instance, String pointerPrefix) {
+        ProcessingReport report;
+        try {
+            report = schema(name).validate(instance, true);
+        } catch (ProcessingException e) {
+            throw new IllegalStateException("Schema '" + name + "' could not be applied", e);
+        }
+        List<String> violations = new ArrayList<>();
+        if (report.isSuccess()) {
+            return violations;
+        }
+        for (ProcessingMessage message : report) {
+            JsonNode json = message.asJson();
+            String pointer = pointerPrefix + json.path("instance").path("pointer").asText();
+            violations.add((pointer.isEmpty() ? "/" : pointer) + ": " + message.getMessage());
+        }
+        return violations;
+    }
+
+    /**
+     * Fails with every violation of a response body, parsed once with {@link ModelMapper#tree} so
+     * the same tree can then be mapped. A JSON array is checked element by element.
+     */
+    public static void assertValid(String name, JsonNode body) {
+        List<String> violations = new ArrayList<>();
+        if (body.isArray()) {
+            for (int i = 0; i < body.size(); i++) {
+                violations.addAll(validate(name, body.get(i), "/" + i));
+            }
+        } else {
+            violations.addAll(validate(name, body));
+        }
+        if (!violations.isEmpty()) {
+            throw new AssertionError("Response does not match schema '" + name + "':"
+                    + System.lineSeparator() + String.join(System.lineSeparator(), violations));
+        }
+    }
+
+    /**
+     * Fails with every violation of a page: the envelope, then each element of {@code results}.
+     */
+    public static void assertValidPage(String elementSchema, JsonNode body) {
+        List<String> violations = validatePage(elementSchema, body);
+        if (!violations.isEmpty()) {
+            throw new AssertionError("Page does not match schemas '" + API_RESPONSE + "'/'" + elementSchema + "':"
+                    + System.lineSeparator() + String.join(System.lineSeparator(), violations));
+        }
+    }
+
+    /**
+     * @return violations of the envelope and of each element of {@code results}
+     */
+    public static List<String> validatePage(String elementSchema, JsonNode page) {
+        List<String> violations = validate(API_RESPONSE, page);
+        JsonNode results = page.path("results");
+        for (int i = 0; i < results.size(); i++) {
+            violations.addAll(validate(elementSchema, results.get(i), "/results/" + i));
+        }
+        return violations;
+    }
+
+    private static JsonSchemaFactory factory() {
+        Library draftV4 = DraftV4Library.get();
+        Library library = draftV4.thaw()
+                .addKeyword(Keyword.newBuilder("pattern")
+                        .withSyntaxChecker(draftV4.getSyntaxCheckers().entries().get("pattern"))
+                        .withSimpleDigester(NodeType.STRING)
+                        .withValidatorClass(JavaPatternValidator.class)
+                        .freeze())
+                .freeze();
+        ValidationConfiguration configuration = ValidationConfiguration.newBuilder()
+                .setDefaultLibrary(LIBRARY_URI, library)
+                .freeze();
+        return JsonSchemaFactory.newBuilder().setValidationConfiguration(configuration).freeze();
+    }
+
+    private static JsonSchema compile(String name) {
+        try {
+            return FACTORY.getJsonSchema("resource:/schemas/" + name + ".json");
+        } catch (ProcessingException e) {
+            throw new IllegalStateException("Schema 'schemas/" + name + ".json' could not be loaded", e);
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.rickandmorty.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rickandmorty.data.Dataset;
+import com.rickandmorty.models.ApiResponse;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Routes {@code /api/{resource}[/{ids}]} requests against a {@link Dataset}, mirroring the
+ * public API's response shapes: paginated envelopes, bare objects for single ids,
+ * arrays for comma separated ids and {@code {"error": ...}} bodies. Successful responses carry
+ * {@code Cache-Control}, {@code ETag} and {@code Last-Modified}, and conditional requests are
+ * answered with {@code 304 Not Modified}.
+ *
+ * <p>With compression on, bodies of at least {@link #MIN_COMPRESSED_LENGTH} bytes are sent
+ * {@code gzip} or {@code deflate} encoded when the request's {@code Accept-Encoding} allows it, as
+ * the public API does. An encoded response carries its own {@code ETag}; a conditional request
+ * matches either representation's.
+ */
+class ApiRequestHandler implements HttpHandler {
+
+    static final int PAGE_SIZE = 20;
+    static final String CONTENT_TYPE = "application/json; charset=utf-8";
+    static final String SERVER = "LocalApiServer";
+    static final String NOTHING_HERE = "There is nothing here";
+    static final String INVALID_ID = "Hey! that parameter is not allowed, try with a number instead ;)";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_CACHED_FILTERS = 64;
+    /** Smaller bodies fit in a packet either way, and would only pay for the gzip framing. */
+    static final int MIN_COMPRESSED_LENGTH = 1024;
+
+    private final String baseUrl;
+    private final int maxAgeSeconds;
+    private final boolean compression;
+    /** Read once per request, so a request swapped in the middle still answers from one dataset. */
+    private volatile Served served;
+    private final LongAdder compressedResponses = new LongAdder();
+    private final LongAdder bodyBytes = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+
+    ApiRequestHandler(Dataset dataset, String baseUrl, int maxAgeSeconds, boolean compression) {
+        this.baseUrl = baseUrl;
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.compression = compression;
+        this.served = new Served(dataset);
+    }
+
+    Dataset getDataset() {
+        return served.dataset;
+    }
+
+    /**
+     * Serves {@code dataset} from the next request on, with its own {@code Last-Modified} and no
+     * filter results left from the previous one.
+     */
+    void setDataset(Dataset dataset) {
+        served = new Served(dataset);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        Served served = this.served;
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, served, 404, error(NOTHING_HERE));
+                return;
+            }
+            String path = exchange.getRequestURI().getPath().substring(LocalApiServer.API_PATH.length());
+            String[] segments = path.replaceAll("^/+|/+$", "").split("/", -1);
+            if (segments[0].isEmpty()) {
+                send(exchange, served, 200, index());
+                return;
+            }
+            Resource resource = Resource.of(segments[0]);
+            if (resource == null || segments.length > 2) {
+                send(exchange, served, 404, error(NOTHING_HERE));
+            } else if (segments.length == 1) {
+                page(exchange, served, resource, parseQuery(exchange.getRequestURI().getRawQuery()));
+            } else {
+                lookup(exchange, served, resource, segments[1]);
+            }
+        } catch (RuntimeException e) {
+            send(exchange, served, 500, error(String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void page(HttpExchange exchange, Served served, Resource resource, Map<String, String> query) throws IOException {
+        int page;
+        try {
+            page = Math.max(1, Integer.parseInt(query.getOrDefault("page", "1")));
+        } catch (NumberFormatException e) {
+            send(exchange, served, 404, error(NOTHING_HERE));
+            return;
+        }
+        int[] matches = matches(served, resource, query);
+        int count = matches == null ? resource.count(served.dataset) : matches.length;
+        int pages = (count + PAGE_SIZE - 1) / PAGE_SIZE;
+        if (page > pages) {
+            send(exchange, served, 404, error(NOTHING_HERE));
+            return;
+        }
+        // page <= pages here, so the offset cannot overflow
+        int from = (page - 1) * PAGE_SIZE;
+        List<Object> results = new ArrayList<>(PAGE_SIZE);
+        for (int i = from; i < Math.min(count, from + PAGE_SIZE); i++) {
+            results.add(resource.entity(served.dataset, matches == null ? i + 1 : matches[i], baseUrl));
+        }
+
+        ApiResponse.Info info = new ApiResponse.Info();
+        info.setCount(count);
+        info.setPages(pages);
+        info.setNext(page < pages ? pageUrl(resource, page + 1, query) : null);
+        info.setPrev(page > 1 ? pageUrl(resource, page - 1, query) : null);
+        ApiResponse<Object> body = new ApiResponse<>();
+        body.setInfo(info);
+        body.setResults(results);
+        send(exchange, served, 200, body);
+    }
+
+    /**
+     * @return ids matching the query's filters in ascending order, or null when the query is unfiltered
+     */
+    private int[] matches(Served served, Resource resource, Map<String, String> query) {
+        IntPredicate filter = resource.filter(served.dataset, query);
+        if (filter == null) {
+            return null;
+        }
+        String key = pageUrl(resource, 0, query);
+        int[] cached = served.filterMatches.get(key);
+        if (cached == null) {
+            cached = IntStream.rangeClosed(1, resource.count(served.dataset)).parallel().filter(filter).toArray();
+            if (served.filterMatches.size() >= MAX_CACHED_FILTERS) {
+                served.filterMatches.clear();
+            }
+            served.filterMatches.put(key, cached);
+        }
+        return cached;
+    }
+
+    private void lookup(HttpExchange exchange, Served served, Resource resource, String idSegment) throws IOException {
+        boolean multiple = idSegment.indexOf(',') >= 0 || idSegment.startsWith("[");
+        List<Integer> ids = new ArrayList<>();
+        for (String token : idSegment.replaceAll("[\\[\\]]", "").split(",")) {
+            String trimmed = token.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            try {
+                ids.add(Integer.parseInt(trimmed));
+            } catch (NumberFormatException e) {
+                send(exchange, served, 500, error(INVALID_ID));
+                return;
+            }
+        }
+
+        if (!multiple) {
+            if (ids.isEmpty() || !resource.exists(served.dataset, ids.get(0))) {
+                send(exchange, served, 404, error(resource.label + " not found"));
+            } else {
+                send(exchange, served, 200, resource.entity(served.dataset, ids.get(0), baseUrl));
+            }
+            return;
+        }
+        List<Object> found = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            if (resource.exists(served.dataset, id)) {
+                found.add(resource.entity(served.dataset, id, baseUrl));
+            }
+        }
+        send(exchange, served, 200, found);
+    }
+
+    private Map<String, String> index() {
+        Map<String, String> index = new LinkedHashMap<>();
+        for (Resource resource : Resource.values()) {
+            index.put(resource.path + "s", baseUrl + "/" + resource.path);
+        }
+        return index;
+    }
+
+    private String pageUrl(Resource resource, int page, Map<String, String> query) {
+        StringBuilder url = new StringBuilder(baseUrl).append('/').append(resource.path).append("?page=").append(page);
+        for (Map.Entry<String, String> entry : query.entrySet()) {
+            if (resource.filters.contains(entry.getKey())) {
+                url.append('&').append(entry.getKey()).append('=').append(encode(entry.getValue()));
+            }
+        }
+        return url.toString();
+    }
+
+    private void send(HttpExchange exchange, Served served, int status, Object body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        Headers headers = exchange.getResponseHeaders();
+        Headers request = exchange.getRequestHeaders();
+        headers.set("Content-Type", CONTENT_TYPE);
+        headers.set("Server", SERVER);
+        String coding = compression && bytes.length >= MIN_COMPRESSED_LENGTH
+                ? negotiate(request.getFirst("Accept-Encoding")) : null;
+        if (compression) {
+            headers.set("Vary", "Accept-Encoding");
+        }
+        if (status == 200) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length);
+            String validator = Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(bytes.length);
+            String etag = "\"" + validator + "\"";
+            String representationEtag = coding == null ? etag : "\"" + validator + "-" + coding + "\"";
+            headers.set("Cache-Control", "public, max-age=" + maxAgeSeconds);
+            headers.set("ETag", representationEtag);
+            headers.set("Last-Modified", served.lastModified);
+            String ifNoneMatch = request.getFirst("If-None-Match");
+            if (etag.equals(ifNoneMatch) || representationEtag.equals(ifNoneMatch)
+                    || (ifNoneMatch == null && served.lastModified.equals(request.getFirst("If-Modified-Since")))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+        }
+        bodyBytes.add(bytes.length);
+        if (coding != null) {
+            bytes = encode(bytes, coding);
+            headers.set("Content-Encoding", coding);
+            compressedResponses.increment();
+        }
+        sentBytes.add(bytes.length);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * @return {@code gzip} or {@code deflate}, whichever {@code acceptEncoding} ranks higher (gzip
+     * on a tie), or null if it accepts neither
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = quality;
+            } else if (coding.equals("deflate")) {
+                deflate = quality;
+            } else if (coding.equals("*")) {
+                any = quality;
+            }
+        }
+        gzip = gzip < 0 ? any : gzip;
+        deflate = deflate < 0 ? any : deflate;
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? "gzip" : "deflate";
+    }
+
+    private static byte[] encode(byte[] bytes, String coding) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(bytes.length / 4);
+        try (OutputStream out = "gzip".equals(coding) ? new GZIPOutputStream(encoded) : new DeflaterOutputStream(encoded)) {
+            out.write(bytes);
+        }
+        return encoded.toByteArray();
+    }
+
+    long getCompressedResponses() {
+        return compressedResponses.sum();
+    }
+
+    /**
+     * @return body bytes of the responses sent, before encoding
+     */
+    long getBodyBytes() {
+        return bodyBytes.sum();
+    }
+
+    /**
+     * @return body bytes actually sent
+     */
+    long getSentBytes() {
+        return sentBytes.sum();
+    }
+
+    private static Map<String, String> error(String message) {
+        return Collections.singletonMap("error", message);
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            }
+        }
+        return query;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A dataset with what is derived from it.
+     */
+    private static final class Served {
+
+        final Dataset dataset;
+        final String lastModified;
+        /** Matching ids per filtered query, so paging through a filter does not rescan the dataset per page. */
+        final Map<String, int[]> filterMatches = new ConcurrentHashMap<>();
+
+        Served(Dataset dataset) {
+            this.dataset = dataset;
+            this.lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                    Instant.ofEpochMilli(dataset.episodeCreated(dataset.getEpisodeCount())).atZone(ZoneOffset.UTC));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.rickandmorty.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces every response body to a fixed rate, like an upstream behind a slow link, so that sending
+ * fewer bytes shows up in latency. Each response gets the full rate to itself; concurrent
+ * responses do not share it.
+ */
+class BandwidthFilter extends Filter {
+
+    private static final int CHUNK = 4096;
+
+    private final long bytesPerSecond;
+
+    BandwidthFilter(int kibPerSecond) {
+        this.bytesPerSecond = kibPerSecond * 1024L;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        exchange.setStreams(null, new PacedOutputStream(exchange.getResponseBody(), bytesPerSecond));
+        chain.doFilter(exchange);
+    }
+
+    @Override
+    public String description() {
+        return "Paces response bodies to " + bytesPerSecond / 1024 + " KiB/s";
+    }
+
+    private static final class PacedOutputStream extends FilterOutputStream {
+
+        private final long bytesPerSecond;
+        private long started;
+        private long written;
+
+        PacedOutputStream(OutputStream out, long bytesPerSecond) {
+            super(out);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            if (started == 0) {
+                started = System.nanoTime();
+            }
+            for (int chunk = offset; chunk < offset + length; chunk += CHUNK) {
+                int size = Math.min(CHUNK, offset + length - chunk);
+                out.write(buffer, chunk, size);
+                written += size;
+                out.flush();
+                long due = started + TimeUnit.SECONDS.toNanos(1) * written / bytesPerSecond;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while pacing a response", e);
+                    }
+                }
+            }
+        }
+    }
+}
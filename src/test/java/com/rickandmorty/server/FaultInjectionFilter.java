@@ -0,0 +1,85 @@
+package com.rickandmorty.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Makes the local server misbehave like a real upstream on a bad day: a fraction of requests is
+ * held back by a latency spike, and a fraction fails with {@code 500}. Faults are drawn from a
+ * fixed seed, so requests sent one after another meet the same faults on every run.
+ */
+class FaultInjectionFilter extends Filter {
+
+    static final long SEED = 42;
+
+    private static final byte[] SERVER_ERROR = "{\"error\":\"Internal server error\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final double errorRate;
+    private final double spikeRate;
+    private final long spikeNanos;
+    private final Random random = new Random(SEED);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder spikes = new LongAdder();
+
+    /**
+     * @param errorRate   fraction of requests answered {@code 500}
+     * @param spikeRate   fraction of requests delayed by {@code spikeMillis}
+     * @param spikeMillis length of a latency spike
+     */
+    FaultInjectionFilter(double errorRate, double spikeRate, int spikeMillis) {
+        this.errorRate = errorRate;
+        this.spikeRate = spikeRate;
+        this.spikeNanos = TimeUnit.MILLISECONDS.toNanos(spikeMillis);
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        boolean spike;
+        boolean error;
+        synchronized (random) {
+            spike = spikeRate > 0 && random.nextDouble() < spikeRate;
+            error = errorRate > 0 && random.nextDouble() < errorRate;
+        }
+        if (spike) {
+            spikes.increment();
+            try {
+                TimeUnit.NANOSECONDS.sleep(spikeNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted during a latency spike", e);
+            }
+        }
+        if (!error) {
+            chain.doFilter(exchange);
+            return;
+        }
+        errors.increment();
+        exchange.getResponseHeaders().set("Content-Type", ApiRequestHandler.CONTENT_TYPE);
+        exchange.getResponseHeaders().set("Server", ApiRequestHandler.SERVER);
+        exchange.sendResponseHeaders(500, SERVER_ERROR.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(SERVER_ERROR);
+        }
+        exchange.close();
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+
+    long getSpikes() {
+        return spikes.sum();
+    }
+
+    @Override
+    public String description() {
+        return "Injects latency spikes and 500 errors";
+    }
+}
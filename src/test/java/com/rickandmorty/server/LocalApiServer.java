@@ -0,0 +1,398 @@
+package com.rickandmorty.server;
+
+import com.rickandmorty.data.Dataset;
+import com.rickandmorty.data.DatasetGenerator;
+import com.rickandmorty.http.ApiConnections;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process stand-in for https://rickandmortyapi.com/api backed by a generated {@link Dataset}.
+ * Serves {@code /character}, {@code /location} and {@code /episode} with pagination,
+ * multi-id lookups, filters and the public API's error bodies.
+ *
+ * <p>Configured through system properties when started via {@link #shared()}:
+ * {@code api.dataset.characters}, {@code api.dataset.locations}, {@code api.dataset.episodes},
+ * {@code api.dataset.seed}, {@code api.server.threads}, {@code api.server.tls} and
+ * {@code api.server.maxAge} (seconds advertised in {@code Cache-Control}), {@code api.server.compression}
+ * (gzip/deflate encoded bodies, on unless set to {@code false}), and the injected faults
+ * {@code api.server.errorRate}, {@code api.server.spikeRate} and {@code api.server.spikeMs}.
+ */
+public class LocalApiServer implements AutoCloseable {
+
+    public static final String API_PATH = "/api";
+
+    static {
+        // headers and body go out in separate writes; without TCP_NODELAY each exchange waits on delayed ACKs
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private static LocalApiServer shared;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String baseUrl;
+    private final SSLContext clientSslContext;
+    private final Set<String> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder tlsHandshakes = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final ThrottlingFilter throttling;
+    private final FaultInjectionFilter faults;
+    private final ApiRequestHandler handler;
+
+    private LocalApiServer(Builder builder) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port);
+        if (builder.tls) {
+            SelfSignedCertificate certificate = SelfSignedCertificate.generate();
+            HttpsServer httpsServer = HttpsServer.create(address, 0);
+            httpsServer.setHttpsConfigurator(new HttpsConfigurator(certificate.serverContext()) {
+                @Override
+                public void configure(HttpsParameters params) {
+                    // invoked once per accepted connection, right before its handshake
+                    tlsHandshakes.increment();
+                    super.configure(params);
+                }
+            });
+            this.server = httpsServer;
+            this.clientSslContext = certificate.clientContext();
+        } else {
+            this.server = HttpServer.create(address, 0);
+            this.clientSslContext = null;
+        }
+        this.baseUrl = (builder.tls ? "https" : "http") + "://localhost:" + server.getAddress().getPort() + API_PATH;
+        if (builder.tls) {
+            // the suite's own HttpURLConnections trust this server; the JVM's defaults do not change
+            ApiConnections.trust("localhost", server.getAddress().getPort(), clientSslContext);
+        }
+        this.executor = Executors.newFixedThreadPool(builder.threads, daemonThreads());
+        this.handler = new ApiRequestHandler(builder.dataset, baseUrl, builder.maxAgeSeconds, builder.compression);
+        HttpContext context = server.createContext(API_PATH, handler);
+        context.getFilters().add(new ConnectionTracker());
+        if (builder.maxConcurrent > 0 || builder.requestsPerSecond > 0 || builder.serviceTimeMillis > 0) {
+            this.throttling = new ThrottlingFilter(builder.maxConcurrent, builder.requestsPerSecond, builder.burst,
+                    builder.serviceTimeMillis);
+            context.getFilters().add(throttling);
+        } else {
+            this.throttling = null;
+        }
+        if (builder.errorRate > 0 || builder.spikeRate > 0) {
+            this.faults = new FaultInjectionFilter(builder.errorRate, builder.spikeRate, builder.spikeMillis);
+            context.getFilters().add(faults);
+        } else {
+            this.faults = null;
+        }
+        if (builder.kibPerSecond > 0) {
+            context.getFilters().add(new BandwidthFilter(builder.kibPerSecond));
+        }
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public static Builder builder(Dataset dataset) {
+        return new Builder(dataset);
+    }
+
+    public static LocalApiServer start(Dataset dataset) {
+        return builder(dataset).start();
+    }
+
+    /**
+     * Lazily starts the JVM-wide server used by the test suite. It is stopped by a shutdown hook.
+     */
+    public static synchronized LocalApiServer shared() {
+        if (shared == null) {
+            long started = System.nanoTime();
+            Dataset dataset = datasetFromSystemProperties();
+            shared = builder(dataset)
+                    .threads(Integer.getInteger("api.server.threads", Runtime.getRuntime().availableProcessors() * 2))
+                    .tls(Boolean.getBoolean("api.server.tls"))
+                    .maxAge(Integer.getInteger("api.server.maxAge", Builder.DEFAULT_MAX_AGE_SECONDS))
+                    .compression(Boolean.parseBoolean(System.getProperty("api.server.compression", "true")))
+                    .faults(Double.parseDouble(System.getProperty("api.server.errorRate", "0")),
+                            Double.parseDouble(System.getProperty("api.server.spikeRate", "0")),
+                            Integer.getInteger("api.server.spikeMs", Builder.DEFAULT_SPIKE_MILLIS))
+                    .start();
+            Runtime.getRuntime().addShutdownHook(new Thread(shared::close, "local-api-server-shutdown"));
+            System.out.println("Local API server started at " + shared.getBaseUrl() + " with "
+                    + dataset.getCharacterCount() + " characters, " + dataset.getLocationCount() + " locations, "
+                    + dataset.getEpisodeCount() + " episodes in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + "ms");
+        }
+        return shared;
+    }
+
+    static Dataset datasetFromSystemProperties() {
+        Integer characters = Integer.getInteger("api.dataset.characters");
+        DatasetGenerator generator = characters == null ? DatasetGenerator.real() : DatasetGenerator.scaled(characters);
+        Integer locations = Integer.getInteger("api.dataset.locations");
+        if (locations != null) {
+            generator.locations(locations);
+        }
+        Integer episodes = Integer.getInteger("api.dataset.episodes");
+        if (episodes != null) {
+            generator.episodes(episodes);
+        }
+        return generator.seed(Long.getLong("api.dataset.seed", DatasetGenerator.DEFAULT_SEED)).generate();
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public Dataset getDataset() {
+        return handler.getDataset();
+    }
+
+    /**
+     * Serves {@code dataset} from the next request on, at the same address. Requests already
+     * being answered finish with the dataset they started with.
+     */
+    public void setDataset(Dataset dataset) {
+        handler.setDataset(dataset);
+    }
+
+    public boolean isTls() {
+        return clientSslContext != null;
+    }
+
+    /**
+     * @return an SSLContext trusting this server's self-signed certificate, or null for plain http
+     */
+    public SSLContext getClientSslContext() {
+        return clientSslContext;
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * @return distinct client connections seen, identified by remote address and port
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public long getTlsHandshakeCount() {
+        return tlsHandshakes.sum();
+    }
+
+    /**
+     * @return requests answered {@code 429} because they exceeded the configured rate
+     */
+    public long getRateLimitedCount() {
+        return throttling == null ? 0 : throttling.getRejectedByRate();
+    }
+
+    /**
+     * @return requests answered {@code 503} because the concurrency cap was reached
+     */
+    public long getOverloadedCount() {
+        return throttling == null ? 0 : throttling.getRejectedByConcurrency();
+    }
+
+    /**
+     * @return requests answered {@code 500} by fault injection
+     */
+    public long getInjectedErrorCount() {
+        return faults == null ? 0 : faults.getErrors();
+    }
+
+    /**
+     * @return requests held back by an injected latency spike
+     */
+    public long getLatencySpikeCount() {
+        return faults == null ? 0 : faults.getSpikes();
+    }
+
+    /**
+     * @return responses sent gzip or deflate encoded
+     */
+    public long getCompressedResponseCount() {
+        return handler.getCompressedResponses();
+    }
+
+    /**
+     * @return body bytes of the responses sent, before any encoding
+     */
+    public long getBodyBytes() {
+        return handler.getBodyBytes();
+    }
+
+    /**
+     * @return body bytes that went out on the connections
+     */
+    public long getSentBytes() {
+        return handler.getSentBytes();
+    }
+
+    public String connectionSummary() {
+        return requests.sum() + " requests over " + connections.size() + " connections"
+                + (isTls() ? ", " + tlsHandshakes.sum() + " TLS handshakes" : "")
+                + (handler.getCompressedResponses() == 0 ? "" : String.format(", %d compressed (%.1f KiB sent for %.1f KiB)",
+                        handler.getCompressedResponses(), handler.getSentBytes() / 1024.0, handler.getBodyBytes() / 1024.0))
+                + (faults == null ? "" : ", " + faults.getErrors() + " injected errors, " + faults.getSpikes() + " latency spikes");
+    }
+
+    @Override
+    public void close() {
+        if (isTls()) {
+            ApiConnections.forget("localhost", server.getAddress().getPort());
+        }
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "local-api-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private class ConnectionTracker extends Filter {
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            requests.increment();
+            connections.add(exchange.getRemoteAddress().toString());
+            chain.doFilter(exchange);
+        }
+
+        @Override
+        public String description() {
+            return "Counts requests and distinct client connections";
+        }
+    }
+
+    public static class Builder {
+
+        static final int DEFAULT_MAX_AGE_SECONDS = 60;
+        static final int DEFAULT_SPIKE_MILLIS = 250;
+
+        private final Dataset dataset;
+        private int port;
+        private int threads = Runtime.getRuntime().availableProcessors() * 2;
+        private boolean tls;
+        private int maxAgeSeconds = DEFAULT_MAX_AGE_SECONDS;
+        private boolean compression;
+        private int maxConcurrent;
+        private double requestsPerSecond;
+        private int burst;
+        private int serviceTimeMillis;
+        private double errorRate;
+        private double spikeRate;
+        private int spikeMillis = DEFAULT_SPIKE_MILLIS;
+        private int kibPerSecond;
+
+        private Builder(Dataset dataset) {
+            this.dataset = dataset;
+        }
+
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Serve https with a freshly generated self-signed certificate for {@code localhost}.
+         */
+        public Builder tls(boolean tls) {
+            this.tls = tls;
+            return this;
+        }
+
+        /**
+         * Freshness lifetime advertised in {@code Cache-Control: max-age} on successful responses.
+         */
+        public Builder maxAge(int seconds) {
+            this.maxAgeSeconds = seconds;
+            return this;
+        }
+
+        /**
+         * Send bodies of {@value ApiRequestHandler#MIN_COMPRESSED_LENGTH} bytes or more {@code gzip} or
+         * {@code deflate} encoded to clients whose {@code Accept-Encoding} allows it.
+         */
+        public Builder compression(boolean compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /**
+         * Throttle like an overloaded upstream: {@code 503} over {@code maxConcurrent} requests in
+         * flight, {@code 429} with {@code Retry-After} over {@code requestsPerSecond} (with bursts of
+         * up to {@code burst}). 0 disables either check.
+         */
+        public Builder throttle(int maxConcurrent, double requestsPerSecond, int burst) {
+            this.maxConcurrent = maxConcurrent;
+            this.requestsPerSecond = requestsPerSecond;
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * Time every admitted request spends on the server before it is handled.
+         */
+        public Builder serviceTime(int millis) {
+            this.serviceTimeMillis = millis;
+            return this;
+        }
+
+        /**
+         * Misbehave like an unreliable upstream: answer {@code errorRate} of the requests with
+         * {@code 500} and hold back {@code spikeRate} of them for {@code spikeMillis}.
+         */
+        public Builder faults(double errorRate, double spikeRate, int spikeMillis) {
+            this.errorRate = errorRate;
+            this.spikeRate = spikeRate;
+            this.spikeMillis = spikeMillis;
+            return this;
+        }
+
+        /**
+         * Pace each response body to {@code kibPerSecond}, like an upstream behind a slow link.
+         * 0 sends at full speed.
+         */
+        public Builder bandwidth(int kibPerSecond) {
+            this.kibPerSecond = kibPerSecond;
+            return this;
+        }
+
+        public LocalApiServer start() {
+            try {
+                return new LocalApiServer(this);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not start local API server", e);
+            }
+        }
+    }
+}
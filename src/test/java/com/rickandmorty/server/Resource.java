@@ -0,0 +1,140 @@
+package com.rickandmorty.server;
+
+import com.rickandmorty.data.Dataset;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * The three collections exposed by the API, with the filters each one accepts.
+ * Text filters ({@code name}, {@code type}, {@code species}, {@code dimension}, {@code episode})
+ * match case-insensitive substrings; {@code status} and {@code gender} match whole values,
+ * as the public API does.
+ */
+enum Resource {
+
+    CHARACTER("character", "Character", "name", "status", "species", "type", "gender") {
+        @Override
+        int count(Dataset dataset) {
+            return dataset.getCharacterCount();
+        }
+
+        @Override
+        Object entity(Dataset dataset, int id, String baseUrl) {
+            return dataset.character(id, baseUrl);
+        }
+
+        @Override
+        IntFunction<String> field(Dataset dataset, String filter) {
+            switch (filter) {
+                case "name":
+                    return dataset::characterName;
+                case "status":
+                    return dataset::characterStatus;
+                case "species":
+                    return dataset::characterSpecies;
+                case "type":
+                    return dataset::characterType;
+                default:
+                    return dataset::characterGender;
+            }
+        }
+    },
+
+    LOCATION("location", "Location", "name", "type", "dimension") {
+        @Override
+        int count(Dataset dataset) {
+            return dataset.getLocationCount();
+        }
+
+        @Override
+        Object entity(Dataset dataset, int id, String baseUrl) {
+            return dataset.location(id, baseUrl);
+        }
+
+        @Override
+        IntFunction<String> field(Dataset dataset, String filter) {
+            switch (filter) {
+                case "name":
+                    return dataset::locationName;
+                case "type":
+                    return dataset::locationType;
+                default:
+                    return dataset::locationDimension;
+            }
+        }
+    },
+
+    EPISODE("episode", "Episode", "name", "episode") {
+        @Override
+        int count(Dataset dataset) {
+            return dataset.getEpisodeCount();
+        }
+
+        @Override
+        Object entity(Dataset dataset, int id, String baseUrl) {
+            return dataset.episode(id, baseUrl);
+        }
+
+        @Override
+        IntFunction<String> field(Dataset dataset, String filter) {
+            return "name".equals(filter) ? dataset::episodeName : dataset::episodeCode;
+        }
+    };
+
+    private static final Set<String> EXACT_FILTERS = new LinkedHashSet<>(Arrays.asList("status", "gender"));
+
+    final String path;
+    final String label;
+    final Set<String> filters;
+
+    Resource(String path, String label, String... filters) {
+        this.path = path;
+        this.label = label;
+        this.filters = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(filters)));
+    }
+
+    static Resource of(String path) {
+        for (Resource resource : values()) {
+            if (resource.path.equals(path)) {
+                return resource;
+            }
+        }
+        return null;
+    }
+
+    abstract int count(Dataset dataset);
+
+    abstract Object entity(Dataset dataset, int id, String baseUrl);
+
+    abstract IntFunction<String> field(Dataset dataset, String filter);
+
+    boolean exists(Dataset dataset, int id) {
+        return id >= 1 && id <= count(dataset);
+    }
+
+    /**
+     * @return a predicate over ids combining every supported filter in the query, or null when unfiltered
+     */
+    IntPredicate filter(Dataset dataset, Map<String, String> query) {
+        IntPredicate combined = null;
+        for (Map.Entry<String, String> entry : query.entrySet()) {
+            if (!filters.contains(entry.getKey())) {
+                continue;
+            }
+            IntFunction<String> field = field(dataset, entry.getKey());
+            String expected = entry.getValue().toLowerCase(Locale.ROOT);
+            IntPredicate predicate = EXACT_FILTERS.contains(entry.getKey())
+                    ? id -> field.apply(id).toLowerCase(Locale.ROOT).equals(expected)
+                    : id -> field.apply(id).toLowerCase(Locale.ROOT).contains(expected);
+            combined = combined == null ? predicate : combined.and(predicate);
+        }
+        return combined;
+    }
+}
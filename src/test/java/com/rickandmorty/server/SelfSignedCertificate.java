@@ -0,0 +1,91 @@
+package com.rickandmorty.server;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throwaway {@code localhost} certificate for the TLS variant of {@link LocalApiServer}. The key
+ * pair is generated with the JDK's {@code keytool}, since the JDK has no public API for it.
+ */
+final class SelfSignedCertificate {
+
+    private static final char[] PASSWORD = "rickandmorty".toCharArray();
+    private static final long KEYTOOL_TIMEOUT_SECONDS = 30;
+
+    private final SSLContext serverContext;
+    private final SSLContext clientContext;
+
+    private SelfSignedCertificate(KeyStore keyStore) throws GeneralSecurityException {
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, PASSWORD);
+        serverContext = SSLContext.getInstance("TLS");
+        serverContext.init(keyManagers.getKeyManagers(), null, null);
+
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+        clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, trustManagers.getTrustManagers(), null);
+    }
+
+    static SelfSignedCertificate generate() {
+        try {
+            Path file = Files.createTempFile("local-api-", ".p12");
+            Files.delete(file);
+            file.toFile().deleteOnExit();
+            String keytool = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+            Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "localhost",
+                    "-keyalg", "EC", "-groupname", "secp256r1", "-dname", "CN=localhost",
+                    "-ext", "SAN=dns:localhost,ip:127.0.0.1", "-validity", "2",
+                    "-storetype", "PKCS12", "-keystore", file.toString(),
+                    "-storepass", new String(PASSWORD), "-keypass", new String(PASSWORD))
+                    .redirectErrorStream(true)
+                    .redirectOutput(new File(file + ".log"))
+                    .start();
+            try {
+                if (!process.waitFor(KEYTOOL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("keytool did not finish within " + KEYTOOL_TIMEOUT_SECONDS
+                            + " s, see " + file + ".log");
+                }
+                if (process.exitValue() != 0) {
+                    throw new IllegalStateException("keytool could not generate a certificate, see " + file + ".log");
+                }
+            } finally {
+                // on a timeout or an interrupt, so no keytool is left running
+                process.destroyForcibly();
+            }
+            Files.deleteIfExists(Paths.get(file + ".log"));
+
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            try (InputStream in = Files.newInputStream(file)) {
+                keyStore.load(in, PASSWORD);
+            }
+            return new SelfSignedCertificate(keyStore);
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("Could not create a self-signed certificate", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating a certificate", e);
+        }
+    }
+
+    SSLContext serverContext() {
+        return serverContext;
+    }
+
+    /**
+     * @return a client context that trusts exactly this certificate
+     */
+    SSLContext clientContext() {
+        return clientContext;
+    }
+}
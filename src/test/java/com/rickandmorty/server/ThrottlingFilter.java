@@ -0,0 +1,118 @@
+package com.rickandmorty.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Makes the local server behave like an overloaded upstream. Requests over the concurrency cap get
+ * {@code 503} straight away; requests over the rate get {@code 429} with a {@code Retry-After} of
+ * the whole seconds until the bucket has a token again. Admitted requests can be slowed down by a
+ * fixed service time, so the cap is reachable at all.
+ */
+class ThrottlingFilter extends Filter {
+
+    private static final byte[] TOO_MANY_REQUESTS = "{\"error\":\"Too many requests\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OVERLOADED = "{\"error\":\"Service unavailable\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final int maxConcurrent;
+    private final double tokensPerNano;
+    private final double burst;
+    private final long serviceTimeNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejectedByRate = new LongAdder();
+    private final LongAdder rejectedByConcurrency = new LongAdder();
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    /**
+     * @param maxConcurrent     requests handled at once, 0 for no cap
+     * @param requestsPerSecond sustained rate, 0 for no limit
+     * @param burst             requests allowed at once on top of the rate
+     * @param serviceTimeMillis added to every admitted request
+     */
+    ThrottlingFilter(int maxConcurrent, double requestsPerSecond, int burst, int serviceTimeMillis) {
+        this.maxConcurrent = maxConcurrent;
+        this.tokensPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.serviceTimeNanos = TimeUnit.MILLISECONDS.toNanos(serviceTimeMillis);
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        long retryAfterNanos = takeToken();
+        if (retryAfterNanos > 0) {
+            rejectedByRate.increment();
+            long seconds = Math.max(1, (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(seconds));
+            reject(exchange, 429, TOO_MANY_REQUESTS);
+            return;
+        }
+        if (maxConcurrent > 0 && inFlight.incrementAndGet() > maxConcurrent) {
+            inFlight.decrementAndGet();
+            rejectedByConcurrency.increment();
+            reject(exchange, 503, OVERLOADED);
+            return;
+        }
+        try {
+            if (serviceTimeNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(serviceTimeNanos);
+            }
+            chain.doFilter(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while serving", e);
+        } finally {
+            if (maxConcurrent > 0) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return 0 when a token was taken, otherwise the time until the next one
+     */
+    private synchronized long takeToken() {
+        if (tokensPerNano <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+        if (tokens >= 1) {
+            tokens--;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    private static void reject(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", ApiRequestHandler.CONTENT_TYPE);
+        exchange.getResponseHeaders().set("Server", ApiRequestHandler.SERVER);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        exchange.close();
+    }
+
+    long getRejectedByRate() {
+        return rejectedByRate.sum();
+    }
+
+    long getRejectedByConcurrency() {
+        return rejectedByConcurrency.sum();
+    }
+
+    @Override
+    public String description() {
+        return "Rejects requests over a concurrency cap or a rate";
+    }
+}
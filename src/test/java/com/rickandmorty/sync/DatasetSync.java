@@ -0,0 +1,257 @@
+package com.rickandmorty.sync;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.rickandmorty.http.ApiConnections;
+import com.rickandmorty.utils.ModelMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Brings a {@link Snapshot} up to date with the API while fetching as little as possible. Ids are
+ * assigned in increasing order, so per collection a run asks page 1 for {@code info.count}, then
+ * fetches the ids after the highest known one with multi-id requests of {@code batchSize} ids until
+ * the tail runs out. Known records are only re-fetched for a random sample of {@code sampleSize} ids,
+ * compared by content hash, or all of them when the counts show that records were removed.
+ *
+ * <p>An up-to-date collection costs two requests and {@code n} new records cost about
+ * {@code n / batchSize} more, against one request per page of 20 for a full refetch.
+ * {@link #fromSystemProperties} reads {@code sync.batch} and {@code sync.sample}, and
+ * {@link #snapshotFromSystemProperties} reads {@code sync.snapshot}.
+ */
+public class DatasetSync {
+
+    public static final List<String> RESOURCES = Collections.unmodifiableList(
+            Arrays.asList("character", "location", "episode"));
+    public static final String DEFAULT_SNAPSHOT = "target/sync/dataset.snapshot";
+
+    private final String baseUrl;
+    private final int batchSize;
+    private final int sampleSize;
+
+    /**
+     * @param baseUrl    API root, e.g. {@code https://rickandmortyapi.com/api}
+     * @param batchSize  ids per multi-id request
+     * @param sampleSize known records per collection re-fetched to detect drift; 0 trusts the snapshot
+     */
+    public DatasetSync(String baseUrl, int batchSize, int sampleSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("A batch needs at least one id");
+        }
+        if (sampleSize < 0) {
+            throw new IllegalArgumentException("The drift sample cannot be negative");
+        }
+        this.baseUrl = baseUrl;
+        this.batchSize = batchSize;
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Reads {@code sync.batch} (default 200) and {@code sync.sample} (default 0).
+     */
+    public static DatasetSync fromSystemProperties(String baseUrl) {
+        return new DatasetSync(baseUrl, Integer.getInteger("sync.batch", 200), Integer.getInteger("sync.sample", 0));
+    }
+
+    public static Path snapshotFromSystemProperties() {
+        return Paths.get(System.getProperty("sync.snapshot", DEFAULT_SNAPSHOT));
+    }
+
+    /**
+     * Loads the snapshot in {@code file}, syncs it and writes it back. Starts from an empty snapshot
+     * when there is none or when it was synced against another base URL.
+     */
+    public SyncReport sync(Path file) {
+        Snapshot snapshot = Files.exists(file) ? Snapshot.load(file) : null;
+        if (snapshot == null || !snapshot.getBaseUrl().equals(baseUrl)) {
+            snapshot = Snapshot.empty(baseUrl);
+        }
+        SyncReport report = sync(snapshot);
+        snapshot.save(file);
+        return report;
+    }
+
+    /**
+     * Updates {@code snapshot} in place.
+     */
+    public SyncReport sync(Snapshot snapshot) {
+        if (!snapshot.getBaseUrl().equals(baseUrl)) {
+            throw new IllegalArgumentException("Snapshot of " + snapshot.getBaseUrl() + " cannot be synced from " + baseUrl);
+        }
+        long started = System.nanoTime();
+        List<SyncReport.Diff> diffs = new ArrayList<>(RESOURCES.size());
+        for (String resource : RESOURCES) {
+            diffs.add(sync(resource, snapshot.records(resource)));
+        }
+        return new SyncReport(diffs, System.nanoTime() - started);
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    private SyncReport.Diff sync(String resource, NavigableMap<Integer, Snapshot.Record> records) {
+        AtomicInteger requests = new AtomicInteger();
+        JsonNode firstPage = get(baseUrl + "/" + resource + "?page=1", requests);
+        // an empty collection has no page 1
+        int remoteCount = firstPage == null ? 0 : firstPage.path("info").path("count").asInt();
+        List<Integer> known = new ArrayList<>(records.keySet());
+
+        List<Integer> added = new ArrayList<>();
+        int next = records.isEmpty() ? 1 : records.lastKey() + 1;
+        while (true) {
+            List<Integer> window = new ArrayList<>(batchSize);
+            for (int id = next; id < next + batchSize; id++) {
+                window.add(id);
+            }
+            Map<Integer, byte[]> found = fetch(resource, window, requests);
+            found.forEach((id, json) -> {
+                records.put(id, new Snapshot.Record(json));
+                added.add(id);
+            });
+            next += batchSize;
+            // a partial window is the end of the tail unless ids are still missing behind a gap
+            if (found.isEmpty() || found.size() < batchSize && records.size() >= remoteCount) {
+                break;
+            }
+        }
+
+        Set<Integer> changed = new TreeSet<>();
+        Set<Integer> removed = new TreeSet<>();
+        List<Integer> sample = sample(known);
+        verify(resource, sample, records, changed, removed, requests);
+
+        boolean scanned = records.size() != remoteCount;
+        int verified = sample.size();
+        if (scanned) {
+            Set<Integer> skipped = new HashSet<>(sample);
+            List<Integer> rest = new ArrayList<>(known.size());
+            for (Integer id : known) {
+                if (!skipped.contains(id)) {
+                    rest.add(id);
+                }
+            }
+            verify(resource, rest, records, changed, removed, requests);
+            verified += rest.size();
+        }
+        return new SyncReport.Diff(resource, added, new ArrayList<>(changed), new ArrayList<>(removed), verified,
+                scanned, remoteCount, records.size(), requests.get());
+    }
+
+    /**
+     * @return up to {@code sampleSize} of {@code ids}, picked at random, in ascending order
+     */
+    private List<Integer> sample(List<Integer> ids) {
+        if (sampleSize >= ids.size()) {
+            return ids;
+        }
+        List<Integer> shuffled = new ArrayList<>(ids);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < sampleSize; i++) {
+            Collections.swap(shuffled, i, i + random.nextInt(shuffled.size() - i));
+        }
+        List<Integer> sample = new ArrayList<>(shuffled.subList(0, sampleSize));
+        Collections.sort(sample);
+        return sample;
+    }
+
+    /**
+     * Re-fetches known records: missing ones are removed from the snapshot, ones whose hash no longer
+     * matches are replaced.
+     */
+    private void verify(String resource, List<Integer> ids, NavigableMap<Integer, Snapshot.Record> records,
+                        Set<Integer> changed, Set<Integer> removed, AtomicInteger requests) {
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<Integer> batch = ids.subList(from, Math.min(ids.size(), from + batchSize));
+            Map<Integer, byte[]> found = fetch(resource, batch, requests);
+            for (Integer id : batch) {
+                byte[] json = found.get(id);
+                if (json == null) {
+                    records.remove(id);
+                    removed.add(id);
+                    continue;
+                }
+                Snapshot.Record fresh = new Snapshot.Record(json);
+                if (fresh.hash != records.get(id).hash) {
+                    records.put(id, fresh);
+                    changed.add(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the JSON of each requested id the API has, by id
+     */
+    private Map<Integer, byte[]> fetch(String resource, List<Integer> ids, AtomicInteger requests) {
+        StringBuilder url = new StringBuilder(baseUrl).append('/').append(resource).append('/');
+        for (Integer id : ids) {
+            url.append(id).append(',');
+        }
+        url.setLength(url.length() - 1);
+        JsonNode body = get(url.toString(), requests);
+        Map<Integer, byte[]> found = new TreeMap<>();
+        if (body == null) {
+            return found;
+        }
+        // a single id answers the bare object instead of an array
+        Iterable<JsonNode> results = body.isArray() ? body : Collections.singletonList(body);
+        Set<Integer> requested = new HashSet<>(ids);
+        try {
+            for (JsonNode result : results) {
+                int id = result.path("id").asInt();
+                if (requested.contains(id)) {
+                    found.put(id, ModelMapper.MAPPER.writeValueAsBytes(result));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return found;
+    }
+
+    /**
+     * @return the parsed body, or null on 404
+     */
+    private static JsonNode get(String url, AtomicInteger requests) {
+        requests.incrementAndGet();
+        try {
+            HttpURLConnection connection = ApiConnections.open(url);
+            connection.setRequestProperty("Accept", "application/json");
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                InputStream error = connection.getErrorStream();
+                if (error != null) {
+                    error.close();
+                }
+                return null;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                connection.disconnect();
+                throw new IllegalStateException("GET " + url + " answered status " + status);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return ModelMapper.MAPPER.readTree(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("GET " + url + " failed", e);
+        }
+    }
+}
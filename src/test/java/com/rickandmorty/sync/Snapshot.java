@@ -0,0 +1,177 @@
+package com.rickandmorty.sync;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local copy of the API kept by {@link DatasetSync}: for each collection, every known record's JSON
+ * as the API returned it, keyed by id, with a content hash of it. Persisted as one gzipped file
+ * that also names the base URL it was synced against.
+ */
+public final class Snapshot {
+
+    private static final int MAGIC = 0x524d5353; // "RMSS"
+    private static final int FORMAT_VERSION = 1;
+
+    private final String baseUrl;
+    private final Map<String, NavigableMap<Integer, Record>> resources = new TreeMap<>();
+
+    private Snapshot(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public static Snapshot empty(String baseUrl) {
+        return new Snapshot(baseUrl);
+    }
+
+    public static Snapshot load(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file), 1 << 16)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IllegalArgumentException(file + " is not a dataset snapshot of this version");
+            }
+            Snapshot snapshot = new Snapshot(in.readUTF());
+            int resourceCount = in.readInt();
+            for (int r = 0; r < resourceCount; r++) {
+                NavigableMap<Integer, Record> records = snapshot.records(in.readUTF());
+                int recordCount = in.readInt();
+                for (int i = 0; i < recordCount; i++) {
+                    int id = in.readInt();
+                    long hash = in.readLong();
+                    byte[] json = new byte[in.readInt()];
+                    in.readFully(json);
+                    records.put(id, new Record(hash, json));
+                }
+            }
+            return snapshot;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read dataset snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Writes the snapshot in id order, replacing {@code target} atomically.
+     *
+     * @return the file size in bytes
+     */
+    public long save(Path target) {
+        try {
+            Path parent = target.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, "snapshot-", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temp), 1 << 16)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(baseUrl);
+                out.writeInt(resources.size());
+                for (Map.Entry<String, NavigableMap<Integer, Record>> resource : resources.entrySet()) {
+                    out.writeUTF(resource.getKey());
+                    out.writeInt(resource.getValue().size());
+                    for (Map.Entry<Integer, Record> record : resource.getValue().entrySet()) {
+                        out.writeInt(record.getKey());
+                        out.writeLong(record.getValue().hash);
+                        out.writeInt(record.getValue().json.length);
+                        out.write(record.getValue().json);
+                    }
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return Files.size(target);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write dataset snapshot " + target, e);
+        }
+    }
+
+    /**
+     * @return the API root the records were fetched from; their links point to it
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * @param resource collection name, e.g. {@code character}
+     */
+    public int size(String resource) {
+        NavigableMap<Integer, Record> records = resources.get(resource);
+        return records == null ? 0 : records.size();
+    }
+
+    /**
+     * @return the known ids of {@code resource} in ascending order
+     */
+    public NavigableSet<Integer> ids(String resource) {
+        NavigableMap<Integer, Record> records = resources.get(resource);
+        return records == null ? Collections.emptyNavigableSet()
+                : Collections.unmodifiableNavigableSet(records.navigableKeySet());
+    }
+
+    /**
+     * @return the record's JSON as last fetched, or null when the snapshot does not have it
+     */
+    public byte[] json(String resource, int id) {
+        Record record = record(resource, id);
+        return record == null ? null : record.json.clone();
+    }
+
+    /**
+     * @return the record's content hash, or 0 when the snapshot does not have it
+     */
+    public long hash(String resource, int id) {
+        Record record = record(resource, id);
+        return record == null ? 0 : record.hash;
+    }
+
+    private Record record(String resource, int id) {
+        NavigableMap<Integer, Record> records = resources.get(resource);
+        return records == null ? null : records.get(id);
+    }
+
+    NavigableMap<Integer, Record> records(String resource) {
+        return resources.computeIfAbsent(resource, name -> new TreeMap<>());
+    }
+
+    /**
+     * @return the first 64 bits of the SHA-256 of {@code json}
+     */
+    static long contentHash(byte[] json) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(json)).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    static final class Record {
+
+        final long hash;
+        final byte[] json;
+
+        Record(long hash, byte[] json) {
+            this.hash = hash;
+            this.json = json;
+        }
+
+        Record(byte[] json) {
+            this(contentHash(json), json);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.rickandmorty.sync;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What one {@link DatasetSync} run changed in the snapshot, per collection.
+ */
+public final class SyncReport {
+
+    private final Map<String, Diff> diffs;
+    private final long elapsedNanos;
+
+    SyncReport(List<Diff> diffs, long elapsedNanos) {
+        Map<String, Diff> byResource = new TreeMap<>();
+        diffs.forEach(diff -> byResource.put(diff.resource, diff));
+        this.diffs = Collections.unmodifiableMap(byResource);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the diff of {@code resource}, e.g. {@code character}, or null when it was not synced
+     */
+    public Diff diff(String resource) {
+        return diffs.get(resource);
+    }
+
+    public List<Diff> getDiffs() {
+        return new ArrayList<>(diffs.values());
+    }
+
+    public int getRequests() {
+        return diffs.values().stream().mapToInt(Diff::getRequests).sum();
+    }
+
+    public boolean isEmpty() {
+        return diffs.values().stream().allMatch(Diff::isEmpty);
+    }
+
+    public String summary() {
+        StringBuilder summary = new StringBuilder();
+        for (Diff diff : diffs.values()) {
+            summary.append(diff).append("; ");
+        }
+        return summary.append(getRequests()).append(" requests, ")
+                .append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append(" ms").toString();
+    }
+
+    /**
+     * Added, changed and removed ids of one collection, each in ascending order.
+     */
+    public static final class Diff {
+
+        private final String resource;
+        private final List<Integer> added;
+        private final List<Integer> changed;
+        private final List<Integer> removed;
+        private final int verified;
+        private final boolean scanned;
+        private final int remoteCount;
+        private final int localCount;
+        private final int requests;
+
+        Diff(String resource, List<Integer> added, List<Integer> changed, List<Integer> removed, int verified,
+             boolean scanned, int remoteCount, int localCount, int requests) {
+            this.resource = resource;
+            this.added = Collections.unmodifiableList(added);
+            this.changed = Collections.unmodifiableList(changed);
+            this.removed = Collections.unmodifiableList(removed);
+            this.verified = verified;
+            this.scanned = scanned;
+            this.remoteCount = remoteCount;
+            this.localCount = localCount;
+            this.requests = requests;
+        }
+
+        public String getResource() {
+            return resource;
+        }
+
+        public List<Integer> getAdded() {
+            return added;
+        }
+
+        public List<Integer> getChanged() {
+            return changed;
+        }
+
+        public List<Integer> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return known records re-fetched to compare their hashes, sampled or scanned
+         */
+        public int getVerified() {
+            return verified;
+        }
+
+        /**
+         * @return whether the counts did not add up, so every known id was re-fetched
+         */
+        public boolean isScanned() {
+            return scanned;
+        }
+
+        /**
+         * @return {@code info.count} as the API reported it
+         */
+        public int getRemoteCount() {
+            return remoteCount;
+        }
+
+        /**
+         * @return records in the snapshot after the sync; differs from {@link #getRemoteCount()} only
+         * when the API has ids the sync could not reach
+         */
+        public int getLocalCount() {
+            return localCount;
+        }
+
+        public int getRequests() {
+            return requests;
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: +%d ~%d -%d, %d verified%s, %d/%d records, %d requests",
+                    resource, added.size(), changed.size(), removed.size(), verified, scanned ? " (full scan)" : "",
+                    localCount, remoteCount, requests);
+        }
+    }
+}
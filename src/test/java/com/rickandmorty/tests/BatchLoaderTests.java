@@ -0,0 +1,107 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.client.ApiBatchLoader;
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+import com.rickandmorty.utils.BaseTest;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+public class BatchLoaderTests extends BaseTest {
+
+    @Test
+    public void testEpisodeCastResolvedInBatches() {
+        try (ApiBatchLoader loader = ApiBatchLoader.builder(resolveBaseUrl()).build()) {
+            Episode pilot = loader.getEpisode(1).join();
+            assertNotNull(pilot, "Episode 1 was not loaded");
+
+            List<CompletableFuture<Character>> cast = pilot.getCharacters().stream()
+                    .map(url -> loader.getCharacter(ApiBatchLoader.idOf(url)))
+                    .collect(Collectors.toList());
+
+            for (int i = 0; i < cast.size(); i++) {
+                Character character = cast.get(i).join();
+                assertNotNull(character, "Character " + pilot.getCharacters().get(i) + " was not loaded");
+                assertEquals(character.getUrl(), pilot.getCharacters().get(i), "Future resolved to the wrong character");
+            }
+            assertTrue(loader.characters().getRequests() < cast.size(),
+                    "Batching sent " + loader.characters().getRequests() + " requests for " + cast.size() + " characters");
+            System.out.println("Batched episode 1 cast: " + loader.summary());
+        }
+    }
+
+    @Test
+    public void testSingleIdBatchReadsBareObject() {
+        try (ApiBatchLoader loader = ApiBatchLoader.builder(resolveBaseUrl()).build()) {
+            Location location = loader.getLocation(1).join();
+
+            assertEquals(loader.locations().getRequests(), 1L, "A lone lookup should be one request");
+            assertNotNull(location, "Single-id response was not read");
+            assertEquals(location.getName(), "Earth (C-137)", "Wrong location for id 1");
+        }
+    }
+
+    @Test
+    public void testBatchesRespectMaxUrlLength() {
+        int maxUrlLength = resolveBaseUrl().length() + 60;
+        try (ApiBatchLoader loader = ApiBatchLoader.builder(resolveBaseUrl())
+                .maxUrlLength(maxUrlLength)
+                .window(50, TimeUnit.MILLISECONDS)
+                .build()) {
+            List<CompletableFuture<Character>> characters = new ArrayList<>();
+            for (int id = 1; id <= 100; id++) {
+                characters.add(loader.getCharacter(id));
+            }
+
+            for (int id = 1; id <= 100; id++) {
+                Character character = characters.get(id - 1).join();
+                assertNotNull(character, "Character " + id + " was not loaded");
+                assertEquals(character.getId(), Integer.valueOf(id), "Future resolved to the wrong character");
+            }
+            assertTrue(loader.characters().getLongestUrl() <= maxUrlLength,
+                    "Batch URL of " + loader.characters().getLongestUrl() + " chars exceeds " + maxUrlLength);
+            assertTrue(loader.characters().getRequests() > 1, "Long batch was not split");
+        }
+    }
+
+    @Test
+    public void testDuplicateAndMissingIds() {
+        try (ApiBatchLoader loader = ApiBatchLoader.builder(resolveBaseUrl()).build()) {
+            CompletableFuture<Character> first = loader.getCharacter(2);
+            CompletableFuture<Character> again = loader.getCharacter(2);
+            CompletableFuture<Character> missing = loader.getCharacter(999999);
+
+            assertTrue(first == again, "Repeated id in one window should share a future");
+            assertEquals(first.join().getName(), "Morty Smith", "Wrong character for id 2");
+            assertNull(missing.join(), "Unknown id should resolve to null");
+            assertEquals(loader.characters().getIdsRequested(), 2L, "Repeated id was requested twice");
+        }
+    }
+
+    @Test
+    public void testLoadAfterCloseFails() {
+        ApiBatchLoader loader = ApiBatchLoader.builder(resolveBaseUrl()).build();
+        loader.close();
+
+        CompletableFuture<Character> late = loader.getCharacter(1);
+
+        CompletionException failure = expectThrows(CompletionException.class, late::join);
+        assertTrue(failure.getCause() instanceof IllegalStateException, "Unexpected failure: " + failure.getCause());
+        assertEquals(loader.characters().getRequests(), 0L, "A closed loader sent a request");
+        loader.flush();
+        assertEquals(loader.characters().getRequests(), 0L, "The refused id was left pending");
+    }
+}
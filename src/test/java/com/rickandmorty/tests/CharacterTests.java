@@ -1,24 +1,30 @@
 package com.rickandmorty.tests;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.rickandmorty.client.ApiCrawler;
+import com.rickandmorty.models.ApiResponse;
+import com.rickandmorty.models.Character;
+import com.rickandmorty.schema.SchemaRegistry;
 import com.rickandmorty.utils.ApiUtils;
 import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.ModelMapper;
 import io.restassured.response.Response;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.ArrayList;
+import java.util.stream.Stream;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
 public class CharacterTests extends BaseTest {
 
     private static final String ENDPOINT = "/character";
-    private static final int MAX_RESPONSE_TIME_MS = 2000;
 
     @Test
     public void testGetAllCharacters() {
@@ -28,25 +34,26 @@ public class CharacterTests extends BaseTest {
                 .get(ENDPOINT)
                 .then()
                 .statusCode(SUCCESS_STATUS_CODE)
-                .body("info", notNullValue())
-                .body("info.count", greaterThan(0))
-                .body("info.pages", greaterThan(0))
-                .body("results", notNullValue())
-                .body("results.size()", greaterThan(0))
                 .extract().response();
 
-        Map<String, Object> responseBody = response.jsonPath().getMap("$");
-        List<Map<String, Object>> results = (List<Map<String, Object>>) responseBody.get("results");
-        Map<String, Object> firstCharacter = results.get(0);
+        JsonNode body = ModelMapper.tree(response);
+        SchemaRegistry.assertValidPage(SchemaRegistry.CHARACTER, body);
+        ApiResponse<Character> page = ModelMapper.page(body, Character.class);
+        ApiUtils.verifyPath("info", page.getInfo(), notNullValue());
+        ApiUtils.verifyPath("info.count", page.getInfo().getCount(), greaterThan(0));
+        ApiUtils.verifyPath("info.pages", page.getInfo().getPages(), greaterThan(0));
+        ApiUtils.verifyPath("results", page.getResults(), notNullValue());
+        ApiUtils.verifyPath("results.size()", page.getResults().size(), greaterThan(0));
 
-        assertTrue(firstCharacter.containsKey("id"), "Character is missing 'id' field");
-        assertTrue(firstCharacter.containsKey("name"), "Character is missing 'name' field");
-        assertTrue(firstCharacter.containsKey("status"), "Character is missing 'status' field");
-        assertTrue(firstCharacter.containsKey("species"), "Character is missing 'species' field");
-        assertTrue(firstCharacter.containsKey("gender"), "Character is missing 'gender' field");
+        Character firstCharacter = page.getResults().get(0);
+
+        assertTrue(firstCharacter.getId() > 0, "Character is missing 'id' field");
+        assertNotNull(firstCharacter.getName(), "Character is missing 'name' field");
+        assertNotNull(firstCharacter.getStatus(), "Character is missing 'status' field");
+        assertNotNull(firstCharacter.getSpecies(), "Character is missing 'species' field");
+        assertNotNull(firstCharacter.getGender(), "Character is missing 'gender' field");
 
         ApiUtils.verifyCommonResponseHeaders(response);
-        ApiUtils.verifyResponseTime(response, MAX_RESPONSE_TIME_MS);
     }
 
     @Test
@@ -59,25 +66,23 @@ public class CharacterTests extends BaseTest {
                 .get(ENDPOINT + "/" + characterId)
                 .then()
                 .statusCode(SUCCESS_STATUS_CODE) // Validate status code
-                .body("id", equalTo(characterId))
-                .body("name", equalTo("Rick Sanchez"))
-                .body("status", notNullValue())
-                .body("species", notNullValue())
-                .body("type", notNullValue())
-                .body("gender", notNullValue())
-                .body("origin", notNullValue())
-                .body("location", notNullValue())
-                .body("image", notNullValue())
-                .body("episode", notNullValue())
                 .extract().response();
 
-        Map<String, Object> character = response.jsonPath().getMap("$");
-        assertEquals(((Integer)character.get("id")).intValue(), characterId, "Character ID does not match expected value");
-        assertEquals(character.get("name"), "Rick Sanchez", "Character name does not match expected value");
-
+        JsonNode body = ModelMapper.tree(response);
+        SchemaRegistry.assertValid(SchemaRegistry.CHARACTER, body);
+        Character character = ModelMapper.entity(body, Character.class);
+        assertEquals(character.getId(), characterId, "Character ID does not match expected value");
+        assertEquals(character.getName(), "Rick Sanchez", "Character name does not match expected value");
+        ApiUtils.verifyPath("status", character.getStatus(), notNullValue());
+        ApiUtils.verifyPath("species", character.getSpecies(), notNullValue());
+        ApiUtils.verifyPath("type", character.getType(), notNullValue());
+        ApiUtils.verifyPath("gender", character.getGender(), notNullValue());
+        ApiUtils.verifyPath("origin", character.getOrigin(), notNullValue());
+        ApiUtils.verifyPath("location", character.getLocation(), notNullValue());
+        ApiUtils.verifyPath("image", character.getImage(), notNullValue());
+        ApiUtils.verifyPath("episode", character.getEpisode(), notNullValue());
 
         ApiUtils.verifyCommonResponseHeaders(response);
-        ApiUtils.verifyResponseTime(response, MAX_RESPONSE_TIME_MS);
     }
 
     @Test
@@ -90,26 +95,20 @@ public class CharacterTests extends BaseTest {
                 .get(ENDPOINT + "/" + characterIds.toString().replaceAll("[\\[\\]\\s]", ""))
                 .then()
                 .statusCode(SUCCESS_STATUS_CODE) // Validate status code
-                .body("size()", equalTo(characterIds.size()))
                 .extract().response();
 
-        List<Map<String, Object>> characters = new ArrayList<>();
-        for (int i = 0; i < characterIds.size(); i++) {
-            Map<String, Object> character = response.jsonPath().getMap("[" + i + "]");
-            characters.add(character);
-        }
+        JsonNode body = ModelMapper.tree(response);
+        SchemaRegistry.assertValid(SchemaRegistry.CHARACTER, body);
+        List<Character> characters = ModelMapper.list(body, Character.class);
 
         assertEquals(characters.size(), characterIds.size(), "Number of returned characters does not match");
 
         for (int i = 0; i < characterIds.size(); i++) {
-            Object idObj = characters.get(i).get("id");
-            int id = (idObj instanceof Integer) ? (Integer)idObj : Integer.parseInt(idObj.toString());
-            assertEquals(id, characterIds.get(i).intValue(),
+            assertEquals(characters.get(i).getId(), characterIds.get(i).intValue(),
                     "Character ID at index " + i + " does not match expected value");
         }
 
         ApiUtils.verifyCommonResponseHeaders(response);
-        ApiUtils.verifyResponseTime(response, MAX_RESPONSE_TIME_MS);
     }
 
     @Test
@@ -128,6 +127,22 @@ public class CharacterTests extends BaseTest {
         ApiUtils.verifyCommonResponseHeaders(response);
     }
 
+    @Test
+    public void testGetPageBeyondTheLast() {
+        // large enough that (page - 1) * 20 overflows an int
+        Response response = given()
+                .spec(requestSpec)
+                .queryParam("page", 200000000)
+                .when()
+                .get(ENDPOINT)
+                .then()
+                .statusCode(NOT_FOUND_STATUS_CODE) // Validate status code
+                .body("error", equalTo("There is nothing here"))
+                .extract().response();
+
+        ApiUtils.verifyCommonResponseHeaders(response);
+    }
+
     @Test
     public void testFilterCharacters() {
         String nameFilter = "rick";
@@ -141,15 +156,14 @@ public class CharacterTests extends BaseTest {
                 .get(ENDPOINT)
                 .then()
                 .statusCode(SUCCESS_STATUS_CODE)
-                .body("results", notNullValue())
                 .extract().response();
 
-        Map<String, Object> responseBody = response.jsonPath().getMap("$");
-        List<Map<String, Object>> results = (List<Map<String, Object>>) responseBody.get("results");
+        ApiResponse<Character> page = ModelMapper.page(response, Character.class);
+        assertNotNull(page.getResults(), "Results are missing");
 
-        for (Map<String, Object> character : results) {
-            String name = (String) character.get("name");
-            String status = (String) character.get("status");
+        for (Character character : page.getResults()) {
+            String name = character.getName();
+            String status = character.getStatus();
 
             assertTrue(name.toLowerCase().contains(nameFilter.toLowerCase()),
                     "Character name '" + name + "' does not contain filter '" + nameFilter + "'");
@@ -157,9 +171,20 @@ public class CharacterTests extends BaseTest {
                     "Character status '" + status + "' does not match filter '" + statusFilter + "'");
         }
 
+        // Every matching character, across all pages, and nothing else
+        // (the replica and the crawl bypass requestSpec, so they cannot be replayed)
+        if (!isReplaying()) {
+            int[] expectedIds = replica().characters().ids(Map.of("name", nameFilter, "status", statusFilter));
+            assertEquals(page.getInfo().getCount(), expectedIds.length, "info.count differs from the replica");
+            try (Stream<Character> all = ApiCrawler.stream(
+                    resolveBaseUrl() + ENDPOINT + "?name=" + nameFilter + "&status=" + statusFilter, Character.class)) {
+                assertEquals(all.mapToInt(Character::getId).toArray(), expectedIds,
+                        "Filtered characters differ from the replica");
+            }
+        }
+
         // Verify response headers
         ApiUtils.verifyCommonResponseHeaders(response);
-        ApiUtils.verifyResponseTime(response, MAX_RESPONSE_TIME_MS);
     }
 
     @Test
@@ -170,10 +195,10 @@ public class CharacterTests extends BaseTest {
                 .get(ENDPOINT)
                 .then()
                 .statusCode(SUCCESS_STATUS_CODE)
-                .body("info", notNullValue())
                 .extract().response();
 
+        assertNotNull(ModelMapper.page(response, Character.class).getInfo(), "Pagination info is missing");
+
         ApiUtils.verifyCommonResponseHeaders(response);
-        ApiUtils.verifyResponseTime(response, MAX_RESPONSE_TIME_MS);
     }
-} 
\ No newline at end of file
+}
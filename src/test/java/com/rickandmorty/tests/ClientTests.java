@@ -0,0 +1,147 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.client.ApiException;
+import com.rickandmorty.client.Endpoint;
+import com.rickandmorty.client.RickAndMortyClient;
+import com.rickandmorty.data.DatasetGenerator;
+import com.rickandmorty.models.ApiResponse;
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.server.LocalApiServer;
+import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.ModelMapper;
+import io.restassured.response.Response;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static io.restassured.RestAssured.given;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+/**
+ * Exercises {@link RickAndMortyClient} against the suite's target, checking its typed results
+ * against the same requests made through {@code requestSpec}.
+ */
+public class ClientTests extends BaseTest {
+
+    @Test
+    public void testTypedLookups() {
+        RickAndMortyClient client = client();
+
+        Character rick = client.getCharacter(1).join();
+        List<Character> found = client.getCharacters(3, 1, 999999, 2, 3).join();
+        Episode pilot = client.getEpisode(1).join();
+
+        assertEquals(rick.getName(), "Rick Sanchez", "Name of character 1");
+        assertEquals(found.stream().map(Character::getId).collect(Collectors.toList()), List.of(3, 1, 2),
+                "Characters in the order asked for, unknown and repeated ids left out");
+        assertTrue(pilot.getCharacters().contains(rick.getUrl()), "Rick missing from the cast of episode 1");
+        assertEquals(client.getLocations(999999).join(), Collections.emptyList(), "A lone unknown id");
+
+        CompletionException missing = expectThrows(CompletionException.class, () -> client.getCharacter(999999).join());
+        assertTrue(missing.getCause() instanceof ApiException, "Cause: " + missing.getCause());
+        ApiException notFound = (ApiException) missing.getCause();
+        assertEquals(notFound.getStatus(), NOT_FOUND_STATUS_CODE, "Status of an unknown character");
+        assertTrue(notFound.getMessage().contains("Character not found"), "Message: " + notFound.getMessage());
+    }
+
+    @Test
+    public void testFilterMatchesRequestSpec() {
+        Map<String, String> filter = new LinkedHashMap<>();
+        filter.put("name", "rick");
+        filter.put("status", "alive");
+
+        ApiResponse<Character> page = client().filterCharacters(filter).join();
+        Response response = given().spec(requestSpec).queryParams(filter).get("/character");
+        ApiResponse<Character> expected = ModelMapper.page(response, Character.class);
+
+        assertEquals(page.getInfo(), expected.getInfo(), "Info of the filtered page");
+        assertEquals(page.getResults(), expected.getResults(), "Results of the filtered page");
+    }
+
+    @Test
+    public void testPagesCoverTheCollection() {
+        List<ApiResponse<Episode>> pages = client().pages(Endpoint.EPISODE, Collections.emptyMap()).join();
+
+        int count = pages.get(0).getInfo().getCount();
+        Set<Integer> ids = new HashSet<>();
+        pages.forEach(page -> page.getResults().forEach(episode -> ids.add(episode.getId())));
+        assertEquals(pages.size(), pages.get(0).getInfo().getPages(), "Pages fetched");
+        assertEquals(ids.size(), count, "Distinct episodes over all pages");
+        assertEquals(client().pages(Endpoint.CHARACTER, Collections.singletonMap("name", "no such name")).join(),
+                Collections.emptyList(), "Pages of a filter without matches");
+    }
+
+    @Test
+    public void testThousandsOfLookupsInFlight() {
+        int lookups = 2_000;
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate()).threads(4).start();
+             RickAndMortyClient client = RickAndMortyClient.builder().baseUrl(server.getBaseUrl())
+                     .threads(2).maxInFlight(32).build()) {
+            long started = System.nanoTime();
+            List<CompletableFuture<Character>> pending = new ArrayList<>(lookups);
+            for (int i = 0; i < lookups; i++) {
+                pending.add(client.getCharacter(i % 100 + 1));
+            }
+            int queued = client.getQueued();
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            System.out.printf("Client: %d lookups on 2 threads in %d ms (%.0f/s), %d queued at once%n",
+                    lookups, elapsedMillis, lookups * 1000.0 / Math.max(1, elapsedMillis), queued);
+
+            for (int i = 0; i < lookups; i++) {
+                assertEquals(pending.get(i).join().getId(), i % 100 + 1, "Character of lookup " + i);
+            }
+            assertTrue(queued > lookups / 2, "Calls should queue instead of blocking: " + queued + " queued");
+            assertEquals(client.getRequests(), (long) lookups, "Requests sent");
+            assertEquals(client.getInFlight(), 0, "Requests left in flight");
+        }
+    }
+
+    @Test
+    public void testCloseCancelsPendingCalls() {
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(2).serviceTime(500).start()) {
+            List<CompletableFuture<Character>> pending = new ArrayList<>();
+            RickAndMortyClient client = RickAndMortyClient.builder().baseUrl(server.getBaseUrl())
+                    .threads(2).maxInFlight(2).build();
+            try (client) {
+                for (int id = 1; id <= 10; id++) {
+                    pending.add(client.getCharacter(id));
+                }
+                assertEquals(client.getQueued(), 8, "Calls waiting for a slot");
+            }
+
+            for (int i = 0; i < pending.size(); i++) {
+                CompletableFuture<Character> call = pending.get(i);
+                assertTrue(call.isDone(), "Call " + i + " left pending after close()");
+                expectThrows(CancellationException.class, call::join);
+            }
+            assertEquals(client.getQueued(), 0, "Calls left queued");
+            assertEquals(client.getInFlight(), 0, "Slots left taken");
+            CompletionException closed = expectThrows(CompletionException.class, () -> client.getCharacter(1).join());
+            assertTrue(closed.getCause() instanceof IllegalStateException, "Cause: " + closed.getCause());
+        }
+    }
+
+    private static RickAndMortyClient client() {
+        if (isReplaying()) {
+            throw new SkipException("The client does not go through requestSpec");
+        }
+        return apiClient();
+    }
+}
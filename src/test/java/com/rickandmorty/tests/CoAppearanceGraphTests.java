@@ -0,0 +1,182 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.data.CoAppearanceGraph;
+import com.rickandmorty.data.Dataset;
+import com.rickandmorty.data.DatasetGenerator;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.ParallelExecutionListener;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Checks the character co-appearance graph against a brute-force count over {@code Episode.characters}.
+ * The time bounds are generous: the real corpus builds in about ten milliseconds against a bound of
+ * a second, and the cost per pair may triple over a corpus four times larger, so only a build that
+ * stopped scaling with the number of pairs fails them.
+ */
+public class CoAppearanceGraphTests extends BaseTest {
+
+    private static final String API_URL = "https://rickandmortyapi.com/api";
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testGraphMatchesEpisodeCasts() {
+        Dataset dataset = DatasetGenerator.real().generate();
+        List<Episode> episodes = new ArrayList<>();
+        for (int id = 1; id <= dataset.getEpisodeCount(); id++) {
+            episodes.add(dataset.episode(id, API_URL));
+        }
+        Map<Long, Integer> expected = bruteForce(episodes);
+
+        long started = System.nanoTime();
+        CoAppearanceGraph graph = CoAppearanceGraph.fromEpisodes(episodes);
+        long buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        CoAppearanceGraph fromColumns = CoAppearanceGraph.of(dataset);
+        System.out.println("Co-appearance graph built in " + buildMillis + " ms: " + graph.summary());
+
+        assertTrue(buildMillis < 1000, "Building the graph of the real corpus took " + buildMillis + " ms");
+        assertEquals(graph.getCharacterCount(), dataset.getCharacterCount(), "Characters");
+        assertEquals(graph.getEdgeCount(), (long) expected.size(), "Co-appearance pairs");
+        expected.forEach((pair, shared) -> {
+            int a = (int) (pair >>> 32);
+            int b = (int) (long) pair;
+            assertEquals(graph.sharedEpisodes(a, b), (int) shared, "Episodes shared by " + a + " and " + b);
+            assertEquals(graph.sharedEpisodes(b, a), (int) shared, "Episodes shared by " + b + " and " + a);
+        });
+        for (int id = 1; id <= dataset.getCharacterCount(); id++) {
+            assertEquals(fromColumns.partners(id), graph.partners(id), "Partners of " + id + " from the dataset columns");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testTopPartnersRankBySharedEpisodes() {
+        Dataset dataset = DatasetGenerator.real().generate();
+        CoAppearanceGraph graph = CoAppearanceGraph.of(dataset);
+
+        // Rick and Morty appear in every episode, so each is the other's strongest partner
+        CoAppearanceGraph.Partner rickBest = graph.topPartners(1, 1).get(0);
+        assertEquals(rickBest.getId(), 2, "Rick's top partner");
+        assertEquals(rickBest.getSharedEpisodes(), dataset.getEpisodeCount(), "Episodes Rick and Morty share");
+
+        for (int id : new int[]{1, 3, 100, 826}) {
+            List<CoAppearanceGraph.Partner> all = new ArrayList<>();
+            for (int partner : graph.partners(id)) {
+                all.add(new CoAppearanceGraph.Partner(partner, graph.sharedEpisodes(id, partner)));
+            }
+            all.sort(Comparator.comparingInt(CoAppearanceGraph.Partner::getSharedEpisodes).reversed()
+                    .thenComparingInt(CoAppearanceGraph.Partner::getId));
+            for (int k : new int[]{1, 5, 20}) {
+                assertEquals(graph.topPartners(id, k), all.subList(0, Math.min(k, all.size())), "Top " + k + " of " + id);
+            }
+            assertEquals(graph.topPartners(id, Integer.MAX_VALUE).size(), graph.degree(id), "All partners of " + id);
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testDegreeDistributionAndComponents() {
+        CoAppearanceGraph real = CoAppearanceGraph.of(DatasetGenerator.real().generate());
+        int[] distribution = real.degreeDistribution();
+        long characters = 0;
+        long endpoints = 0;
+        for (int degree = 0; degree < distribution.length; degree++) {
+            characters += distribution[degree];
+            endpoints += (long) degree * distribution[degree];
+        }
+        assertEquals(characters, real.getCharacterCount(), "Characters in the distribution");
+        assertEquals(endpoints, 2 * real.getEdgeCount(), "Sum of degrees");
+        assertEquals(distribution.length - 1, real.getCharacterCount() - 1, "Rick shares an episode with everyone");
+        assertEquals(real.components().getCount(), 1, "Components of the real corpus");
+
+        // {1, 2, 3} through two episodes, {4, 5} through one that lists 5 twice, 6 alone, 7 never cast
+        CoAppearanceGraph small = CoAppearanceGraph.build(7, new int[]{0, 2, 4, 7, 8}, new int[]{2, 1, 3, 2, 4, 5, 5, 6});
+        CoAppearanceGraph.Components components = small.components();
+        assertEquals(components.getCount(), 4, "Components");
+        assertEquals(components.componentOf(3), components.componentOf(1), "1 and 3 are linked through 2");
+        assertEquals(components.componentOf(5), 1, "Second component starts at character 4");
+        assertEquals(components.size(components.componentOf(2)), 3, "Size of {1, 2, 3}");
+        assertEquals(components.getLargestSize(), 3, "Largest component");
+        assertEquals(components.getIsolatedCount(), 2, "Characters 6 and 7");
+        assertEquals(small.sharedEpisodes(4, 5), 1, "A repeated id counts once");
+        assertEquals(small.degreeDistribution(), new int[]{2, 4, 1}, "Degree distribution");
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testBuildCostPerPairOnGrowingCorpora() {
+        // synthetic corpora keep a fixed cast size as they grow, so the pairs grow with the characters
+        CoAppearanceGraph.build(50_000, offsets(50_000), casts(50_000));
+        List<double[]> runs = new ArrayList<>();
+        for (int characters : new int[]{250_000, 500_000, 1_000_000}) {
+            int[] casts = casts(characters);
+            int[] offsets = offsets(characters);
+            long started = System.nanoTime();
+            CoAppearanceGraph graph = CoAppearanceGraph.build(characters, offsets, casts);
+            long nanos = System.nanoTime() - started;
+            runs.add(new double[]{characters, graph.getEdgeCount(), (double) nanos / graph.getEdgeCount()});
+            System.out.printf("Co-appearance graph of %,d characters: %,d pairs in %d ms (%.1f ns per pair)%n",
+                    characters, graph.getEdgeCount(), TimeUnit.NANOSECONDS.toMillis(nanos), (double) nanos / graph.getEdgeCount());
+        }
+
+        double pairsPerCharacter = runs.get(0)[1] / runs.get(0)[0];
+        for (double[] run : runs) {
+            assertEquals(run[1] / run[0], pairsPerCharacter, pairsPerCharacter * 0.1, "Pairs per character");
+        }
+        double first = runs.get(0)[2];
+        double last = runs.get(runs.size() - 1)[2];
+        System.out.printf("Cost per pair went from %.1f to %.1f ns as the corpus grew %dx%n",
+                first, last, (int) (runs.get(runs.size() - 1)[0] / runs.get(0)[0]));
+        // linear in the pairs: the cost per pair may wobble with the machine, not grow with the corpus
+        assertTrue(last < first * 3, "Cost per pair grew from " + first + " to " + last + " ns");
+    }
+
+    /**
+     * @return shared episode counts keyed by the pair of character ids, smaller id in the high half
+     */
+    private static Map<Long, Integer> bruteForce(List<Episode> episodes) {
+        Map<Long, Integer> shared = new HashMap<>();
+        for (Episode episode : episodes) {
+            List<Integer> cast = episode.getCharacters().stream()
+                    .map(url -> Integer.parseInt(url.substring(url.lastIndexOf('/') + 1)))
+                    .distinct().sorted().collect(Collectors.toList());
+            for (int i = 0; i < cast.size(); i++) {
+                for (int j = i + 1; j < cast.size(); j++) {
+                    shared.merge(((long) cast.get(i) << 32) | cast.get(j), 1, Integer::sum);
+                }
+            }
+        }
+        return shared;
+    }
+
+    /** Episodes of a synthetic corpus: one per 16 characters, each cast drawn from a window of 64 ids. */
+    private static int[] offsets(int characters) {
+        int episodes = characters / 16;
+        int[] offsets = new int[episodes + 1];
+        for (int e = 0; e < episodes; e++) {
+            offsets[e + 1] = offsets[e] + 32;
+        }
+        return offsets;
+    }
+
+    private static int[] casts(int characters) {
+        int episodes = characters / 16;
+        int[] casts = new int[episodes * 32];
+        SplittableRandom random = new SplittableRandom(DatasetGenerator.DEFAULT_SEED);
+        for (int e = 0; e < episodes; e++) {
+            int window = Math.min(e * 16, characters - 64);
+            for (int k = 0; k < 32; k++) {
+                casts[e * 32 + k] = 1 + window + random.nextInt(64);
+            }
+        }
+        return casts;
+    }
+}
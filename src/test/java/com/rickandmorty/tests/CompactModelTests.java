@@ -0,0 +1,198 @@
+package com.rickandmorty.tests;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.rickandmorty.client.ApiBatchLoader;
+import com.rickandmorty.client.PageIterator;
+import com.rickandmorty.data.Dataset;
+import com.rickandmorty.data.DatasetGenerator;
+import com.rickandmorty.models.ApiResponse;
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+import com.rickandmorty.models.compact.CompactCharacter;
+import com.rickandmorty.models.compact.CompactEpisode;
+import com.rickandmorty.models.compact.CompactLocation;
+import com.rickandmorty.models.compact.Interner;
+import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.MemoryProbe;
+import com.rickandmorty.utils.ModelMapper;
+import com.rickandmorty.utils.ParallelExecutionListener;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class CompactModelTests extends BaseTest {
+
+    private static final int BENCHMARK_CHARACTERS = 10_000;
+    private static final int BENCHMARK_COPIES = 10;
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testCompactCharactersMatchPojos() {
+        try (PageIterator<Character> pojos = new PageIterator<>(resolveBaseUrl() + "/character", Character.class);
+             PageIterator<CompactCharacter> compacts =
+                     new PageIterator<>(resolveBaseUrl() + "/character", CompactCharacter.class)) {
+            while (pojos.hasNext()) {
+                Character pojo = pojos.next();
+                CompactCharacter compact = compacts.next();
+                String label = "Character " + pojo.getId();
+
+                assertEquals(compact.getId(), pojo.getId(), label + " id");
+                assertEquals(compact.getName(), pojo.getName(), label + " name");
+                assertEquals(compact.getStatus().apiValue(), pojo.getStatus(), label + " status");
+                assertEquals(compact.getSpecies(), pojo.getSpecies(), label + " species");
+                assertEquals(compact.getType(), pojo.getType(), label + " type");
+                assertEquals(compact.getGender().apiValue(), pojo.getGender(), label + " gender");
+                assertEquals(compact.getOriginId(), referenceId(pojo.getOrigin().getUrl()), label + " origin");
+                assertEquals(compact.getLocationName(), pojo.getLocation().getName(), label + " location name");
+                assertEquals(compact.getLocationId(), referenceId(pojo.getLocation().getUrl()), label + " location");
+                assertEquals(compact.getEpisodeIds(), referenceIds(pojo.getEpisode()), label + " episodes");
+                assertEquals(compact.getCreated(), Instant.parse(pojo.getCreated()).toEpochMilli(), label + " created");
+            }
+            assertTrue(!compacts.hasNext(), "Compact crawl returned more characters than the POJO crawl");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testCompactLocationsAndEpisodesMatchPojos() {
+        try (PageIterator<Location> pojos = new PageIterator<>(resolveBaseUrl() + "/location", Location.class);
+             PageIterator<CompactLocation> compacts =
+                     new PageIterator<>(resolveBaseUrl() + "/location", CompactLocation.class)) {
+            while (pojos.hasNext()) {
+                Location pojo = pojos.next();
+                CompactLocation compact = compacts.next();
+                String label = "Location " + pojo.getId();
+
+                assertEquals(compact.getName(), pojo.getName(), label + " name");
+                assertEquals(compact.getType(), pojo.getType(), label + " type");
+                assertEquals(compact.getDimension(), pojo.getDimension(), label + " dimension");
+                assertEquals(compact.getResidentIds(), referenceIds(pojo.getResidents()), label + " residents");
+                assertEquals(compact.getCreated(), Instant.parse(pojo.getCreated()).toEpochMilli(), label + " created");
+            }
+        }
+        try (PageIterator<Episode> pojos = new PageIterator<>(resolveBaseUrl() + "/episode", Episode.class);
+             PageIterator<CompactEpisode> compacts =
+                     new PageIterator<>(resolveBaseUrl() + "/episode", CompactEpisode.class)) {
+            while (pojos.hasNext()) {
+                Episode pojo = pojos.next();
+                CompactEpisode compact = compacts.next();
+                String label = "Episode " + pojo.getId();
+
+                assertEquals(compact.getEpisode(), pojo.getEpisode(), label + " code");
+                assertEquals(compact.getAirDate(), pojo.getAir_date(), label + " air date");
+                assertEquals(compact.getCharacterIds(), referenceIds(pojo.getCharacters()), label + " characters");
+                assertEquals(compact.getCreated(), Instant.parse(pojo.getCreated()).toEpochMilli(), label + " created");
+            }
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testMissingTimestampsAndOneOffNames() throws IOException {
+        ObjectReader reader = ModelMapper.reader(CompactCharacter.class);
+        for (String created : new String[]{"\"created\":null", "\"created\":\"\"", "\"name\":\"no timestamp\""}) {
+            CompactCharacter character = reader.readValue("{\"id\":1," + created + "}");
+            assertEquals(character.getCreated(), Long.MIN_VALUE, "created of {" + created + "}");
+        }
+
+        // names of places are open-ended: shared within a read, never added to the JVM-wide table
+        String place = "Nowhere " + System.nanoTime();
+        String reference = "{\"name\":\"" + place + "\",\"url\":\"\"}";
+        int internedBefore = Interner.size();
+        List<CompactCharacter> characters = ModelMapper.listReader(CompactCharacter.class).readValue(
+                "[{\"id\":1,\"origin\":" + reference + ",\"location\":" + reference + "},"
+                        + "{\"id\":2,\"location\":" + reference + "}]");
+        assertEquals(characters.get(0).getOriginName(), place, "Origin name");
+        assertTrue(characters.get(0).getLocationName() == characters.get(1).getLocationName(),
+                "Location names within one read should be one instance");
+        assertEquals(Interner.size(), internedBefore, "Location names added to the JVM-wide interner");
+    }
+
+    /**
+     * Parses the same pre-serialized character pages into POJOs and into compact models,
+     * keeping every result, and compares retained heap, allocation and GC time.
+     */
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testCompactModelsUseLessHeapAndGc() throws IOException {
+        List<byte[]> pages = serializedCharacterPages(DatasetGenerator.scaled(BENCHMARK_CHARACTERS).generate());
+        load(pages, Character.class, 1);
+        load(pages, CompactCharacter.class, 1);
+
+        LoadCost pojo = load(pages, Character.class, BENCHMARK_COPIES);
+        LoadCost compact = load(pages, CompactCharacter.class, BENCHMARK_COPIES);
+
+        System.out.println("Loading " + BENCHMARK_CHARACTERS * BENCHMARK_COPIES + " characters -> POJO: " + pojo
+                + "; compact: " + compact + String.format("; %.1fx less heap, %.1fx less allocation",
+                pojo.retainedBytes / (double) compact.retainedBytes,
+                pojo.allocatedBytes / (double) compact.allocatedBytes));
+        assertTrue(compact.retainedBytes * 3 < pojo.retainedBytes,
+                "Compact models retain " + MemoryProbe.mib(compact.retainedBytes) + ", POJOs "
+                        + MemoryProbe.mib(pojo.retainedBytes));
+    }
+
+    private static List<byte[]> serializedCharacterPages(Dataset dataset) throws IOException {
+        String apiUrl = "https://rickandmortyapi.com/api";
+        List<byte[]> pages = new ArrayList<>();
+        for (int first = 1; first <= dataset.getCharacterCount(); first += 20) {
+            ApiResponse<Character> page = new ApiResponse<>();
+            page.setInfo(new ApiResponse.Info());
+            List<Character> results = new ArrayList<>(20);
+            for (int id = first; id < first + 20 && id <= dataset.getCharacterCount(); id++) {
+                results.add(dataset.character(id, apiUrl));
+            }
+            page.setResults(results);
+            pages.add(ModelMapper.MAPPER.writeValueAsBytes(page));
+        }
+        return pages;
+    }
+
+    private static LoadCost load(List<byte[]> pages, Class<?> type, int copies) throws IOException {
+        ObjectReader reader = ModelMapper.pageReader(type);
+        long heapBefore = MemoryProbe.usedHeapAfterGc();
+        long gcBefore = MemoryProbe.gcMillis();
+        long allocatedBefore = MemoryProbe.allocatedBytes();
+        long started = System.nanoTime();
+
+        List<Object> retained = new ArrayList<>(pages.size() * 20 * copies);
+        for (int copy = 0; copy < copies; copy++) {
+            for (byte[] page : pages) {
+                ApiResponse<?> parsed = reader.readValue(page);
+                retained.addAll(parsed.getResults());
+            }
+        }
+
+        LoadCost cost = new LoadCost();
+        cost.millis = (System.nanoTime() - started) / 1_000_000;
+        cost.allocatedBytes = MemoryProbe.allocatedBytes() - allocatedBefore;
+        cost.gcMillis = MemoryProbe.gcMillis() - gcBefore;
+        cost.retainedBytes = MemoryProbe.usedHeapAfterGc() - heapBefore;
+        cost.count = retained.size();
+        return cost;
+    }
+
+    private static int referenceId(String url) {
+        return url == null || url.isEmpty() ? 0 : ApiBatchLoader.idOf(url);
+    }
+
+    private static int[] referenceIds(List<String> urls) {
+        return urls.stream().mapToInt(ApiBatchLoader::idOf).toArray();
+    }
+
+    private static final class LoadCost {
+        long millis;
+        long allocatedBytes;
+        long gcMillis;
+        long retainedBytes;
+        int count;
+
+        @Override
+        public String toString() {
+            return String.format("%s retained, %s allocated, %dms GC, %dms total (%d objects)",
+                    MemoryProbe.mib(retainedBytes), MemoryProbe.mib(allocatedBytes), gcMillis, millis, count);
+        }
+    }
+}
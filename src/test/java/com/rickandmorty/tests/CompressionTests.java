@@ -0,0 +1,256 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.client.PageIterator;
+import com.rickandmorty.client.PagePrefetcher;
+import com.rickandmorty.data.DatasetGenerator;
+import com.rickandmorty.http.DecodingInputStream;
+import com.rickandmorty.http.LatencyFilter;
+import com.rickandmorty.http.PooledTransport;
+import com.rickandmorty.http.TransportConfig;
+import com.rickandmorty.models.Character;
+import com.rickandmorty.server.LocalApiServer;
+import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.ParallelExecutionListener;
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.config.RestAssuredConfig;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static io.restassured.RestAssured.given;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+/**
+ * Exercises {@code gzip}/{@code deflate} negotiation end to end: the local server's encoding, both
+ * transports' streaming decoding and byte accounting, and the crawlers parsing straight from the
+ * decoding stream. Dedicated servers and transports keep the counts exact; the slow-link servers
+ * pace bodies so the saved bytes show up as saved time.
+ */
+public class CompressionTests extends BaseTest {
+
+    private static final int LINK_KIB_PER_SECOND = 1024;
+
+    private LocalApiServer compressed;
+
+    @BeforeClass(alwaysRun = true)
+    public void startServers() {
+        compressed = LocalApiServer.builder(DatasetGenerator.real().generate()).compression(true).start();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServers() {
+        if (compressed != null) {
+            compressed.close();
+        }
+    }
+
+    @Test
+    public void testDecodingStreamCountsBothSides() throws IOException {
+        byte[] json = ("{\"results\":[" + "{\"name\":\"Rick Sanchez\",\"status\":\"Alive\"},".repeat(200) + "{}]}")
+                .getBytes(StandardCharsets.UTF_8);
+        Map<String, byte[]> encodings = Map.of(
+                "gzip", encode(json, out -> new GZIPOutputStream(out)),
+                "deflate", encode(json, DeflaterOutputStream::new),
+                "identity", json);
+        for (Map.Entry<String, byte[]> encoding : encodings.entrySet()) {
+            AtomicInteger completions = new AtomicInteger();
+            byte[] decoded;
+            DecodingInputStream body = DecodingInputStream.open(new ByteArrayInputStream(encoding.getValue()), encoding.getKey());
+            try (body) {
+                body.onComplete(read -> completions.incrementAndGet());
+                decoded = body.readAllBytes();
+            }
+            assertEquals(decoded, json, "Decoded " + encoding.getKey() + " body");
+            assertEquals(body.getWireBytes(), encoding.getValue().length, "Wire bytes of " + encoding.getKey());
+            assertEquals(body.getDecodedBytes(), json.length, "Decoded bytes of " + encoding.getKey());
+            assertEquals(body.isCompressed(), !"identity".equals(encoding.getKey()), "Compressed " + encoding.getKey());
+            assertEquals(completions.get(), 1, "Completions of " + encoding.getKey());
+        }
+
+        // some servers send deflate without the zlib wrapper
+        byte[] raw = encode(json, out -> new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, true)));
+        try (DecodingInputStream body = DecodingInputStream.open(new ByteArrayInputStream(raw), "Deflate")) {
+            assertEquals(body.readAllBytes(), json, "Decoded raw deflate body");
+        }
+        try (DecodingInputStream body = DecodingInputStream.open(new ByteArrayInputStream(new byte[0]), "gzip")) {
+            assertEquals(body.readAllBytes().length, 0, "Empty gzip body");
+        }
+        try (DecodingInputStream body = DecodingInputStream.open(new ByteArrayInputStream(new byte[0]), "deflate")) {
+            assertEquals(body.readAllBytes().length, 0, "Empty deflate body");
+        }
+        // whatever follows the decoder's trailer is read off the wire too, so the connection reaches its end
+        byte[] padded = Arrays.copyOf(encodings.get("deflate"), encodings.get("deflate").length + 20_000);
+        try (DecodingInputStream body = DecodingInputStream.open(new ByteArrayInputStream(padded), "deflate")) {
+            assertEquals(body.readAllBytes(), json, "Decoded deflate body with bytes after its trailer");
+            assertEquals(body.getWireBytes(), padded.length, "Wire bytes read once the decoder finished");
+        }
+        expectThrows(IOException.class, () -> DecodingInputStream.open(new ByteArrayInputStream(json), "br"));
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testBothTransportsNegotiateAndDecode() {
+        for (TransportConfig.Backend backend : TransportConfig.Backend.values()) {
+            try (PooledTransport transport = PooledTransport.create(TransportConfig.defaults().withBackend(backend))) {
+                RequestSpecification spec = transport.install(new RequestSpecBuilder(), RestAssuredConfig.config())
+                        .setBaseUri(compressed.getBaseUrl()).build();
+                long compressedBefore = compressed.getCompressedResponseCount();
+
+                // each body is read before the next request: RestAssured holds the connection until then
+                Response gzip = given().spec(spec).get("/character");
+                gzip.asByteArray();
+                Response deflate = given().spec(spec).header("Accept-Encoding", "deflate").get("/character");
+                deflate.asByteArray();
+                Response plain = given().spec(spec).header("Accept-Encoding", "identity").get("/character");
+                plain.asByteArray();
+                Response small = given().spec(spec).get("/character/400");
+                small.asByteArray();
+                long opened = transport.getStats().getConnectionsOpened();
+
+                assertEquals(gzip.statusCode(), SUCCESS_STATUS_CODE, backend + " status");
+                assertEquals(gzip.asString(), plain.asString(), backend + " gzip body");
+                assertEquals(deflate.asString(), plain.asString(), backend + " deflate body");
+                assertEquals(gzip.jsonPath().getInt("info.count"), compressed.getDataset().getCharacterCount(), backend + " count");
+                assertNull(gzip.getHeader("Content-Encoding"), backend + " left the encoding on a decoded body");
+                assertEquals(compressed.getCompressedResponseCount() - compressedBefore, 2L,
+                        backend + ": the identity request and the small body go out as they are");
+                assertTrue(small.asByteArray().length < 1024, backend + " small body of " + small.asByteArray().length + " bytes");
+
+                // each representation has its own validator, and either one revalidates
+                assertTrue(gzip.getHeader("ETag").endsWith("-gzip\""), backend + " gzip ETag " + gzip.getHeader("ETag"));
+                assertEquals(given().spec(spec).header("If-None-Match", gzip.getHeader("ETag")).get("/character").statusCode(),
+                        304, backend + " revalidating the gzip representation");
+                assertEquals(given().spec(spec).header("If-None-Match", plain.getHeader("ETag")).get("/character").statusCode(),
+                        304, backend + " revalidating the identity representation");
+
+                long plainBytes = plain.asByteArray().length;
+                System.out.println("Compression over " + backend + ": " + transport.getStats().summary());
+                assertEquals(transport.getStats().getCompressedResponses(), 2L, backend + " compressed responses");
+                assertEquals(transport.getStats().getDecodedBytes(), 3 * plainBytes + small.asByteArray().length,
+                        backend + " decoded bytes");
+                assertTrue(transport.getStats().getWireBytes() < plainBytes + small.asByteArray().length + plainBytes / 2,
+                        backend + " wire bytes: " + transport.getStats().summary());
+                if (backend == TransportConfig.Backend.APACHE) {
+                    // sequential requests on a keep-alive pool: every body, compressed or not, gives its connection
+                    // back (counted before the revalidations, since the JDK's HttpServer closes after each 304)
+                    assertEquals(opened, 1L, backend + " connections opened for four bodies");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBytesAccountedPerEndpoint() {
+        LatencyFilter filter = new LatencyFilter();
+        try (PooledTransport transport = PooledTransport.create(TransportConfig.defaults())) {
+            RequestSpecification spec = transport.install(new RequestSpecBuilder(), RestAssuredConfig.config())
+                    .setBaseUri(compressed.getBaseUrl()).addFilter(filter).build();
+            long pageBytes = 0;
+            for (int page = 1; page <= 5; page++) {
+                pageBytes += given().spec(spec).queryParam("page", page).get("/character").asByteArray().length;
+            }
+            long characterBytes = 0;
+            for (int id = 400; id < 405; id++) {
+                characterBytes += given().spec(spec).get("/character/" + id).asByteArray().length;
+            }
+            System.out.print(filter.summary());
+
+            LatencyFilter.Snapshot pages = filter.snapshot().get("/character?page");
+            LatencyFilter.Snapshot characters = filter.snapshot().get("/character/{id}");
+            assertEquals(pages.getDecodedBytes(), pageBytes, "Decoded bytes of /character?page");
+            assertTrue(pages.getWireBytes() * 4 < pages.getDecodedBytes(),
+                    "Pages should shrink at least 4x, got " + pages.getWireBytes() + " of " + pages.getDecodedBytes());
+            assertEquals(characters.getDecodedBytes(), characterBytes, "Decoded bytes of /character/{id}");
+            assertEquals(characters.getWireBytes(), characters.getDecodedBytes(), "Single characters are sent as they are");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testCompressedCrawlsMatchAndFinishSooner() {
+        List<String> plain = new ArrayList<>();
+        List<String> gzip = new ArrayList<>();
+        try (LocalApiServer slowCompressed = LocalApiServer.builder(compressed.getDataset())
+                .compression(true).bandwidth(LINK_KIB_PER_SECOND).start();
+             LocalApiServer slowIdentity = LocalApiServer.builder(compressed.getDataset())
+                     .compression(false).bandwidth(LINK_KIB_PER_SECOND).start()) {
+            long identityMillis = crawl(slowIdentity, plain, "identity");
+            long compressedMillis = crawl(slowCompressed, gzip, "gzip");
+
+            assertEquals(gzip.size(), compressed.getDataset().getCharacterCount(), "Characters crawled");
+            assertEquals(gzip, plain, "Characters crawled from compressed pages");
+            assertTrue(compressedMillis < identityMillis, "Compressed crawl took " + compressedMillis
+                    + " ms against " + identityMillis + " ms at " + LINK_KIB_PER_SECOND + " KiB/s");
+
+            try (PagePrefetcher<Character> prefetcher =
+                         new PagePrefetcher<>(slowCompressed.getBaseUrl() + "/character", Character.class, 4)) {
+                List<String> prefetched = new ArrayList<>();
+                while (prefetcher.hasNext()) {
+                    Character character = prefetcher.next();
+                    prefetched.add(character.getId() + ":" + character.getName());
+                }
+                System.out.println("Prefetched compressed pages: " + prefetcher.summary());
+                assertEquals(prefetched, plain, "Characters prefetched from compressed pages");
+                assertTrue(prefetcher.getWireBytes() * 4 < prefetcher.getDecodedBytes(), prefetcher.summary());
+            }
+        }
+    }
+
+    /**
+     * Walks {@code /character} with a {@link PageIterator}, collecting {@code id:name} per character.
+     *
+     * @return milliseconds the crawl took
+     */
+    private static long crawl(LocalApiServer server, List<String> into, String label) {
+        long started = System.nanoTime();
+        try (PageIterator<Character> characters = new PageIterator<>(server.getBaseUrl() + "/character", Character.class)) {
+            while (characters.hasNext()) {
+                Character character = characters.next();
+                into.add(character.getId() + ":" + character.getName());
+            }
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            System.out.printf("Crawled %d %s pages in %d ms: %.1f KiB on the wire for %.1f KiB (%s)%n",
+                    characters.getPagesFetched(), label, millis, characters.getWireBytes() / 1024.0,
+                    characters.getDecodedBytes() / 1024.0, server.connectionSummary());
+            if ("identity".equals(label)) {
+                assertEquals(characters.getWireBytes(), characters.getDecodedBytes(), "Identity pages are not encoded");
+            } else {
+                assertTrue(characters.getWireBytes() * 4 < characters.getDecodedBytes(),
+                        "Pages should shrink at least 4x, got " + characters.getWireBytes() + " of " + characters.getDecodedBytes());
+                assertFalse(server.getCompressedResponseCount() == 0, "No page went out compressed");
+            }
+            return millis;
+        }
+    }
+
+    private static byte[] encode(byte[] bytes, Encoder encoder) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream out = encoder.wrap(encoded)) {
+            out.write(bytes);
+        }
+        return encoded.toByteArray();
+    }
+
+    private interface Encoder {
+        OutputStream wrap(OutputStream out) throws IOException;
+    }
+}
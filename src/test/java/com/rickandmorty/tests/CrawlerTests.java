@@ -0,0 +1,115 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.client.ApiCrawler;
+import com.rickandmorty.client.PageIterator;
+import com.rickandmorty.client.PagePrefetcher;
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+import com.rickandmorty.utils.BaseTest;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+public class CrawlerTests extends BaseTest {
+
+    @Test
+    public void testCrawlAllCharacters() {
+        BitSet seen = new BitSet();
+        try (PageIterator<Character> characters = new PageIterator<>(resolveBaseUrl() + "/character", Character.class)) {
+            while (characters.hasNext()) {
+                Character character = characters.next();
+                assertNotNull(character.getStatus(), "Character " + character.getId() + " has no status");
+                assertFalse(seen.get(character.getId()), "Character " + character.getId() + " was returned twice");
+                seen.set(character.getId());
+            }
+
+            assertEquals(characters.getRecordsRead(), characters.getInfo().getCount(),
+                    "Crawled characters do not match info.count");
+            assertEquals(characters.getPagesFetched(), characters.getInfo().getPages(),
+                    "Crawled pages do not match info.pages");
+        }
+    }
+
+    @Test
+    public void testCrawlAllLocations() {
+        try (PageIterator<Location> locations = new PageIterator<>(resolveBaseUrl() + "/location", Location.class)) {
+            while (locations.hasNext()) {
+                Location location = locations.next();
+                assertNotNull(location.getDimension(), "Location " + location.getId() + " has no dimension");
+                assertNotNull(location.getResidents(), "Location " + location.getId() + " has no residents list");
+            }
+
+            assertEquals(locations.getRecordsRead(), locations.getInfo().getCount(),
+                    "Crawled locations do not match info.count");
+        }
+    }
+
+    @Test
+    public void testCrawlAllEpisodes() {
+        try (Stream<Episode> episodes = ApiCrawler.episodes(resolveBaseUrl())) {
+            long malformed = episodes.filter(episode -> !episode.getEpisode().matches("S\\d{2}E\\d{2}")).count();
+            assertEquals(malformed, 0L, "Episodes with a code outside the 'SxxExx' format");
+        }
+    }
+
+    @Test
+    public void testPrefetchMatchesSequentialCrawl() {
+        List<Integer> sequentialIds = new ArrayList<>();
+        try (Stream<Character> characters = ApiCrawler.characters(resolveBaseUrl())) {
+            characters.forEach(character -> sequentialIds.add(character.getId()));
+        }
+
+        List<Integer> prefetchedIds = new ArrayList<>();
+        try (PagePrefetcher<Character> characters =
+                     new PagePrefetcher<>(resolveBaseUrl() + "/character", Character.class, 8)) {
+            while (characters.hasNext()) {
+                prefetchedIds.add(characters.next().getId());
+            }
+            System.out.println("Prefetched /character: " + characters.summary());
+        }
+
+        assertEquals(prefetchedIds, sequentialIds, "Prefetched characters are not in page order");
+    }
+
+    @Test
+    public void testPrefetchIgnoresPageInUrl() {
+        List<Integer> expectedIds = new ArrayList<>();
+        try (PageIterator<Character> characters =
+                     new PageIterator<>(resolveBaseUrl() + "/character?status=alive", Character.class)) {
+            characters.forEachRemaining(character -> expectedIds.add(character.getId()));
+        }
+
+        List<Integer> prefetchedIds = new ArrayList<>();
+        try (PagePrefetcher<Character> characters =
+                     new PagePrefetcher<>(resolveBaseUrl() + "/character?page=3&status=alive", Character.class, 4)) {
+            characters.forEachRemaining(character -> prefetchedIds.add(character.getId()));
+            assertEquals(characters.getPagesFetched(), characters.getInfo().getPages(), "Pages fetched");
+        }
+
+        assertEquals(prefetchedIds, expectedIds, "Prefetched characters with a page parameter in the URL");
+    }
+
+    @Test
+    public void testCrawlFilteredCharacters() {
+        String nameFilter = "rick";
+
+        try (Stream<Character> characters = ApiCrawler.stream(
+                resolveBaseUrl() + "/character?name=" + nameFilter + "&status=alive", Character.class)) {
+            characters.forEach(character -> {
+                assertTrue(character.getName().toLowerCase().contains(nameFilter),
+                        "Character name '" + character.getName() + "' does not contain filter '" + nameFilter + "'");
+                assertEquals(character.getStatus().toLowerCase(), "alive",
+                        "Character status '" + character.getStatus() + "' does not match filter 'alive'");
+            });
+        }
+    }
+}
@@ -1,24 +1,30 @@
 package com.rickandmorty.tests;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.rickandmorty.client.ApiCrawler;
+import com.rickandmorty.models.ApiResponse;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.schema.SchemaRegistry;
 import com.rickandmorty.utils.ApiUtils;
 import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.ModelMapper;
 import io.restassured.response.Response;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.ArrayList;
+import java.util.stream.Stream;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
 public class EpisodeTests extends BaseTest {
 
     private static final String ENDPOINT = "/episode";
-    private static final int MAX_RESPONSE_TIME_MS = 2000;
 
     @Test
     public void testGetAllEpisodes() {
@@ -28,25 +34,26 @@ public class EpisodeTests extends BaseTest {
                 .get(ENDPOINT)
                 .then()
                 .statusCode(SUCCESS_STATUS_CODE) // Validate status code
-                .body("info", notNullValue())
-                .body("info.count", greaterThan(0))
-                .body("info.pages", greaterThan(0))
-                .body("results", notNullValue())
-                .body("results.size()", greaterThan(0))
                 .extract().response();
 
-        Map<String, Object> responseBody = response.jsonPath().getMap("$");
-        List<Map<String, Object>> results = (List<Map<String, Object>>) responseBody.get("results");
-        Map<String, Object> firstEpisode = results.get(0);
+        JsonNode body = ModelMapper.tree(response);
+        SchemaRegistry.assertValidPage(SchemaRegistry.EPISODE, body);
+        ApiResponse<Episode> page = ModelMapper.page(body, Episode.class);
+        ApiUtils.verifyPath("info", page.getInfo(), notNullValue());
+        ApiUtils.verifyPath("info.count", page.getInfo().getCount(), greaterThan(0));
+        ApiUtils.verifyPath("info.pages", page.getInfo().getPages(), greaterThan(0));
+        ApiUtils.verifyPath("results", page.getResults(), notNullValue());
+        ApiUtils.verifyPath("results.size()", page.getResults().size(), greaterThan(0));
 
-        assertTrue(firstEpisode.containsKey("id"), "Episode is missing 'id' field");
-        assertTrue(firstEpisode.containsKey("name"), "Episode is missing 'name' field");
-        assertTrue(firstEpisode.containsKey("air_date"), "Episode is missing 'air_date' field");
-        assertTrue(firstEpisode.containsKey("episode"), "Episode is missing 'episode' field");
-        assertTrue(firstEpisode.containsKey("characters"), "Episode is missing 'characters' field");
+        Episode firstEpisode = page.getResults().get(0);
+
+        assertTrue(firstEpisode.getId() > 0, "Episode is missing 'id' field");
+        assertNotNull(firstEpisode.getName(), "Episode is missing 'name' field");
+        assertNotNull(firstEpisode.getAir_date(), "Episode is missing 'air_date' field");
+        assertNotNull(firstEpisode.getEpisode(), "Episode is missing 'episode' field");
+        assertNotNull(firstEpisode.getCharacters(), "Episode is missing 'characters' field");
 
         ApiUtils.verifyCommonResponseHeaders(response);
-        ApiUtils.verifyResponseTime(response, MAX_RESPONSE_TIME_MS);
     }
 
     @Test
@@ -59,19 +66,18 @@ public class EpisodeTests extends BaseTest {
                 .get(ENDPOINT + "/" + episodeId)
                 .then()
                 .statusCode(SUCCESS_STATUS_CODE)
-                .body("id", equalTo(episodeId))
-                .body("name", equalTo("Pilot"))
-                .body("air_date", notNullValue())
-                .body("episode", notNullValue())
-                .body("characters", notNullValue())
                 .extract().response();
 
-        Map<String, Object> episode = response.jsonPath().getMap("$");
-        assertEquals(((Integer)episode.get("id")).intValue(), episodeId, "Episode ID does not match expected value");
-        assertEquals(episode.get("name"), "Pilot", "Episode name does not match expected value");
+        JsonNode body = ModelMapper.tree(response);
+        SchemaRegistry.assertValid(SchemaRegistry.EPISODE, body);
+        Episode episode = ModelMapper.entity(body, Episode.class);
+        assertEquals(episode.getId(), episodeId, "Episode ID does not match expected value");
+        assertEquals(episode.getName(), "Pilot", "Episode name does not match expected value");
+        ApiUtils.verifyPath("air_date", episode.getAir_date(), notNullValue());
+        ApiUtils.verifyPath("episode", episode.getEpisode(), notNullValue());
+        ApiUtils.verifyPath("characters", episode.getCharacters(), notNullValue());
 
         ApiUtils.verifyCommonResponseHeaders(response);
-        ApiUtils.verifyResponseTime(response, MAX_RESPONSE_TIME_MS);
     }
 
     @Test
@@ -84,26 +90,20 @@ public class EpisodeTests extends BaseTest {
                 .get(ENDPOINT + "/" + episodeIds.toString().replaceAll("[\\[\\]\\s]", ""))
                 .then()
                 .statusCode(SUCCESS_STATUS_CODE)
-                .body("size()", equalTo(episodeIds.size()))
                 .extract().response();
 
-        List<Map<String, Object>> episodes = new ArrayList<>();
-        for (int i = 0; i < episodeIds.size(); i++) {
-            Map<String, Object> episode = response.jsonPath().getMap("[" + i + "]");
-            episodes.add(episode);
-        }
+        JsonNode body = ModelMapper.tree(response);
+        SchemaRegistry.assertValid(SchemaRegistry.EPISODE, body);
+        List<Episode> episodes = ModelMapper.list(body, Episode.class);
 
         assertEquals(episodes.size(), episodeIds.size(), "Number of returned episodes does not match");
 
         for (int i = 0; i < episodeIds.size(); i++) {
-            Object idObj = episodes.get(i).get("id");
-            int id = (idObj instanceof Integer) ? (Integer)idObj : Integer.parseInt(idObj.toString());
-            assertEquals(id, episodeIds.get(i).intValue(),
+            assertEquals(episodes.get(i).getId(), episodeIds.get(i).intValue(),
                     "Episode ID at index " + i + " does not match expected value");
         }
 
         ApiUtils.verifyCommonResponseHeaders(response);
-        ApiUtils.verifyResponseTime(response, MAX_RESPONSE_TIME_MS);
     }
 
     @Test
@@ -133,21 +133,29 @@ public class EpisodeTests extends BaseTest {
                 .get(ENDPOINT)
                 .then()
                 .statusCode(SUCCESS_STATUS_CODE)
-                .body("results", notNullValue())
                 .extract().response();
 
-        Map<String, Object> responseBody = response.jsonPath().getMap("$");
-        List<Map<String, Object>> results = (List<Map<String, Object>>) responseBody.get("results");
+        ApiResponse<Episode> page = ModelMapper.page(response, Episode.class);
+        assertNotNull(page.getResults(), "Results are missing");
 
-        for (Map<String, Object> episode : results) {
-            String name = (String) episode.get("name");
+        for (Episode episode : page.getResults()) {
+            String name = episode.getName();
 
             assertTrue(name.toLowerCase().contains(nameFilter.toLowerCase()),
                     "Episode name '" + name + "' does not contain filter '" + nameFilter + "'");
         }
 
+        // Every matching episode, across all pages, and nothing else
+        // (the replica and the crawl bypass requestSpec, so they cannot be replayed)
+        if (!isReplaying()) {
+            int[] expectedIds = replica().episodes().ids(Map.of("name", nameFilter));
+            assertEquals(page.getInfo().getCount(), expectedIds.length, "info.count differs from the replica");
+            try (Stream<Episode> all = ApiCrawler.stream(resolveBaseUrl() + ENDPOINT + "?name=" + nameFilter, Episode.class)) {
+                assertEquals(all.mapToInt(Episode::getId).toArray(), expectedIds, "Filtered episodes differ from the replica");
+            }
+        }
+
         ApiUtils.verifyCommonResponseHeaders(response);
-        ApiUtils.verifyResponseTime(response, MAX_RESPONSE_TIME_MS);
     }
 
     @Test
@@ -160,17 +168,15 @@ public class EpisodeTests extends BaseTest {
                 .statusCode(SUCCESS_STATUS_CODE)
                 .extract().response();
 
-        Map<String, Object> responseBody = response.jsonPath().getMap("$");
-        List<Map<String, Object>> results = (List<Map<String, Object>>) responseBody.get("results");
+        ApiResponse<Episode> page = ModelMapper.page(response, Episode.class);
 
-        for (Map<String, Object> episode : results) {
-            String episodeCode = (String) episode.get("episode");
+        for (Episode episode : page.getResults()) {
+            String episodeCode = episode.getEpisode();
 
             assertTrue(episodeCode.matches("S\\d{2}E\\d{2}"),
                     "Episode code '" + episodeCode + "' does not follow the expected format 'SxxExx'");
         }
 
         ApiUtils.verifyCommonResponseHeaders(response);
-        ApiUtils.verifyResponseTime(response, MAX_RESPONSE_TIME_MS);
     }
-} 
\ No newline at end of file
+}
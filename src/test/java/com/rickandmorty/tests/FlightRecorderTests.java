@@ -0,0 +1,127 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.http.FlightRecorder;
+import com.rickandmorty.utils.BaseTest;
+import io.restassured.response.Response;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static io.restassured.RestAssured.given;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Exercises a dedicated {@link FlightRecorder} in place of the suite's shared one, writing to a buffer.
+ */
+public class FlightRecorderTests extends BaseTest {
+
+    @Test
+    public void testNothingWrittenOnHappyPath() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (FlightRecorder recorder = new FlightRecorder(5, FlightRecorder.DEFAULT_MAX_BYTES, print(output))) {
+            for (int id = 1; id <= 3; id++) {
+                get(recorder, "/character/" + id).then().spec(responseSpec);
+            }
+            recorder.clear();
+            recorder.flush();
+
+            assertEquals(recorder.getRecorded(), 3L, "Exchanges recorded");
+            assertEquals(recorder.size(), 0, "Exchanges buffered after clear");
+            assertEquals(output.size(), 0, "Nothing should be written without a dump");
+        }
+    }
+
+    @Test
+    public void testBufferBoundedByCount() throws Exception {
+        try (FlightRecorder recorder = new FlightRecorder(3, FlightRecorder.DEFAULT_MAX_BYTES, print(new ByteArrayOutputStream()))) {
+            for (int id = 1; id <= 10; id++) {
+                get(recorder, "/episode/" + id);
+            }
+            assertEquals(recorder.size(), 3, "Exchanges kept");
+            assertEquals(recorder.getRecorded(), 10L, "Exchanges recorded");
+        }
+    }
+
+    @Test
+    public void testBufferBoundedByBytes() throws Exception {
+        long maxBytes = 4 * 1024;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (FlightRecorder recorder = new FlightRecorder(100, maxBytes, print(output))) {
+            for (int page = 1; page <= 5; page++) {
+                get(recorder, "/character?page=" + page);
+            }
+            assertTrue(recorder.bufferedBytes() <= maxBytes, "Buffered bytes " + recorder.bufferedBytes()
+                    + " exceed the cap of " + maxBytes);
+            assertTrue(recorder.size() >= 1, "The latest exchange should be kept, truncated if need be");
+
+            recorder.dump("bytes", null).get();
+            assertTrue(output.toString(StandardCharsets.UTF_8.name()).contains("more bytes not kept"),
+                    "A page larger than the cap should be truncated");
+        }
+    }
+
+    @Test
+    public void testDumpWritesLastExchanges() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (FlightRecorder recorder = new FlightRecorder(2, FlightRecorder.DEFAULT_MAX_BYTES, print(output))) {
+            get(recorder, "/location/1");
+            get(recorder, "/location/2");
+            get(recorder, "/location/3");
+
+            recorder.dump("FlightRecorderTests.dump", new AssertionError("expected failure"));
+            recorder.flush();
+
+            String dump = output.toString(StandardCharsets.UTF_8.name());
+            assertTrue(dump.contains("FlightRecorderTests.dump"), "Dump heading missing: " + dump);
+            assertTrue(dump.contains("expected failure"), "Failure missing from dump");
+            assertTrue(dump.contains("/location/2") && dump.contains("/location/3"), "Last exchanges missing: " + dump);
+            assertFalse(dump.contains("/location/1"), "Evicted exchange should not be dumped");
+            assertTrue(dump.contains("\"name\""), "Response body missing from dump");
+            assertEquals(recorder.size(), 0, "Buffer should be emptied by a dump");
+            assertEquals(recorder.getDumps(), 1L, "Dumps");
+        }
+    }
+
+    @Test
+    public void testThreadsStartedByTheTestShareItsBuffer() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (FlightRecorder recorder = new FlightRecorder(5, FlightRecorder.DEFAULT_MAX_BYTES, print(output))) {
+            recorder.begin();
+            ExecutorService worker = Executors.newSingleThreadExecutor();
+            try {
+                worker.submit(() -> get(recorder, "/episode/7")).get();
+                assertEquals(recorder.size(), 1, "The worker's exchange should be in the test's buffer");
+
+                recorder.dump("FlightRecorderTests.worker", null).get();
+                assertTrue(output.toString(StandardCharsets.UTF_8.name()).contains("/episode/7"),
+                        "The worker's exchange should be dumped with the test");
+                assertEquals(worker.submit(recorder::size).get().intValue(), 0, "The worker's buffer after the dump");
+
+                recorder.begin();
+                worker.submit(() -> get(recorder, "/episode/8")).get();
+                assertEquals(recorder.size(), 0, "A thread started before begin() keeps the old buffer");
+            } finally {
+                worker.shutdownNow();
+            }
+        }
+    }
+
+    private Response get(FlightRecorder recorder, String path) {
+        return given()
+                .spec(requestSpec)
+                .noFiltersOfType(FlightRecorder.class)
+                .filter(recorder)
+                .when()
+                .get(path);
+    }
+
+    private static PrintStream print(ByteArrayOutputStream output) {
+        return new PrintStream(output, true);
+    }
+}
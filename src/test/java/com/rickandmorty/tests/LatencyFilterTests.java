@@ -0,0 +1,131 @@
+package com.rickandmorty.tests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.rickandmorty.http.LatencyFilter;
+import com.rickandmorty.http.LatencySlo;
+import com.rickandmorty.http.ResponseCache;
+import com.rickandmorty.http.SingleFlightFilter;
+import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.ModelMapper;
+import io.restassured.response.Response;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.restassured.RestAssured.given;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Exercises a dedicated {@link LatencyFilter} in place of the suite's shared one, so counts are exact.
+ */
+public class LatencyFilterTests extends BaseTest {
+
+    @Test
+    public void testRequestsGroupedByEndpointTemplate() {
+        LatencyFilter filter = new LatencyFilter();
+        get(filter, "/character/1");
+        get(filter, "/character/2");
+        get(filter, "/character/1,2,3");
+        get(filter, "/character?page=2");
+        get(filter, "/character?status=alive&page=2");
+        get(filter, "/character");
+        given().spec(requestSpec).noFiltersOfType(ResponseCache.class).noFiltersOfType(SingleFlightFilter.class)
+                .noFiltersOfType(LatencyFilter.class).filter(filter)
+                .queryParam("name", "rick").get("/character");
+        get(filter, "/episode/28");
+
+        Map<String, LatencyFilter.Snapshot> snapshot = filter.snapshot();
+        assertEquals(snapshot.keySet(), new TreeSet<>(Arrays.asList("/character", "/character/{id}",
+                "/character/{ids}", "/character?filter", "/character?page", "/episode/{id}")), "Endpoint templates");
+        assertEquals(snapshot.get("/character/{id}").getCount(), 2L, "Requests under /character/{id}");
+        assertEquals(snapshot.get("/character?filter").getCount(), 2L, "Requests under /character?filter");
+        for (Map.Entry<String, LatencyFilter.Snapshot> entry : snapshot.entrySet()) {
+            LatencyFilter.Snapshot latency = entry.getValue();
+            assertEquals(latency.getTtfb().getTotalCount(), latency.getCount(),
+                    "Time to first byte missing for " + entry.getKey());
+            assertTrue(latency.getTtfb().getMaxValue() <= latency.getTotal().getMaxValue(),
+                    "Time to first byte exceeds total latency for " + entry.getKey());
+        }
+    }
+
+    @Test
+    public void testObjectivesCheckedPerTemplate() {
+        LatencyFilter filter = new LatencyFilter();
+        get(filter, "/location/1");
+        get(filter, "/location?type=Planet");
+
+        assertTrue(filter.violations(LatencySlo.parseAll("*:p99<60000,/location/{id}:p95<60000ms")).isEmpty(),
+                "Generous objectives should hold");
+        List<String> missed = filter.violations(LatencySlo.parseAll("*:p50<0.0001"));
+        assertEquals(missed.size(), 2, "An impossible wildcard objective should fail for each template: " + missed);
+        assertFalse(filter.violations(LatencySlo.parseAll("/location/{ids}:p99<1000")).isEmpty(),
+                "An objective for a template without requests should be reported");
+    }
+
+    @Test
+    public void testReportIsMachineReadable() throws IOException {
+        LatencyFilter filter = new LatencyFilter();
+        get(filter, "/episode/1");
+        Path report = Files.createTempFile("latency-report-", ".json");
+
+        filter.writeReport(report, LatencySlo.parseAll("/episode/{id}:p95<60000"));
+
+        JsonNode json = ModelMapper.MAPPER.readTree(report.toFile());
+        assertEquals(json.path("requests").asLong(), 1L, "requests");
+        assertTrue(json.path("slos").get(0).path("passed").asBoolean(), "Objective outcome missing: " + json);
+        JsonNode total = json.path("endpoints").path("/episode/{id}").path("total");
+        assertEquals(total.path("count").asLong(), 1L, "total.count");
+        assertTrue(total.path("p99Ms").asDouble() > 0, "total.p99Ms missing: " + total);
+        assertTrue(json.path("endpoints").path("/episode/{id}").has("ttfb"), "ttfb missing");
+    }
+
+    @Test
+    public void testConcurrentRecordingKeepsEveryRequest() throws Exception {
+        LatencyFilter filter = new LatencyFilter();
+        int threads = 8;
+        int requestsPerThread = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int offset = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        get(filter, "/character/" + (1 + (offset * requestsPerThread + i) % 826));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(filter.snapshot().get("/character/{id}").getCount(), (long) threads * requestsPerThread,
+                "Requests recorded under concurrent load");
+    }
+
+    private Response get(LatencyFilter filter, String path) {
+        // a cached or coalesced response never reaches the dedicated filter
+        return given()
+                .spec(requestSpec)
+                .noFiltersOfType(ResponseCache.class)
+                .noFiltersOfType(SingleFlightFilter.class)
+                .noFiltersOfType(LatencyFilter.class)
+                .filter(filter)
+                .when()
+                .get(path);
+    }
+}
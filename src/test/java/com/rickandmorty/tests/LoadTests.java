@@ -0,0 +1,94 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.load.LoadGenerator;
+import com.rickandmorty.load.LoadMix;
+import com.rickandmorty.load.LoadReport;
+import com.rickandmorty.server.LocalApiServer;
+import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.ParallelExecutionListener;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Load runs against the in-process stand-in, whatever {@code api.target} says. The defaults keep
+ * the suite short; for capacity planning raise them, e.g.
+ * {@code mvn test -Dtest=LoadTests -Dload.duration=60 -Dload.users=64 -Dload.rate=2000}.
+ */
+public class LoadTests extends BaseTest {
+
+    private static final int USERS = Integer.getInteger("load.users", 8);
+    private static final int RATE = Integer.getInteger("load.rate", 200);
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("load.duration", 2));
+    private static final Duration WARMUP = Duration.ofMillis(500);
+
+    private LocalApiServer server;
+    private LoadMix mix;
+
+    @BeforeClass(alwaysRun = true)
+    public void setUpLoad() {
+        server = LocalApiServer.shared();
+        mix = LoadMix.standard(server.getDataset());
+        String weights = System.getProperty("load.mix");
+        if (weights != null && !weights.isEmpty()) {
+            mix = mix.withWeights(weights);
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testClosedLoopCoversEveryEndpoint() throws InterruptedException {
+        LoadReport report = generator().closedLoop(USERS).build().run();
+        System.out.println(report.summary());
+
+        assertEquals(report.getErrors(), 0, "Failed requests under closed-loop load");
+        for (LoadReport.EndpointResult endpoint : report.getEndpoints().values()) {
+            assertTrue(endpoint.getCount() > 0, "No requests recorded for " + endpoint.getTemplate());
+            assertTrue(endpoint.responseMillis(50) <= endpoint.responseMillis(99)
+                            && endpoint.responseMillis(99) <= endpoint.responseMillis(99.9),
+                    "Percentiles out of order for " + endpoint.getTemplate());
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testOpenLoopKeepsArrivalRate() throws InterruptedException {
+        LoadReport report = generator().openLoop(RATE).build().run();
+        System.out.println(report.summary());
+
+        long expected = RATE * DURATION.getSeconds();
+        assertEquals(report.getErrors(), 0, "Failed requests under open-loop load");
+        assertTrue(Math.abs(report.getRequests() - expected) <= expected / 20 + 1,
+                "Open loop sent " + report.getRequests() + " requests, expected about " + expected);
+    }
+
+    /**
+     * One worker offered ten times the usual rate falls behind, so each request waits for the
+     * ones queued before it. Service time does not see that wait; response time, measured from
+     * when each request was due, has to.
+     */
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testOpenLoopChargesQueueingToResponseTime() throws InterruptedException {
+        LoadReport report = generator().openLoop(RATE * 10).maxInFlight(1).build().run();
+        System.out.println(report.summary());
+
+        // abandoned requests are recorded at their wait so far, which alone would pass the check below
+        assertEquals(report.getErrors(), 0, "Requests abandoned or failed under open-loop overload");
+        double responseP99 = report.totalResponseTime().getValueAtPercentile(99) / 1000.0;
+        double serviceP99 = report.totalServiceTime().getValueAtPercentile(99) / 1000.0;
+        assertTrue(responseP99 > 2 * serviceP99, String.format(
+                "Queueing not charged: response p99 %.2f ms, service p99 %.2f ms", responseP99, serviceP99));
+    }
+
+    private LoadGenerator.Builder generator() {
+        LoadGenerator.Builder builder = LoadGenerator.builder(server.getBaseUrl(), mix)
+                .duration(DURATION)
+                .warmup(WARMUP);
+        if (server.isTls()) {
+            builder.sslContext(server.getClientSslContext());
+        }
+        return builder;
+    }
+}
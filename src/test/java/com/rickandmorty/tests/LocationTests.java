@@ -1,25 +1,31 @@
 package com.rickandmorty.tests;
 
 import com.beust.jcommander.internal.Console;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.rickandmorty.client.ApiCrawler;
+import com.rickandmorty.models.ApiResponse;
+import com.rickandmorty.models.Location;
+import com.rickandmorty.schema.SchemaRegistry;
 import com.rickandmorty.utils.ApiUtils;
 import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.ModelMapper;
 import io.restassured.response.Response;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.ArrayList;
+import java.util.stream.Stream;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
 public class LocationTests extends BaseTest {
 
     private static final String ENDPOINT = "/location";
-    private static final int MAX_RESPONSE_TIME_MS = 2000;
 
     @Test
     public void testGetAllLocations() {
@@ -29,26 +35,26 @@ public class LocationTests extends BaseTest {
                 .get(ENDPOINT)
                 .then()
                 .statusCode(SUCCESS_STATUS_CODE) // Validate status code
-                .body("info", notNullValue())
-                .body("info.count", greaterThan(0))
-                .body("info.pages", greaterThan(0))
-                .body("results", notNullValue())
-                .body("results.size()", greaterThan(0))
                 .extract().response();
 
-        Map<String, Object> responseBody = response.jsonPath().getMap("$");
-        List<Map<String, Object>> results = (List<Map<String, Object>>) responseBody.get("results");
-        System.out.println(results);
-        Map<String, Object> firstLocation = results.get(0);
+        JsonNode body = ModelMapper.tree(response);
+        SchemaRegistry.assertValidPage(SchemaRegistry.LOCATION, body);
+        ApiResponse<Location> page = ModelMapper.page(body, Location.class);
+        ApiUtils.verifyPath("info", page.getInfo(), notNullValue());
+        ApiUtils.verifyPath("info.count", page.getInfo().getCount(), greaterThan(0));
+        ApiUtils.verifyPath("info.pages", page.getInfo().getPages(), greaterThan(0));
+        ApiUtils.verifyPath("results", page.getResults(), notNullValue());
+        ApiUtils.verifyPath("results.size()", page.getResults().size(), greaterThan(0));
 
-        assertTrue(firstLocation.containsKey("id"), "Location is missing 'id' field");
-        assertTrue(firstLocation.containsKey("name"), "Location is missing 'name' field");
-        assertTrue(firstLocation.containsKey("type"), "Location is missing 'type' field");
-        assertTrue(firstLocation.containsKey("dimension"), "Location is missing 'dimension' field");
-        assertTrue(firstLocation.containsKey("residents"), "Location is missing 'residents' field");
+        Location firstLocation = page.getResults().get(0);
+
+        assertTrue(firstLocation.getId() > 0, "Location is missing 'id' field");
+        assertNotNull(firstLocation.getName(), "Location is missing 'name' field");
+        assertNotNull(firstLocation.getType(), "Location is missing 'type' field");
+        assertNotNull(firstLocation.getDimension(), "Location is missing 'dimension' field");
+        assertNotNull(firstLocation.getResidents(), "Location is missing 'residents' field");
 
         ApiUtils.verifyCommonResponseHeaders(response);
-        ApiUtils.verifyResponseTime(response, MAX_RESPONSE_TIME_MS);
     }
 
     @Test
@@ -61,19 +67,18 @@ public class LocationTests extends BaseTest {
                 .get(ENDPOINT + "/" + locationId)
                 .then()
                 .statusCode(SUCCESS_STATUS_CODE) // Validate status code
-                .body("id", equalTo(locationId))
-                .body("name", equalTo("Earth (C-137)"))
-                .body("type", notNullValue())
-                .body("dimension", notNullValue())
-                .body("residents", notNullValue())
                 .extract().response();
 
-        Map<String, Object> location = response.jsonPath().getMap("$");
-        assertEquals(((Integer)location.get("id")).intValue(), locationId, "Location ID does not match expected value");
-        assertEquals(location.get("name"), "Earth (C-137)", "Location name does not match expected value");
+        JsonNode body = ModelMapper.tree(response);
+        SchemaRegistry.assertValid(SchemaRegistry.LOCATION, body);
+        Location location = ModelMapper.entity(body, Location.class);
+        assertEquals(location.getId(), locationId, "Location ID does not match expected value");
+        assertEquals(location.getName(), "Earth (C-137)", "Location name does not match expected value");
+        ApiUtils.verifyPath("type", location.getType(), notNullValue());
+        ApiUtils.verifyPath("dimension", location.getDimension(), notNullValue());
+        ApiUtils.verifyPath("residents", location.getResidents(), notNullValue());
 
         ApiUtils.verifyCommonResponseHeaders(response);
-        ApiUtils.verifyResponseTime(response, MAX_RESPONSE_TIME_MS);
     }
 
     @Test
@@ -86,26 +91,20 @@ public class LocationTests extends BaseTest {
                 .get(ENDPOINT + "/" + locationIds.toString().replaceAll("[\\[\\]\\s]", ""))
                 .then()
                 .statusCode(SUCCESS_STATUS_CODE) // Validate status code
-                .body("size()", equalTo(locationIds.size()))
                 .extract().response();
 
-        List<Map<String, Object>> locations = new ArrayList<>();
-        for (int i = 0; i < locationIds.size(); i++) {
-            Map<String, Object> location = response.jsonPath().getMap("[" + i + "]");
-            locations.add(location);
-        }
+        JsonNode body = ModelMapper.tree(response);
+        SchemaRegistry.assertValid(SchemaRegistry.LOCATION, body);
+        List<Location> locations = ModelMapper.list(body, Location.class);
 
         assertEquals(locations.size(), locationIds.size(), "Number of returned locations does not match");
 
         for (int i = 0; i < locationIds.size(); i++) {
-            Object idObj = locations.get(i).get("id");
-            int id = (idObj instanceof Integer) ? (Integer)idObj : Integer.parseInt(idObj.toString());
-            assertEquals(id, locationIds.get(i).intValue(),
+            assertEquals(locations.get(i).getId(), locationIds.get(i).intValue(),
                     "Location ID at index " + i + " does not match expected value");
         }
 
         ApiUtils.verifyCommonResponseHeaders(response);
-        ApiUtils.verifyResponseTime(response, MAX_RESPONSE_TIME_MS);
     }
 
     @Test
@@ -137,15 +136,14 @@ public class LocationTests extends BaseTest {
                 .get(ENDPOINT)
                 .then()
                 .statusCode(SUCCESS_STATUS_CODE)
-                .body("results", notNullValue())
                 .extract().response();
 
-        Map<String, Object> responseBody = response.jsonPath().getMap("$");
-        List<Map<String, Object>> results = (List<Map<String, Object>>) responseBody.get("results");
+        ApiResponse<Location> page = ModelMapper.page(response, Location.class);
+        assertNotNull(page.getResults(), "Results are missing");
 
-        for (Map<String, Object> location : results) {
-            String name = (String) location.get("name");
-            String type = (String) location.get("type");
+        for (Location location : page.getResults()) {
+            String name = location.getName();
+            String type = location.getType();
 
             assertTrue(name.toLowerCase().contains(nameFilter.toLowerCase()),
                     "Location name '" + name + "' does not contain filter '" + nameFilter + "'");
@@ -153,7 +151,18 @@ public class LocationTests extends BaseTest {
                     "Location type '" + type + "' does not match filter '" + typeFilter + "'");
         }
 
+        // Every matching location, across all pages, and nothing else
+        // (the replica and the crawl bypass requestSpec, so they cannot be replayed)
+        if (!isReplaying()) {
+            int[] expectedIds = replica().locations().ids(Map.of("name", nameFilter, "type", typeFilter));
+            assertEquals(page.getInfo().getCount(), expectedIds.length, "info.count differs from the replica");
+            try (Stream<Location> all = ApiCrawler.stream(
+                    resolveBaseUrl() + ENDPOINT + "?name=" + nameFilter + "&type=" + typeFilter, Location.class)) {
+                assertEquals(all.mapToInt(Location::getId).toArray(), expectedIds,
+                        "Filtered locations differ from the replica");
+            }
+        }
+
         ApiUtils.verifyCommonResponseHeaders(response);
-        ApiUtils.verifyResponseTime(response, MAX_RESPONSE_TIME_MS);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.http.RecordReplayFilter;
+import com.rickandmorty.http.ReplayArchive;
+import com.rickandmorty.http.SingleFlightFilter;
+import com.rickandmorty.utils.BaseTest;
+import io.restassured.http.Header;
+import io.restassured.response.Response;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static io.restassured.RestAssured.given;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+/**
+ * Records with a dedicated {@link RecordReplayFilter} into a temporary archive, then replays it
+ * against a base URI where nothing listens.
+ */
+public class RecordReplayTests extends BaseTest {
+
+    private static final String NOWHERE = "http://127.0.0.1:9/api";
+    private static final List<String> PATHS = Arrays.asList(
+            "/character/1", "/character?page=2", "/character/1,2,3", "/location/999999", "/episode?name=Pilot");
+
+    @Test
+    public void testReplayServesRecordedExchangesWithoutNetwork() throws Exception {
+        Path file = Files.createTempFile("api-", ".replay");
+        RecordReplayFilter recorder = RecordReplayFilter.recording(resolveBaseUrl(), file);
+        Response[] recorded = new Response[PATHS.size()];
+        for (int i = 0; i < PATHS.size(); i++) {
+            // a GET coalesced with another test's would reach the shared recorder, not this one
+            recorded[i] = given().spec(requestSpec).noFiltersOfType(SingleFlightFilter.class)
+                    .noFiltersOfType(RecordReplayFilter.class).filter(recorder)
+                    .get(PATHS.get(i));
+        }
+        recorder.save();
+
+        ReplayArchive archive = ReplayArchive.open(file);
+        assertEquals(archive.size(), PATHS.size(), "Archived exchanges");
+        assertEquals(archive.getBaseUrl(), resolveBaseUrl(), "Recorded base URL");
+        RecordReplayFilter replay = RecordReplayFilter.replaying(archive);
+        for (int i = 0; i < PATHS.size(); i++) {
+            Response replayed = given().spec(requestSpec).baseUri(NOWHERE)
+                    .noFiltersOfType(RecordReplayFilter.class).filter(replay)
+                    .get(PATHS.get(i));
+            assertEquals(replayed.statusCode(), recorded[i].statusCode(), "Status of " + PATHS.get(i));
+            assertEquals(replayed.asByteArray(), recorded[i].asByteArray(), "Body of " + PATHS.get(i));
+            assertEquals(replayed.contentType(), recorded[i].contentType(), "Content type of " + PATHS.get(i));
+            for (Header header : recorded[i].getHeaders()) {
+                assertEquals(replayed.getHeader(header.getName()), header.getValue(),
+                        header.getName() + " of " + PATHS.get(i));
+            }
+        }
+        assertTrue(replay.getMisses().isEmpty(), "Unexpected misses: " + replay.getMisses());
+
+        int lookups = 10_000;
+        long started = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            archive.lookup("GET " + PATHS.get(i % PATHS.size()));
+        }
+        System.out.printf("Replay archive lookups: %.0f/s%n", lookups * 1e9 / (System.nanoTime() - started));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testMissesAreReported() throws Exception {
+        Path file = Files.createTempFile("api-", ".replay");
+        RecordReplayFilter recorder = RecordReplayFilter.recording(resolveBaseUrl(), file);
+        given().spec(requestSpec).noFiltersOfType(SingleFlightFilter.class)
+                .noFiltersOfType(RecordReplayFilter.class).filter(recorder).get("/episode/1");
+        recorder.save();
+
+        RecordReplayFilter replay = RecordReplayFilter.replaying(ReplayArchive.open(file));
+        AssertionError miss = expectThrows(AssertionError.class, () -> given().spec(requestSpec).baseUri(NOWHERE)
+                .noFiltersOfType(RecordReplayFilter.class).filter(replay).get("/episode/2"));
+
+        assertTrue(miss.getMessage().contains("GET /episode/2"), "Miss message: " + miss.getMessage());
+        assertEquals(replay.getMisses(), Collections.singletonList("GET /episode/2"), "Reported misses");
+        Files.delete(file);
+    }
+
+    @Test
+    public void testServerErrorDoesNotReplaceTheAnswer() throws Exception {
+        Response ok = given().spec(requestSpec).get("/character/1");
+        Response newer = given().spec(requestSpec).get("/character/2");
+        // the API's own 500, standing in for a failed attempt the tail-latency filter went on to retry
+        Response serverError = given().spec(requestSpec).get("/character/abc");
+        assertEquals(serverError.statusCode(), 500, "Status of an invalid id");
+        ReplayArchive.Writer writer = new ReplayArchive.Writer(resolveBaseUrl());
+        writer.add("GET /retried", serverError);
+        writer.add("GET /retried", ok);
+        writer.add("GET /hedged", ok);
+        writer.add("GET /hedged", serverError);
+        writer.add("GET /repeated", ok);
+        writer.add("GET /repeated", newer);
+        Path file = Files.createTempFile("api-", ".replay");
+        writer.writeTo(file);
+
+        ReplayArchive archive = ReplayArchive.open(file);
+        assertEquals(archive.lookup("GET /retried").asByteArray(), ok.asByteArray(), "Body kept after a retry");
+        assertEquals(archive.lookup("GET /hedged").asByteArray(), ok.asByteArray(), "Body kept despite a later 500");
+        assertEquals(archive.lookup("GET /repeated").asByteArray(), newer.asByteArray(), "Body kept for a repeated request");
+        Files.delete(file);
+    }
+
+    @Test
+    public void testArchiveIsDeterministic() throws Exception {
+        Response[] responses = new Response[PATHS.size()];
+        for (int i = 0; i < PATHS.size(); i++) {
+            responses[i] = given().spec(requestSpec).get(PATHS.get(i));
+        }
+        ReplayArchive.Writer forward = new ReplayArchive.Writer(resolveBaseUrl());
+        ReplayArchive.Writer backward = new ReplayArchive.Writer(resolveBaseUrl());
+        for (int i = 0; i < PATHS.size(); i++) {
+            int reversed = PATHS.size() - 1 - i;
+            forward.add("GET " + PATHS.get(i), responses[i]);
+            backward.add("GET " + PATHS.get(reversed), responses[reversed]);
+        }
+        Path first = Files.createTempFile("api-", ".replay");
+        Path second = Files.createTempFile("api-", ".replay");
+        forward.writeTo(first);
+        backward.writeTo(second);
+
+        assertEquals(Files.readAllBytes(second), Files.readAllBytes(first),
+                "Archives of the same exchanges recorded in another order differ");
+        Files.delete(first);
+        Files.delete(second);
+    }
+}
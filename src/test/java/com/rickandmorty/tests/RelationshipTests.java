@@ -0,0 +1,92 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.client.ApiBatchLoader;
+import com.rickandmorty.client.EntityGraph;
+import com.rickandmorty.client.RelationshipResolver;
+import com.rickandmorty.models.ApiResponse;
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.ModelMapper;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static io.restassured.RestAssured.given;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class RelationshipTests extends BaseTest {
+
+    @BeforeClass(alwaysRun = true)
+    public void skipWhenReplaying() {
+        if (isReplaying()) {
+            throw new SkipException("The batch loader does not go through requestSpec");
+        }
+    }
+
+    @Test
+    public void testEpisodeCastAndTheirLocations() {
+        try (ApiBatchLoader loader = ApiBatchLoader.builder(resolveBaseUrl()).build()) {
+            EntityGraph graph = new RelationshipResolver(loader)
+                    .expand(Collections.singletonList(resolveBaseUrl() + "/episode/1"), 2);
+
+            Episode pilot = graph.getEpisodes().get(1);
+            assertEquals(graph.getCharacters().size(), pilot.getCharacters().size(),
+                    "Layer 1 should hold exactly the cast of episode 1");
+            for (Character character : graph.getCharacters().values()) {
+                String locationUrl = character.getLocation().getUrl();
+                assertTrue(locationUrl.isEmpty() || graph.getLocations().containsKey(ApiBatchLoader.idOf(locationUrl)),
+                        "Location of character " + character.getId() + " was not resolved");
+            }
+            assertTrue(graph.getRequests() < graph.size(),
+                    graph.getRequests() + " requests for " + graph.size() + " entities, references were not batched");
+            assertEquals(graph.checkConsistency(), Collections.emptyList(), "Inconsistent references around episode 1");
+        }
+    }
+
+    @Test
+    public void testDepthZeroLoadsOnlyRoots() {
+        try (ApiBatchLoader loader = ApiBatchLoader.builder(resolveBaseUrl()).build()) {
+            EntityGraph graph = new RelationshipResolver(loader)
+                    .expand(List.of(resolveBaseUrl() + "/character/1", resolveBaseUrl() + "/character/2"), 0);
+
+            assertEquals(graph.size(), 2, "Depth 0 should stop at the roots");
+            assertEquals(graph.getLayerSizes(), List.of(2), "Unexpected layer sizes");
+        }
+    }
+
+    @Test
+    public void testWholeGraphIsConsistent() {
+        // seeding every collection also reaches entities no episode leads to, such as empty locations
+        List<String> everyEntity = new ArrayList<>();
+        everyEntity.addAll(allUrls("/character", Character.class));
+        everyEntity.addAll(allUrls("/location", Location.class));
+        everyEntity.addAll(allUrls("/episode", Episode.class));
+
+        try (ApiBatchLoader loader = ApiBatchLoader.builder(resolveBaseUrl()).concurrency(8).build()) {
+            EntityGraph graph = new RelationshipResolver(loader).expand(everyEntity, 3);
+            assertEquals(graph.size(), everyEntity.size(), "Entities left out of the graph");
+            System.out.println("Whole-graph expansion: " + graph.summary());
+
+            assertEquals(graph.getMissing(), Collections.emptySet(), "References to entities that do not exist");
+            List<String> violations = graph.checkConsistency();
+            assertEquals(violations.size(), 0, "Inconsistent references, first ones: "
+                    + violations.subList(0, Math.min(10, violations.size())));
+        }
+    }
+
+    private List<String> allUrls(String resource, Class<?> type) {
+        ApiResponse<?> firstPage = ModelMapper.page(given().spec(requestSpec).get(resource), type);
+        return IntStream.rangeClosed(1, firstPage.getInfo().getCount())
+                .mapToObj(id -> resolveBaseUrl() + resource + "/" + id)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,115 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.client.ApiCrawler;
+import com.rickandmorty.data.Dataset;
+import com.rickandmorty.data.DatasetGenerator;
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+import com.rickandmorty.replica.Replica;
+import com.rickandmorty.replica.ReplicaTable;
+import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.MemoryProbe;
+import com.rickandmorty.utils.ParallelExecutionListener;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ReplicaTests extends BaseTest {
+
+    private static final int MILLION = 1_000_000;
+    private static final int POJO_SAMPLE = 100_000;
+    private static final int QUERY_RUNS = 21;
+
+    @DataProvider(name = "filters")
+    public Object[][] filters() {
+        return new Object[][]{
+                {"character", Character.class, Map.of("status", "dead", "species", "human")},
+                {"character", Character.class, Map.of("gender", "female", "name", "smith")},
+                {"character", Character.class, Map.of("species", "alien", "type", "parasite")},
+                {"character", Character.class, Map.of("status", "unknown", "gender", "genderless", "name", "z")},
+                {"character", Character.class, Map.of("name", "no such character")},
+                {"location", Location.class, Map.of("dimension", "c-137")},
+                {"location", Location.class, Map.of("type", "space", "name", "citadel")},
+                {"episode", Episode.class, Map.of("episode", "S01")},
+                {"episode", Episode.class, Map.of("name", "rick", "episode", "e0")},
+        };
+    }
+
+    @Test(dataProvider = "filters")
+    public void testFilterResultsEqualReplica(String collection, Class<?> type, Map<String, String> filters) {
+        ReplicaTable table = replica().table(collection);
+        long started = System.nanoTime();
+        int[] expectedIds = table.ids(filters);
+        long queryMicros = (System.nanoTime() - started) / 1_000;
+
+        String query = filters.entrySet().stream()
+                .map(filter -> filter.getKey() + "=" + URLEncoder.encode(filter.getValue(), StandardCharsets.UTF_8))
+                .collect(Collectors.joining("&"));
+        int[] actualIds;
+        try (Stream<?> all = ApiCrawler.stream(resolveBaseUrl() + "/" + collection + "?" + query, type)) {
+            actualIds = all.mapToInt(ReplicaTests::idOf).toArray();
+        }
+
+        assertEquals(actualIds, expectedIds, "/" + collection + "?" + query + " differs from the replica");
+        System.out.println("Replica /" + collection + "?" + query + ": " + expectedIds.length + " ids in "
+                + queryMicros + "us");
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testReplicaMemoryPerMillionCharacters() {
+        Dataset dataset = DatasetGenerator.scaled(MILLION).generate();
+        String apiUrl = "https://rickandmortyapi.com/api";
+
+        long before = MemoryProbe.usedHeapAfterGc();
+        Replica.Builder builder = Replica.builder();
+        for (int id = 1; id <= MILLION; id++) {
+            builder.add(dataset.character(id, apiUrl));
+        }
+        Replica replica = builder.build();
+        long replicaHeap = MemoryProbe.usedHeapAfterGc() - before;
+
+        before = MemoryProbe.usedHeapAfterGc();
+        List<Character> sample = new ArrayList<>(POJO_SAMPLE);
+        for (int id = 1; id <= POJO_SAMPLE; id++) {
+            sample.add(dataset.character(id, apiUrl));
+        }
+        long pojoHeap = (MemoryProbe.usedHeapAfterGc() - before) * (MILLION / POJO_SAMPLE);
+
+        Map<String, String> filters = Map.of("status", "alive", "species", "human", "gender", "male", "name", "rick");
+        int matches = 0;
+        long[] queryMicros = new long[QUERY_RUNS];
+        for (int run = 0; run < QUERY_RUNS; run++) {
+            long started = System.nanoTime();
+            matches = replica.characters().ids(filters).length;
+            queryMicros[run] = (System.nanoTime() - started) / 1_000;
+        }
+        Arrays.sort(queryMicros);
+
+        System.out.printf("Replica for 1M characters: %.1f MiB estimated, %.1f MiB measured; "
+                        + "Character POJOs: %.1f MiB (extrapolated from %d, %d retained); 4-field query: %d ids, median %dus%n",
+                replica.characters().memoryBytes() / 1048576.0, replicaHeap / 1048576.0, pojoHeap / 1048576.0,
+                POJO_SAMPLE, sample.size(), matches, queryMicros[QUERY_RUNS / 2]);
+        assertTrue(replica.characters().memoryBytes() * 10 < pojoHeap,
+                "Replica (" + replica.characters().memoryBytes() + " bytes) is not an order of magnitude below "
+                        + "the POJOs (" + pojoHeap + " bytes)");
+    }
+
+    private static int idOf(Object entity) {
+        if (entity instanceof Character) {
+            return ((Character) entity).getId();
+        }
+        return entity instanceof Location ? ((Location) entity).getId() : ((Episode) entity).getId();
+    }
+}
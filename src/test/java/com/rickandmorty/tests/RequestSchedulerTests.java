@@ -0,0 +1,279 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.data.DatasetGenerator;
+import com.rickandmorty.http.Deadline;
+import com.rickandmorty.http.RequestScheduler;
+import com.rickandmorty.http.SingleFlightFilter;
+import com.rickandmorty.http.TailLatencyFilter;
+import com.rickandmorty.server.LocalApiServer;
+import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.ParallelExecutionListener;
+import io.restassured.response.Response;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.restassured.RestAssured.given;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+/**
+ * Drives a dedicated {@link RequestScheduler} against local servers that throttle like an
+ * overloaded upstream: one caps requests in flight, the other caps the rate and answers
+ * {@code 429} with {@code Retry-After}.
+ */
+public class RequestSchedulerTests extends BaseTest {
+
+    private static final int CLIENTS = 16;
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testLimitConvergesOnServerConcurrency() throws Exception {
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(CLIENTS * 2).throttle(4, 0, 0).serviceTime(5).start()) {
+            int unscheduled = countOverloaded(run(server, null, 10));
+
+            RequestScheduler scheduler = RequestScheduler.builder().limits(CLIENTS, 1, 64).maxRetries(20).build();
+            long overloadedBefore = server.getOverloadedCount();
+            List<Integer> statuses = run(server, scheduler, 25);
+            System.out.println("Scheduler against a concurrency cap of 4: " + scheduler.summary()
+                    + " (unscheduled: " + unscheduled + " of " + CLIENTS * 10 + " overloaded)");
+
+            assertEquals(countOverloaded(statuses), 0, "Requests still failed after retries");
+            assertEquals(scheduler.getThrottled(), server.getOverloadedCount() - overloadedBefore,
+                    "Throttled responses seen by the scheduler");
+            assertTrue(scheduler.getThrottled() < statuses.size() / 10,
+                    "Too many overloads: " + scheduler.getThrottled() + " of " + statuses.size());
+            double limit = scheduler.getLimit(hostOf(server));
+            // AIMD saws between half the cap and a little over it
+            assertTrue(limit >= 1 && limit < 12, "Limit did not converge near the server's cap of 4: " + limit);
+            assertEquals(scheduler.getQueueDepth(), 0, "Queue depth after the run");
+            assertEquals(scheduler.getRejected(), 0L, "Rejected requests");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testRetryAfterIsHonored() throws Exception {
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(4).throttle(0, 10, 10).start()) {
+            RequestScheduler scheduler = RequestScheduler.builder().maxRetries(3).build();
+            long started = System.nanoTime();
+            List<Integer> statuses = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                statuses.add(get(server, scheduler, "/character/" + (i + 1)).statusCode());
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            System.out.println("Scheduler against 10 requests/s: " + scheduler.summary() + " in " + elapsedMillis + " ms");
+
+            assertTrue(statuses.stream().allMatch(status -> status == SUCCESS_STATUS_CODE), "Statuses: " + statuses);
+            assertTrue(scheduler.getThrottled() >= 1, "The burst should have run into the rate limit");
+            // bursts of 10 a second apart: the first after the initial burst, then at most one per refill
+            assertTrue(server.getRateLimitedCount() <= 3,
+                    "Requests kept coming during Retry-After: " + server.getRateLimitedCount() + " rate limited");
+            assertTrue(elapsedMillis >= 900, "Retry-After of 1 s was not waited for: " + elapsedMillis + " ms");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testTokenBucketStaysUnderServerRate() throws Exception {
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(CLIENTS).throttle(0, 50, 10).start()) {
+            RequestScheduler scheduler = RequestScheduler.builder().rate(30, 5).maxRetries(0).build();
+            long started = System.nanoTime();
+            List<Integer> statuses = run(server, scheduler, 3);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            System.out.println("Scheduler paced at 30 requests/s: " + scheduler.summary() + " in " + elapsedMillis + " ms");
+
+            assertEquals(server.getRateLimitedCount(), 0L, "Requests over the server's rate");
+            assertTrue(statuses.stream().allMatch(status -> status == SUCCESS_STATUS_CODE), "Statuses: " + statuses);
+            // 48 requests, 5 of them in the initial burst, the rest at 30/s
+            assertTrue(elapsedMillis >= (CLIENTS * 3 - 5) * 1000 / 30 * 9 / 10, "Requests were not paced: " + elapsedMillis + " ms");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testRequestsRejectedWhenNoSlotFreesUp() throws Exception {
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(4).serviceTime(200).start()) {
+            RequestScheduler scheduler = RequestScheduler.builder().limits(1, 1, 1).queueTimeout(20).build();
+            AtomicInteger failures = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<?>> calls = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    calls.add(executor.submit(() -> {
+                        try {
+                            get(server, scheduler, "/episode/1");
+                        } catch (IllegalStateException e) {
+                            failures.incrementAndGet();
+                        }
+                    }));
+                }
+                for (Future<?> call : calls) {
+                    call.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+            assertEquals(failures.get(), 3, "Requests failed for want of a slot");
+            assertEquals(scheduler.getRejected(), 3L, "Rejected requests");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testLimitLoweredWhenLatencyRises() throws Exception {
+        // two server threads for sixteen clients: nothing is refused, everything queues
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(2).serviceTime(10).start()) {
+            RequestScheduler scheduler = RequestScheduler.builder().limits(CLIENTS, 1, 64).maxRetries(0).build();
+            // requests sent one at a time show the latency of an idle server
+            for (int i = 1; i <= 5; i++) {
+                get(server, scheduler, "/character/" + i);
+            }
+            List<Integer> statuses = run(server, scheduler, 16);
+            System.out.println("Scheduler against two server threads: " + scheduler.summary());
+
+            assertTrue(statuses.stream().allMatch(status -> status == SUCCESS_STATUS_CODE), "Statuses: " + statuses);
+            assertEquals(scheduler.getThrottled(), 0L, "Throttled responses");
+            double limit = scheduler.getLimit(hostOf(server));
+            assertTrue(limit < CLIENTS * 3 / 4.0, "Limit was not lowered as requests queued at the server: " + limit);
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testRetryAfterIsCapped() throws Exception {
+        // one request every 100 s: the server asks for a Retry-After of 100
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(2).throttle(0, 0.01, 1).start()) {
+            RequestScheduler scheduler = RequestScheduler.builder().maxRetries(2).maxRetryAfter(100).build();
+            assertEquals(get(server, scheduler, "/character/1").statusCode(), SUCCESS_STATUS_CODE, "Status within the burst");
+            long started = System.nanoTime();
+            int status = get(server, scheduler, "/character/2").statusCode();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            assertEquals(status, 429, "Status once the retries ran out");
+            assertEquals(scheduler.getRetries(), 2L, "Retries");
+            assertTrue(elapsedMillis >= 180 && elapsedMillis < 2000, "Two capped waits of 100 ms took " + elapsedMillis + " ms");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testWaitPastTheBudgetFailsFast() throws Exception {
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(2).throttle(0, 0.01, 1).start()) {
+            RequestScheduler scheduler = RequestScheduler.builder().maxRetries(3).build();
+            Deadline.start("testWaitPastTheBudgetFailsFast", 1000);
+            long started = System.nanoTime();
+            assertEquals(get(server, scheduler, "/character/1").statusCode(), SUCCESS_STATUS_CODE, "Status within the burst");
+            // a Retry-After of 30 s (capped from 100) does not fit in the budget: no retry
+            assertEquals(get(server, scheduler, "/character/2").statusCode(), 429, "Status when the wait outlasts the budget");
+            IllegalStateException rejection = expectThrows(IllegalStateException.class,
+                    () -> get(server, scheduler, "/character/3"));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            assertTrue(rejection.getMessage().contains("past the budget"), rejection.getMessage());
+            assertEquals(scheduler.getRetries(), 0L, "Retries");
+            assertEquals(scheduler.getRejected(), 1L, "Rejected requests");
+            assertEquals(server.getRateLimitedCount(), 1L, "Requests that reached the blocked server");
+            assertTrue(elapsedMillis < 1000, "Failing fast took " + elapsedMillis + " ms");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testTokenWaitPastTheBudgetFailsFast() throws Exception {
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate()).threads(2).start()) {
+            RequestScheduler scheduler = RequestScheduler.builder().rate(1, 1).build();
+            Deadline.start("testTokenWaitPastTheBudgetFailsFast", 300);
+            long started = System.nanoTime();
+            assertEquals(get(server, scheduler, "/character/1").statusCode(), SUCCESS_STATUS_CODE, "Status within the burst");
+            // the next token is a second away, past the budget
+            IllegalStateException rejection = expectThrows(IllegalStateException.class,
+                    () -> get(server, scheduler, "/character/2"));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            assertTrue(rejection.getMessage().contains("No token"), rejection.getMessage());
+            assertEquals(scheduler.getRejected(), 1L, "Rejected requests");
+            assertEquals(scheduler.getInFlight(), 0, "Slots still taken");
+            assertTrue(elapsedMillis < 300, "Failing fast took " + elapsedMillis + " ms");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testRejectedRequestKeepsItsToken() throws Exception {
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(2).serviceTime(200).start()) {
+            RequestScheduler scheduler = RequestScheduler.builder().limits(1, 1, 1).queueTimeout(20).rate(1, 2).build();
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<Response> holder = executor.submit(() -> get(server, scheduler, "/episode/1"));
+                TimeUnit.MILLISECONDS.sleep(50);
+                expectThrows(IllegalStateException.class, () -> get(server, scheduler, "/episode/2"));
+                assertEquals(holder.get().statusCode(), SUCCESS_STATUS_CODE, "Status of the request holding the slot");
+            } finally {
+                executor.shutdown();
+            }
+            // the second token of the burst is still there: had the rejected request spent it, this would wait ~750 ms
+            long started = System.nanoTime();
+            assertEquals(get(server, scheduler, "/episode/3").statusCode(), SUCCESS_STATUS_CODE, "Status after the rejection");
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            assertEquals(scheduler.getRejected(), 1L, "Rejected requests");
+            assertTrue(elapsedMillis < 600, "Waited " + elapsedMillis + " ms for a token");
+        }
+    }
+
+    /**
+     * @return the status of every request made by {@link #CLIENTS} threads, each sending {@code perClient}
+     */
+    private List<Integer> run(LocalApiServer server, RequestScheduler scheduler, int perClient) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<List<Integer>>> clients = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                int client = c;
+                clients.add(executor.submit((Callable<List<Integer>>) () -> {
+                    List<Integer> statuses = new ArrayList<>(perClient);
+                    for (int i = 0; i < perClient; i++) {
+                        statuses.add(get(server, scheduler, "/character/" + (client * perClient + i + 1)).statusCode());
+                    }
+                    return statuses;
+                }));
+            }
+            List<Integer> statuses = new ArrayList<>();
+            for (Future<List<Integer>> client : clients) {
+                statuses.addAll(client.get());
+            }
+            return statuses;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Response get(LocalApiServer server, RequestScheduler scheduler, String path) {
+        // identical requests must each reach the scheduler, not share one exchange, and hedges
+        // would add requests of their own
+        if (scheduler == null) {
+            return given().spec(requestSpec).baseUri(server.getBaseUrl()).noFiltersOfType(SingleFlightFilter.class)
+                    .noFiltersOfType(TailLatencyFilter.class).noFiltersOfType(RequestScheduler.class).get(path);
+        }
+        return given().spec(requestSpec).baseUri(server.getBaseUrl()).noFiltersOfType(SingleFlightFilter.class)
+                .noFiltersOfType(TailLatencyFilter.class).noFiltersOfType(RequestScheduler.class).filter(scheduler).get(path);
+    }
+
+    private static int countOverloaded(List<Integer> statuses) {
+        return (int) statuses.stream().filter(status -> status == 503 || status == 429).count();
+    }
+
+    private static String hostOf(LocalApiServer server) {
+        URI uri = URI.create(server.getBaseUrl());
+        return uri.getHost() + ":" + uri.getPort();
+    }
+}
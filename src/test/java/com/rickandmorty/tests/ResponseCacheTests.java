@@ -0,0 +1,202 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.data.DatasetGenerator;
+import com.rickandmorty.http.ResponseCache;
+import com.rickandmorty.server.LocalApiServer;
+import com.rickandmorty.utils.ApiUtils;
+import com.rickandmorty.utils.BaseTest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.restassured.RestAssured.given;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Exercises {@link ResponseCache} against dedicated local servers, one whose responses stay fresh
+ * for a minute and one whose responses are stale immediately, so request counts are exact. A bare
+ * server covers what the API never does: bodies that vary by request header or change over time.
+ */
+public class ResponseCacheTests extends BaseTest {
+
+    private LocalApiServer freshServer;
+    private LocalApiServer staleServer;
+    private HttpServer headerServer;
+    private final AtomicInteger versions = new AtomicInteger();
+
+    @BeforeClass(alwaysRun = true)
+    public void startServers() {
+        freshServer = LocalApiServer.builder(DatasetGenerator.real().generate()).threads(2).maxAge(60).start();
+        staleServer = LocalApiServer.builder(freshServer.getDataset()).threads(2).maxAge(0).start();
+        try {
+            headerServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // the greeting varies by Accept-Language, fresh for a minute
+        headerServer.createContext("/greeting", exchange -> {
+            String language = exchange.getRequestHeaders().getFirst("Accept-Language");
+            exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+            exchange.getResponseHeaders().set("Vary", exchange.getRequestURI().getQuery() == null ? "Accept-Language" : "*");
+            send(exchange, "es".equals(language) ? "hola" : "hello");
+        });
+        // a new version on every request, stale at once, so a revalidation always gets a 200
+        headerServer.createContext("/version", exchange -> {
+            int version = versions.incrementAndGet();
+            exchange.getResponseHeaders().set("Cache-Control", "max-age=0");
+            exchange.getResponseHeaders().set("ETag", "\"v" + version + "\"");
+            send(exchange, "version " + version);
+        });
+        headerServer.start();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServers() {
+        freshServer.close();
+        staleServer.close();
+        if (headerServer != null) {
+            headerServer.stop(0);
+        }
+    }
+
+    @Test
+    public void testFreshEntryServedFromCache() {
+        ResponseCache cache = new ResponseCache(ResponseCache.DEFAULT_MAX_BYTES, null);
+        long requestsBefore = freshServer.getRequestCount();
+
+        Response first = get(cache, freshServer, "/character/1");
+        Response second = get(cache, freshServer, "/character/1");
+
+        ApiUtils.verifyCacheHeaders(first);
+        assertEquals(second.getStatusCode(), SUCCESS_STATUS_CODE, "Cached response has the wrong status code");
+        assertEquals(second.asString(), first.asString(), "Cached body differs from the original");
+        assertEquals(second.getHeader("ETag"), first.getHeader("ETag"), "Cached response lost its ETag");
+        assertEquals(freshServer.getRequestCount() - requestsBefore, 1L, "Fresh entry was fetched again");
+        assertEquals(cache.getHits(), 1L, "Cache hits");
+        assertEquals(cache.getMisses(), 1L, "Cache misses");
+    }
+
+    @Test
+    public void testStaleEntryRevalidatedWithNotModified() {
+        ResponseCache cache = new ResponseCache(ResponseCache.DEFAULT_MAX_BYTES, null);
+        long requestsBefore = staleServer.getRequestCount();
+
+        Response first = get(cache, staleServer, "/episode/1");
+        Response second = get(cache, staleServer, "/episode/1");
+
+        assertEquals(staleServer.getRequestCount() - requestsBefore, 2L, "Stale entry was not revalidated");
+        assertEquals(cache.getRevalidations(), 1L, "Expected one 304 revalidation");
+        assertEquals(cache.getHits(), 0L, "A stale entry must not be served without revalidation");
+        assertEquals(second.getStatusCode(), SUCCESS_STATUS_CODE, "Revalidated response should surface as 200");
+        assertEquals(second.asString(), first.asString(), "Revalidated body differs from the original");
+    }
+
+    @Test
+    public void testMemoryTierEvictsLeastRecentlyUsed() {
+        long maxBytes = 4 * 1024;
+        ResponseCache cache = new ResponseCache(maxBytes, null);
+
+        for (int id = 1; id <= 20; id++) {
+            get(cache, freshServer, "/character/" + id);
+        }
+        get(cache, freshServer, "/character/20");
+        long requestsBefore = freshServer.getRequestCount();
+        get(cache, freshServer, "/character/1");
+
+        assertTrue(cache.getMemoryBytes() <= maxBytes,
+                "Memory tier holds " + cache.getMemoryBytes() + " bytes, over its bound of " + maxBytes);
+        assertTrue(cache.getEvictions() > 0, "Nothing was evicted from a full memory tier");
+        assertEquals(cache.getHits(), 1L, "Most recently used entry should still be cached");
+        assertEquals(freshServer.getRequestCount() - requestsBefore, 1L, "Evicted entry should be fetched again");
+    }
+
+    @Test
+    public void testDiskTierServesAcrossCacheInstances() throws IOException {
+        Path directory = Files.createTempDirectory("response-cache-");
+        get(new ResponseCache(ResponseCache.DEFAULT_MAX_BYTES, directory), freshServer, "/location/1");
+
+        ResponseCache reopened = new ResponseCache(ResponseCache.DEFAULT_MAX_BYTES, directory);
+        long requestsBefore = freshServer.getRequestCount();
+        Response response = get(reopened, freshServer, "/location/1");
+
+        assertEquals(response.jsonPath().getString("name"), "Earth (C-137)", "Wrong location served from disk");
+        assertEquals(reopened.getDiskHits(), 1L, "Entry was not read from the disk tier");
+        assertEquals(freshServer.getRequestCount() - requestsBefore, 0L, "Disk hit still reached the server");
+    }
+
+    @Test
+    public void testVaryKeepsVariantsApart() {
+        ResponseCache cache = new ResponseCache(ResponseCache.DEFAULT_MAX_BYTES, null);
+
+        assertEquals(getHeaderServer(cache, "/greeting", "en").asString(), "hello", "English greeting");
+        assertEquals(getHeaderServer(cache, "/greeting", "es").asString(), "hola", "Spanish greeting served from the English entry");
+        assertEquals(getHeaderServer(cache, "/greeting", "es").asString(), "hola", "Spanish greeting from the cache");
+        assertEquals(cache.getMisses(), 2L, "Cache misses, one per language");
+        assertEquals(cache.getHits(), 1L, "Cache hits");
+
+        getHeaderServer(cache, "/greeting?any", "en");
+        assertEquals(getHeaderServer(cache, "/greeting?any", "en").asString(), "hello", "Vary: * greeting");
+        assertEquals(cache.getMisses(), 4L, "A Vary: * response must not be reused");
+    }
+
+    @Test
+    public void testChangedEntryCountedApartFromMisses() {
+        ResponseCache cache = new ResponseCache(ResponseCache.DEFAULT_MAX_BYTES, null);
+
+        Response first = getHeaderServer(cache, "/version", null);
+        Response second = getHeaderServer(cache, "/version", null);
+
+        assertEquals(second.getStatusCode(), SUCCESS_STATUS_CODE, "Status of the changed resource");
+        assertTrue(!second.asString().equals(first.asString()), "Changed resource served from the cache");
+        assertEquals(cache.getMisses(), 1L, "Cache misses");
+        assertEquals(cache.getReplaced(), 1L, "Stale entries replaced by a 200");
+        assertEquals(cache.getRevalidations(), 0L, "Revalidations");
+        assertTrue(cache.summary().contains("1 replaced"), cache.summary());
+    }
+
+    private Response get(ResponseCache cache, LocalApiServer server, String path) {
+        return given()
+                .spec(requestSpec)
+                .baseUri(server.getBaseUrl())
+                .noFiltersOfType(ResponseCache.class)
+                .filter(cache)
+                .when()
+                .get(path);
+    }
+
+    private Response getHeaderServer(ResponseCache cache, String path, String language) {
+        RequestSpecification request = given()
+                .spec(requestSpec)
+                .baseUri("http://127.0.0.1:" + headerServer.getAddress().getPort())
+                .noFiltersOfType(ResponseCache.class)
+                .filter(cache);
+        if (language != null) {
+            request.header("Accept-Language", language);
+        }
+        return request.when().get(path);
+    }
+
+    private static void send(HttpExchange exchange, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
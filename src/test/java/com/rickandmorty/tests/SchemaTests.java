@@ -0,0 +1,79 @@
+package com.rickandmorty.tests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.rickandmorty.schema.CorpusValidator;
+import com.rickandmorty.schema.SchemaRegistry;
+import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.ModelMapper;
+import io.restassured.response.Response;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.restassured.RestAssured.given;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class SchemaTests extends BaseTest {
+
+    @Test
+    public void testFullCorpusMatchesSchemas() {
+        CorpusValidator.Report report = CorpusValidator.fromSystemProperties(resolveBaseUrl()).validateAll();
+        System.out.println("Schema validation: " + report.summary());
+
+        List<CorpusValidator.Violation> violations = report.getViolations();
+        assertTrue(violations.isEmpty(), violations.size() + " schema violations, first ones: "
+                + violations.subList(0, Math.min(20, violations.size())));
+        assertTrue(report.getRecords() > 0, "No records were validated");
+    }
+
+    @Test
+    public void testEveryViolationOfAPageIsReported() throws Exception {
+        Response response = given()
+                .spec(requestSpec)
+                .when()
+                .get("/character?page=2")
+                .then()
+                .spec(responseSpec)
+                .extract().response();
+        JsonNode page = ModelMapper.MAPPER.readTree(response.asByteArray());
+        ((ObjectNode) page.path("info")).put("count", "many");
+        ((ObjectNode) page.path("results").get(0)).put("status", "Alve");
+        ((ObjectNode) page.path("results").get(3)).remove("name");
+        ((ObjectNode) page.path("results").get(7)).put("gender", "Robot");
+
+        List<String> violations = SchemaRegistry.validatePage(SchemaRegistry.CHARACTER, page);
+
+        assertEquals(violations.size(), 4, "Violations: " + violations);
+        assertTrue(violations.get(0).startsWith("/info/count"), "Envelope violation: " + violations.get(0));
+        assertTrue(violations.stream().anyMatch(violation -> violation.startsWith("/results/0/status")),
+                "Status violation missing: " + violations);
+        assertTrue(violations.stream().anyMatch(violation -> violation.startsWith("/results/3:")
+                        && violation.contains("name")), "Missing name not reported: " + violations);
+        assertTrue(violations.stream().anyMatch(violation -> violation.startsWith("/results/7/gender")),
+                "Gender violation missing: " + violations);
+    }
+
+    @Test
+    public void testSchemasCompiledOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<JsonSchema>> schemas = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                schemas.add(executor.submit(() -> SchemaRegistry.schema(SchemaRegistry.EPISODE)));
+            }
+            for (Future<JsonSchema> schema : schemas) {
+                assertSame(schema.get(), SchemaRegistry.schema(SchemaRegistry.EPISODE), "Episode schema compiled again");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
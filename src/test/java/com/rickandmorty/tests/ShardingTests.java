@@ -0,0 +1,186 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.DurationHistory;
+import com.rickandmorty.utils.DurationShardingListener;
+import com.rickandmorty.utils.ShardPlan;
+import org.testng.IMethodInstance;
+import org.testng.ITestNGMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Checks the duration-based shard plans and the history they are built from; the suite itself
+ * is split by {@link com.rickandmorty.utils.DurationShardingListener}.
+ */
+public class ShardingTests extends BaseTest {
+
+    @Test
+    public void testExpensiveMethodsSpreadOverShards() {
+        // a suite shaped like this one: a few whole-collection checks and many quick lookups
+        Map<String, Long> costs = new HashMap<>();
+        costs.put("EpisodeTests#testEpisodeCodeFormat", 2400L);
+        costs.put("CharacterTests#testGetAllCharacters", 2000L);
+        costs.put("LocationTests#testGetAllLocations", 1800L);
+        costs.put("EpisodeTests#testGetAllEpisodes", 1600L);
+        for (int i = 0; i < 40; i++) {
+            costs.put("LookupTests#testLookup" + i, 50L + i % 7 * 10);
+        }
+
+        ShardPlan plan = ShardPlan.plan(costs, 4);
+        Set<String> assigned = new HashSet<>();
+        for (int shard = 0; shard < plan.getShardCount(); shard++) {
+            List<String> methods = plan.shard(shard);
+            assertTrue(methods.get(0).contains("#testEpisodeCodeFormat") || methods.get(0).contains("#testGetAll"),
+                    "Shard " + shard + " should start with a whole-collection check: " + methods);
+            for (int i = 1; i < methods.size(); i++) {
+                assertTrue(costs.get(methods.get(i - 1)) >= costs.get(methods.get(i)), "Shard " + shard + " not most expensive first");
+            }
+            assertTrue(methods.stream().allMatch(assigned::add), "Method on two shards: " + methods);
+        }
+        assertEquals(assigned, costs.keySet(), "Methods assigned");
+        System.out.printf("Shard plan over 4 shards: makespan %d ms, ideal %d ms, loads %d/%d/%d/%d ms%n",
+                plan.getMakespan(), plan.getIdeal(), plan.load(0), plan.load(1), plan.load(2), plan.load(3));
+        assertTrue(plan.getMakespan() <= plan.getIdeal() * 4 / 3, "LPT bound broken: " + plan.getMakespan());
+        assertTrue(plan.getMakespan() - plan.getIdeal() <= 70, "Loads too uneven: " + plan.getMakespan() + " vs " + plan.getIdeal());
+    }
+
+    @Test
+    public void testPlanIsDeterministicAndBoundedByLargestMethod() {
+        Map<String, Long> costs = new HashMap<>();
+        costs.put("A#slow", 900L);
+        for (int i = 0; i < 10; i++) {
+            costs.put("B#same" + i, 10L);
+        }
+
+        ShardPlan plan = ShardPlan.plan(costs, 3);
+        ShardPlan again = ShardPlan.plan(new HashMap<>(costs), 3);
+        for (int shard = 0; shard < 3; shard++) {
+            assertEquals(again.shard(shard), plan.shard(shard), "Shard " + shard + " differs between plans");
+        }
+        assertEquals(plan.shard(0), List.of("A#slow"), "The slow method should get a shard to itself");
+        assertEquals(plan.getIdeal(), 900L, "Ideal bounded by the largest method");
+        assertEquals(plan.getMakespan(), 900L, "Makespan");
+        assertEquals(ShardPlan.plan(costs, 1).shard(0).size(), costs.size(), "A single shard runs everything");
+    }
+
+    @Test
+    public void testInterceptorKeepsItsShardMostExpensiveFirst() throws Exception {
+        Path dir = Files.createTempDirectory("durations");
+        Path file = dir.resolve("durations.txt");
+        try {
+            DurationHistory.update(file, Map.of(
+                    "com.rickandmorty.tests.EpisodeTests#testEpisodeCodeFormat", 2400L,
+                    "com.rickandmorty.tests.CharacterTests#testGetAllCharacters", 2000L,
+                    "com.rickandmorty.tests.LocationTests#testGetAllLocations", 1800L,
+                    "com.rickandmorty.tests.CharacterTests#testGetCharacterById", 40L));
+            // in the order TestNG hands them over, by class; the last one has no history yet
+            List<IMethodInstance> methods = List.of(
+                    method(CharacterTests.class, "testGetAllCharacters"),
+                    method(CharacterTests.class, "testGetCharacterById"),
+                    method(EpisodeTests.class, "testEpisodeCodeFormat"),
+                    method(LocationTests.class, "testGetAllLocations"),
+                    method(LocationTests.class, "testGetLocationById"));
+
+            List<String> all = names(new DurationShardingListener(1, 1, file).intercept(methods, null));
+            assertEquals(all, List.of("EpisodeTests#testEpisodeCodeFormat", "CharacterTests#testGetAllCharacters",
+                    "LocationTests#testGetAllLocations", "LocationTests#testGetLocationById",
+                    "CharacterTests#testGetCharacterById"), "Unsharded order, the unknown method at the average cost");
+
+            Set<String> assigned = new HashSet<>();
+            for (int shard = 1; shard <= 2; shard++) {
+                List<String> kept = names(new DurationShardingListener(2, shard, file).intercept(methods, null));
+                assertFalse(kept.isEmpty(), "Shard " + shard + " got nothing");
+                assertTrue(kept.stream().allMatch(assigned::add), "Method on two shards: " + kept);
+                List<String> expected = new ArrayList<>(all);
+                expected.retainAll(kept);
+                assertEquals(kept, expected, "Shard " + shard + " not most expensive first");
+            }
+            assertEquals(assigned, Set.copyOf(all), "Methods assigned");
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testHistoryAveragesRunsAndFoldsShardFiles() throws Exception {
+        Path dir = Files.createTempDirectory("durations");
+        Path file = dir.resolve("durations.txt");
+        try {
+            assertEquals(DurationHistory.load(file).size(), 0, "Missing history");
+
+            DurationHistory.update(file, Map.of("A#one", 100L, "B#two", 40L));
+            DurationHistory.of(Map.of("A#one", 300L)).save(DurationHistory.shardFile(file, 1));
+            DurationHistory.of(Map.of("C#three", 70L)).save(DurationHistory.shardFile(file, 2));
+            assertEquals(DurationHistory.load(file).estimate("A#one"), 100L, "Shard files must not change the history");
+
+            DurationHistory history = DurationHistory.update(file, Map.of("B#two", 60L));
+            assertEquals(history.estimate("A#one"), 200L, "Average of 100 and the shard's 300");
+            assertEquals(history.estimate("B#two"), 50L, "Average of 40 and 60");
+            assertEquals(history.estimate("C#three"), 70L, "First measurement from a shard");
+            assertEquals(history.estimate("D#never"), -1L, "Unknown method");
+            assertEquals(DurationHistory.load(file).asMap(), history.asMap(), "Saved history");
+            assertFalse(Files.exists(DurationHistory.shardFile(file, 1)), "Shard files folded in are removed");
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        List<Path> left = new ArrayList<>();
+        try (var files = Files.list(dir)) {
+            files.forEach(left::add);
+        }
+        for (Path path : left) {
+            Files.delete(path);
+        }
+        Files.delete(dir);
+    }
+
+    private static IMethodInstance method(Class<?> type, String name) {
+        ITestNGMethod method = (ITestNGMethod) Proxy.newProxyInstance(ITestNGMethod.class.getClassLoader(),
+                new Class<?>[]{ITestNGMethod.class}, (proxy, called, args) -> {
+                    switch (called.getName()) {
+                        case "getRealClass":
+                            return type;
+                        case "getMethodName":
+                            return name;
+                        case "toString":
+                            return type.getSimpleName() + "#" + name;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(called.getName());
+                    }
+                });
+        return (IMethodInstance) Proxy.newProxyInstance(IMethodInstance.class.getClassLoader(),
+                new Class<?>[]{IMethodInstance.class}, (proxy, called, args) -> {
+                    if (called.getName().equals("getMethod")) {
+                        return method;
+                    }
+                    throw new UnsupportedOperationException(called.getName());
+                });
+    }
+
+    private static List<String> names(List<IMethodInstance> methods) {
+        List<String> names = new ArrayList<>();
+        methods.forEach(method -> names.add(method.getMethod().toString()));
+        return names;
+    }
+}
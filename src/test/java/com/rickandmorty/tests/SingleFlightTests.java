@@ -0,0 +1,277 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.data.DatasetGenerator;
+import com.rickandmorty.http.SingleFlightFilter;
+import com.rickandmorty.http.TailLatencyFilter;
+import com.rickandmorty.server.LocalApiServer;
+import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.ParallelExecutionListener;
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import io.restassured.specification.RequestSpecification;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+import static io.restassured.RestAssured.given;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+/**
+ * Exercises {@link SingleFlightFilter} against dedicated local servers: a slow one, whose 200 ms
+ * service time keeps requests in flight long enough for the others to join, and a fast one for the
+ * concurrency stress test. The filter is dedicated per test, so its counters are exact.
+ */
+public class SingleFlightTests extends BaseTest {
+
+    private static final int SERVICE_MILLIS = 200;
+
+    private LocalApiServer slowServer;
+    private LocalApiServer fastServer;
+
+    @BeforeClass(alwaysRun = true)
+    public void startServers() {
+        if (isReplaying()) {
+            throw new SkipException("Coalescing needs requests that are really in flight");
+        }
+        slowServer = LocalApiServer.builder(DatasetGenerator.real().generate()).threads(16).serviceTime(SERVICE_MILLIS).start();
+        fastServer = LocalApiServer.builder(slowServer.getDataset()).threads(8).start();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServers() {
+        if (slowServer != null) {
+            slowServer.close();
+            fastServer.close();
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testConcurrentIdenticalRequestsShareOneExchange() throws Exception {
+        SingleFlightFilter singleFlight = new SingleFlightFilter();
+        int callers = 16;
+        long requestsBefore = slowServer.getRequestCount();
+
+        List<Response> responses = together(callers, caller -> spec(slowServer, singleFlight), "/character");
+        List<String> bodies = new ArrayList<>();
+        for (Response response : responses) {
+            assertEquals(response.statusCode(), SUCCESS_STATUS_CODE, "Status");
+            bodies.add(response.asString());
+        }
+        System.out.println("Single flight of " + callers + " identical GETs: " + singleFlight.summary());
+
+        assertEquals(slowServer.getRequestCount() - requestsBefore, singleFlight.getExchanges(), "Requests the server saw");
+        assertEquals(singleFlight.getExchanges() + singleFlight.getCoalesced(), (long) callers, "Every caller accounted for");
+        assertTrue(singleFlight.getCoalesced() >= callers / 2, "Too few callers joined: " + singleFlight.summary());
+        assertEquals(singleFlight.getInFlight(), 0, "Flights left behind");
+        for (int i = 1; i < callers; i++) {
+            assertNotSame(responses.get(i), responses.get(0), "Callers must not share a Response");
+            assertEquals(bodies.get(i), bodies.get(0), "Body of caller " + i);
+            assertEquals(responses.get(i).jsonPath().getInt("info.count"), slowServer.getDataset().getCharacterCount(),
+                    "Parsed count of caller " + i);
+        }
+        // each view owns its bytes: scribbling over one leaves the rest intact
+        Arrays.fill(responses.get(0).asByteArray(), (byte) 'x');
+        for (int i = 1; i < callers; i++) {
+            assertEquals(responses.get(i).asString(), bodies.get(i), "Body of caller " + i + " after another changed");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testRequestsThatDifferAreNotCoalesced() throws Exception {
+        SingleFlightFilter singleFlight = new SingleFlightFilter();
+        List<UnaryOperator<RequestSpecification>> variants = List.of(
+                spec -> spec.queryParam("page", 1),
+                spec -> spec.queryParam("page", 2),
+                spec -> spec.queryParam("page", 1).header("X-Trace", "a").header("X-Tenant", "t"),
+                spec -> spec.queryParam("page", 1).header("X-Trace", "b").header("X-Tenant", "t"),
+                // the same headers in another order are the same request
+                spec -> spec.queryParam("page", 1).header("X-Tenant", "t").header("X-Trace", "b"));
+
+        List<Response> responses = together(variants.size(),
+                caller -> variants.get(caller).apply(spec(slowServer, singleFlight)), "/character");
+
+        responses.forEach(response -> assertEquals(response.statusCode(), SUCCESS_STATUS_CODE, "Status"));
+        assertEquals(singleFlight.getExchanges(), 4L, "Distinct requests: " + singleFlight.summary());
+        assertEquals(singleFlight.getCoalesced(), 1L, "Only the reordered headers should join: " + singleFlight.summary());
+        assertTrue(responses.get(1).jsonPath().getInt("results[0].id") > responses.get(0).jsonPath().getInt("results[0].id"),
+                "Page 2 answered with page 1");
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testCoalescingIsExactUnderHeavyConcurrency() throws Exception {
+        SingleFlightFilter singleFlight = new SingleFlightFilter();
+        List<String> paths = List.of("/character/1", "/character/2", "/location/1", "/episode/1", "/character?status=alive");
+        Map<String, String> expected = new HashMap<>();
+        for (String path : paths) {
+            expected.put(path, given().spec(requestSpec).baseUri(fastServer.getBaseUrl()).get(path).asString());
+        }
+        long requestsBefore = fastServer.getRequestCount();
+        int threads = 16;
+        int perThread = 40;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CyclicBarrier start = new CyclicBarrier(threads);
+            List<Future<Integer>> checked = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                checked.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        String path = paths.get((thread + i) % paths.size());
+                        Response response = spec(fastServer, singleFlight).get(path);
+                        assertEquals(response.statusCode(), SUCCESS_STATUS_CODE, "Status of " + path);
+                        assertEquals(response.asString(), expected.get(path), "Body of " + path);
+                    }
+                    return perThread;
+                }));
+            }
+            for (Future<Integer> future : checked) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.println("Single flight under " + threads + " threads: " + singleFlight.summary());
+
+        long total = (long) threads * perThread;
+        assertEquals(singleFlight.getRequests(), total, "Requests seen");
+        assertEquals(singleFlight.getExchanges() + singleFlight.getCoalesced(), total, "Every request accounted for");
+        assertEquals(fastServer.getRequestCount() - requestsBefore, singleFlight.getExchanges(), "Requests the server saw");
+        assertEquals(singleFlight.getFallbacks(), 0L, "No leader failed");
+        assertEquals(singleFlight.getInFlight(), 0, "Flights left behind");
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testOneFollowerTakesOverWhenTheLeaderFails() throws Exception {
+        SingleFlightFilter singleFlight = new SingleFlightFilter();
+        CountDownLatch release = new CountDownLatch(1);
+        FailOnce failOnce = new FailOnce(release);
+        int followers = 5;
+
+        ExecutorService pool = Executors.newFixedThreadPool(followers + 1);
+        try {
+            Future<Response> leader = pool.submit(() -> spec(slowServer, singleFlight).filter(failOnce).get("/episode/2"));
+            while (singleFlight.getInFlight() == 0) {
+                Thread.sleep(5);
+            }
+            List<Future<Response>> joined = new ArrayList<>();
+            for (int i = 0; i < followers; i++) {
+                joined.add(pool.submit(() -> spec(slowServer, singleFlight).filter(failOnce).get("/episode/2")));
+            }
+            while (singleFlight.getRequests() < followers + 1) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(50);
+            release.countDown();
+
+            ExecutionException failed = expectThrows(ExecutionException.class, () -> leader.get(30, TimeUnit.SECONDS));
+            assertTrue(failed.getCause().getMessage().contains("dropped"), failed.getCause().toString());
+            for (Future<Response> follower : joined) {
+                assertEquals(follower.get(30, TimeUnit.SECONDS).statusCode(), SUCCESS_STATUS_CODE, "Follower status");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.println("Single flight after a failed leader: " + singleFlight.summary());
+
+        assertEquals(singleFlight.getFallbacks(), 1L, "Followers that took over");
+        assertEquals(singleFlight.getExchanges(), 2L, "The failed exchange and the one that replaced it");
+        assertEquals(singleFlight.getCoalesced(), (long) followers - 1, "Followers answered by the new leader");
+        assertEquals(singleFlight.getInFlight(), 0, "Flights left behind");
+    }
+
+    /**
+     * Sends {@code path} from {@code callers} threads released at the same instant.
+     */
+    private List<Response> together(int callers, SpecFactory specs, String path) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            CyclicBarrier start = new CyclicBarrier(callers);
+            List<Future<Response>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                int caller = i;
+                Callable<Response> call = () -> {
+                    RequestSpecification spec = specs.create(caller);
+                    start.await();
+                    return spec.get(path);
+                };
+                futures.add(pool.submit(call));
+            }
+            List<Response> responses = new ArrayList<>();
+            for (Future<Response> future : futures) {
+                responses.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return responses;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Without the suite's tail-latency filter: a hedge would reach the server without being an exchange.
+     */
+    private RequestSpecification spec(LocalApiServer server, SingleFlightFilter singleFlight) {
+        return given().spec(requestSpec).baseUri(server.getBaseUrl())
+                .noFiltersOfType(SingleFlightFilter.class).noFiltersOfType(TailLatencyFilter.class).filter(singleFlight);
+    }
+
+    private interface SpecFactory {
+        RequestSpecification create(int caller);
+    }
+
+    /**
+     * Fails the first request that reaches it, once {@code release} opens; later ones pass.
+     */
+    private static final class FailOnce implements OrderedFilter {
+
+        private final CountDownLatch release;
+        private final AtomicBoolean failed = new AtomicBoolean();
+
+        FailOnce(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public int getOrder() {
+            return SingleFlightFilter.ORDER + 1;
+        }
+
+        @Override
+        public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                               FilterContext ctx) {
+            if (failed.compareAndSet(false, true)) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("Connection dropped");
+            }
+            return ctx.next(requestSpec, responseSpec);
+        }
+    }
+}
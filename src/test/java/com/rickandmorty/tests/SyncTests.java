@@ -0,0 +1,154 @@
+package com.rickandmorty.tests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.rickandmorty.data.Dataset;
+import com.rickandmorty.data.DatasetGenerator;
+import com.rickandmorty.server.LocalApiServer;
+import com.rickandmorty.sync.DatasetSync;
+import com.rickandmorty.sync.Snapshot;
+import com.rickandmorty.sync.SyncReport;
+import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.ModelMapper;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Syncs snapshots against dedicated local servers. Growth and shrinkage are simulated by swapping
+ * the server's dataset for one with more or fewer characters, at the same address: characters keep
+ * their content, while the residents of locations and the casts of episodes change with them.
+ */
+public class SyncTests extends BaseTest {
+
+    private static final int BATCH = 200;
+
+    @Test
+    public void testInitialSyncCostsBatchesNotPages() throws Exception {
+        Dataset dataset = DatasetGenerator.real().generate();
+        try (LocalApiServer server = LocalApiServer.builder(dataset).threads(2).start()) {
+            Snapshot snapshot = Snapshot.empty(server.getBaseUrl());
+            long requestsBefore = server.getRequestCount();
+
+            SyncReport report = new DatasetSync(server.getBaseUrl(), BATCH, 0).sync(snapshot);
+            System.out.println("Initial sync: " + report.summary());
+
+            assertEquals(report.diff("character").getAdded(), ids(1, Dataset.REAL_CHARACTERS), "Added characters");
+            assertEquals(snapshot.size("location"), Dataset.REAL_LOCATIONS, "Locations in the snapshot");
+            assertEquals(snapshot.size("episode"), Dataset.REAL_EPISODES, "Episodes in the snapshot");
+            // page 1 for the count, then the tail in windows of BATCH ids: 1 + 5, 1 + 1, 1 + 1
+            assertEquals(report.getRequests(), 10, "Sync requests");
+            assertEquals(server.getRequestCount() - requestsBefore, 10L, "Requests seen by the server");
+            JsonNode rick = ModelMapper.MAPPER.readTree(snapshot.json("character", 1));
+            assertEquals(rick.path("name").asText(), "Rick Sanchez", "Stored record of character 1");
+
+            SyncReport again = new DatasetSync(server.getBaseUrl(), BATCH, 0).sync(snapshot);
+            assertTrue(again.isEmpty(), "Second sync found changes: " + again.summary());
+            assertEquals(again.getRequests(), 6, "An up-to-date snapshot costs two requests per collection");
+        }
+    }
+
+    @Test
+    public void testGrowthFetchesOnlyNewIds() throws Exception {
+        Path file = Files.createTempFile("dataset-", ".snapshot");
+        Files.delete(file);
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate()).threads(2).start()) {
+            new DatasetSync(server.getBaseUrl(), BATCH, 0).sync(file);
+
+            server.setDataset(DatasetGenerator.real().characters(900).generate());
+            SyncReport report = new DatasetSync(server.getBaseUrl(), BATCH, 0).sync(file);
+            System.out.println("Incremental sync: " + report.summary());
+
+            assertEquals(report.diff("character").getAdded(), ids(Dataset.REAL_CHARACTERS + 1, 900), "Added characters");
+            assertTrue(report.diff("location").isEmpty() && report.diff("episode").isEmpty(),
+                    "Unsampled collections reported changes: " + report.summary());
+            assertEquals(report.getRequests(), 6, "Incremental sync requests");
+            assertEquals(Snapshot.load(file).size("character"), 900, "Characters in the saved snapshot");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testSampledRecordsDetectDrift() throws Exception {
+        Dataset before = DatasetGenerator.real().generate();
+        Dataset after = DatasetGenerator.real().characters(900).generate();
+        try (LocalApiServer server = LocalApiServer.builder(before).threads(2).start()) {
+            Snapshot snapshot = Snapshot.empty(server.getBaseUrl());
+            new DatasetSync(server.getBaseUrl(), BATCH, 0).sync(snapshot);
+
+            server.setDataset(after);
+            SyncReport report = new DatasetSync(server.getBaseUrl(), BATCH, Integer.MAX_VALUE).sync(snapshot);
+            System.out.println("Sampled sync: " + report.summary());
+
+            List<Integer> movedIn = IntStream.rangeClosed(1, Dataset.REAL_LOCATIONS)
+                    .filter(id -> !Arrays.equals(before.locationResidents(id), after.locationResidents(id)))
+                    .boxed().collect(Collectors.toList());
+            List<Integer> recast = IntStream.rangeClosed(1, Dataset.REAL_EPISODES)
+                    .filter(id -> !Arrays.equals(before.episodeCharacters(id), after.episodeCharacters(id)))
+                    .boxed().collect(Collectors.toList());
+            assertFalse(movedIn.isEmpty(), "New characters should change some locations");
+            assertEquals(report.diff("location").getChanged(), movedIn, "Changed locations");
+            assertEquals(report.diff("episode").getChanged(), recast, "Changed episodes");
+            assertTrue(report.diff("character").getChanged().isEmpty(), "Existing characters did not change");
+            assertEquals(report.diff("character").getVerified(), Dataset.REAL_CHARACTERS, "Verified characters");
+            int location = movedIn.get(0);
+            JsonNode stored = ModelMapper.MAPPER.readTree(snapshot.json("location", location));
+            assertEquals(stored.path("residents").size(), after.locationResidents(location).length,
+                    "Residents of changed location " + location + " in the snapshot");
+        }
+    }
+
+    @Test
+    public void testShrinkingCountScansForRemovals() {
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().characters(900).generate())
+                .threads(2).start()) {
+            Snapshot snapshot = Snapshot.empty(server.getBaseUrl());
+            new DatasetSync(server.getBaseUrl(), BATCH, 0).sync(snapshot);
+
+            server.setDataset(DatasetGenerator.real().characters(850).generate());
+            SyncReport report = new DatasetSync(server.getBaseUrl(), BATCH, 0).sync(snapshot);
+            System.out.println("Shrinking sync: " + report.summary());
+
+            SyncReport.Diff characters = report.diff("character");
+            assertTrue(characters.isScanned(), "Count dropped without a scan");
+            assertEquals(characters.getRemoved(), ids(851, 900), "Removed characters");
+            assertEquals(characters.getLocalCount(), 850, "Characters left in the snapshot");
+            // page 1, an empty tail window, then every known id in windows of BATCH
+            assertEquals(characters.getRequests(), 2 + (900 + BATCH - 1) / BATCH, "Scan requests");
+        }
+    }
+
+    @Test
+    public void testConfiguredSnapshotMatchesCounts() {
+        if (isReplaying()) {
+            throw new SkipException("The sync engine does not go through requestSpec");
+        }
+        SyncReport report = DatasetSync.fromSystemProperties(resolveBaseUrl())
+                .sync(DatasetSync.snapshotFromSystemProperties());
+        System.out.println("Dataset sync: " + report.summary());
+
+        for (SyncReport.Diff diff : report.getDiffs()) {
+            assertTrue(diff.getRemoteCount() > 0, "No " + diff.getResource() + " records on the server");
+            assertEquals(diff.getLocalCount(), diff.getRemoteCount(), "Synced " + diff.getResource() + " records");
+        }
+    }
+
+    private static List<Integer> ids(int from, int to) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = from; id <= to; id++) {
+            ids.add(id);
+        }
+        return ids;
+    }
+}
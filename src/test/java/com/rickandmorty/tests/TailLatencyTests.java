@@ -0,0 +1,254 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.data.DatasetGenerator;
+import com.rickandmorty.http.Deadline;
+import com.rickandmorty.http.RequestScheduler;
+import com.rickandmorty.http.ResponseCache;
+import com.rickandmorty.http.SingleFlightFilter;
+import com.rickandmorty.http.TailLatencyFilter;
+import com.rickandmorty.server.LocalApiServer;
+import com.rickandmorty.utils.BaseTest;
+import com.rickandmorty.utils.ParallelExecutionListener;
+import io.restassured.filter.FilterContext;
+import io.restassured.filter.OrderedFilter;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import io.restassured.specification.RequestSpecification;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+/**
+ * Drives a dedicated {@link TailLatencyFilter} against local servers with injected faults: latency
+ * spikes for hedging and deadlines, {@code 500} errors for retries. Requests skip the cache and
+ * single-flight, so every one of them reaches the server.
+ */
+public class TailLatencyTests extends BaseTest {
+
+    private static final int SPIKE_MILLIS = 300;
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testHedgingCutsTailLatency() {
+        skipWhenReplaying();
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(8).faults(0, 0.03, SPIKE_MILLIS).start()) {
+            List<Long> unhedged = timeRequests(server, null, 300);
+
+            TailLatencyFilter hedging = TailLatencyFilter.builder().hedging(95, 10, 0.2).build();
+            timeRequests(server, hedging, 50);
+            long hedgesBefore = hedging.getHedges();
+            RequestScheduler scheduler = RequestScheduler.builder().build();
+            List<Long> hedged = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                long started = System.nanoTime();
+                get(server, hedging, scheduler, "/character/" + (i % 100 + 1)).then().statusCode(SUCCESS_STATUS_CODE);
+                hedged.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            }
+            System.out.printf("Tail latency with 3%% spikes of %d ms: p99 %d ms unhedged, %d ms hedged (%s)%n",
+                    SPIKE_MILLIS, p99(unhedged), p99(hedged), hedging.summary());
+
+            assertTrue(p99(unhedged) >= SPIKE_MILLIS, "Spikes should show at p99 without hedging: " + p99(unhedged) + " ms");
+            assertTrue(p99(hedged) < SPIKE_MILLIS / 2, "Hedging left p99 at " + p99(hedged) + " ms");
+            assertTrue(hedging.getHedges() > hedgesBefore, "Slow requests should have been hedged");
+            assertTrue(hedging.getHedges() <= hedging.getRequests() / 5, "Hedges over the cap: " + hedging.summary());
+            assertTrue(hedging.getHedgeWins() >= 1, "No hedge ever won: " + hedging.summary());
+            assertEquals(scheduler.getRequests(), 300 + hedging.getHedges() - hedgesBefore,
+                    "Requests and their hedges through the scheduler");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testServerErrorsAreRetried() {
+        skipWhenReplaying();
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(4).faults(0.2, 0, 0).start()) {
+            List<Integer> unretried = new ArrayList<>();
+            for (int i = 1; i <= 50; i++) {
+                unretried.add(get(server, null, "/character/" + i).statusCode());
+            }
+            Response error = get(server, null, "/character/1");
+            while (error.statusCode() != 500) {
+                error = get(server, null, "/character/1");
+            }
+            error.then().body("error", equalTo("Internal server error"));
+
+            TailLatencyFilter retrying = TailLatencyFilter.builder().retries(5, 5).build();
+            long errorsBefore = server.getInjectedErrorCount();
+            for (int i = 1; i <= 100; i++) {
+                get(server, retrying, "/character/" + i).then().statusCode(SUCCESS_STATUS_CODE).body("id", equalTo(i));
+            }
+            System.out.println("Retries against 20% server errors: " + retrying.summary());
+
+            assertTrue(unretried.contains(500), "Some requests should fail without retries: " + unretried);
+            assertEquals(retrying.getRetries(), server.getInjectedErrorCount() - errorsBefore,
+                    "One retry per injected error");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testRetriesRewindTheFilterChain() {
+        skipWhenReplaying();
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(4).faults(1, 0, 0).start()) {
+            TailLatencyFilter retrying = TailLatencyFilter.builder().retries(2, 1).build();
+            AtomicInteger attempts = new AtomicInteger();
+            // after the tail latency filter: reached again only if the chain is rewound for each retry
+            OrderedFilter counting = new OrderedFilter() {
+                @Override
+                public int getOrder() {
+                    return TailLatencyFilter.ORDER + 10;
+                }
+
+                @Override
+                public Response filter(FilterableRequestSpecification requestSpec,
+                                       FilterableResponseSpecification responseSpec, FilterContext ctx) {
+                    attempts.incrementAndGet();
+                    return ctx.next(requestSpec, responseSpec);
+                }
+            };
+            Response response = given().spec(requestSpec).baseUri(server.getBaseUrl())
+                    .noFiltersOfType(ResponseCache.class).noFiltersOfType(SingleFlightFilter.class)
+                    .noFiltersOfType(TailLatencyFilter.class).filter(retrying).filter(counting)
+                    .get("/character/1");
+
+            assertEquals(response.statusCode(), 500, "Status with every request failing");
+            assertEquals(retrying.getRetries(), 2L, "Retries");
+            assertEquals(attempts.get(), 3, "Attempts through the filters after the tail latency filter");
+            assertEquals(server.getInjectedErrorCount(), 3L, "Requests that reached the server");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testInvalidIdIsNotRetried() {
+        skipWhenReplaying();
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate()).threads(2).start()) {
+            TailLatencyFilter retrying = TailLatencyFilter.builder().retries(2, 1).build();
+            get(server, retrying, "/character/abc").then().statusCode(500)
+                    .body("error", equalTo("Hey! that parameter is not allowed, try with a number instead ;)"));
+
+            assertEquals(retrying.getRetries(), 0L, "Retries of the API's answer to an invalid id");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testUnhedgedCallGivesUpAtItsDeadline() {
+        skipWhenReplaying();
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(4).faults(0, 1, SPIKE_MILLIS).start()) {
+            TailLatencyFilter bounded = TailLatencyFilter.builder().callDeadline(100).build();
+            // outside the timing: the first request of a JVM can take longer than the deadline on its own
+            get(server, null, "/location/2");
+            long started = System.nanoTime();
+            IllegalStateException late = expectThrows(IllegalStateException.class,
+                    () -> get(server, bounded, "/location/1"));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            assertTrue(late.getMessage().contains("still unanswered"), late.getMessage());
+            assertTrue(elapsedMillis < SPIKE_MILLIS, "The caller waited past the deadline: " + elapsedMillis + " ms");
+            assertEquals(bounded.getDeadlinesExceeded(), 1L, "Calls past their deadline");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testRetriesStopAtTheTestBudget() {
+        skipWhenReplaying();
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(4).faults(1, 0, 0).start()) {
+            TailLatencyFilter retrying = TailLatencyFilter.builder().retries(20, 40).build();
+            // outside the budget: the first request of a JVM can take longer than 400 ms on its own
+            get(server, null, "/episode/1");
+            Deadline.start("testRetriesStopAtTheTestBudget", 400);
+            long started = System.nanoTime();
+            Response response = get(server, retrying, "/episode/1");
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            while (!Deadline.current().isExpired()) {
+                Thread.yield();
+            }
+            IllegalStateException exhausted = expectThrows(IllegalStateException.class,
+                    () -> get(server, retrying, "/episode/2"));
+            System.out.println("Retries within a 400 ms budget: " + retrying.summary() + " in " + elapsedMillis + " ms");
+
+            assertEquals(response.statusCode(), 500, "Status once the budget left no room for a retry");
+            assertTrue(elapsedMillis < 400, "Retries ran past the budget: " + elapsedMillis + " ms");
+            assertTrue(retrying.getRetries() >= 1 && retrying.getRetries() < 20, "Retries: " + retrying.getRetries());
+            assertTrue(exhausted.getMessage().contains("testRetriesStopAtTheTestBudget"), exhausted.getMessage());
+            assertEquals(retrying.getDeadlinesExceeded(), 1L, "Requests refused for the budget");
+        }
+    }
+
+    @Test(groups = ParallelExecutionListener.SERIAL_GROUP)
+    public void testHedgedCallGivesUpAtItsDeadline() {
+        skipWhenReplaying();
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.real().generate())
+                .threads(4).faults(0, 1, SPIKE_MILLIS).start()) {
+            TailLatencyFilter hedging = TailLatencyFilter.builder().hedging(95, 10, 1).callDeadline(100).build();
+            // outside the timing: the first request of a JVM can take longer than the deadline on its own
+            get(server, null, "/location/2");
+            long started = System.nanoTime();
+            IllegalStateException late = expectThrows(IllegalStateException.class,
+                    () -> get(server, hedging, "/location/1"));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            assertTrue(late.getMessage().contains("still unanswered"), late.getMessage());
+            assertTrue(elapsedMillis < SPIKE_MILLIS, "The caller waited past the deadline: " + elapsedMillis + " ms");
+            assertEquals(hedging.getDeadlinesExceeded(), 1L, "Calls past their deadline");
+        }
+    }
+
+    /**
+     * @return the response time of each of {@code count} sequential character lookups, in milliseconds
+     */
+    private List<Long> timeRequests(LocalApiServer server, TailLatencyFilter filter, int count) {
+        List<Long> millis = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long started = System.nanoTime();
+            get(server, filter, "/character/" + (i % 100 + 1)).then().statusCode(SUCCESS_STATUS_CODE);
+            millis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+        return millis;
+    }
+
+    private Response get(LocalApiServer server, TailLatencyFilter filter, String path) {
+        return get(server, filter, null, path);
+    }
+
+    /**
+     * @param scheduler a dedicated scheduler in place of the suite's, or null to keep the suite's
+     */
+    private Response get(LocalApiServer server, TailLatencyFilter filter, RequestScheduler scheduler, String path) {
+        RequestSpecification spec = given().spec(requestSpec).baseUri(server.getBaseUrl())
+                .noFiltersOfType(ResponseCache.class).noFiltersOfType(SingleFlightFilter.class)
+                .noFiltersOfType(TailLatencyFilter.class);
+        if (filter != null) {
+            spec.filter(filter);
+        }
+        if (scheduler != null) {
+            spec.noFiltersOfType(RequestScheduler.class).filter(scheduler);
+        }
+        return spec.get(path);
+    }
+
+    private static long p99(List<Long> millis) {
+        List<Long> sorted = new ArrayList<>(millis);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1);
+    }
+
+    private static void skipWhenReplaying() {
+        if (isReplaying()) {
+            throw new SkipException("Fault injection needs a live local server");
+        }
+    }
+}
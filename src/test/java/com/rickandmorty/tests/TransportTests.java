@@ -0,0 +1,155 @@
+package com.rickandmorty.tests;
+
+import com.rickandmorty.data.DatasetGenerator;
+import com.rickandmorty.http.PooledTransport;
+import com.rickandmorty.http.TransportConfig;
+import com.rickandmorty.http.TransportStats;
+import com.rickandmorty.server.LocalApiServer;
+import com.rickandmorty.utils.BaseTest;
+import com.sun.net.httpserver.HttpServer;
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.config.RestAssuredConfig;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Keep-alive of the pooled Apache client against a bare server that advertises its own
+ * {@code Keep-Alive: timeout=}, connection reuse over TLS, and the pool bounds of the
+ * {@code jdk} backend.
+ */
+public class TransportTests extends BaseTest {
+
+    @Test
+    public void testServerKeepAliveShortensReuse() throws Exception {
+        HttpServer server = keepAliveServer(1);
+        try (PooledTransport transport = PooledTransport.create(TransportConfig.defaults().withKeepAlive(true, 30_000))) {
+            RequestSpecification spec = spec(transport, server);
+            get(spec);
+            get(spec);
+            assertEquals(transport.getStats().getConnectionsOpened(), 1L, "Connections within the server's keep-alive");
+
+            Thread.sleep(2_500);
+            assertEquals(transport.getIdleConnections(), 0, "Expired connections left in the pool");
+            get(spec);
+            assertEquals(transport.getStats().getConnectionsOpened(), 2L, "Connections after the server's keep-alive ran out");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testConfiguredKeepAliveCapsTheServers() throws Exception {
+        HttpServer server = keepAliveServer(60);
+        try (PooledTransport transport = PooledTransport.create(TransportConfig.defaults().withKeepAlive(true, 300))) {
+            RequestSpecification spec = spec(transport, server);
+            get(spec);
+
+            Thread.sleep(1_000);
+            assertEquals(transport.getIdleConnections(), 0, "Idle connections left in the pool");
+            get(spec);
+            assertEquals(transport.getStats().getConnectionsOpened(), 2L, "Connections past the configured keep-alive");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testTlsConnectionIsHandshakenOnce() {
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.scaled(20).generate()).tls(true).start()) {
+            for (TransportConfig.Backend backend : TransportConfig.Backend.values()) {
+                long handshakes = server.getTlsHandshakeCount();
+                try (PooledTransport transport = PooledTransport.create(TransportConfig.defaults()
+                        .withBackend(backend).withSslContext(server.getClientSslContext()))) {
+                    RequestSpecification spec = transport.install(new RequestSpecBuilder(), RestAssuredConfig.config())
+                            .setBaseUri(server.getBaseUrl()).build();
+                    for (int id = 1; id <= 5; id++) {
+                        Response response = given().spec(spec).get("/character/" + id);
+                        assertEquals(response.statusCode(), SUCCESS_STATUS_CODE, backend + ": status");
+                        assertEquals(response.<Integer>path("id"), Integer.valueOf(id), backend + ": character");
+                    }
+                    TransportStats stats = transport.getStats();
+                    if (stats.isConnectionsTracked()) {
+                        assertEquals(stats.getConnectionsOpened(), 1L, backend + ": connections opened");
+                        assertEquals(stats.getTlsHandshakes(), 1L, backend + ": client-side TLS handshakes");
+                    }
+                    assertEquals(server.getTlsHandshakeCount() - handshakes, 1L, backend + ": server-side TLS handshakes");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testJdkBackendKeepsToThePoolBounds() throws Exception {
+        try (LocalApiServer server = LocalApiServer.builder(DatasetGenerator.scaled(20).generate())
+                .threads(8).serviceTime(100).start()) {
+            // one per route, then one in all: either way no more than two at a time
+            TransportConfig jdk = TransportConfig.defaults().withBackend(TransportConfig.Backend.JDK);
+            for (TransportConfig config : new TransportConfig[]{jdk.withPool(2, 8), jdk.withPool(8, 2)}) {
+                int connections = server.getConnectionCount();
+                ExecutorService clients = Executors.newFixedThreadPool(6);
+                try (PooledTransport transport = PooledTransport.create(config)) {
+                    RequestSpecification spec = transport.install(new RequestSpecBuilder(), RestAssuredConfig.config())
+                            .setBaseUri(server.getBaseUrl()).build();
+                    List<Future<Integer>> statuses = new ArrayList<>();
+                    for (int id = 1; id <= 6; id++) {
+                        String path = "/character/" + id;
+                        statuses.add(clients.submit(() -> given().spec(spec).get(path).statusCode()));
+                    }
+                    for (Future<Integer> status : statuses) {
+                        assertEquals(status.get(10, TimeUnit.SECONDS).intValue(), SUCCESS_STATUS_CODE, config + ": status");
+                    }
+                } finally {
+                    clients.shutdownNow();
+                }
+                assertTrue(server.getConnectionCount() - connections <= 2,
+                        config + ": opened " + (server.getConnectionCount() - connections) + " connections");
+            }
+        }
+    }
+
+    /**
+     * Reads the body too, which is what hands the connection back to the pool.
+     */
+    private static void get(RequestSpecification spec) {
+        Response response = given().spec(spec).get("/");
+        assertEquals(response.asString(), "{}", "Body");
+        assertEquals(response.statusCode(), SUCCESS_STATUS_CODE, "Status");
+    }
+
+    private static RequestSpecification spec(PooledTransport transport, HttpServer server) {
+        return transport.install(new RequestSpecBuilder(), RestAssuredConfig.config())
+                .setBaseUri("http://127.0.0.1:" + server.getAddress().getPort()).build();
+    }
+
+    private static HttpServer keepAliveServer(int timeoutSeconds) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Keep-Alive", "timeout=" + timeoutSeconds);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+}
@@ -1,6 +1,9 @@
 package com.rickandmorty.utils;
 
 import io.restassured.response.Response;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.StringDescription;
 
 import java.util.Map;
 
@@ -15,6 +18,13 @@ public class ApiUtils {
         assert response.getHeader("Server") != null : "Server header is missing";
     }
 
+    public static void verifyCacheHeaders(Response response) {
+        assert response.getHeader("Cache-Control") != null : "Cache-Control header is missing";
+
+        assert response.getHeader("ETag") != null || response.getHeader("Last-Modified") != null :
+            "Neither ETag nor Last-Modified is present, the response cannot be revalidated";
+    }
+
     public static void verifyPaginationInfo(Map<String, Object> responseBody) {
         assert responseBody.containsKey("info") : "Pagination info is missing";
         
@@ -25,6 +35,20 @@ public class ApiUtils {
         assert info.containsKey("prev") : "Prev field is missing in pagination info";
     }
 
+    /**
+     * Checks a value read from a typed model, failing with the same message a {@code .body(path, matcher)}
+     * expectation would give.
+     *
+     * @param path JSON path the value was bound from, e.g. {@code info.count}
+     */
+    public static <T> void verifyPath(String path, T actual, Matcher<? super T> matcher) {
+        if (!matcher.matches(actual)) {
+            Description expected = new StringDescription();
+            matcher.describeTo(expected);
+            throw new AssertionError("JSON path " + path + " doesn't match.\nExpected: " + expected + "\n  Actual: " + actual);
+        }
+    }
+
     /**
      * @param response Response object
      * @param maxResponseTimeMs response time
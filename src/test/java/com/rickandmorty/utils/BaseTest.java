@@ -1,37 +1,308 @@
 package com.rickandmorty.utils;
 
-import io.restassured.RestAssured;
+import com.rickandmorty.client.RickAndMortyClient;
+import com.rickandmorty.http.Deadline;
+import com.rickandmorty.http.FlightRecorder;
+import com.rickandmorty.http.LatencyFilter;
+import com.rickandmorty.http.LatencySlo;
+import com.rickandmorty.http.PooledTransport;
+import com.rickandmorty.http.RecordReplayFilter;
+import com.rickandmorty.http.RequestScheduler;
+import com.rickandmorty.http.ResponseCache;
+import com.rickandmorty.http.SingleFlightFilter;
+import com.rickandmorty.http.TailLatencyFilter;
+import com.rickandmorty.http.TransportConfig;
+import com.rickandmorty.replica.Replica;
+import com.rickandmorty.server.LocalApiServer;
 import io.restassured.builder.RequestSpecBuilder;
 import io.restassured.builder.ResponseSpecBuilder;
+import io.restassured.config.RestAssuredConfig;
 import io.restassured.filter.log.LogDetail;
 import io.restassured.http.ContentType;
 import io.restassured.specification.RequestSpecification;
 import io.restassured.specification.ResponseSpecification;
+import org.testng.ITestResult;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.AfterSuite;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
 
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Base class for the API tests. The request and response specifications are built once per JVM
+ * and shared read-only by every test class and thread; their configuration travels with the spec
+ * instead of RestAssured's static globals, so the suite can run with {@code parallel="methods"}.
+ * All requests go through one {@link PooledTransport}, configured by {@link TransportConfig#fromSystemProperties()}.
+ * With {@code -Dcache.enabled=true} GET responses are also kept in a shared {@link ResponseCache}.
+ * A {@link LatencyFilter} times every request by endpoint template; at the end of the suite its
+ * report is written to {@code latency.report} and the objectives in {@code latency.slo} are asserted.
+ * Exchanges are logged by a {@link FlightRecorder} and only printed for failed tests
+ * ({@code -Dlog.mode=all} restores logging every request and response, {@code none} disables logging).
+ * With {@code -Dreplay.mode=record} the exchanges are saved to a {@link com.rickandmorty.http.ReplayArchive};
+ * {@code -Dreplay.mode=replay} answers from that archive without a server or a socket.
+ * A {@link RequestScheduler} adapts the requests in flight per host and retries throttled requests
+ * ({@code -Dscheduler.enabled=false} turns it off). A {@link TailLatencyFilter} retries server errors and can
+ * hedge slow requests, within a per-call deadline and a per-test {@link Deadline} of {@code tail.testDeadlineMs}
+ * ({@code -Dtail.enabled=false} turns it off). A {@link SingleFlightFilter} lets identical GETs that are in flight
+ * together share one exchange ({@code -Dsingleflight.enabled=false} turns it off).
+ */
 public class BaseTest {
-    
+
     protected static final String BASE_URL = "https://rickandmortyapi.com/api";
+    /** {@code local} (default) runs against an in-process {@link LocalApiServer}, {@code remote} against BASE_URL. */
+    public static final String API_TARGET_PROPERTY = "api.target";
     protected static final int SUCCESS_STATUS_CODE = 200;
     protected static final int NOT_FOUND_STATUS_CODE = 404;
-    
+    /** Suite-wide default for {@code latency.slo}: the old per-request cap of 2 s, as a p99 per endpoint. */
+    public static final String DEFAULT_LATENCY_SLO = "*:p99<2000";
+    /** Default for {@code tail.testDeadlineMs}: the time every request of one test method may take together. */
+    public static final long DEFAULT_TEST_DEADLINE_MILLIS = 120_000;
+
+    private static RequestSpecification sharedRequestSpec;
+    private static ResponseSpecification sharedResponseSpec;
+    private static PooledTransport transport;
+    private static ResponseCache responseCache;
+    private static SingleFlightFilter singleFlight;
+    private static RequestScheduler scheduler;
+    private static TailLatencyFilter tailLatency;
+    private static LatencyFilter latencyFilter;
+    private static FlightRecorder flightRecorder;
+    private static RecordReplayFilter recordReplay;
+    private static Replica replica;
+    private static RickAndMortyClient apiClient;
+
     protected RequestSpecification requestSpec;
     protected ResponseSpecification responseSpec;
-    
-    @BeforeClass
+    private FlightRecorder exchanges;
+
+    @BeforeClass(alwaysRun = true)
     public void setup() {
-        requestSpec = new RequestSpecBuilder()
-                .setBaseUri(BASE_URL)
-                .setContentType(ContentType.JSON)
-                .log(LogDetail.ALL)
-                .build();
+        initSharedSpecs();
+        requestSpec = sharedRequestSpec;
+        responseSpec = sharedResponseSpec;
+        exchanges = flightRecorder;
+    }
+
+    /**
+     * Gives the test method its own {@link Deadline}, on the thread it runs on.
+     */
+    @BeforeMethod(alwaysRun = true)
+    public void startDeadline(Method method) {
+        long budgetMillis = Long.getLong("tail.testDeadlineMs", DEFAULT_TEST_DEADLINE_MILLIS);
+        if (budgetMillis > 0) {
+            Deadline.start(getClass().getSimpleName() + "." + method.getName(), budgetMillis);
+        }
+    }
+
+    /**
+     * Gives the test method an empty flight recorder buffer, shared with the threads it starts.
+     */
+    @BeforeMethod(alwaysRun = true)
+    public void startRecording() {
+        if (exchanges != null) {
+            exchanges.begin();
+        }
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void clearDeadline() {
+        Deadline.clear();
+    }
+
+    /**
+     * Prints the exchanges of a failed test; a passed test's exchanges are dropped. Runs on the
+     * test's own thread, whose buffer holds exactly that test's requests.
+     */
+    @AfterMethod(alwaysRun = true)
+    public void dumpExchangesOnFailure(ITestResult result) {
+        if (exchanges == null) {
+            return;
+        }
+        if (result.getStatus() == ITestResult.FAILURE) {
+            exchanges.dump(result.getTestClass().getRealClass().getSimpleName() + "." + result.getMethod().getMethodName(),
+                    result.getThrowable());
+        } else {
+            exchanges.clear();
+        }
+    }
+
+    private static synchronized void initSharedSpecs() {
+        if (sharedRequestSpec != null) {
+            return;
+        }
+        if (RecordReplayFilter.modeFromSystemProperties() == RecordReplayFilter.Mode.REPLAY) {
+            recordReplay = RecordReplayFilter.fromSystemProperties(null);
+        }
+        String baseUrl = resolveBaseUrl();
+        TransportConfig transportConfig = TransportConfig.fromSystemProperties();
+        if (!isReplaying() && isLocalTarget() && LocalApiServer.shared().isTls()) {
+            transportConfig = transportConfig.withSslContext(LocalApiServer.shared().getClientSslContext());
+        }
+        transport = PooledTransport.create(transportConfig);
+
+        // flight prints a failed test's exchanges itself, all logs every one and none nothing
+        String logMode = System.getProperty("log.mode", "flight");
+        RestAssuredConfig config = RestAssuredConfig.config();
 
-        responseSpec = new ResponseSpecBuilder()
+        RequestSpecBuilder requestSpecBuilder = transport.install(new RequestSpecBuilder(), config)
+                .setBaseUri(baseUrl)
+                .setContentType(ContentType.JSON);
+        ResponseSpecBuilder responseSpecBuilder = new ResponseSpecBuilder()
                 .expectStatusCode(SUCCESS_STATUS_CODE)
-                .expectContentType(ContentType.JSON)
-                .log(LogDetail.ALL)
-                .build();
+                .expectContentType(ContentType.JSON);
+        if ("all".equalsIgnoreCase(logMode)) {
+            requestSpecBuilder.log(LogDetail.ALL);
+            responseSpecBuilder.log(LogDetail.ALL);
+        } else if ("flight".equalsIgnoreCase(logMode)) {
+            flightRecorder = FlightRecorder.fromSystemProperties();
+            requestSpecBuilder.addFilter(flightRecorder);
+        }
+        if (Boolean.getBoolean("cache.enabled")) {
+            responseCache = ResponseCache.fromSystemProperties();
+            requestSpecBuilder.addFilter(responseCache);
+        }
+        if (Boolean.parseBoolean(System.getProperty("singleflight.enabled", "true"))) {
+            singleFlight = new SingleFlightFilter();
+            requestSpecBuilder.addFilter(singleFlight);
+        }
+        if (Boolean.parseBoolean(System.getProperty("scheduler.enabled", "true"))) {
+            scheduler = RequestScheduler.fromSystemProperties();
+            requestSpecBuilder.addFilter(scheduler);
+        }
+        latencyFilter = new LatencyFilter();
+        requestSpecBuilder.addFilter(latencyFilter);
+        if (Boolean.parseBoolean(System.getProperty("tail.enabled", "true"))) {
+            tailLatency = TailLatencyFilter.fromSystemProperties();
+            requestSpecBuilder.addFilter(tailLatency);
+        }
+        if (recordReplay == null) {
+            recordReplay = RecordReplayFilter.fromSystemProperties(baseUrl);
+        }
+        if (recordReplay != null) {
+            requestSpecBuilder.addFilter(recordReplay);
+        }
+        sharedRequestSpec = requestSpecBuilder.build();
+        sharedResponseSpec = responseSpecBuilder.build();
+    }
+
+    @AfterSuite(alwaysRun = true)
+    public void reportTransport() throws IOException, InterruptedException {
+        List<String> missedObjectives;
+        synchronized (BaseTest.class) {
+            if (transport == null) {
+                return;
+            }
+            System.out.println("Transport (" + transport.getConfig() + "): " + transport.getStats().summary());
+            missedObjectives = reportLatency();
+            if (flightRecorder != null) {
+                flightRecorder.close();
+                System.out.println("Flight recorder: " + flightRecorder.summary());
+                flightRecorder = null;
+            }
+            if (responseCache != null) {
+                System.out.println("Response cache: " + responseCache.summary());
+                responseCache = null;
+            }
+            if (singleFlight != null) {
+                System.out.println("Single flight: " + singleFlight.summary());
+                singleFlight = null;
+            }
+            if (scheduler != null) {
+                System.out.println("Request scheduler: " + scheduler.summary());
+                scheduler = null;
+            }
+            if (tailLatency != null) {
+                System.out.println("Tail latency: " + tailLatency.summary());
+                tailLatency = null;
+            }
+            if (apiClient != null) {
+                System.out.println("API client: " + apiClient.getRequests() + " requests");
+                apiClient.close();
+                apiClient = null;
+            }
+            if (isLocalTarget() && !isReplaying()) {
+                System.out.println("Local API server: " + LocalApiServer.shared().connectionSummary());
+            }
+            if (recordReplay != null) {
+                long bytes = recordReplay.save();
+                System.out.println("Replay archive: " + recordReplay.summary() + (bytes == 0 ? "" : ", " + bytes / 1024 + " KiB"));
+                recordReplay = null;
+            }
+            transport.close();
+            transport = null;
+            sharedRequestSpec = null;
+            sharedResponseSpec = null;
+        }
+        if (!missedObjectives.isEmpty()) {
+            throw new AssertionError("Latency objectives missed: " + String.join("; ", missedObjectives));
+        }
+    }
+
+    @AfterSuite(alwaysRun = true)
+    public void verifyParallelOutcomes() throws IOException {
+        ParallelExecutionListener.verifyOutcomes();
+    }
+
+    private static List<String> reportLatency() throws IOException {
+        List<LatencySlo> slos = LatencySlo.parseAll(System.getProperty("latency.slo", DEFAULT_LATENCY_SLO));
+        Path report = Paths.get(System.getProperty("latency.report", "target/latency-report.json"));
+        System.out.print("Latency by endpoint:" + System.lineSeparator() + latencyFilter.summary());
+        latencyFilter.writeReport(report, slos);
+        System.out.println("Latency report: " + report.toAbsolutePath());
+        List<String> missed = latencyFilter.violations(slos);
+        latencyFilter = null;
+        return missed;
+    }
+
+    /**
+     * Lazily crawls the target API once per JVM into a {@link Replica}, the ground truth for filter assertions.
+     */
+    protected static synchronized Replica replica() {
+        if (replica == null) {
+            long started = System.nanoTime();
+            replica = Replica.load(resolveBaseUrl());
+            System.out.println("Replica loaded in " + (System.nanoTime() - started) / 1_000_000 + "ms: " + replica.summary());
+        }
+        return replica;
+    }
+
+    /**
+     * Lazily builds the suite's {@link RickAndMortyClient} for the target API. It bypasses
+     * {@code requestSpec}, so none of its filters see its requests.
+     */
+    protected static synchronized RickAndMortyClient apiClient() {
+        if (apiClient == null) {
+            RickAndMortyClient.Builder builder = RickAndMortyClient.builder().baseUrl(resolveBaseUrl());
+            if (!isReplaying() && isLocalTarget() && LocalApiServer.shared().isTls()) {
+                builder.sslContext(LocalApiServer.shared().getClientSslContext());
+            }
+            apiClient = builder.build();
+        }
+        return apiClient;
+    }
+
+    protected static String resolveBaseUrl() {
+        if (isReplaying()) {
+            return recordReplay.getArchive().getBaseUrl();
+        }
+        return isLocalTarget() ? LocalApiServer.shared().getBaseUrl() : BASE_URL;
+    }
+
+    /**
+     * @return true when responses come from a replay archive; only requests made through
+     * {@code requestSpec} can be answered then, so checks that crawl the API directly are skipped
+     */
+    protected static boolean isReplaying() {
+        RecordReplayFilter filter = recordReplay;
+        return filter != null && filter.getMode() == RecordReplayFilter.Mode.REPLAY;
+    }
 
-        RestAssured.enableLoggingOfRequestAndResponseIfValidationFails();
+    private static boolean isLocalTarget() {
+        return !"remote".equalsIgnoreCase(System.getProperty(API_TARGET_PROPERTY, "local"));
     }
-} 
\ No newline at end of file
+}
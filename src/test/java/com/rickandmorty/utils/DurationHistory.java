@@ -0,0 +1,154 @@
+package com.rickandmorty.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Durations of test methods over past runs, in milliseconds, kept as one {@code class#method=millis}
+ * line per method like the suite outcomes. A new measurement is averaged with the old value
+ * (exponential moving average, weight {@link #WEIGHT}) so one slow run does not reshuffle the shards.
+ *
+ * <p>Shards of one run must all plan from the same history, so a sharded run never rewrites it:
+ * each shard leaves its durations in its own {@link #shardFile shard file}, and the next run that
+ * is not sharded folds them in.
+ */
+public final class DurationHistory {
+
+    /** Weight of the newest measurement. */
+    static final double WEIGHT = 0.5;
+
+    private final Map<String, Long> millis;
+
+    private DurationHistory(Map<String, Long> millis) {
+        this.millis = millis;
+    }
+
+    public static DurationHistory empty() {
+        return new DurationHistory(new TreeMap<>());
+    }
+
+    public static DurationHistory of(Map<String, Long> millis) {
+        return new DurationHistory(new TreeMap<>(millis));
+    }
+
+    /**
+     * @return the history in {@code file}, or an empty one if it does not exist yet
+     */
+    public static DurationHistory load(Path file) {
+        if (!Files.exists(file)) {
+            return empty();
+        }
+        try {
+            return parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read test durations from " + file, e);
+        }
+    }
+
+    private static DurationHistory parse(List<String> lines) {
+        Map<String, Long> millis = new TreeMap<>();
+        for (String line : lines) {
+            int separator = line.lastIndexOf('=');
+            if (separator <= 0 || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                millis.put(line.substring(0, separator).trim(), Long.parseLong(line.substring(separator + 1).trim()));
+            } catch (NumberFormatException e) {
+                // a line from a different format; the method just counts as unknown
+            }
+        }
+        return new DurationHistory(millis);
+    }
+
+    /**
+     * @return the recorded duration of {@code method}, or -1 if it never ran
+     */
+    public long estimate(String method) {
+        Long recorded = millis.get(method);
+        return recorded == null ? -1 : recorded;
+    }
+
+    public int size() {
+        return millis.size();
+    }
+
+    /**
+     * Folds one run's durations into the history.
+     */
+    public void record(Map<String, Long> measured) {
+        measured.forEach((method, duration) -> millis.merge(method, duration,
+                (old, latest) -> Math.round(WEIGHT * latest + (1 - WEIGHT) * old)));
+    }
+
+    public Map<String, Long> asMap() {
+        return Collections.unmodifiableMap(millis);
+    }
+
+    /**
+     * @return where shard {@code shard} of a sharded run leaves its durations next to {@code file}
+     */
+    public static Path shardFile(Path file, int shard) {
+        return file.resolveSibling(file.getFileName() + ".shard" + shard);
+    }
+
+    /**
+     * Folds the durations left by sharded runs and then {@code measured} into the history in
+     * {@code file}, writes it back and removes the shard files. Runs that finish together take
+     * turns on a lock file, and each re-reads the file under the lock, so no measurement is lost.
+     */
+    public static DurationHistory update(Path file, Map<String, Long> measured) {
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                DurationHistory history = load(file);
+                List<Path> shardFiles = new ArrayList<>();
+                try (DirectoryStream<Path> siblings = Files.newDirectoryStream(directory, file.getFileName() + ".shard*")) {
+                    siblings.forEach(shardFiles::add);
+                }
+                Collections.sort(shardFiles);
+                for (Path shardFile : shardFiles) {
+                    history.record(load(shardFile).millis);
+                }
+                history.record(measured);
+                history.save(file);
+                for (Path shardFile : shardFiles) {
+                    Files.deleteIfExists(shardFile);
+                }
+                return history;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not update test durations in " + file, e);
+        }
+    }
+
+    /**
+     * Writes the history to a temporary file and moves it over {@code file}.
+     */
+    public void save(Path file) throws IOException {
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        List<String> lines = new ArrayList<>(millis.size());
+        millis.forEach((method, duration) -> lines.add(method + "=" + duration));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
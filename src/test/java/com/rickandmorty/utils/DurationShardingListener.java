@@ -0,0 +1,213 @@
+package com.rickandmorty.utils;
+
+import org.testng.IAlterSuiteListener;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.IReporter;
+import org.testng.ISuite;
+import org.testng.ISuiteResult;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Splits the suite over shards by past durations and runs the expensive methods first.
+ *
+ * <ul>
+ *     <li>{@code test.shards}: number of shards, each run in its own JVM (default 1)</li>
+ *     <li>{@code test.shard}: the shard this JVM runs, from 1 to {@code test.shards} (default 1)</li>
+ *     <li>{@code test.durations}: history file, {@code target/test-durations.txt} by default</li>
+ * </ul>
+ *
+ * Every method's cost is its duration in the history; methods that never ran count as the average
+ * of the known ones. The methods are split with {@link ShardPlan} and this JVM keeps its own shard,
+ * most expensive first, so with {@code test.parallel} the long methods do not end up last on one
+ * worker. All shards must read the same history file to agree on the plan, so only a run that is
+ * not sharded updates it; a shard leaves its durations in a {@link DurationHistory#shardFile shard
+ * file} that the next such run folds in. Methods sharing a JVM with others under {@code test.parallel}
+ * take longer than on their own, so each execution mode keeps its own history: a run with
+ * {@code -Dtest.parallel=methods -Dtest.threads=8} reads and writes
+ * {@code target/test-durations-methods-8.txt}. At the end the shard's wall-clock is reported against
+ * its work spread over the worker threads, and with several shards the plan's makespan against the
+ * ideal even split.
+ */
+public class DurationShardingListener implements IAlterSuiteListener, IMethodInterceptor, IReporter {
+
+    public static final String SHARDS_PROPERTY = "test.shards";
+    public static final String SHARD_PROPERTY = "test.shard";
+    public static final String DURATIONS_PROPERTY = "test.durations";
+
+    static final Path DEFAULT_DURATIONS = Paths.get("target", "test-durations.txt");
+    /** Cost of a method when nothing at all is known yet, so the first plan splits by count. */
+    private static final long UNKNOWN_MILLIS = 1_000;
+
+    private final Map<String, Long> predicted = new TreeMap<>();
+    private final long[] predictedLoads;
+    private final int shards;
+    private final int shard;
+    private final Path durations;
+    private int planned;
+    private long largest;
+
+    public DurationShardingListener() {
+        this(Integer.getInteger(SHARDS_PROPERTY, 1), Integer.getInteger(SHARD_PROPERTY, 1), durationsFile());
+    }
+
+    /**
+     * A listener for shard {@code shard} of {@code shards} that reads and writes the history in
+     * {@code durations} as given, whatever the execution mode.
+     */
+    public DurationShardingListener(int shards, int shard, Path durations) {
+        this.shards = shards;
+        this.shard = shard;
+        this.durations = durations;
+        if (shards < 1 || shard < 1 || shard > shards) {
+            throw new IllegalArgumentException("-D" + SHARD_PROPERTY + " must be between 1 and -D" + SHARDS_PROPERTY
+                    + "=" + shards + ", got " + shard);
+        }
+        this.predictedLoads = new long[shards];
+    }
+
+    /**
+     * Turns off {@code preserve-order}, which would group the methods back by class.
+     */
+    @Override
+    public void alter(List<XmlSuite> suites) {
+        for (XmlSuite suite : suites) {
+            suite.setPreserveOrder(false);
+            for (XmlTest test : suite.getTests()) {
+                test.setPreserveOrder(false);
+            }
+        }
+    }
+
+    @Override
+    public synchronized List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        DurationHistory history = DurationHistory.load(durations);
+        Map<String, IMethodInstance> byKey = new LinkedHashMap<>();
+        Map<String, Long> known = new HashMap<>();
+        for (IMethodInstance method : methods) {
+            String key = key(method.getMethod());
+            for (int copy = 2; byKey.containsKey(key); copy++) {
+                key = key(method.getMethod()) + "@" + copy;
+            }
+            byKey.put(key, method);
+            long estimate = history.estimate(key(method.getMethod()));
+            if (estimate >= 0) {
+                known.put(key, estimate);
+            }
+        }
+        long unknown = known.isEmpty() ? UNKNOWN_MILLIS
+                : Math.max(1, known.values().stream().mapToLong(Long::longValue).sum() / known.size());
+        Map<String, Long> costs = new HashMap<>();
+        byKey.keySet().forEach(key -> costs.put(key, known.getOrDefault(key, unknown)));
+
+        ShardPlan plan = ShardPlan.plan(costs, shards);
+        List<IMethodInstance> selected = new ArrayList<>();
+        for (String key : plan.shard(shard - 1)) {
+            selected.add(byKey.get(key));
+            predicted.put(key, costs.get(key));
+        }
+        for (int i = 0; i < shards; i++) {
+            predictedLoads[i] += plan.load(i);
+        }
+        planned += methods.size();
+        largest = Math.max(largest, costs.values().stream().mapToLong(Long::longValue).max().orElse(0));
+        return selected;
+    }
+
+    @Override
+    public synchronized void generateReport(List<XmlSuite> xmlSuites, List<ISuite> suites, String outputDirectory) {
+        Map<String, Long> measured = new TreeMap<>();
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        for (ISuite suite : suites) {
+            for (ISuiteResult suiteResult : suite.getResults().values()) {
+                ITestContext context = suiteResult.getTestContext();
+                start = Math.min(start, context.getStartDate().getTime());
+                end = Math.max(end, context.getEndDate().getTime());
+                record(measured, context.getPassedTests().getAllResults());
+                record(measured, context.getFailedTests().getAllResults());
+                record(measured, context.getSkippedTests().getAllResults());
+            }
+        }
+        if (measured.isEmpty()) {
+            return;
+        }
+        Path written = durations;
+        try {
+            if (shards == 1) {
+                DurationHistory.update(durations, measured);
+            } else {
+                written = DurationHistory.shardFile(durations, shard);
+                DurationHistory.of(measured).save(written);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not record test durations in " + written, e);
+        }
+
+        long wallClock = end - start;
+        long work = measured.values().stream().mapToLong(Long::longValue).sum();
+        int threads = ParallelExecutionListener.parallelMode() == XmlSuite.ParallelMode.NONE
+                ? 1 : ParallelExecutionListener.threadCount();
+        long spread = (work + threads - 1) / threads;
+        StringBuilder report = new StringBuilder(String.format(
+                "Sharding: shard %d/%d ran %d of %d methods in %d ms wall-clock vs %d ms of work over %d thread(s) (%+.1f%%), %d ms predicted",
+                shard, shards, predicted.size(), planned, wallClock, spread, threads,
+                spread == 0 ? 0 : (wallClock - spread) * 100.0 / spread, predictedLoads[shard - 1]));
+        if (shards > 1) {
+            long makespan = 0;
+            long total = 0;
+            for (long load : predictedLoads) {
+                makespan = Math.max(makespan, load);
+                total += load;
+            }
+            long ideal = Math.max((total + shards - 1) / shards, largest);
+            report.append(String.format("; planned makespan %d ms vs ideal %d ms (%+.1f%%)",
+                    makespan, ideal, ideal == 0 ? 0 : (makespan - ideal) * 100.0 / ideal));
+        }
+        System.out.println(report.append("; durations written to ").append(written));
+    }
+
+
+    private static void record(Map<String, Long> measured, Set<ITestResult> results) {
+        for (ITestResult result : results) {
+            // data-driven methods run several times; their cost is the sum
+            measured.merge(key(result.getMethod()), Math.max(0, result.getEndMillis() - result.getStartMillis()), Long::sum);
+        }
+    }
+
+    static String key(ITestNGMethod method) {
+        return method.getRealClass().getName() + "#" + method.getMethodName();
+    }
+
+    /**
+     * The history file of this execution mode: {@code test.durations} as given for a sequential run,
+     * with the mode and thread count added before the extension for a parallel one.
+     */
+    private static Path durationsFile() {
+        String property = System.getProperty(DURATIONS_PROPERTY);
+        Path file = property == null ? DEFAULT_DURATIONS : Paths.get(property);
+        if (ParallelExecutionListener.parallelMode() == XmlSuite.ParallelMode.NONE) {
+            return file;
+        }
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String mode = "-" + ParallelExecutionListener.label();
+        return file.resolveSibling(dot > 0 ? name.substring(0, dot) + mode + name.substring(dot) : name + mode);
+    }
+}
@@ -0,0 +1,51 @@
+package com.rickandmorty.utils;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Coarse heap and GC readings for the footprint reports. Numbers are only meaningful as
+ * differences taken on one thread with nothing else running.
+ */
+public final class MemoryProbe {
+
+    private MemoryProbe() {
+    }
+
+    /**
+     * @return heap in use after a few explicit collections
+     */
+    public static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * @return accumulated collection time of every collector since JVM start
+     */
+    public static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * @return bytes allocated so far by the calling thread, or -1 when the JVM does not track it
+     */
+    public static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                    .getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    public static String mib(long bytes) {
+        return String.format("%.1f MiB", bytes / 1048576.0);
+    }
+}
@@ -0,0 +1,125 @@
+package com.rickandmorty.utils;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.rickandmorty.models.ApiResponse;
+import com.rickandmorty.models.Character;
+import com.rickandmorty.models.Episode;
+import com.rickandmorty.models.Location;
+import io.restassured.response.Response;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Single shared Jackson entry point for the suite. Readers are cached per target type and the
+ * model readers are warmed up when the class loads, so each response body is deserialized once,
+ * straight from its bytes, into the {@code com.rickandmorty.models} types. A body that is also
+ * checked against its schema is parsed once with {@link #tree} and the tree is mapped instead.
+ */
+public final class ModelMapper {
+
+    public static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final ConcurrentMap<JavaType, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+    static {
+        for (Class<?> model : new Class<?>[]{Character.class, Location.class, Episode.class}) {
+            warmUp(pageType(model));
+            warmUp(listType(model));
+            warmUp(MAPPER.constructType(model));
+        }
+    }
+
+    private ModelMapper() {
+    }
+
+    public static ObjectReader reader(JavaType type) {
+        return READERS.computeIfAbsent(type, MAPPER::readerFor);
+    }
+
+    public static ObjectReader reader(Class<?> type) {
+        return reader(MAPPER.constructType(type));
+    }
+
+    public static ObjectReader pageReader(Class<?> elementType) {
+        return reader(pageType(elementType));
+    }
+
+    public static ObjectReader listReader(Class<?> elementType) {
+        return reader(listType(elementType));
+    }
+
+    public static <T> T entity(Response response, Class<T> type) {
+        return read(response, reader(type), type.getSimpleName());
+    }
+
+    public static <T> ApiResponse<T> page(Response response, Class<T> elementType) {
+        return read(response, pageReader(elementType), "ApiResponse<" + elementType.getSimpleName() + ">");
+    }
+
+    public static <T> List<T> list(Response response, Class<T> elementType) {
+        return read(response, listReader(elementType), "List<" + elementType.getSimpleName() + ">");
+    }
+
+    /**
+     * Parses a response body into a tree, for a schema check followed by one of the mappings below.
+     */
+    public static JsonNode tree(Response response) {
+        try {
+            return MAPPER.readTree(response.asByteArray());
+        } catch (IOException e) {
+            throw new AssertionError("Response body is not JSON: " + e.getMessage(), e);
+        }
+    }
+
+    public static <T> T entity(JsonNode body, Class<T> type) {
+        return read(body, reader(type), type.getSimpleName());
+    }
+
+    public static <T> ApiResponse<T> page(JsonNode body, Class<T> elementType) {
+        return read(body, pageReader(elementType), "ApiResponse<" + elementType.getSimpleName() + ">");
+    }
+
+    public static <T> List<T> list(JsonNode body, Class<T> elementType) {
+        return read(body, listReader(elementType), "List<" + elementType.getSimpleName() + ">");
+    }
+
+    private static <T> T read(JsonNode body, ObjectReader reader, String description) {
+        try {
+            return reader.readValue(body);
+        } catch (IOException e) {
+            throw new AssertionError("Response body could not be read as " + description + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static <T> T read(Response response, ObjectReader reader, String description) {
+        try {
+            return reader.readValue(response.asByteArray());
+        } catch (IOException e) {
+            throw new AssertionError("Response body could not be read as " + description + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static JavaType pageType(Class<?> elementType) {
+        return MAPPER.getTypeFactory().constructParametricType(ApiResponse.class, elementType);
+    }
+
+    private static JavaType listType(Class<?> elementType) {
+        return MAPPER.getTypeFactory().constructCollectionType(List.class, elementType);
+    }
+
+    private static void warmUp(JavaType type) {
+        String sample = type.isCollectionLikeType() ? "[{}]"
+                : type.getRawClass() == ApiResponse.class ? "{\"info\":{},\"results\":[{}]}" : "{}";
+        try {
+            reader(type).readValue(sample);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not warm up reader for " + type, e);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.rickandmorty.utils;
+
+import org.testng.IAlterSuiteListener;
+import org.testng.IReporter;
+import org.testng.ISuite;
+import org.testng.ISuiteResult;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Switches the suite between sequential and parallel execution from system properties and checks
+ * that a parallel run produces the same outcomes as the last sequential one.
+ *
+ * <ul>
+ *     <li>{@code test.parallel}: {@code none} (default), {@code methods}, {@code classes} or {@code tests}</li>
+ *     <li>{@code test.threads}: worker threads, defaults to the number of available processors</li>
+ * </ul>
+ *
+ * Methods in the {@value #SERIAL_GROUP} group measure time or heap and would only measure their
+ * neighbours under contention: in a parallel run they are moved to a {@code <test>} of their own,
+ * run one method at a time once the parallel part is done.
+ *
+ * <p>Outcomes are kept per invocation, so each row of a data provider counts on its own, and
+ * written to {@code target/suite-outcomes/<mode>.txt} by {@link #verifyOutcomes()}. A parallel run
+ * is compared against {@code sequential.txt} when it exists, and fails if any invocation that ran
+ * in both ended differently.
+ */
+public class ParallelExecutionListener implements IAlterSuiteListener, ITestListener, IReporter {
+
+    public static final String PARALLEL_PROPERTY = "test.parallel";
+    public static final String THREADS_PROPERTY = "test.threads";
+    /** Methods that must not share the JVM with other running tests. */
+    public static final String SERIAL_GROUP = "serial";
+
+    /** Outcome per invocation of every {@code <test>} finished so far. */
+    private static final Map<String, String> OUTCOMES = new TreeMap<>();
+
+    static final Path OUTCOMES_DIR = Paths.get("target", "suite-outcomes");
+    private static final String SEQUENTIAL = "sequential";
+
+    @Override
+    public void alter(List<XmlSuite> suites) {
+        XmlSuite.ParallelMode mode = parallelMode();
+        int threads = threadCount();
+        for (XmlSuite suite : suites) {
+            suite.setParallel(mode);
+            suite.setThreadCount(threads);
+            for (XmlTest test : new ArrayList<>(suite.getTests())) {
+                test.setParallel(mode);
+                test.setThreadCount(threads);
+                if (mode != XmlSuite.ParallelMode.NONE) {
+                    splitSerial(suite, test);
+                }
+            }
+            if (mode != XmlSuite.ParallelMode.NONE) {
+                // <test>s run one after another, so the serial part never overlaps the parallel one
+                suite.setParallel(XmlSuite.ParallelMode.NONE);
+            }
+        }
+    }
+
+    /**
+     * Excludes the {@value #SERIAL_GROUP} group from {@code test} and appends a sequential copy of
+     * it that runs only that group.
+     */
+    private static void splitSerial(XmlSuite suite, XmlTest test) {
+        XmlTest serial = (XmlTest) test.clone();
+        // clone() registers the copy with the suite; XmlTest.equals would match the original
+        if (suite.getTests().stream().noneMatch(registered -> registered == serial)) {
+            suite.getTests().add(serial);
+        }
+        serial.setName(test.getName() + " (serial)");
+        serial.setParallel(XmlSuite.ParallelMode.NONE);
+        serial.setThreadCount(1);
+        serial.addIncludedGroup(SERIAL_GROUP);
+        test.addExcludedGroup(SERIAL_GROUP);
+    }
+
+    @Override
+    public void onFinish(ITestContext context) {
+        synchronized (OUTCOMES) {
+            record(OUTCOMES, context.getPassedTests().getAllResults());
+            record(OUTCOMES, context.getFailedTests().getAllResults());
+            record(OUTCOMES, context.getSkippedTests().getAllResults());
+        }
+    }
+
+    /**
+     * Writes the outcomes of this run and, for a parallel run, compares them with the last
+     * sequential one. Called once every {@code <test>} has finished.
+     *
+     * @throws AssertionError if an invocation that ran in both runs ended differently
+     */
+    public static void verifyOutcomes() throws IOException {
+        List<String> lines = new ArrayList<>();
+        synchronized (OUTCOMES) {
+            if (OUTCOMES.isEmpty()) {
+                return;
+            }
+            OUTCOMES.forEach((invocation, status) -> lines.add(invocation + "=" + status));
+        }
+        String label = label();
+        Files.createDirectories(OUTCOMES_DIR);
+        Files.write(OUTCOMES_DIR.resolve(label + ".txt"), lines, StandardCharsets.UTF_8);
+        Path sequential = OUTCOMES_DIR.resolve(SEQUENTIAL + ".txt");
+        if (SEQUENTIAL.equals(label) || !Files.exists(sequential)) {
+            return;
+        }
+        List<String> differences = compare(parse(Files.readAllLines(sequential, StandardCharsets.UTF_8)), parse(lines));
+        if (!differences.isEmpty()) {
+            throw new AssertionError("Parallel outcomes differ from the sequential run:" + System.lineSeparator()
+                    + String.join(System.lineSeparator(), differences));
+        }
+        System.out.println("Parallel outcomes match the sequential run (" + lines.size() + " invocations)");
+    }
+
+    @Override
+    public void generateReport(List<XmlSuite> xmlSuites, List<ISuite> suites, String outputDirectory) {
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        int invocations = 0;
+        for (ISuite suite : suites) {
+            for (ISuiteResult suiteResult : suite.getResults().values()) {
+                ITestContext context = suiteResult.getTestContext();
+                start = Math.min(start, context.getStartDate().getTime());
+                end = Math.max(end, context.getEndDate().getTime());
+                invocations += context.getPassedTests().size() + context.getFailedTests().size()
+                        + context.getSkippedTests().size();
+            }
+        }
+        if (invocations > 0) {
+            System.out.println("Suite wall-clock: " + (end - start) + "ms (" + label() + ", " + invocations + " invocations)");
+        }
+    }
+
+    /**
+     * Invocations missing from one side (another shard, a {@code -Dtest=} filter) are not differences.
+     */
+    static List<String> compare(Map<String, String> sequential, Map<String, String> parallel) {
+        List<String> differences = new ArrayList<>();
+        sequential.forEach((invocation, status) -> {
+            String other = parallel.get(invocation);
+            if (other != null && !other.equals(status)) {
+                differences.add("  " + invocation + ": " + status + " sequentially, " + other + " in parallel");
+            }
+        });
+        return differences;
+    }
+
+    private static Map<String, String> parse(List<String> lines) {
+        Map<String, String> outcomes = new TreeMap<>();
+        for (String line : lines) {
+            int eq = line.lastIndexOf('=');
+            if (eq > 0) {
+                outcomes.put(line.substring(0, eq), line.substring(eq + 1));
+            }
+        }
+        return outcomes;
+    }
+
+    private static void record(Map<String, String> outcomes, Set<ITestResult> results) {
+        for (ITestResult result : results) {
+            String status = result.getStatus() == ITestResult.SUCCESS ? "PASS"
+                    : result.getStatus() == ITestResult.FAILURE ? "FAIL" : "SKIP";
+            // an invocation seen twice (a retry) keeps its worst outcome
+            outcomes.merge(invocation(result), status, (a, b) -> a.equals("FAIL") || b.equals("FAIL") ? "FAIL"
+                    : a.equals("SKIP") || b.equals("SKIP") ? "SKIP" : "PASS");
+        }
+    }
+
+    /**
+     * @return {@code class#method}, followed by the parameters of a data-driven invocation
+     */
+    static String invocation(ITestResult result) {
+        String method = result.getTestClass().getName() + "#" + result.getMethod().getMethodName();
+        Object[] parameters = result.getParameters();
+        if (parameters == null || parameters.length == 0) {
+            return method;
+        }
+        return method + Arrays.stream(parameters).map(ParallelExecutionListener::describe)
+                .collect(Collectors.joining(", ", "(", ")"));
+    }
+
+    /**
+     * Renders a parameter the same way in every JVM: maps sorted by key, classes by simple name.
+     */
+    private static String describe(Object parameter) {
+        if (parameter instanceof Map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            ((Map<?, ?>) parameter).forEach((key, value) -> sorted.put(String.valueOf(key), value));
+            return sorted.toString();
+        }
+        if (parameter instanceof Class) {
+            return ((Class<?>) parameter).getSimpleName();
+        }
+        if (parameter instanceof Object[]) {
+            return Arrays.deepToString((Object[]) parameter);
+        }
+        return String.valueOf(parameter);
+    }
+
+    static XmlSuite.ParallelMode parallelMode() {
+        return XmlSuite.ParallelMode.getValidParallel(System.getProperty(PARALLEL_PROPERTY, "none"));
+    }
+
+    static int threadCount() {
+        return Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+    }
+
+    static String label() {
+        XmlSuite.ParallelMode mode = parallelMode();
+        return mode == XmlSuite.ParallelMode.NONE ? SEQUENTIAL : mode + "-" + threadCount();
+    }
+}
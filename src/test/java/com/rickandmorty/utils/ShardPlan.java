@@ -0,0 +1,103 @@
+package com.rickandmorty.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits test methods over shards with the longest-processing-time-first rule: methods are taken
+ * from the most to the least expensive and each goes to the shard with the least work so far. The
+ * result is within 4/3 of the best possible makespan, and each shard lists its methods most
+ * expensive first. Ties are broken by name, so every fork computes the same plan from the same costs.
+ */
+public final class ShardPlan {
+
+    private static final Comparator<Map.Entry<String, Long>> MOST_EXPENSIVE_FIRST =
+            Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    private final List<List<String>> shards;
+    private final long[] loads;
+    private final long total;
+    private final long largest;
+
+    private ShardPlan(List<List<String>> shards, long[] loads, long total, long largest) {
+        this.shards = shards;
+        this.loads = loads;
+        this.total = total;
+        this.largest = largest;
+    }
+
+    /**
+     * @param costs  estimated cost of each method, e.g. in milliseconds
+     * @param shards number of shards, at least 1
+     */
+    public static ShardPlan plan(Map<String, Long> costs, int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("At least one shard is needed, got " + shards);
+        }
+        List<Map.Entry<String, Long>> methods = new ArrayList<>(costs.entrySet());
+        methods.sort(MOST_EXPENSIVE_FIRST);
+
+        List<List<String>> assigned = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            assigned.add(new ArrayList<>());
+        }
+        long[] loads = new long[shards];
+        long total = 0;
+        long largest = 0;
+        for (Map.Entry<String, Long> method : methods) {
+            int lightest = 0;
+            for (int i = 1; i < shards; i++) {
+                if (loads[i] < loads[lightest]) {
+                    lightest = i;
+                }
+            }
+            long cost = Math.max(0, method.getValue());
+            assigned.get(lightest).add(method.getKey());
+            loads[lightest] += cost;
+            total += cost;
+            largest = Math.max(largest, cost);
+        }
+        return new ShardPlan(assigned, loads, total, largest);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * @param index 0-based shard index
+     * @return the shard's methods, most expensive first
+     */
+    public List<String> shard(int index) {
+        return Collections.unmodifiableList(shards.get(index));
+    }
+
+    public long load(int index) {
+        return loads[index];
+    }
+
+    /**
+     * @return the load of the busiest shard: the wall-clock time of the sharded run, if the costs hold
+     */
+    public long getMakespan() {
+        long makespan = 0;
+        for (long load : loads) {
+            makespan = Math.max(makespan, load);
+        }
+        return makespan;
+    }
+
+    /**
+     * @return the lower bound no plan can beat: an even split, or the most expensive method if that is longer
+     */
+    public long getIdeal() {
+        return Math.max((total + loads.length - 1) / loads.length, largest);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+}